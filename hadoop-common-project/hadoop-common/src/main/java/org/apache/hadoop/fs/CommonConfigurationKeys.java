@@ -361,6 +361,11 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
       "dfs.leader.tp.increment";
   public static final int DFS_LEADER_TP_INCREMENT_DEFAULT = 100; // 100 ms
 
+  // non leaders only update their own row, the leader adapts the time period
+  public static final String DFS_LEADER_LIGHTWEIGHT_KEY =
+      "dfs.leader.lightweight";
+  public static final boolean DFS_LEADER_LIGHTWEIGHT_DEFAULT = false;
+
   /*
    Hops Groups
    */
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.benchmarks;
+
+import io.hops.common.CountersQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of allocating inode and block ids from the prefetched id ranges,
+ * uncontended and with the handler threads of a namenode competing for it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountersQueueBenchmark {
+
+  // Size of the id range fetched from the database at a time
+  private static final long BATCH_SIZE = 1000;
+
+  private CountersQueue queue;
+  private long end;
+
+  @Setup
+  public void setup() {
+    queue = new CountersQueue();
+    end = 0;
+  }
+
+  private long nextId() {
+    try {
+      return queue.next();
+    } catch (CountersQueue.EmptyCountersQueueException e) {
+      synchronized (this) {
+        if (!queue.has(1)) {
+          queue.addCounter(end, end + BATCH_SIZE);
+          end += BATCH_SIZE;
+        }
+      }
+      return nextId();
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public long nextIdUncontended() {
+    return nextId();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public long nextIdContended() {
+    return nextId();
+  }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.benchmarks;
+
+import io.hops.StorageConnector;
+import io.hops.metadata.hdfs.dal.BlockInfoDataAccess;
+import io.hops.metadata.hdfs.dal.INodeDataAccess;
+import io.hops.resolvingcache.Cache;
+import io.hops.transaction.EntityManager;
+import io.hops.transaction.context.BlockInfoContext;
+import io.hops.transaction.context.ContextInitializer;
+import io.hops.transaction.context.EntityContext;
+import io.hops.transaction.context.INodeContext;
+import io.hops.transaction.lock.BenchmarkLocks;
+import io.hops.transaction.lock.HdfsTransactionalLockAcquirer;
+import io.hops.transaction.lock.TransactionLockAcquirer;
+import io.hops.transaction.lock.TransactionLockTypes;
+import io.hops.transaction.lock.TransactionLocks;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfo;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Joiner;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the transaction caches in front of the database: resolving a path
+ * component by component through {@link INodeContext}, and reading the
+ * blocks of a file through {@link BlockInfoContext}. The data access objects
+ * are answered from memory, so the numbers are the time spent in the
+ * contexts themselves, on a miss (the context was just cleared, as at the
+ * start of a transaction) and on a hit.
+ * <p>
+ * The lock benchmarks run a whole transaction against a stubbed storage
+ * connector: the path lock of an operation, resolved through the resolving
+ * cache or component by component, and the diff of the changed rows the
+ * contexts hand to the database on commit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityContextBenchmark {
+
+  private static final int FIRST_INODE_ID = 1000;
+  private static final int INODE_ID_WITH_BLOCKS = 1;
+
+  @Param({"3", "8"})
+  public int depth;
+
+  @Param({"10"})
+  public int blocksPerFile;
+
+  // blocks changed by the transactions that are prepared for commit
+  @Param({"1"})
+  public int changedBlocks;
+
+  private String[] names;
+  private int[] parentIds;
+  private int[] partitionIds;
+  private long[] blockIds;
+
+  private String path;
+  private INodeContext inodeContext;
+  private BlockInfoContext blockInfoContext;
+  private TransactionLocks noLocks;
+
+  @Setup
+  public void setup() throws Exception {
+    PermissionStatus perms = new PermissionStatus("user", "group",
+        FsPermission.getDefault());
+    final Map<String, INode> inodes = new HashMap<>();
+    INodeDirectory root = new INodeDirectory(INodeDirectory.ROOT_INODE_ID,
+        INodeDirectory.ROOT_NAME, perms);
+    root.setParentIdNoPersistance(INodeDirectory.ROOT_PARENT_ID);
+    root.setPartitionIdNoPersistance(INodeDirectory.getRootDirPartitionKey());
+    inodes.put(INode.nameParentKey(INodeDirectory.ROOT_PARENT_ID,
+        INodeDirectory.ROOT_NAME), root);
+    names = new String[depth];
+    parentIds = new int[depth];
+    partitionIds = new int[depth];
+    int parentId = INodeDirectory.ROOT_INODE_ID;
+    for (int i = 0; i < depth; i++) {
+      names[i] = "dir-" + i;
+      parentIds[i] = parentId;
+      partitionIds[i] = INode.calculatePartitionId(parentId, names[i],
+          (short) (i + 1));
+      INodeDirectory dir = new INodeDirectory(FIRST_INODE_ID + i, names[i],
+          perms);
+      dir.setParentIdNoPersistance(parentId);
+      dir.setPartitionIdNoPersistance(partitionIds[i]);
+      inodes.put(INode.nameParentKey(parentId, names[i]), dir);
+      parentId = dir.getId();
+    }
+    path = "/" + Joiner.on('/').join(names);
+
+    final List<BlockInfo> blocks = new ArrayList<>();
+    blockIds = new long[blocksPerFile];
+    for (int i = 0; i < blocksPerFile; i++) {
+      blockIds[i] = 1000000L + i;
+      BlockInfo block = new BlockInfo(
+          new Block(blockIds[i], 128L * 1024 * 1024, 1001L),
+          INODE_ID_WITH_BLOCKS);
+      block.setBlockIndexNoPersistance(i);
+      blocks.add(block);
+    }
+
+    final INodeDataAccess inodeDataAccess = stub(INodeDataAccess.class,
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+              case "findInodeByNameParentIdAndPartitionIdPK":
+                return inodes.get(
+                    INode.nameParentKey((Integer) args[1], (String) args[0]));
+              case "getINodesPkBatched":
+                String[] names = (String[]) args[0];
+                int[] parentIds = (int[]) args[1];
+                List<INode> found = new ArrayList<>();
+                for (int i = 0; i < names.length; i++) {
+                  INode inode =
+                      inodes.get(INode.nameParentKey(parentIds[i], names[i]));
+                  if (inode != null) {
+                    found.add(inode);
+                  }
+                }
+                return found;
+              case "prepare":
+                return null;
+              default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+          }
+        });
+    BlockInfoDataAccess blockInfoDataAccess = stub(BlockInfoDataAccess.class,
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+              case "findByInodeId":
+                // the context keeps the returned list, hand out a fresh one
+                return new ArrayList<>(blocks);
+              case "prepare":
+                return null;
+              default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+          }
+        });
+    inodeContext = new INodeContext(inodeDataAccess);
+    blockInfoContext = new BlockInfoContext(blockInfoDataAccess);
+    noLocks = new HdfsTransactionalLockAcquirer().getLocks();
+
+    // the transactions of the lock benchmarks, the connector does nothing
+    final StorageConnector connector = stub(StorageConnector.class,
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("isTransactionActive")) {
+              return true;
+            }
+            return null;
+          }
+        });
+    EntityManager.addContextInitializer(new ContextInitializer() {
+      @Override
+      public Map<Class, EntityContext> createEntityContexts() {
+        Map<Class, EntityContext> contexts = new HashMap<>();
+        contexts.put(INode.class, new INodeContext(inodeDataAccess));
+        return contexts;
+      }
+
+      @Override
+      public StorageConnector getConnector() {
+        return connector;
+      }
+    });
+    // the default in-memory resolving cache of the namenode
+    Cache.getInstance(new Configuration());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T stub(Class<T> type, InvocationHandler handler) {
+    return (T) Proxy.newProxyInstance(type.getClassLoader(),
+        new Class<?>[]{type}, handler);
+  }
+
+  private INode resolve() throws Exception {
+    INode inode = null;
+    for (int i = 0; i < depth; i++) {
+      inode = inodeContext.find(INode.Finder.ByNameParentIdAndPartitionId,
+          names[i], parentIds[i], partitionIds[i]);
+    }
+    return inode;
+  }
+
+  @Benchmark
+  public INode resolvePathMiss() throws Exception {
+    inodeContext.clear();
+    return resolve();
+  }
+
+  @Benchmark
+  public INode resolvePathHit() throws Exception {
+    return resolve();
+  }
+
+  @Benchmark
+  public int fileBlocksMiss() throws Exception {
+    blockInfoContext.clear();
+    return blockInfoContext
+        .findList(BlockInfo.Finder.ByINodeId, INODE_ID_WITH_BLOCKS).size();
+  }
+
+  /**
+   * Read the blocks of a file, change some of them and compute the rows to
+   * write on commit.
+   */
+  @Benchmark
+  public void prepareChangedBlocks() throws Exception {
+    blockInfoContext.clear();
+    Collection<BlockInfo> fileBlocks = blockInfoContext
+        .findList(BlockInfo.Finder.ByINodeId, INODE_ID_WITH_BLOCKS);
+    int changed = 0;
+    for (BlockInfo block : fileBlocks) {
+      if (changed++ == changedBlocks) {
+        break;
+      }
+      blockInfoContext.update(block);
+    }
+    blockInfoContext.prepare(noLocks);
+  }
+
+  /**
+   * Resolve a path, change its last inode and compute the rows to write on
+   * commit.
+   */
+  @Benchmark
+  public void prepareChangedINode() throws Exception {
+    inodeContext.clear();
+    inodeContext.update(resolve());
+    inodeContext.prepare(noLocks);
+  }
+
+  /**
+   * Take the write lock of a path in a transaction, the components are found
+   * in the resolving cache and read in one batch.
+   */
+  @Benchmark
+  public TransactionLocks acquirePathLockCached() throws Exception {
+    return acquirePathLock();
+  }
+
+  /**
+   * Take the write lock of a path in a transaction, the components are read
+   * one by one as the cache has no entry for the path.
+   */
+  @Benchmark
+  public TransactionLocks acquirePathLockUncached() throws Exception {
+    Cache.getInstance().flush();
+    return acquirePathLock();
+  }
+
+  private TransactionLocks acquirePathLock() throws Exception {
+    TransactionLockAcquirer acquirer = new HdfsTransactionalLockAcquirer();
+    acquirer.getLocks().add(BenchmarkLocks.getINodeLock(
+        TransactionLockTypes.INodeLockType.WRITE,
+        TransactionLockTypes.INodeResolveType.PATH, path));
+    EntityManager.begin();
+    try {
+      acquirer.acquire();
+      return acquirer.getLocks();
+    } finally {
+      EntityManager.rollback(acquirer.getLocks());
+    }
+  }
+
+  @Benchmark
+  public BlockInfo blockByIdHit() throws Exception {
+    if (blockInfoContext
+        .findList(BlockInfo.Finder.ByINodeId, INODE_ID_WITH_BLOCKS)
+        .isEmpty()) {
+      return null;
+    }
+    return blockInfoContext.find(BlockInfo.Finder.ByBlockIdAndINodeId,
+        blockIds[blocksPerFile - 1], INODE_ID_WITH_BLOCKS);
+  }
+}
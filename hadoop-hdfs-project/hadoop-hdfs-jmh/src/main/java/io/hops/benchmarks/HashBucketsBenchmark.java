@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.benchmarks;
+
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.server.blockmanagement.HashBuckets;
+import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.ReplicaState;
+import org.apache.hadoop.hdfs.server.protocol.BlockReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding the hash bucket of a block and of hashing it, which is done
+ * for every replica in a block report and for every incremental report.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBucketsBenchmark {
+
+  private static final int NUM_BUCKETS = 1000;
+  private static final int BLOCKS = 4096;
+
+  private Block[] blocks;
+  private int next;
+
+  @Setup
+  public void setup() {
+    HashBuckets.initialize(NUM_BUCKETS);
+    blocks = new Block[BLOCKS];
+    for (int i = 0; i < BLOCKS; i++) {
+      blocks[i] = new Block(1000000L + i * 7919L, 128L * 1024 * 1024,
+          1001L + i);
+    }
+  }
+
+  @Benchmark
+  public int bucketForBlock() {
+    return HashBuckets.getInstance()
+        .getBucketForBlock(blocks[next++ & (BLOCKS - 1)]);
+  }
+
+  @Benchmark
+  public long hashFinalizedBlock() {
+    return BlockReport.hash(blocks[next++ & (BLOCKS - 1)],
+        ReplicaState.FINALIZED);
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.benchmarks;
+
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.ExtendedBlockProto;
+import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.LocatedBlockProto;
+import org.apache.hadoop.hdfs.protocolPB.PBHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the protobuf conversions done by the namenode for every block it
+ * returns to a client.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PBHelperBenchmark {
+
+  private static final String POOL_ID = "BP-1-127.0.0.1-1";
+
+  private ExtendedBlock block;
+  private ExtendedBlockProto blockProto;
+  private LocatedBlock locatedBlock;
+  private LocatedBlockProto locatedBlockProto;
+
+  @Setup
+  public void setup() {
+    block = new ExtendedBlock(POOL_ID, 1073741825L, 128L * 1024 * 1024, 1001L);
+    blockProto = PBHelper.convert(block);
+
+    DatanodeInfo[] locations = new DatanodeInfo[3];
+    for (int i = 0; i < locations.length; i++) {
+      locations[i] = new DatanodeInfo(new DatanodeID("10.0.0." + (i + 1),
+          "dn" + (i + 1), "uuid-" + (i + 1), 50010, 50075, 50020));
+    }
+    locatedBlock = new LocatedBlock(block, locations);
+    locatedBlockProto = PBHelper.convert(locatedBlock);
+  }
+
+  @Benchmark
+  public ExtendedBlockProto extendedBlockToProto() {
+    return PBHelper.convert(block);
+  }
+
+  @Benchmark
+  public ExtendedBlock extendedBlockFromProto() {
+    return PBHelper.convert(blockProto);
+  }
+
+  @Benchmark
+  public LocatedBlockProto locatedBlockToProto() {
+    return PBHelper.convert(locatedBlock);
+  }
+
+  @Benchmark
+  public LocatedBlock locatedBlockFromProto() {
+    return PBHelper.convert(locatedBlockProto);
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.benchmarks;
+
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link INode#calculatePartitionId(int, String, short)}, which is
+ * computed for every path component resolved by the namenode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartitionIdBenchmark {
+
+  private static final int NAMES = 1024;
+
+  @Param({"1", "2", "5"})
+  public short depth;
+
+  private String[] names;
+  private int next;
+
+  @Setup
+  public void setup() {
+    names = new String[NAMES];
+    for (int i = 0; i < NAMES; i++) {
+      names[i] = "file-" + i + ".data";
+    }
+  }
+
+  @Benchmark
+  public int calculatePartitionId() {
+    int i = next++ & (NAMES - 1);
+    return INode.calculatePartitionId(i, names[i], depth);
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.benchmarks;
+
+import io.hops.erasure_coding.ReedSolomonCode;
+import io.hops.erasure_coding.TableReedSolomonCode;
+import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSRawEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding throughput of the Reed-Solomon coders: the polynomial division of
+ * {@link ReedSolomonCode}, the matrix multiplication of
+ * {@link TableReedSolomonCode} on heap arrays and on direct buffers, and the
+ * pure Java {@link RSRawEncoder} of hadoop-common. Each operation encodes
+ * one stripe of stripeLength cells of cellSize bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReedSolomonBenchmark {
+
+  @Param({"10"})
+  public int stripeLength;
+
+  @Param({"4"})
+  public int parityLength;
+
+  @Param({"65536", "1048576"})
+  public int cellSize;
+
+  private ReedSolomonCode reedSolomonCode;
+  private TableReedSolomonCode tableCode;
+  private RSRawEncoder rawEncoder;
+
+  private byte[][] inputs;
+  private byte[][] scratchInputs;
+  private byte[][] outputs;
+  private ByteBuffer[] directInputs;
+  private ByteBuffer[] directOutputs;
+
+  @Setup
+  public void setup() {
+    reedSolomonCode = new ReedSolomonCode(stripeLength, parityLength);
+    tableCode = new TableReedSolomonCode(stripeLength, parityLength);
+    rawEncoder = new RSRawEncoder(
+        new ErasureCoderOptions(stripeLength, parityLength));
+
+    Random random = new Random(0);
+    inputs = new byte[stripeLength][cellSize];
+    scratchInputs = new byte[stripeLength][cellSize];
+    directInputs = new ByteBuffer[stripeLength];
+    for (int i = 0; i < stripeLength; i++) {
+      random.nextBytes(inputs[i]);
+      directInputs[i] = ByteBuffer.allocateDirect(cellSize);
+      directInputs[i].put(inputs[i]);
+      directInputs[i].flip();
+    }
+    outputs = new byte[parityLength][cellSize];
+    directOutputs = new ByteBuffer[parityLength];
+    for (int i = 0; i < parityLength; i++) {
+      directOutputs[i] = ByteBuffer.allocateDirect(cellSize);
+    }
+  }
+
+  @Benchmark
+  public byte[][] reedSolomonCode() {
+    // encodeBulk overwrites its inputs, copying them is part of its cost
+    for (int i = 0; i < stripeLength; i++) {
+      System.arraycopy(inputs[i], 0, scratchInputs[i], 0, cellSize);
+    }
+    reedSolomonCode.encodeBulk(scratchInputs, outputs);
+    return outputs;
+  }
+
+  @Benchmark
+  public byte[][] tableCodeArrays() {
+    tableCode.encodeBulk(inputs, outputs);
+    return outputs;
+  }
+
+  @Benchmark
+  public ByteBuffer[] tableCodeDirect() {
+    tableCode.encode(directInputs, directOutputs);
+    return directOutputs;
+  }
+
+  @Benchmark
+  public ByteBuffer[] rsRawEncoderDirect() {
+    for (ByteBuffer input : directInputs) {
+      input.rewind();
+    }
+    for (ByteBuffer output : directOutputs) {
+      output.clear();
+    }
+    rawEncoder.encode(directInputs, directOutputs);
+    return directOutputs;
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.transaction.lock;
+
+import io.hops.leader_election.node.ActiveNode;
+
+import java.util.Collections;
+
+/**
+ * Creates the locks the benchmarks acquire. The lock factory needs a running
+ * namenode for the list of active namenodes, the benchmarks have none.
+ */
+public final class BenchmarkLocks {
+
+  private BenchmarkLocks() {
+  }
+
+  /**
+   * @return the lock of a path, without the quota attributes of the inodes
+   */
+  public static Lock getINodeLock(TransactionLockTypes.INodeLockType lockType,
+      TransactionLockTypes.INodeResolveType resolveType, String... paths) {
+    return new INodeLock(lockType, resolveType, true, false, true, -1,
+        Collections.<ActiveNode>emptyList(), paths);
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.erasure_coding;
+
+import io.hops.metadata.hdfs.entity.EncodingPolicy;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.server.blockmanagement.DatanodeDescriptor;
+import org.apache.hadoop.hdfs.server.blockmanagement.DatanodeManager;
+import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
+import org.apache.hadoop.hdfs.server.protocol.EncodingCommand;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.hadoop.util.Time.monotonicNow;
+
+/**
+ * Implementation of {@link EncodingManager} that lets the datanodes encode
+ * the files instead of starting a map reduce job per file.
+ * <p/>
+ * Every file is assigned to the alive datanode that holds most of its
+ * blocks, preferring the datanode with fewer active tasks, and sent to it
+ * with the next heartbeat in an {@link EncodingCommand} that batches up to
+ * {@link DFSConfigKeys#ENCODING_TASKS_PER_HEARTBEAT_KEY} files. The datanode
+ * reads the stripes of the file, writes the parity file through its own
+ * client, so the first replica of the parity blocks is local, and reports
+ * the outcome back.
+ * <p/>
+ * A task fails when its datanode dies and is canceled when it does not
+ * finish within {@link DFSConfigKeys#ENCODING_TASK_EXECUTION_LIMIT_KEY}.
+ * A task that is canceled, timed out or replaced by a new encoding of the
+ * same file after it was sent is canceled on its datanode with the next
+ * heartbeat, so that it does not go on writing a parity file the namenode
+ * no longer expects. The tasks are only tracked in memory, the tasks of a
+ * previous leader are not recovered.
+ */
+public class DatanodeEncodingManager extends EncodingManager {
+
+  public static final Log LOG =
+      LogFactory.getLog(DatanodeEncodingManager.class);
+
+  private static class ActiveTask {
+    private final EncodingCommand.EncodingTask task;
+    private final String datanodeUuid;
+    private final long startTime;
+    private Report.Status reported;
+
+    ActiveTask(EncodingCommand.EncodingTask task, String datanodeUuid) {
+      this.task = task;
+      this.datanodeUuid = datanodeUuid;
+      this.startTime = monotonicNow();
+    }
+  }
+
+  private final FSNamesystem namesystem;
+  private final long executionLimit;
+  private final Map<String, ActiveTask> activeTasks = new HashMap<>();
+  private final Map<String, Integer> tasksPerDatanode = new HashMap<>();
+
+  public DatanodeEncodingManager(Configuration conf, FSNamesystem namesystem) {
+    super(conf);
+    this.namesystem = namesystem;
+    this.executionLimit = conf.getLong(
+        DFSConfigKeys.ENCODING_TASK_EXECUTION_LIMIT_KEY,
+        DFSConfigKeys.DEFAULT_ENCODING_TASK_EXECUTION_LIMIT);
+    LOG.info("created");
+  }
+
+  @Override
+  public synchronized void encodeFile(EncodingPolicy policy, Path sourceFile,
+      Path parityFile, boolean copy) throws IOException {
+    String path = sourceFile.toUri().getPath();
+    Codec codec = Codec.getCodec(policy.getCodec());
+    if (codec == null) {
+      throw new IOException("Unknown codec " + policy.getCodec());
+    }
+    DatanodeDescriptor datanode = chooseDatanode(path);
+    EncodingCommand.EncodingTask task = new EncodingCommand.EncodingTask(path,
+        parityFile.toUri().getPath(), codec.getId(),
+        policy.getTargetReplication(), copy);
+    LOG.info("Scheduling " + task + " on " + datanode);
+
+    ActiveTask previous = activeTasks.remove(path);
+    if (previous != null) {
+      forget(previous);
+    }
+    datanode.addEncodingTask(task);
+    activeTasks.put(path, new ActiveTask(task, datanode.getDatanodeUuid()));
+    Integer count = tasksPerDatanode.get(datanode.getDatanodeUuid());
+    tasksPerDatanode.put(datanode.getDatanodeUuid(),
+        count == null ? 1 : count + 1);
+  }
+
+  /**
+   * Record the outcome of tasks reported by a datanode. Reports of unknown
+   * tasks, for instance canceled ones, are ignored.
+   */
+  public synchronized void processReports(DatanodeID datanode,
+      Report[] reports) {
+    for (Report report : reports) {
+      ActiveTask task = activeTasks.get(report.getFilePath());
+      if (task == null ||
+          !task.datanodeUuid.equals(datanode.getDatanodeUuid())) {
+        LOG.info("Ignoring the report of an unknown encoding of " +
+            report.getFilePath() + " by " + datanode);
+        continue;
+      }
+      if (report.getStatus() != Report.Status.ACTIVE) {
+        task.reported = report.getStatus();
+      }
+    }
+  }
+
+  @Override
+  public synchronized List<Report> computeReports() {
+    DatanodeManager datanodeManager =
+        namesystem.getBlockManager().getDatanodeManager();
+    List<Report> reports = new ArrayList<>(activeTasks.size());
+    Iterator<ActiveTask> it = activeTasks.values().iterator();
+    while (it.hasNext()) {
+      ActiveTask task = it.next();
+      String path = task.task.getSourcePath();
+      DatanodeDescriptor datanode =
+          datanodeManager.getDatanodeByUuid(task.datanodeUuid);
+      Report.Status status;
+      if (task.reported != null) {
+        status = task.reported;
+      } else if (datanode == null || !datanode.isAlive) {
+        LOG.info("Datanode " + task.datanodeUuid + " encoding " + path +
+            " is dead");
+        status = Report.Status.FAILED;
+      } else if (monotonicNow() - task.startTime > executionLimit) {
+        LOG.info("Encoding of " + path + " by " + datanode + " timed out");
+        status = Report.Status.CANCELED;
+      } else {
+        status = Report.Status.ACTIVE;
+      }
+      reports.add(new Report(path, status));
+      if (status != Report.Status.ACTIVE) {
+        it.remove();
+        forget(task);
+      }
+    }
+    return reports;
+  }
+
+  @Override
+  public synchronized void cancelAll() {
+    for (ActiveTask task : activeTasks.values()) {
+      forget(task);
+    }
+    activeTasks.clear();
+  }
+
+  /**
+   * Tasks that were not sent to their datanode yet are withdrawn, the others
+   * are canceled on their datanode.
+   */
+  @Override
+  public synchronized void cancel(String toCancel) {
+    ActiveTask task = activeTasks.remove(toCancel);
+    if (task != null) {
+      forget(task);
+    }
+  }
+
+  private void forget(ActiveTask task) {
+    DatanodeDescriptor datanode = namesystem.getBlockManager()
+        .getDatanodeManager().getDatanodeByUuid(task.datanodeUuid);
+    // a task its datanode reported the outcome of is over
+    if (datanode != null && task.reported == null) {
+      datanode.cancelEncodingTask(task.task);
+    }
+    Integer count = tasksPerDatanode.get(task.datanodeUuid);
+    if (count != null && count > 1) {
+      tasksPerDatanode.put(task.datanodeUuid, count - 1);
+    } else {
+      tasksPerDatanode.remove(task.datanodeUuid);
+    }
+  }
+
+  private DatanodeDescriptor chooseDatanode(String path) throws IOException {
+    LocatedBlocks blocks = namesystem.getBlockLocations(path, 0,
+        Long.MAX_VALUE, false, false, true);
+    DatanodeManager datanodeManager =
+        namesystem.getBlockManager().getDatanodeManager();
+    Map<String, Integer> localBlocks = new HashMap<>();
+    for (LocatedBlock block : blocks.getLocatedBlocks()) {
+      for (DatanodeInfo location : block.getLocations()) {
+        Integer count = localBlocks.get(location.getDatanodeUuid());
+        localBlocks.put(location.getDatanodeUuid(),
+            count == null ? 1 : count + 1);
+      }
+    }
+
+    DatanodeDescriptor chosen = null;
+    int chosenBlocks = 0;
+    int chosenTasks = 0;
+    for (Map.Entry<String, Integer> entry : localBlocks.entrySet()) {
+      DatanodeDescriptor datanode =
+          datanodeManager.getDatanodeByUuid(entry.getKey());
+      if (datanode == null || !datanode.isAlive ||
+          datanode.isDecommissionInProgress() || datanode.isDecommissioned()) {
+        continue;
+      }
+      Integer tasks = tasksPerDatanode.get(entry.getKey());
+      int active = tasks == null ? 0 : tasks;
+      if (chosen == null || entry.getValue() > chosenBlocks ||
+          (entry.getValue() == chosenBlocks && active < chosenTasks)) {
+        chosen = datanode;
+        chosenBlocks = entry.getValue();
+        chosenTasks = active;
+      }
+    }
+    if (chosen == null) {
+      throw new IOException("No alive datanode holds blocks of " + path);
+    }
+    return chosen;
+  }
+}
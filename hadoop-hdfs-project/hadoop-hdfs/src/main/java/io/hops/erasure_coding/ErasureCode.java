@@ -19,6 +19,7 @@
 package io.hops.erasure_coding;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public abstract class ErasureCode {
@@ -154,6 +155,66 @@ public void encodeBulk(byte[][] inputs, byte[][] outputs) {
     }
   }
 
+  /**
+   * Adds the contribution of one element of the message to the parity. This
+   * allows computing the parity of a stripe while its message elements arrive
+   * one after the other: the parity is complete once every element was added
+   * to outputs that were zero before.
+   * <p/>
+   * This relies on the code being linear over GF(2^8), which holds for all
+   * codes used here. The contribution of each symbol value at an index is
+   * computed once with {@link #encode(int[], int[])} and looked up afterwards.
+   *
+   * @param index
+   *     the index of the message element in [0, stripeSize())
+   * @param input
+   *     the data of the message element
+   * @param inputOff
+   *     offset into input
+   * @param len
+   *     the number of bytes to add
+   * @param outputs
+   *     the paritySize() parity buffers to add the contribution to
+   * @param outputOff
+   *     offset into each of the outputs
+   */
+  public void encodeBulkIncremental(int index, byte[] input, int inputOff,
+      int len, byte[][] outputs, int outputOff) {
+    assert (symbolSize() == 8);
+    assert (paritySize() == outputs.length);
+    byte[][] table = getContributionTable(index);
+    for (int i = 0; i < outputs.length; i++) {
+      byte[] contribution = table[i];
+      byte[] output = outputs[i];
+      for (int j = 0; j < len; j++) {
+        output[outputOff + j] ^= contribution[input[inputOff + j] & 0xFF];
+      }
+    }
+  }
+
+  private byte[][][] contributionTables;
+
+  private synchronized byte[][] getContributionTable(int index) {
+    if (contributionTables == null) {
+      contributionTables = new byte[stripeSize()][][];
+    }
+    if (contributionTables[index] == null) {
+      byte[][] table = new byte[paritySize()][256];
+      int[] message = new int[stripeSize()];
+      int[] parity = new int[paritySize()];
+      for (int value = 0; value < 256; value++) {
+        message[index] = value;
+        Arrays.fill(parity, 0);
+        encode(message, parity);
+        for (int i = 0; i < parity.length; i++) {
+          table[i][value] = (byte) parity[i];
+        }
+      }
+      contributionTables[index] = table;
+    }
+    return contributionTables[index];
+  }
+
   /**
    * This method would be overridden in the subclass,
    * so that the subclass will have its own decodeBulk behavior.
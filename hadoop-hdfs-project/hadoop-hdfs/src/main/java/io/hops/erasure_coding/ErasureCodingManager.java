@@ -15,6 +15,7 @@
  */
 package io.hops.erasure_coding;
 
+import io.hops.erasure_coding.RecheckSchedule.StatusQueue;
 import io.hops.exception.StorageException;
 import io.hops.metadata.HdfsStorageFactory;
 import io.hops.metadata.hdfs.dal.EncodingStatusDataAccess;
@@ -24,6 +25,7 @@
 import io.hops.transaction.handler.HDFSOperationType;
 import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.handler.LightWeightRequestHandler;
+import io.hops.transaction.handler.TransactionStage;
 import io.hops.transaction.lock.LockFactory;
 import io.hops.transaction.lock.TransactionLockTypes;
 import io.hops.transaction.lock.TransactionLocks;
@@ -33,18 +35,28 @@
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
 import org.apache.hadoop.hdfs.server.namenode.INode;
 import org.apache.hadoop.util.Daemon;
 import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.util.Time;
 
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -52,7 +64,8 @@
  * Daemon that manages erasure-coded files and their status. It scans for
  * requested encodings or repairs and schedules them if resources are available.
  * It checks the status of encodings and repairs and adjusts the file states
- * accordingly.
+ * accordingly. Status changes made on this namenode wake it up, and states
+ * in which nothing changes are scanned less and less often.
  */
 public class ErasureCodingManager extends Configured {
 
@@ -61,10 +74,13 @@ public class ErasureCodingManager extends Configured {
   private final FSNamesystem namesystem;
   private final Daemon erasureCodingMonitorThread = new Daemon(
       new ErasureCodingMonitor());
-  private EncodingManager encodingManager;
+  private volatile EncodingManager encodingManager;
   private BlockRepairManager blockRepairManager;
   private String parityFolder;
-  private final long recheckInterval;
+  private final RecheckSchedule schedule;
+  private final int finalizeBatchSize;
+  // Parity file names of the encodings scheduled by this namenode
+  private final Map<String, String> activeParityFileNames = new HashMap<>();
   private final int activeEncodingLimit;
   private int activeEncodings = 0;
   private final int activeRepairLimit;
@@ -74,16 +90,30 @@ public class ErasureCodingManager extends Configured {
   private final int repairDelay;
   private final int parityRepairDelay;
   private final int deletionLimit;
+  private final int placementCheckLimit;
+  private byte[] placementCheckCursor = HdfsFileStatus.EMPTY_NAME;
+  private long stripesAtRiskInPass = 0;
+  private volatile long stripesAtRisk = 0;
 
   private static boolean enabled = false;
+  private static final List<ErasureCodingManager> activeManagers =
+      new CopyOnWriteArrayList<>();
 
   public ErasureCodingManager(FSNamesystem namesystem, Configuration conf) {
     super(conf);
     this.namesystem = namesystem;
     this.parityFolder = conf.get(DFSConfigKeys.PARITY_FOLDER,
         DFSConfigKeys.DEFAULT_PARITY_FOLDER);
-    this.recheckInterval = conf.getInt(DFSConfigKeys.RECHECK_INTERVAL_KEY,
-        DFSConfigKeys.DEFAULT_RECHECK_INTERVAL);
+    this.schedule = new RecheckSchedule(
+        conf.getInt(DFSConfigKeys.RECHECK_INTERVAL_KEY,
+            DFSConfigKeys.DEFAULT_RECHECK_INTERVAL),
+        conf.getLong(DFSConfigKeys.MIN_RECHECK_INTERVAL_KEY,
+            DFSConfigKeys.DEFAULT_MIN_RECHECK_INTERVAL),
+        conf.getLong(DFSConfigKeys.MAX_RECHECK_INTERVAL_KEY,
+            DFSConfigKeys.DEFAULT_MAX_RECHECK_INTERVAL));
+    this.finalizeBatchSize = Math.max(1,
+        conf.getInt(DFSConfigKeys.FINALIZE_BATCH_SIZE_KEY,
+            DFSConfigKeys.DEFAULT_FINALIZE_BATCH_SIZE));
     this.activeEncodingLimit =
         conf.getInt(DFSConfigKeys.ACTIVE_ENCODING_LIMIT_KEY,
             DFSConfigKeys.DEFAULT_ACTIVE_ENCODING_LIMIT);
@@ -98,6 +128,9 @@ public ErasureCodingManager(FSNamesystem namesystem, Configuration conf) {
         DFSConfigKeys.DEFAULT_PARITY_REPAIR_DELAY);
     this.deletionLimit = conf.getInt(DFSConfigKeys.DELETION_LIMIT_KEY,
         DFSConfigKeys.DEFAULT_DELETION_LIMIT);
+    this.placementCheckLimit = conf.getInt(
+        DFSConfigKeys.PLACEMENT_CHECK_LIMIT_KEY,
+        DFSConfigKeys.DEFAULT_PLACEMENT_CHECK_LIMIT);
     enabled = conf.getBoolean(DFSConfigKeys.ERASURE_CODING_ENABLED_KEY,
         DFSConfigKeys.DEFAULT_ERASURE_CODING_ENABLED_KEY);
   }
@@ -115,10 +148,19 @@ private boolean loadRaidNodeClasses() {
             encodingManagerClass + " is not an implementation of " +
                 EncodingManager.class.getCanonicalName());
       }
-      Constructor<?> encodingManagerConstructor = encodingManagerClass
-          .getConstructor(Configuration.class);
-      encodingManager = (EncodingManager) encodingManagerConstructor
-          .newInstance(getConf());
+      Constructor<?> encodingManagerConstructor;
+      try {
+        // Managers that schedule the encodings on the cluster themselves
+        encodingManagerConstructor = encodingManagerClass
+            .getConstructor(Configuration.class, FSNamesystem.class);
+        encodingManager = (EncodingManager) encodingManagerConstructor
+            .newInstance(getConf(), namesystem);
+      } catch (NoSuchMethodException e) {
+        encodingManagerConstructor = encodingManagerClass
+            .getConstructor(Configuration.class);
+        encodingManager = (EncodingManager) encodingManagerConstructor
+            .newInstance(getConf());
+      }
 
       Class<?> blockRepairManagerClass = getConf().getClass(
           DFSConfigKeys.BLOCK_REPAIR_MANAGER_CLASSNAME_KEY, null);
@@ -150,11 +192,13 @@ public void activate() {
       return;
     }
 
+    activeManagers.add(this);
     erasureCodingMonitorThread.start();
     LOG.info("ErasureCodingMonitor started");
   }
 
   public void close() {
+    activeManagers.remove(this);
     try {
       if (erasureCodingMonitorThread != null) {
         erasureCodingMonitorThread.interrupt();
@@ -165,35 +209,137 @@ public void close() {
     LOG.info("ErasureCodingMonitor stopped");
   }
 
+  /**
+   * Pass the outcome of encoding tasks reported by a datanode to the
+   * encoding manager.
+   */
+  public void encodingReport(DatanodeID datanode, Report[] reports) {
+    EncodingManager manager = encodingManager;
+    if (manager instanceof DatanodeEncodingManager) {
+      ((DatanodeEncodingManager) manager).processReports(datanode, reports);
+      signal(StatusQueue.REPORTS);
+    } else {
+      LOG.warn("Ignoring the encoding report of " + datanode +
+          ", the encodings are not run by datanodes");
+    }
+  }
+
   public static boolean isErasureCodingEnabled(Configuration conf) {
     return conf.getBoolean(DFSConfigKeys.ERASURE_CODING_ENABLED_KEY,
         DFSConfigKeys.DEFAULT_ERASURE_CODING_ENABLED_KEY);
   }
 
+  /**
+   * The queues of the statuses added or changed by a transaction. The
+   * monitors of this process are signaled once the transaction committed,
+   * so that the queues are scanned without waiting for the next periodic
+   * scan.
+   */
+  private static final TransactionStage<EnumSet<StatusQueue>> statusChanges =
+      new TransactionStage<EnumSet<StatusQueue>>() {
+        @Override
+        protected EnumSet<StatusQueue> newChanges() {
+          return EnumSet.noneOf(StatusQueue.class);
+        }
+
+        @Override
+        protected void publish(EnumSet<StatusQueue> staged,
+            Object namesystem, HDFSOperationType opType) {
+          for (ErasureCodingManager manager : activeManagers) {
+            for (StatusQueue queue : staged) {
+              manager.signal(queue);
+            }
+          }
+        }
+      };
+
+  /**
+   * Remember the queue of a status added or changed by the transaction of
+   * this thread. The monitors are only signaled once the transaction
+   * committed.
+   */
+  public static void stageStatusChange(EncodingStatus status) {
+    if (activeManagers.isEmpty() || status == null) {
+      return;
+    }
+    EnumSet<StatusQueue> staged = statusChanges.getChanges();
+    if (staged == null) {
+      return;
+    }
+    if (status.getStatus() != null) {
+      switch (status.getStatus()) {
+        case ENCODING_REQUESTED:
+        case COPY_ENCODING_REQUESTED:
+          staged.add(StatusQueue.ENCODINGS);
+          break;
+        case REPAIR_REQUESTED:
+          staged.add(StatusQueue.SOURCE_REPAIRS);
+          break;
+        case DELETED:
+          staged.add(StatusQueue.DELETIONS);
+          break;
+        default:
+          break;
+      }
+    }
+    if (status.getParityStatus() ==
+        EncodingStatus.ParityStatus.REPAIR_REQUESTED) {
+      staged.add(StatusQueue.PARITY_REPAIRS);
+    }
+    if (Boolean.TRUE.equals(status.getRevoked())) {
+      staged.add(StatusQueue.REVOCATIONS);
+    }
+  }
+
+  private void signal(StatusQueue queue) {
+    schedule.signal(queue);
+  }
+
+  private boolean scan(StatusQueue queue) throws IOException {
+    switch (queue) {
+      case REPORTS:
+        return checkActiveEncodings() | checkActiveRepairs();
+      case ENCODINGS:
+        return scheduleEncodings();
+      case SOURCE_REPAIRS:
+        return scheduleSourceRepairs();
+      case PARITY_REPAIRS:
+        return scheduleParityRepairs();
+      case DELETIONS:
+        return garbageCollect();
+      case REVOCATIONS:
+        return checkRevoked();
+      case PLACEMENT:
+        return checkPlacement();
+      default:
+        throw new IllegalArgumentException("Unknown queue " + queue);
+    }
+  }
+
   private class ErasureCodingMonitor implements Runnable {
 
     @Override
     public void run() {
       while (namesystem.isRunning()) {
         try {
-          try {
-            if (namesystem.isInSafeMode()) {
-              continue;
+          boolean active = isActive();
+          if (active) {
+            long now = Time.monotonicNow();
+            for (StatusQueue queue : StatusQueue.values()) {
+              if (!schedule.startScan(queue, now)) {
+                continue;
+              }
+              // Failed scans are retried at the base interval
+              boolean foundWork = true;
+              try {
+                foundWork = scan(queue);
+              } finally {
+                schedule.finishScan(queue, foundWork, Time.monotonicNow());
+              }
             }
-          } catch (IOException e) {
-            LOG.info("In safe mode skipping this round");
-          }
-          if (namesystem.isLeader()) {
-            checkActiveEncodings();
-            scheduleEncodings();
-            checkActiveRepairs();
-            scheduleSourceRepairs();
-            scheduleParityRepairs();
-            garbageCollect();
-            checkRevoked();
           }
           try {
-            Thread.sleep(recheckInterval);
+            schedule.waitForWork(active);
           } catch (InterruptedException ie) {
             LOG.warn("ErasureCodingMonitor thread received " +
                     "InterruptedException.", ie);
@@ -204,101 +350,175 @@ public void run() {
         }
       }
     }
+
+    private boolean isActive() {
+      try {
+        if (namesystem.isInSafeMode()) {
+          return false;
+        }
+      } catch (IOException e) {
+        LOG.info("In safe mode skipping this round");
+      }
+      return namesystem.isLeader();
+    }
   }
 
-  private void checkActiveEncodings() throws IOException {
+  /**
+   * @return true if an encoding is still active or finished since the last
+   * check
+   */
+  private boolean checkActiveEncodings() throws IOException {
     LOG.info("Checking active encoding.");
     List<Report> reports = encodingManager.computeReports();
+    List<String> finished = new ArrayList<>();
+    boolean changed = false;
     for (Report report : reports) {
       switch (report.getStatus()) {
         case ACTIVE:
           break;
         case FINISHED:
           LOG.info("Encoding finished for " + report.getFilePath());
-          finalizeEncoding(report.getFilePath());
+          finished.add(report.getFilePath());
           activeEncodings--;
+          changed = true;
           break;
         case FAILED:
           LOG.info("Encoding failed for " + report.getFilePath());
           updateEncodingStatus(report.getFilePath(),
               EncodingStatus.Status.ENCODING_FAILED,
               EncodingStatus.ParityStatus.REPAIR_FAILED);
+          activeParityFileNames.remove(report.getFilePath());
           activeEncodings--;
+          changed = true;
           break;
         case CANCELED:
           LOG.info("Encoding canceled for " + report.getFilePath());
           updateEncodingStatus(report.getFilePath(),
               EncodingStatus.Status.ENCODING_CANCELED);
+          activeParityFileNames.remove(report.getFilePath());
           activeEncodings--;
+          changed = true;
           break;
       }
     }
+    if (!finished.isEmpty()) {
+      finalizeEncodings(finished);
+    }
+    if (changed) {
+      // Slots were freed for the requested encodings
+      signal(StatusQueue.ENCODINGS);
+    }
+    return changed || activeEncodings > 0;
   }
 
-  private void finalizeEncoding(final String path) {
-    LOG.info("Finilizing encoding for " + path);
-    try {
-      new HopsTransactionalRequestHandler(HDFSOperationType.GET_INODE) {
-        private String parityPath;
-
-        @Override
-        public void setUp() throws StorageException, IOException {
-          super.setUp();
-          EncodingStatus status = namesystem.getEncodingStatus(path);
-          parityPath = parityFolder + "/" + status.getParityFileName();
+  /**
+   * Finalize the encodings of the given files, in transactions of up to
+   * finalizeBatchSize files.
+   */
+  private void finalizeEncodings(List<String> paths) {
+    LOG.info("Finalizing encoding for " + paths);
+    Map<String, String> parityPaths = new HashMap<>();
+    for (String path : paths) {
+      String parityFileName = activeParityFileNames.remove(path);
+      try {
+        if (parityFileName == null) {
+          // Scheduled before a failover
+          parityFileName = namesystem.getEncodingStatus(path)
+              .getParityFileName();
         }
+        parityPaths.put(path, parityFolder + "/" + parityFileName);
+      } catch (IOException e) {
+        LOG.error(StringUtils.stringifyException(e));
+      }
+      if (parityPaths.size() == finalizeBatchSize) {
+        finalizeEncodingBatch(parityPaths);
+        parityPaths = new HashMap<>();
+      }
+    }
+    if (!parityPaths.isEmpty()) {
+      finalizeEncodingBatch(parityPaths);
+    }
+  }
 
+  /**
+   * Finalize the encodings of a batch of files in a single transaction. If
+   * the transaction fails, the files are finalized one by one so that one
+   * file cannot hold back the others.
+   *
+   * @param parityPaths
+   *     the parity file paths by source file path
+   */
+  private void finalizeEncodingBatch(final Map<String, String> parityPaths) {
+    try {
+      new HopsTransactionalRequestHandler(HDFSOperationType.FINALIZE_ENCODING) {
         @Override
         public void acquireLock(TransactionLocks locks) throws IOException {
+          List<String> lockedPaths = new ArrayList<>(parityPaths.keySet());
+          lockedPaths.addAll(parityPaths.values());
           LockFactory lf = LockFactory.getInstance();
           locks.add(lf.getINodeLock(namesystem.getNameNode(),
               TransactionLockTypes.INodeLockType.WRITE,
-              TransactionLockTypes.INodeResolveType.PATH, path, parityPath))
+              TransactionLockTypes.INodeResolveType.PATH,
+              lockedPaths.toArray(new String[lockedPaths.size()])))
               .add(lf.getEncodingStatusLock(TransactionLockTypes.LockType.WRITE,
-                  path));
+                  parityPaths.keySet().toArray(
+                      new String[parityPaths.size()])));
         }
 
         @Override
         public Object performTask() throws StorageException, IOException {
-          INode sourceInode = namesystem.getINode(path);
-          INode parityInode = namesystem.getINode(parityPath);
-
-          if (sourceInode == null) {
-            return null;
-          }
-
-          EncodingStatus encodingStatus = EntityManager
-              .find(EncodingStatus.Finder.ByInodeId, sourceInode.getId());
-
-          // Might get reported a second time after recovery
-          if (encodingStatus.getStatus()
-              != EncodingStatus.Status.ENCODING_ACTIVE) {
-            return null;
-          }
-
-          if (parityInode == null) {
-            encodingStatus.setStatus(EncodingStatus.Status.ENCODING_FAILED);
-            encodingStatus.setStatusModificationTime(
-                System.currentTimeMillis());
-          } else {
-            encodingStatus.setStatus(EncodingStatus.Status.ENCODED);
-            encodingStatus.setStatusModificationTime(
-                System.currentTimeMillis());
-            encodingStatus.setParityInodeId(parityInode.getId());
-            encodingStatus.setParityStatus(EncodingStatus.ParityStatus.HEALTHY);
-            encodingStatus.setParityStatusModificationTime(
-                System.currentTimeMillis());
+          for (Map.Entry<String, String> entry : parityPaths.entrySet()) {
+            finalizeEncoding(entry.getKey(), entry.getValue());
           }
-
-          EntityManager.update(encodingStatus);
           return null;
         }
       }.handle(this);
     } catch (IOException e) {
-      LOG.error(StringUtils.stringifyException(e));
+      if (parityPaths.size() == 1) {
+        LOG.error(StringUtils.stringifyException(e));
+        return;
+      }
+      LOG.warn("Could not finalize the encodings of " + parityPaths.keySet() +
+          " together, finalizing them one by one", e);
+      for (Map.Entry<String, String> entry : parityPaths.entrySet()) {
+        finalizeEncodingBatch(
+            Collections.singletonMap(entry.getKey(), entry.getValue()));
+      }
     }
   }
 
+  private void finalizeEncoding(String path, String parityPath)
+      throws IOException {
+    INode sourceInode = namesystem.getINode(path);
+    INode parityInode = namesystem.getINode(parityPath);
+
+    if (sourceInode == null) {
+      return;
+    }
+
+    EncodingStatus encodingStatus = EntityManager
+        .find(EncodingStatus.Finder.ByInodeId, sourceInode.getId());
+
+    // Might get reported a second time after recovery
+    if (encodingStatus.getStatus() != EncodingStatus.Status.ENCODING_ACTIVE) {
+      return;
+    }
+
+    if (parityInode == null) {
+      encodingStatus.setStatus(EncodingStatus.Status.ENCODING_FAILED);
+      encodingStatus.setStatusModificationTime(System.currentTimeMillis());
+    } else {
+      encodingStatus.setStatus(EncodingStatus.Status.ENCODED);
+      encodingStatus.setStatusModificationTime(System.currentTimeMillis());
+      encodingStatus.setParityInodeId(parityInode.getId());
+      encodingStatus.setParityStatus(EncodingStatus.ParityStatus.HEALTHY);
+      encodingStatus.setParityStatusModificationTime(
+          System.currentTimeMillis());
+    }
+
+    EntityManager.update(encodingStatus);
+  }
+
   private void updateEncodingStatus(String filePath,
       EncodingStatus.Status status, EncodingStatus.ParityStatus parityStatus) {
     try {
@@ -318,11 +538,16 @@ private void updateEncodingStatus(String filePath,
     updateEncodingStatus(filePath, null, status);
   }
 
-  private void scheduleEncodings() throws IOException {
+  /**
+   * @return true if encodings were requested. Scans are skipped while the
+   * limit of active encodings is reached, finished encodings signal the
+   * queue. Scheduled encodings signal the reports.
+   */
+  private boolean scheduleEncodings() throws IOException {
     LOG.info("Schedule encodings.");
     final int limit = activeEncodingLimit - activeEncodings;
     if (limit <= 0) {
-      return;
+      return false;
     }
 
     LightWeightRequestHandler findHandler = new LightWeightRequestHandler(
@@ -368,16 +593,27 @@ public Object performTask() throws StorageException, IOException {
                 EncodingStatus.Status.COPY_ENCODING_REQUESTED ? true : false);
         namesystem.updateEncodingStatus(path,
             EncodingStatus.Status.ENCODING_ACTIVE, parityFileName.toString());
+        activeParityFileNames.put(path, parityFileName.toString());
         activeEncodings++;
+        // The reports track the encoding from now on
+        signal(StatusQueue.REPORTS);
       } catch (IOException e) {
         LOG.error(StringUtils.stringifyException(e));
       }
     }
+    return !requestedEncodings.isEmpty();
   }
 
-  private void checkActiveRepairs() throws IOException {
+  /**
+   * @return true if a repair is still active or finished since the last
+   * check
+   */
+  private boolean checkActiveRepairs() throws IOException {
     LOG.info("Checking active repairs.");
     List<Report> reports = blockRepairManager.computeReports();
+    List<String> fixedSources = new ArrayList<>();
+    List<String> fixedParities = new ArrayList<>();
+    boolean changed = false;
     for (Report report : reports) {
       switch (report.getStatus()) {
         case ACTIVE:
@@ -385,12 +621,13 @@ private void checkActiveRepairs() throws IOException {
         case FINISHED:
           LOG.info("Repair finished for " + report.getFilePath());
           if (isParityFile(report.getFilePath())) {
-            checkFixedParity(report.getFilePath());
+            fixedParities.add(report.getFilePath());
             activeParityRepairs--;
           } else {
-            checkFixedSource(report.getFilePath());
+            fixedSources.add(report.getFilePath());
             activeRepairs--;
           }
+          changed = true;
           break;
         case FAILED:
           LOG.info("Repair failed for " + report.getFilePath());
@@ -403,6 +640,7 @@ private void checkActiveRepairs() throws IOException {
                 EncodingStatus.Status.REPAIR_FAILED);
             activeRepairs--;
           }
+          changed = true;
           break;
         case CANCELED:
           LOG.info("Repair canceled for " + report.getFilePath());
@@ -415,74 +653,105 @@ private void checkActiveRepairs() throws IOException {
                 EncodingStatus.Status.REPAIR_CANCELED);
             activeRepairs--;
           }
+          changed = true;
           break;
       }
     }
+    for (int i = 0; i < fixedSources.size(); i += finalizeBatchSize) {
+      checkFixed(fixedSources.subList(i,
+          Math.min(fixedSources.size(), i + finalizeBatchSize)), false);
+    }
+    for (int i = 0; i < fixedParities.size(); i += finalizeBatchSize) {
+      checkFixed(fixedParities.subList(i,
+          Math.min(fixedParities.size(), i + finalizeBatchSize)), true);
+    }
+    if (changed) {
+      // Slots were freed for the requested repairs
+      signal(StatusQueue.SOURCE_REPAIRS);
+      signal(StatusQueue.PARITY_REPAIRS);
+    }
+    return changed || activeRepairs > 0 || activeParityRepairs > 0;
   }
 
-  private void checkFixedSource(final String path) throws IOException {
-    new HopsTransactionalRequestHandler(HDFSOperationType.CHECK_FIXED_SOURCE) {
-      @Override
-      public void acquireLock(TransactionLocks locks) throws IOException {
-        LockFactory lf = LockFactory.getInstance();
-        locks.add(lf.getINodeLock(namesystem.getNameNode(),
-            TransactionLockTypes.INodeLockType.WRITE,
-            TransactionLockTypes.INodeResolveType.PATH, path)).add(
-            lf.getEncodingStatusLock(TransactionLockTypes.LockType.WRITE,
-                path));
-      }
+  /**
+   * Check whether the repairs of a batch of source or parity files fixed all
+   * lost blocks, in a single transaction. If the transaction fails, the
+   * files are checked one by one.
+   */
+  private void checkFixed(final List<String> paths, final boolean parity) {
+    try {
+      new HopsTransactionalRequestHandler(parity ?
+          HDFSOperationType.CHECK_FIXED_PARITY :
+          HDFSOperationType.CHECK_FIXED_SOURCE) {
+        @Override
+        public void acquireLock(TransactionLocks locks) throws IOException {
+          String[] targets = paths.toArray(new String[paths.size()]);
+          LockFactory lf = LockFactory.getInstance();
+          locks.add(lf.getINodeLock(namesystem.getNameNode(),
+              TransactionLockTypes.INodeLockType.WRITE,
+              TransactionLockTypes.INodeResolveType.PATH, targets))
+              .add(lf.getEncodingStatusLock(
+                  TransactionLockTypes.LockType.WRITE, targets));
+        }
 
-      @Override
-      public Object performTask() throws IOException {
-        INode targetNode = namesystem.getINode(path);
-        EncodingStatus status = EntityManager
-            .find(EncodingStatus.Finder.ByInodeId, targetNode.getId());
-        if (status.getLostBlocks() == 0) {
-          status.setStatus(EncodingStatus.Status.ENCODED);
-        } else {
-          status.setStatus(EncodingStatus.Status.REPAIR_REQUESTED);
+        @Override
+        public Object performTask() throws IOException {
+          for (String path : paths) {
+            INode targetNode = namesystem.getINode(path);
+            if (parity) {
+              checkFixedParity(targetNode);
+            } else {
+              checkFixedSource(targetNode);
+            }
+          }
+          return null;
         }
-        status.setStatusModificationTime(System.currentTimeMillis());
-        EntityManager.update(status);
-        return null;
+      }.handle();
+    } catch (IOException e) {
+      if (paths.size() == 1) {
+        LOG.error(StringUtils.stringifyException(e));
+        return;
+      }
+      LOG.warn("Could not check the repairs of " + paths +
+          " together, checking them one by one", e);
+      for (String path : paths) {
+        checkFixed(Collections.singletonList(path), parity);
       }
-    }.handle();
+    }
   }
 
-  private void checkFixedParity(final String path) throws IOException {
-    new HopsTransactionalRequestHandler(HDFSOperationType.CHECK_FIXED_PARITY) {
-      @Override
-      public void acquireLock(TransactionLocks locks) throws IOException {
-        LockFactory lf = LockFactory.getInstance();
-        locks.add(lf.getINodeLock(namesystem.getNameNode(),
-            TransactionLockTypes.INodeLockType.WRITE,
-            TransactionLockTypes.INodeResolveType.PATH, path))
-            .add(lf.getEncodingStatusLock(
-                TransactionLockTypes.LockType.WRITE, path));
-      }
+  private void checkFixedSource(INode targetNode) throws IOException {
+    EncodingStatus status = EntityManager
+        .find(EncodingStatus.Finder.ByInodeId, targetNode.getId());
+    if (status.getLostBlocks() == 0) {
+      status.setStatus(EncodingStatus.Status.ENCODED);
+    } else {
+      status.setStatus(EncodingStatus.Status.REPAIR_REQUESTED);
+    }
+    status.setStatusModificationTime(System.currentTimeMillis());
+    EntityManager.update(status);
+  }
 
-      @Override
-      public Object performTask() throws IOException {
-        INode targetNode = namesystem.getINode(path);
-        EncodingStatus status = EntityManager.find(
-            EncodingStatus.Finder.ByParityInodeId, targetNode.getId());
-        if (status.getLostParityBlocks() == 0) {
-          status.setParityStatus(EncodingStatus.ParityStatus.HEALTHY);
-        } else {
-          status.setParityStatus(EncodingStatus.ParityStatus.REPAIR_REQUESTED);
-        }
-        status.setParityStatusModificationTime(System.currentTimeMillis());
-        EntityManager.update(status);
-        return null;
-      }
-    }.handle();
+  private void checkFixedParity(INode targetNode) throws IOException {
+    EncodingStatus status = EntityManager.find(
+        EncodingStatus.Finder.ByParityInodeId, targetNode.getId());
+    if (status.getLostParityBlocks() == 0) {
+      status.setParityStatus(EncodingStatus.ParityStatus.HEALTHY);
+    } else {
+      status.setParityStatus(EncodingStatus.ParityStatus.REPAIR_REQUESTED);
+    }
+    status.setParityStatusModificationTime(System.currentTimeMillis());
+    EntityManager.update(status);
   }
 
-  private void scheduleSourceRepairs() throws IOException {
+  /**
+   * @return true if repairs were requested
+   */
+  private boolean scheduleSourceRepairs() throws IOException {
     LOG.info("Scheduling repairs");
     final int limit = activeRepairLimit - activeRepairs;
     if (limit <= 0) {
-      return;
+      return false;
     }
 
     LightWeightRequestHandler findHandler = new LightWeightRequestHandler(
@@ -524,17 +793,22 @@ public Object performTask() throws IOException {
             new Path(parityFolder + "/" + encodingStatus.getParityFileName()));
         LOG.info("Scheduled job for source repair " + encodingStatus);
         activeRepairs++;
+        signal(StatusQueue.REPORTS);
       } catch (IOException e) {
         LOG.error(StringUtils.stringifyException(e));
       }
     }
+    return !requestedRepairs.isEmpty();
   }
 
-  private void scheduleParityRepairs() {
+  /**
+   * @return true if parity repairs were requested
+   */
+  private boolean scheduleParityRepairs() {
     LOG.info("Scheduling parity repairs");
     final int limit = activeParityRepairLimit - activeParityRepairs;
     if (limit <= 0) {
-      return;
+      return false;
     }
 
     LightWeightRequestHandler findHandler = new LightWeightRequestHandler(
@@ -579,14 +853,20 @@ public Object performTask() throws IOException {
                 new Path(path), new Path(
                 parityFolder + "/" + encodingStatus.getParityFileName()));
         LOG.info("Scheduled job for parity repair " + encodingStatus);
-        activeRepairs++;
+        activeParityRepairs++;
+        signal(StatusQueue.REPORTS);
       }
+      return !requestedRepairs.isEmpty();
     } catch (IOException e) {
       LOG.error(StringUtils.stringifyException(e));
+      return true;
     }
   }
 
-  private void garbageCollect() throws IOException {
+  /**
+   * @return true if statuses of deleted files were found
+   */
+  private boolean garbageCollect() throws IOException {
     LOG.info("Starting garbage collection");
     LightWeightRequestHandler findHandler = new LightWeightRequestHandler(
         EncodingStatusOperationType.FIND_DELETED) {
@@ -610,9 +890,13 @@ public Object performTask() throws IOException {
         LOG.error(StringUtils.stringifyException(e));
       }
     }
+    return !markedAsDeleted.isEmpty();
   }
 
-  private void checkRevoked() throws IOException {
+  /**
+   * @return true if revoked statuses were found
+   */
+  private boolean checkRevoked() throws IOException {
     LOG.info("Checking replication for revocations");
     LightWeightRequestHandler findHandler = new LightWeightRequestHandler(
         EncodingStatusOperationType.FIND_REVOKED) {
@@ -639,6 +923,100 @@ public Object performTask() throws IOException {
         namesystem.removeEncodingStatus(path, status);
       }
     }
+    return !markedAsRevoked.isEmpty();
+  }
+
+  /**
+   * Check the placement of the stripes of the next placementCheckLimit
+   * encoded files, in the order of their parity files. The number of stripes
+   * at risk is published once all parity files were checked.
+   *
+   * @return true if the pass over the parity files is not complete yet
+   */
+  private boolean checkPlacement() throws IOException {
+    if (placementCheckLimit <= 0) {
+      return false;
+    }
+    LOG.info("Checking the placement of stripes");
+    DirectoryListing listing =
+        namesystem.getListing(parityFolder, placementCheckCursor, false);
+    if (listing == null) {
+      stripesAtRisk = 0;
+      return false;
+    }
+    int numRacks = namesystem.getBlockManager().getDatanodeManager()
+        .getNetworkTopology().getNumOfRacks();
+    HdfsFileStatus[] parityFiles = listing.getPartialListing();
+    int checked = Math.min(parityFiles.length, placementCheckLimit);
+    for (int i = 0; i < checked; i++) {
+      try {
+        stripesAtRiskInPass += countStripesAtRisk(parityFiles[i], numRacks);
+      } catch (IOException e) {
+        LOG.error(StringUtils.stringifyException(e));
+      }
+    }
+
+    if (checked < parityFiles.length || listing.hasMore()) {
+      placementCheckCursor = parityFiles[checked - 1].getLocalNameInBytes();
+      return true;
+    }
+    if (stripesAtRiskInPass > 0) {
+      LOG.warn(stripesAtRiskInPass + " stripes of encoded files are at" +
+          " risk of a single datanode or rack failure");
+    }
+    stripesAtRisk = stripesAtRiskInPass;
+    stripesAtRiskInPass = 0;
+    placementCheckCursor = HdfsFileStatus.EMPTY_NAME;
+    return false;
+  }
+
+  private int countStripesAtRisk(HdfsFileStatus parityFile, int numRacks)
+      throws IOException {
+    final int parityInodeId = (int) parityFile.getFileId();
+    LightWeightRequestHandler findHandler = new LightWeightRequestHandler(
+        EncodingStatusOperationType.FIND_BY_PARITY_INODE_ID) {
+      @Override
+      public Object performTask() throws IOException {
+        EncodingStatusDataAccess<EncodingStatus> dataAccess =
+            (EncodingStatusDataAccess) HdfsStorageFactory
+                .getDataAccess(EncodingStatusDataAccess.class);
+        return dataAccess.findByParityInodeId(parityInodeId);
+      }
+    };
+    EncodingStatus status = (EncodingStatus) findHandler.handle();
+    if (status == null || !status.isEncoded()) {
+      return 0;
+    }
+    Codec codec = Codec.getCodec(status.getEncodingPolicy().getCodec());
+    if (codec == null) {
+      return 0;
+    }
+
+    String path = namesystem.getPath(status.getInodeId(), status.isInTree());
+    List<LocatedBlock> sourceBlocks = namesystem.getBlockLocations(path, 0,
+        Long.MAX_VALUE, false, false, true).getLocatedBlocks();
+    List<LocatedBlock> parityBlocks = namesystem.getBlockLocations(
+        parityFolder + "/" + status.getParityFileName(), 0, Long.MAX_VALUE,
+        false, false, true).getLocatedBlocks();
+    int atRisk = 0;
+    for (StripePlacement stripe : StripePlacement.getStripes(sourceBlocks,
+        parityBlocks, codec, numRacks)) {
+      if (stripe.isAtRisk()) {
+        atRisk++;
+      }
+    }
+    if (atRisk > 0) {
+      LOG.info(atRisk + " stripes of " + path + " are at risk");
+    }
+    return atRisk;
+  }
+
+  /**
+   * @return the number of stripes of encoded files that a single datanode or
+   * rack failure would make unrecoverable, as of the last complete check
+   */
+  public long getStripesAtRisk() {
+    return stripesAtRisk;
   }
 
   private boolean checkReplication(LocatedBlocks blocks, int replication) {
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.erasure_coding;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+
+/**
+ * Computes the parity file of a source file on a datanode. The
+ * implementation is loaded by name from
+ * {@link org.apache.hadoop.hdfs.DFSConfigKeys#FILE_ENCODER_CLASSNAME_KEY}
+ * and needs a public constructor without arguments.
+ */
+public interface FileEncoder {
+
+  /**
+   * Encode the source file and reduce its replication.
+   *
+   * @param conf
+   *     the configuration of the datanode
+   * @param sourceFile
+   *     the file to encode
+   * @param parityFile
+   *     the parity file to write
+   * @param codec
+   *     the codec of the encoding policy of the file
+   * @param targetReplication
+   *     the replication of the source file once it is encoded
+   * @param copy
+   *     true if the source file has to be rewritten while encoding it
+   */
+  public void encodeFile(Configuration conf, Path sourceFile, Path parityFile,
+      Codec codec, int targetReplication, boolean copy) throws IOException;
+}
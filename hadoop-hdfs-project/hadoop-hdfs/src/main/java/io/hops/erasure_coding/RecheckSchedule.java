@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.erasure_coding;
+
+import org.apache.hadoop.util.Time;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * When the erasure coding monitor scans its queues. A queue is due when a
+ * status change on this namenode signaled it and minRecheckInterval passed
+ * since its last scan, or when its interval elapsed. The interval starts at
+ * recheckInterval. Queues that back off double it up to maxRecheckInterval
+ * each time a scan finds nothing to do, the others are always rescanned
+ * after recheckInterval. A scan that finds work, or that was signaled,
+ * resets the interval.
+ */
+class RecheckSchedule {
+
+  /**
+   * The states of the encoding status rows the monitor scans for work, and
+   * the reports of the active encodings and repairs. Status changes made on
+   * other namenodes are only picked up by the periodic scans, which is why
+   * the queues any namenode may add to, encodings, repairs, deletions and
+   * revocations, and the reports of the active work do not back off. Only
+   * the placement check, that finds work of its own, does.
+   */
+  enum StatusQueue {
+    REPORTS(false),
+    ENCODINGS(false),
+    SOURCE_REPAIRS(false),
+    PARITY_REPAIRS(false),
+    DELETIONS(false),
+    REVOCATIONS(false),
+    PLACEMENT(true);
+
+    private final boolean backoff;
+
+    StatusQueue(boolean backoff) {
+      this.backoff = backoff;
+    }
+  }
+
+  private static class QueueState {
+    private long interval;
+    private long lastScan = 0;
+    private long nextScan = 0;
+    private boolean signaled = false;
+    private boolean signaledForScan = false;
+
+    private QueueState(long interval) {
+      this.interval = interval;
+    }
+  }
+
+  private final long recheckInterval;
+  private final long minRecheckInterval;
+  private final long maxRecheckInterval;
+  private final Map<StatusQueue, QueueState> queues =
+      new EnumMap<>(StatusQueue.class);
+
+  RecheckSchedule(long recheckInterval, long minRecheckInterval,
+      long maxRecheckInterval) {
+    this.recheckInterval = recheckInterval;
+    this.minRecheckInterval = Math.min(recheckInterval, minRecheckInterval);
+    this.maxRecheckInterval = Math.max(recheckInterval, maxRecheckInterval);
+    for (StatusQueue queue : StatusQueue.values()) {
+      queues.put(queue, new QueueState(recheckInterval));
+    }
+  }
+
+  void signal(StatusQueue queue) {
+    synchronized (queues) {
+      QueueState state = queues.get(queue);
+      if (!state.signaled) {
+        state.signaled = true;
+        queues.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * @return true if the queue is due, in which case the scan must be
+   * reported with {@link #finishScan}
+   */
+  boolean startScan(StatusQueue queue, long now) {
+    synchronized (queues) {
+      QueueState state = queues.get(queue);
+      if (now < state.nextScan && !(state.signaled &&
+          now >= state.lastScan + minRecheckInterval)) {
+        return false;
+      }
+      state.signaledForScan = state.signaled;
+      state.signaled = false;
+      return true;
+    }
+  }
+
+  void finishScan(StatusQueue queue, boolean foundWork, long now) {
+    synchronized (queues) {
+      QueueState state = queues.get(queue);
+      if (foundWork || state.signaledForScan || !queue.backoff) {
+        state.interval = recheckInterval;
+      } else {
+        state.interval = Math.min(2 * state.interval, maxRecheckInterval);
+      }
+      state.lastScan = now;
+      state.nextScan = now + state.interval;
+    }
+  }
+
+  long getInterval(StatusQueue queue) {
+    synchronized (queues) {
+      return queues.get(queue).interval;
+    }
+  }
+
+  /**
+   * @return the time at which the next queue is due, at most
+   * recheckInterval from now
+   */
+  long nextWakeUp(long now) {
+    synchronized (queues) {
+      long wakeUp = now + recheckInterval;
+      for (QueueState state : queues.values()) {
+        wakeUp = Math.min(wakeUp, state.nextScan);
+        if (state.signaled) {
+          wakeUp = Math.min(wakeUp, state.lastScan + minRecheckInterval);
+        }
+      }
+      return wakeUp;
+    }
+  }
+
+  /**
+   * Wait until the next queue is due or a queue is signaled. If the monitor
+   * is not active the queues are not scanned, so only wait for
+   * recheckInterval.
+   */
+  void waitForWork(boolean active) throws InterruptedException {
+    synchronized (queues) {
+      long now = Time.monotonicNow();
+      long wakeUp = active ? nextWakeUp(now) : now + recheckInterval;
+      if (wakeUp > now) {
+        queues.wait(wakeUp - now);
+      }
+    }
+  }
+}
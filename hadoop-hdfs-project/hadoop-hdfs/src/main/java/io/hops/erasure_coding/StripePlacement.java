@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.erasure_coding;
+
+import org.apache.hadoop.hdfs.StorageType;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The placement of the source and parity blocks of one stripe of an encoded
+ * file.
+ * <p/>
+ * The blocks of a stripe are well placed if no datanode holds more than one
+ * of them and no rack holds more than its share of them, that is the number
+ * of replicas of the stripe divided by the number of racks, rounded up. A
+ * stripe is at risk if losing a single datanode or a single rack loses more
+ * blocks than the codec can recover.
+ */
+public class StripePlacement {
+
+  /**
+   * A replica of a block of the stripe on a datanode.
+   */
+  public static class Replica {
+    private final LocatedBlock block;
+    private final DatanodeInfo datanode;
+    private final StorageType storageType;
+
+    Replica(LocatedBlock block, DatanodeInfo datanode,
+        StorageType storageType) {
+      this.block = block;
+      this.datanode = datanode;
+      this.storageType = storageType;
+    }
+
+    public LocatedBlock getBlock() {
+      return block;
+    }
+
+    public DatanodeInfo getDatanode() {
+      return datanode;
+    }
+
+    public StorageType getStorageType() {
+      return storageType;
+    }
+
+    @Override
+    public String toString() {
+      return block.getBlock() + " on " + datanode;
+    }
+  }
+
+  private final List<LocatedBlock> blocks;
+  private final int parityLength;
+  private final int numRacks;
+  private final int maxReplicasPerRack;
+  private final Map<String, Integer> replicasPerNode = new HashMap<>();
+  private final Map<String, Integer> replicasPerRack = new HashMap<>();
+  private final List<Replica> misplaced = new ArrayList<>();
+
+  StripePlacement(List<LocatedBlock> blocks, int parityLength, int numRacks) {
+    this.blocks = blocks;
+    this.parityLength = parityLength;
+    this.numRacks = numRacks;
+
+    int replicas = 0;
+    for (LocatedBlock block : blocks) {
+      replicas += block.getLocations().length;
+    }
+    this.maxReplicasPerRack = numRacks > 1 ?
+        (replicas + numRacks - 1) / numRacks : Integer.MAX_VALUE;
+
+    for (LocatedBlock block : blocks) {
+      DatanodeInfo[] locations = block.getLocations();
+      StorageType[] storageTypes = block.getStorageTypes();
+      for (int i = 0; i < locations.length; i++) {
+        DatanodeInfo datanode = locations[i];
+        if (replicasPerNode.containsKey(datanode.getDatanodeUuid()) ||
+            count(replicasPerRack, datanode.getNetworkLocation()) >=
+                maxReplicasPerRack) {
+          misplaced.add(new Replica(block, datanode,
+              storageTypes != null && i < storageTypes.length ?
+                  storageTypes[i] : StorageType.DEFAULT));
+        } else {
+          add(datanode);
+        }
+      }
+    }
+  }
+
+  /**
+   * Split the blocks of an encoded file and its parity file into stripes.
+   *
+   * @param sourceBlocks
+   *     the blocks of the source file in file order
+   * @param parityBlocks
+   *     the blocks of the parity file in file order
+   * @param codec
+   *     the codec the file was encoded with
+   * @param numRacks
+   *     the number of racks of the cluster
+   * @return the stripes of the file
+   */
+  public static List<StripePlacement> getStripes(
+      List<LocatedBlock> sourceBlocks, List<LocatedBlock> parityBlocks,
+      Codec codec, int numRacks) {
+    int stripeLength = codec.getStripeLength();
+    int parityLength = codec.getParityLength();
+    int numStripes = (sourceBlocks.size() + stripeLength - 1) / stripeLength;
+    List<StripePlacement> stripes = new ArrayList<>(numStripes);
+    for (int stripe = 0; stripe < numStripes; stripe++) {
+      List<LocatedBlock> blocks = new ArrayList<>(stripeLength + parityLength);
+      blocks.addAll(sourceBlocks.subList(stripe * stripeLength,
+          Math.min(sourceBlocks.size(), (stripe + 1) * stripeLength)));
+      int parityStart = Math.min(parityBlocks.size(), stripe * parityLength);
+      blocks.addAll(parityBlocks.subList(parityStart,
+          Math.min(parityBlocks.size(), (stripe + 1) * parityLength)));
+      stripes.add(new StripePlacement(blocks, parityLength, numRacks));
+    }
+    return stripes;
+  }
+
+  /**
+   * @return true if a single datanode or rack failure loses more blocks of
+   * the stripe than can be recovered
+   */
+  public boolean isAtRisk() {
+    int lost = 0;
+    Map<String, Integer> lostPerNode = new HashMap<>();
+    Map<String, Integer> lostPerRack = new HashMap<>();
+    for (LocatedBlock block : blocks) {
+      DatanodeInfo[] locations = block.getLocations();
+      if (locations.length == 0) {
+        lost++;
+        continue;
+      }
+      Set<String> nodes = new HashSet<>();
+      Set<String> racks = new HashSet<>();
+      for (DatanodeInfo datanode : locations) {
+        nodes.add(datanode.getDatanodeUuid());
+        racks.add(datanode.getNetworkLocation());
+      }
+      // a block is lost with a failure domain holding all of its replicas
+      if (nodes.size() == 1) {
+        increment(lostPerNode, nodes.iterator().next());
+      }
+      if (racks.size() == 1) {
+        increment(lostPerRack, racks.iterator().next());
+      }
+    }
+    int maxLost = max(lostPerNode);
+    if (numRacks > 1) {
+      maxLost = Math.max(maxLost, max(lostPerRack));
+    }
+    return lost + maxLost > parityLength;
+  }
+
+  /**
+   * @return the replicas that share a datanode with another block of the
+   * stripe or exceed the share of their rack. Moving them to datanodes
+   * accepted by {@link #canHost} fixes the placement.
+   */
+  public List<Replica> getMisplacedReplicas() {
+    return misplaced;
+  }
+
+  /**
+   * @return true if a replica of the stripe could be moved to the datanode
+   * without breaking the placement
+   */
+  public boolean canHost(DatanodeInfo datanode) {
+    return !replicasPerNode.containsKey(datanode.getDatanodeUuid()) &&
+        count(replicasPerRack, datanode.getNetworkLocation()) <
+            maxReplicasPerRack;
+  }
+
+  /**
+   * Account for a misplaced replica being moved to the given datanode.
+   */
+  public void moved(Replica replica, DatanodeInfo target) {
+    misplaced.remove(replica);
+    add(target);
+  }
+
+  private void add(DatanodeInfo datanode) {
+    increment(replicasPerNode, datanode.getDatanodeUuid());
+    increment(replicasPerRack, datanode.getNetworkLocation());
+  }
+
+  private static int count(Map<String, Integer> map, String key) {
+    Integer count = map.get(key);
+    return count == null ? 0 : count;
+  }
+
+  private static void increment(Map<String, Integer> map, String key) {
+    map.put(key, count(map, key) + 1);
+  }
+
+  private static int max(Map<String, Integer> map) {
+    int max = 0;
+    for (int count : map.values()) {
+      max = Math.max(max, count);
+    }
+    return max;
+  }
+}
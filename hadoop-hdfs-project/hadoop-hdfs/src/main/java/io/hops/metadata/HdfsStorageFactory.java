@@ -74,6 +74,7 @@
 import io.hops.metadata.hdfs.entity.QuotaUpdate;
 import io.hops.metadata.hdfs.entity.SubTreeOperation;
 import io.hops.metadata.hdfs.entity.UnderReplicatedBlock;
+import io.hops.metadata.memory.InMemoryStorageFactory;
 import io.hops.security.Users;
 import io.hops.security.UsersGroups;
 import io.hops.transaction.EntityManager;
@@ -100,6 +101,8 @@
 import io.hops.transaction.context.TransactionsStats;
 import io.hops.transaction.context.UnderReplicatedBlockContext;
 import io.hops.transaction.context.VariableContext;
+import io.hops.transaction.handler.TransactionProfiler;
+import io.hops.transaction.lock.INodeLockPolicy;
 import io.hops.transaction.lock.LockFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeys;
@@ -129,6 +132,7 @@
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class HdfsStorageFactory {
 
@@ -136,9 +140,13 @@ public class HdfsStorageFactory {
   private static DalStorageFactory dStorageFactory;
   private static Map<Class, EntityDataAccess> dataAccessAdaptors =
       new HashMap<>();
+  private static RoundTripLatencyInjector latencyInjector;
+  private static Map<Class, EntityDataAccess> injectedDataAccess =
+      new ConcurrentHashMap<>();
+  private static StorageConnector connector;
   
   public static StorageConnector getConnector() {
-    return dStorageFactory.getConnector();
+    return connector;
   }
 
   @VisibleForTesting
@@ -161,6 +169,12 @@ public static void setConfiguration(Configuration conf) throws IOException {
                 .DFS_TRANSACTION_STATS_WRITER_ROUND_DEFAULT), conf
             .getBoolean(DFSConfigKeys.DFS_TRANSACTION_STATS_DETAILED_ENABLED,
                 DFSConfigKeys.DFS_TRANSACTION_STATS_DETAILED_ENABLED_DEFAULT));
+    TransactionProfiler.getInstance().setConfiguration(
+        conf.getInt(DFSConfigKeys.DFS_TRANSACTION_PROFILER_SAMPLING_PERIOD,
+            DFSConfigKeys.DFS_TRANSACTION_PROFILER_SAMPLING_PERIOD_DEFAULT),
+        conf.getInt(DFSConfigKeys.DFS_TRANSACTION_PROFILER_QUANTILES_INTERVAL,
+            DFSConfigKeys.DFS_TRANSACTION_PROFILER_QUANTILES_INTERVAL_DEFAULT));
+    INodeLockPolicy.getInstance().setConfiguration(conf);
     if (!isDALInitialized) {
       HdfsVariables.registerDefaultValues(conf);
       addToClassPath(conf.get(DFSConfigKeys.DFS_STORAGE_DRIVER_JAR_FILE,
@@ -168,7 +182,11 @@ public static void setConfiguration(Configuration conf) throws IOException {
       dStorageFactory = DalDriver.load(
           conf.get(DFSConfigKeys.DFS_STORAGE_DRIVER_CLASS,
               DFSConfigKeys.DFS_STORAGE_DRIVER_CLASS_DEFAULT));
-      dStorageFactory.setConfiguration(getMetadataClusterConfiguration(conf));
+      dStorageFactory.setConfiguration(
+          dStorageFactory instanceof InMemoryStorageFactory ?
+              getInMemoryConfiguration(conf) :
+              getMetadataClusterConfiguration(conf));
+      initLatencyInjector(conf);
       initDataAccessWrappers();
       EntityManager.addContextInitializer(getContextInitializer());
       if(conf.getBoolean(CommonConfigurationKeys.HOPS_GROUPS_ENABLE, CommonConfigurationKeys
@@ -193,12 +211,21 @@ public static Properties getMetadataClusterConfiguration(Configuration conf)
     Properties clusterConf = new Properties();
     InputStream inStream =
         StorageConnector.class.getClassLoader().getResourceAsStream(configFile);
-    clusterConf.load(inStream);
     if(inStream == null){
       throw new FileNotFoundException("Unable to load database configuration file");
     }
+    clusterConf.load(inStream);
     return clusterConf;
   }
+
+  private static Properties getInMemoryConfiguration(Configuration conf) {
+    Properties memoryConf = new Properties();
+    memoryConf.setProperty(DFSConfigKeys.DFS_STORAGE_MEMORY_LOCK_WAIT_TIMEOUT_MS,
+        Long.toString(conf.getLong(
+            DFSConfigKeys.DFS_STORAGE_MEMORY_LOCK_WAIT_TIMEOUT_MS,
+            DFSConfigKeys.DFS_STORAGE_MEMORY_LOCK_WAIT_TIMEOUT_MS_DEFAULT)));
+    return memoryConf;
+  }
   
   //[M]: just for testing purposes
   private static void addToClassPath(String s)
@@ -218,6 +245,22 @@ private static void addToClassPath(String s)
     }
   }
   
+  private static void initLatencyInjector(Configuration conf) {
+    long latency = conf.getLong(DFSConfigKeys.DFS_STORAGE_INJECTED_LATENCY_US,
+        DFSConfigKeys.DFS_STORAGE_INJECTED_LATENCY_US_DEFAULT);
+    injectedDataAccess.clear();
+    connector = dStorageFactory.getConnector();
+    latencyInjector = null;
+    if (latency >= 0) {
+      latencyInjector = new RoundTripLatencyInjector(latency);
+      connector = latencyInjector.wrap(StorageConnector.class, connector,
+          RoundTripLatencyInjector.LOCAL_CONNECTOR_METHODS);
+    }
+    if (TransactionProfiler.getInstance().isEnabled()) {
+      connector = TransactionProfiler.profile(connector);
+    }
+  }
+
   private static void initDataAccessWrappers() {
     dataAccessAdaptors.clear();
     dataAccessAdaptors.put(BlockInfoDataAccess.class, new BlockInfoDALAdaptor(
@@ -324,7 +367,7 @@ public Map<Class, EntityContext> createEntityContexts() {
 
       @Override
       public StorageConnector getConnector() {
-        return dStorageFactory.getConnector();
+        return connector;
       }
     };
   }
@@ -333,34 +376,45 @@ public static EntityDataAccess getDataAccess(Class type) {
     if (dataAccessAdaptors.containsKey(type)) {
       return dataAccessAdaptors.get(type);
     }
-    return dStorageFactory.getDataAccess(type);
+    if (latencyInjector == null) {
+      return dStorageFactory.getDataAccess(type);
+    }
+    EntityDataAccess dataAccess = injectedDataAccess.get(type);
+    if (dataAccess == null) {
+      dataAccess = latencyInjector.wrap(type,
+          dStorageFactory.getDataAccess(type));
+      if (dataAccess != null) {
+        injectedDataAccess.put(type, dataAccess);
+      }
+    }
+    return dataAccess;
   }
   
   public static boolean formatStorage() throws StorageException {
     Cache.getInstance().flush();
     Users.flushCache();
-    return dStorageFactory.getConnector().formatStorage();
+    return connector.formatStorage();
   }
 
   public static boolean formatHdfsStorage() throws StorageException {
     Cache.getInstance().flush();
-    return dStorageFactory.getConnector().formatHDFSStorage();
+    return connector.formatHDFSStorage();
   }
 
   public static boolean formatHdfsStorageNonTransactional() throws StorageException {
     Cache.getInstance().flush();
-    return dStorageFactory.getConnector().formatHDFSStorageNonTransactional();
+    return connector.formatHDFSStorageNonTransactional();
   }
 
   public static boolean formatAllStorageNonTransactional()
       throws StorageException {
     Cache.getInstance().flush();
-    return dStorageFactory.getConnector().formatAllStorageNonTransactional();
+    return connector.formatAllStorageNonTransactional();
   }
 
   public static boolean formatStorage(Class<? extends EntityDataAccess>... das)
       throws StorageException {
     Cache.getInstance().flush();
-    return dStorageFactory.getConnector().formatStorage(das);
+    return connector.formatStorage(das);
   }
 }
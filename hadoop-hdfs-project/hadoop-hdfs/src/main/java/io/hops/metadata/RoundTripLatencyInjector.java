@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.metadata;
+
+import io.hops.transaction.handler.TransactionProfiler;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Wraps the data access objects and the connector of the storage driver so
+ * that every call made to the database counts as one round trip, and
+ * optionally delays it by a fixed latency. The rows returned by the calls are
+ * counted as well. This makes it possible to run the namenode against a fast
+ * local driver and still see how a change affects the number of round trips
+ * and the time spent waiting on the database. The round trips and rows are
+ * counted per thread, and for the transaction the thread is profiling, if
+ * any, see {@link TransactionProfiler}.
+ * <p>
+ * The injector sits in front of whichever driver is configured, usually the
+ * in-memory one, {@link io.hops.metadata.memory.InMemoryStorageFactory}.
+ */
+public class RoundTripLatencyInjector {
+
+  /**
+   * Methods of the storage connector that only change or read the state of
+   * the current session and never reach the database.
+   */
+  public static final Set<String> LOCAL_CONNECTOR_METHODS =
+      Collections.unmodifiableSet(new HashSet<>(Arrays.asList("readLock",
+          "writeLock", "readCommitted", "isTransactionActive",
+          "setPartitionKey")));
+
+  // round trips and rows read by the current thread
+  private static final ThreadLocal<long[]> threadCounts =
+      new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+          return new long[2];
+        }
+      };
+
+  private final long latencyNanos;
+
+  public RoundTripLatencyInjector(long latencyMicros) {
+    this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+  }
+
+  /**
+   * Wrap the given object so that the calls to the methods of the given
+   * interface are counted and delayed.
+   */
+  public <T> T wrap(Class<?> type, T target) {
+    return wrap(type, target, Collections.<String>emptySet());
+  }
+
+  /**
+   * Wrap the given object so that the calls to the methods of the given
+   * interface are counted and delayed, except for the methods named in
+   * localMethods which are passed through untouched.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T wrap(Class<?> type, final T target,
+      final Set<String> localMethods) {
+    if (target == null || !type.isInterface()) {
+      return target;
+    }
+    return (T) Proxy.newProxyInstance(target.getClass().getClassLoader(),
+        new Class<?>[]{type}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args)
+              throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+              return method.invoke(target, args);
+            }
+            if (localMethods.contains(method.getName())) {
+              try {
+                return method.invoke(target, args);
+              } catch (InvocationTargetException e) {
+                throw e.getCause();
+              }
+            }
+            delay();
+            Object result;
+            try {
+              result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+              count(0);
+              throw e.getCause();
+            }
+            count(rows(result));
+            return result;
+          }
+        });
+  }
+
+  /**
+   * The number of rows in the result of a call to the driver. Numbers and
+   * booleans are the result of counts or updates, not rows.
+   */
+  private static long rows(Object result) {
+    if (result == null || result instanceof Number ||
+        result instanceof Boolean) {
+      return 0;
+    }
+    if (result instanceof Collection) {
+      return ((Collection<?>) result).size();
+    }
+    if (result instanceof Map) {
+      return ((Map<?, ?>) result).size();
+    }
+    if (result.getClass().isArray()) {
+      return Array.getLength(result);
+    }
+    return 1;
+  }
+
+  private void delay() {
+    if (latencyNanos > 0) {
+      LockSupport.parkNanos(latencyNanos);
+    }
+  }
+
+  private static void count(long rows) {
+    long[] counts = threadCounts.get();
+    counts[0]++;
+    counts[1] += rows;
+    TransactionProfiler.Sample sample = TransactionProfiler.currentSample();
+    if (sample != null) {
+      sample.roundTrip(rows);
+    }
+  }
+
+  /**
+   * @return the number of round trips made by the current thread through
+   * wrapped objects
+   */
+  public static long getThreadRoundTrips() {
+    return threadCounts.get()[0];
+  }
+
+  /**
+   * @return the number of rows read by the current thread through wrapped
+   * objects
+   */
+  public static long getThreadRowsRead() {
+    return threadCounts.get()[1];
+  }
+}
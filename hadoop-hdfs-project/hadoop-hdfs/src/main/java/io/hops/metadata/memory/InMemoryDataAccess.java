@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.metadata.memory;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.memory.InMemoryDatabase.LockMode;
+import io.hops.metadata.memory.InMemoryTable.Filter;
+import io.hops.metadata.memory.InMemoryTable.RowPredicate;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implements a data access interface of the storage driver on a table of the
+ * in-memory storage. The finders are declared by name in the
+ * {@link InMemorySchema}, the writes are implemented once for all tables:
+ * prepare, add, insert, update, put and addAll store their arguments, delete
+ * and remove delete them, removeAll, deleteAll and clear empty the table,
+ * findAll and countAll read all of it. The methods that are neither fail
+ * with an {@link UnsupportedOperationException}.
+ */
+class InMemoryDataAccess implements InvocationHandler {
+
+  /**
+   * The role of an argument of prepare.
+   */
+  static final int REMOVED = 0;
+  static final int ADDED = 1;
+  static final int MODIFIED = 2;
+
+  interface Query {
+    Object run(InMemoryDataAccess table, Method method, Object[] args)
+        throws StorageException;
+  }
+
+  /**
+   * A query that scans the table for the rows accepted for the arguments.
+   */
+  abstract static class Scan implements Query {
+    abstract boolean accept(Object row, Object[] args);
+
+    @Override
+    public Object run(InMemoryDataAccess table, Method method,
+        final Object[] args) throws StorageException {
+      return shape(method, table.select(Filter.matching(new RowPredicate() {
+        @Override
+        public boolean accept(Object row) {
+          return Scan.this.accept(row, args);
+        }
+      })));
+    }
+  }
+
+  /**
+   * The primary key of the rows of a table, the order of the arguments of
+   * its prepare method and its finders.
+   */
+  static class Definition {
+    private final String[] key;
+    private int[] prepare = {REMOVED, ADDED, MODIFIED};
+    private final Map<String, Query> queries = new HashMap<>();
+
+    /**
+     * @param key the columns of the primary key, none if the rows are their
+     * own key
+     */
+    Definition(String... key) {
+      this.key = key;
+    }
+
+    Definition prepare(int... roles) {
+      this.prepare = roles;
+      return this;
+    }
+
+    Definition query(String method, Query query) {
+      queries.put(method, query);
+      return this;
+    }
+  }
+
+  private final Class<?> type;
+  private final InMemoryDatabase database;
+  private final InMemoryTable table;
+  private final Definition definition;
+
+  InMemoryDataAccess(Class<?> type, InMemoryDatabase database) {
+    this.type = type;
+    this.database = database;
+    this.definition = InMemorySchema.definition(type);
+    this.table = database.table(type, definition.key);
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      switch (method.getName()) {
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        default:
+          return "InMemory" + type.getSimpleName();
+      }
+    }
+    if (args == null) {
+      args = new Object[0];
+    }
+    Query query = definition.queries.get(method.getName());
+    if (query != null) {
+      return query.run(this, method, args);
+    }
+    switch (method.getName()) {
+      case "prepare":
+        for (int i = 0; i < args.length && i < definition.prepare.length;
+             i++) {
+          if (definition.prepare[i] == REMOVED) {
+            deleteAll(args[i]);
+          } else {
+            writeAll(args[i]);
+          }
+        }
+        return null;
+      case "add":
+      case "insert":
+      case "update":
+      case "put":
+      case "addAll":
+        for (Object arg : args) {
+          writeAll(arg);
+        }
+        return null;
+      case "delete":
+      case "remove":
+        for (Object arg : args) {
+          deleteAll(arg);
+        }
+        return null;
+      case "removeAll":
+      case "deleteAll":
+      case "clear":
+        if (args.length == 0) {
+          deleteAll(select(Filter.all()));
+          return null;
+        }
+        break;
+      case "findAll":
+      case "countAll":
+        if (args.length == 0) {
+          return shape(method, select(Filter.all()));
+        }
+        break;
+      default:
+        break;
+    }
+    throw new UnsupportedOperationException(type.getSimpleName() + "." +
+        method.getName() + " is not supported by the in-memory storage");
+  }
+
+  List<Object> select(Filter filter) throws StorageException {
+    return database.select(table, filter, null);
+  }
+
+  List<Object> select(Filter filter, LockMode lockMode)
+      throws StorageException {
+    return database.select(table, filter, lockMode);
+  }
+
+  /**
+   * Read the rows of another table, in the lock mode of the transaction.
+   */
+  List<Object> select(Class<?> dataAccess, Filter filter)
+      throws StorageException {
+    return database.select(database.table(dataAccess,
+        InMemorySchema.definition(dataAccess).key), filter, null);
+  }
+
+  void write(Object row) throws StorageException {
+    database.write(table, row);
+  }
+
+  void delete(Object row) throws StorageException {
+    database.delete(table, row);
+  }
+
+  private void writeAll(Object rows) throws StorageException {
+    if (rows instanceof Collection) {
+      for (Object row : (Collection<?>) rows) {
+        write(row);
+      }
+    } else if (rows != null) {
+      write(rows);
+    }
+  }
+
+  private void deleteAll(Object rows) throws StorageException {
+    if (rows instanceof Collection) {
+      for (Object row : (Collection<?>) rows) {
+        delete(row);
+      }
+    } else if (rows != null) {
+      delete(rows);
+    }
+  }
+
+  /**
+   * Return the rows as the method does: nothing, whether there are rows,
+   * their number, a list or set of them, or the first one, if any.
+   */
+  static Object shape(Method method, List<Object> rows) {
+    Class<?> returnType = method.getReturnType();
+    if (returnType == void.class) {
+      return null;
+    } else if (returnType == boolean.class || returnType == Boolean.class) {
+      return !rows.isEmpty();
+    } else if (returnType == int.class || returnType == Integer.class) {
+      return rows.size();
+    } else if (returnType == long.class || returnType == Long.class) {
+      return (long) rows.size();
+    } else if (Set.class.isAssignableFrom(returnType)) {
+      return new HashSet<>(rows);
+    } else if (Collection.class.isAssignableFrom(returnType)) {
+      return rows;
+    }
+    return rows.isEmpty() ? null : rows.get(0);
+  }
+
+  /**
+   * Finds the rows whose columns equal the arguments, in order. A null column
+   * ignores its argument.
+   */
+  static Query where(String... columns) {
+    return where((LockMode) null, columns);
+  }
+
+  /**
+   * Like {@link #where(String...)}, but reads the rows in the given lock
+   * mode, whatever the lock mode of the transaction.
+   */
+  static Query where(final LockMode lockMode, final String... columns) {
+    return new Query() {
+      @Override
+      public Object run(InMemoryDataAccess table, Method method,
+          Object[] args) throws StorageException {
+        return shape(method, table.select(filter(columns, args), lockMode));
+      }
+    };
+  }
+
+  /**
+   * Finds the rows whose column equals any of the values of the array or
+   * collection argument.
+   */
+  static Query in(final String column) {
+    return new Query() {
+      @Override
+      public Object run(InMemoryDataAccess table, Method method,
+          Object[] args) throws StorageException {
+        List<Object> rows = new ArrayList<>();
+        for (Object value : values(args[0])) {
+          rows.addAll(table.select(Filter.where(column, value)));
+        }
+        return shape(method, rows);
+      }
+    };
+  }
+
+  /**
+   * Finds the rows of the tuples of values given by the array or collection
+   * arguments, one per column, in the order of the tuples.
+   */
+  static Query tuples(final String... columns) {
+    return new Query() {
+      @Override
+      public Object run(InMemoryDataAccess table, Method method,
+          Object[] args) throws StorageException {
+        List<List<Object>> values = new ArrayList<>();
+        for (Object arg : args) {
+          values.add(values(arg));
+        }
+        List<Object> rows = new ArrayList<>();
+        Object[] tuple = new Object[columns.length];
+        for (int i = 0; i < values.get(0).size(); i++) {
+          for (int column = 0; column < columns.length; column++) {
+            tuple[column] = values.get(column).get(i);
+          }
+          rows.addAll(table.select(filter(columns, tuple)));
+        }
+        return shape(method, rows);
+      }
+    };
+  }
+
+  static Filter filter(String[] columns, Object[] args) {
+    List<String> fields = new ArrayList<>();
+    List<Object> values = new ArrayList<>();
+    for (int i = 0; i < columns.length; i++) {
+      if (columns[i] != null) {
+        fields.add(columns[i]);
+        values.add(args[i]);
+      }
+    }
+    return new Filter(fields.toArray(new String[fields.size()]),
+        values.toArray(), null);
+  }
+
+  static List<Object> values(Object arrayOrCollection) {
+    List<Object> values = new ArrayList<>();
+    if (arrayOrCollection instanceof Collection) {
+      values.addAll((Collection<?>) arrayOrCollection);
+    } else if (arrayOrCollection != null) {
+      for (int i = 0; i < Array.getLength(arrayOrCollection); i++) {
+        values.add(Array.get(arrayOrCollection, i));
+      }
+    }
+    return values;
+  }
+}
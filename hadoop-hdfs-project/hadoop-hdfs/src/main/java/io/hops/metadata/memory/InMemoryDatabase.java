@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.metadata.memory;
+
+import io.hops.exception.StorageException;
+import io.hops.exception.TransientStorageException;
+import io.hops.metadata.memory.InMemoryTable.Filter;
+import org.apache.hadoop.util.Time;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The tables of the in-memory storage and the transactions of the threads
+ * that use them.
+ * <p>
+ * A transaction keeps its writes to itself until it commits, its reads see
+ * the committed rows and its own writes. As with the clustered database, the
+ * rows are locked for the rest of the transaction when they are read in the
+ * read or write lock mode of the connector, and always when they are
+ * written. A read committed read takes no lock. A transaction that waits
+ * longer than the lock wait timeout for a row fails with a transient storage
+ * exception, which breaks the deadlocks as the database does. Outside of a
+ * transaction every call commits on its own.
+ */
+class InMemoryDatabase {
+
+  enum LockMode {
+    READ_COMMITTED,
+    SHARED,
+    EXCLUSIVE
+  }
+
+  private static final Object DELETED = new Object();
+
+  private static class Transaction {
+    private LockMode lockMode = LockMode.READ_COMMITTED;
+    // the rows written by the transaction, by table and key
+    private final Map<InMemoryTable, Map<Object, Object>> writes =
+        new LinkedHashMap<>();
+    private final Set<RowId> sharedLocks = new HashSet<>();
+    private final Set<RowId> exclusiveLocks = new HashSet<>();
+  }
+
+  private static class RowId {
+    private final InMemoryTable table;
+    private final Object key;
+
+    private RowId(InMemoryTable table, Object key) {
+      this.table = table;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof RowId)) {
+        return false;
+      }
+      RowId other = (RowId) o;
+      return table == other.table && key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(table) + key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return table.getName() + key;
+    }
+  }
+
+  private static class RowLock {
+    private Transaction exclusive;
+    private final Set<Transaction> shared = new HashSet<>();
+
+    private boolean canGrant(Transaction tx, boolean exclusiveLock) {
+      if (exclusive != null && exclusive != tx) {
+        return false;
+      }
+      return !exclusiveLock || shared.isEmpty() ||
+          (shared.size() == 1 && shared.contains(tx));
+    }
+  }
+
+  private final Map<Class<?>, InMemoryTable> tables =
+      new ConcurrentHashMap<>();
+  private final ThreadLocal<Transaction> transaction = new ThreadLocal<>();
+  // guards the row locks, and is waited on for them to be released
+  private final Map<RowId, RowLock> locks = new HashMap<>();
+  private final long lockWaitTimeout;
+
+  InMemoryDatabase(long lockWaitTimeout) {
+    this.lockWaitTimeout = lockWaitTimeout;
+  }
+
+  InMemoryTable table(Class<?> dataAccess, String[] key) {
+    InMemoryTable table = tables.get(dataAccess);
+    if (table == null) {
+      synchronized (tables) {
+        table = tables.get(dataAccess);
+        if (table == null) {
+          table = new InMemoryTable(dataAccess.getSimpleName(), key);
+          tables.put(dataAccess, table);
+        }
+      }
+    }
+    return table;
+  }
+
+  void begin() throws StorageException {
+    if (transaction.get() != null) {
+      throw new StorageException("A transaction is already active");
+    }
+    transaction.set(new Transaction());
+  }
+
+  void commit() throws StorageException {
+    Transaction tx = transaction.get();
+    if (tx == null) {
+      throw new StorageException("No transaction is active");
+    }
+    transaction.remove();
+    finish(tx, true);
+  }
+
+  void rollback() {
+    Transaction tx = transaction.get();
+    if (tx != null) {
+      transaction.remove();
+      finish(tx, false);
+    }
+  }
+
+  boolean isTransactionActive() {
+    return transaction.get() != null;
+  }
+
+  void setLockMode(LockMode lockMode) {
+    Transaction tx = transaction.get();
+    if (tx != null) {
+      tx.lockMode = lockMode;
+    }
+  }
+
+  void clear(Class<?>... dataAccess) {
+    if (dataAccess.length == 0) {
+      for (InMemoryTable table : tables.values()) {
+        table.clear();
+      }
+    }
+    for (Class<?> type : dataAccess) {
+      InMemoryTable table = tables.get(type);
+      if (table != null) {
+        table.clear();
+      }
+    }
+  }
+
+  /**
+   * Read the rows that match the filter, in the lock mode of the
+   * transaction, or in the given one if it is not null.
+   *
+   * @return copies of the rows, that may be changed by the caller
+   */
+  List<Object> select(InMemoryTable table, Filter filter, LockMode lockMode)
+      throws StorageException {
+    Transaction tx = transaction.get();
+    if (lockMode == null) {
+      lockMode = tx == null ? LockMode.READ_COMMITTED : tx.lockMode;
+    }
+    Map<Object, Object> selected = table.select(filter);
+    if (tx != null && lockMode != LockMode.READ_COMMITTED) {
+      // the rows may have changed while waiting for their locks
+      for (Object rowKey : new ArrayList<>(selected.keySet())) {
+        lock(tx, new RowId(table, rowKey), lockMode == LockMode.EXCLUSIVE);
+        Object row = table.get(rowKey);
+        if (row == null || !filter.accept(row)) {
+          selected.remove(rowKey);
+        } else {
+          selected.put(rowKey, row);
+        }
+      }
+    }
+    Map<Object, Object> written = tx == null ? null : tx.writes.get(table);
+    if (written != null) {
+      for (Map.Entry<Object, Object> row : written.entrySet()) {
+        if (row.getValue() != DELETED && filter.accept(row.getValue())) {
+          selected.put(row.getKey(), InMemoryTable.copy(row.getValue()));
+        } else {
+          selected.remove(row.getKey());
+        }
+      }
+    }
+    return new ArrayList<>(selected.values());
+  }
+
+  void write(InMemoryTable table, Object row) throws StorageException {
+    change(table, table.key(row), InMemoryTable.copy(row));
+  }
+
+  void delete(InMemoryTable table, Object row) throws StorageException {
+    change(table, table.key(row), DELETED);
+  }
+
+  private void change(InMemoryTable table, Object rowKey, Object row)
+      throws StorageException {
+    Transaction tx = transaction.get();
+    boolean autoCommit = tx == null;
+    if (autoCommit) {
+      tx = new Transaction();
+    }
+    boolean committed = false;
+    try {
+      lock(tx, new RowId(table, rowKey), true);
+      Map<Object, Object> written = tx.writes.get(table);
+      if (written == null) {
+        written = new LinkedHashMap<>();
+        tx.writes.put(table, written);
+      }
+      written.put(rowKey, row);
+      committed = true;
+    } finally {
+      if (autoCommit) {
+        finish(tx, committed);
+      }
+    }
+  }
+
+  private void finish(Transaction tx, boolean commit) {
+    if (commit) {
+      for (Map.Entry<InMemoryTable, Map<Object, Object>> written :
+          tx.writes.entrySet()) {
+        Map<Object, Object> changes = new LinkedHashMap<>();
+        for (Map.Entry<Object, Object> row : written.getValue().entrySet()) {
+          changes.put(row.getKey(),
+              row.getValue() == DELETED ? null : row.getValue());
+        }
+        written.getKey().apply(changes);
+      }
+    }
+    synchronized (locks) {
+      release(tx, tx.sharedLocks);
+      release(tx, tx.exclusiveLocks);
+      locks.notifyAll();
+    }
+  }
+
+  private void release(Transaction tx, Set<RowId> held) {
+    for (RowId row : held) {
+      RowLock lock = locks.get(row);
+      if (lock != null) {
+        if (lock.exclusive == tx) {
+          lock.exclusive = null;
+        }
+        lock.shared.remove(tx);
+        if (lock.exclusive == null && lock.shared.isEmpty()) {
+          locks.remove(row);
+        }
+      }
+    }
+    held.clear();
+  }
+
+  private void lock(Transaction tx, RowId row, boolean exclusive)
+      throws StorageException {
+    if (tx.exclusiveLocks.contains(row) ||
+        (!exclusive && tx.sharedLocks.contains(row))) {
+      return;
+    }
+    synchronized (locks) {
+      long deadline = Time.monotonicNow() + lockWaitTimeout;
+      RowLock lock = locks.get(row);
+      while (lock != null && !lock.canGrant(tx, exclusive)) {
+        long wait = deadline - Time.monotonicNow();
+        if (wait <= 0) {
+          throw new TransientStorageException(
+              "Lock wait timeout exceeded on " + row);
+        }
+        try {
+          locks.wait(wait);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new StorageException(e);
+        }
+        lock = locks.get(row);
+      }
+      if (lock == null) {
+        lock = new RowLock();
+        locks.put(row, lock);
+      }
+      if (exclusive) {
+        lock.exclusive = tx;
+        lock.shared.remove(tx);
+        tx.sharedLocks.remove(row);
+        tx.exclusiveLocks.add(row);
+      } else {
+        lock.shared.add(tx);
+        tx.sharedLocks.add(row);
+      }
+    }
+  }
+}
@@ -0,0 +1,743 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.metadata.memory;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.common.entity.Variable;
+import io.hops.metadata.election.dal.HdfsLeDescriptorDataAccess;
+import io.hops.metadata.election.dal.LeDescriptorDataAccess;
+import io.hops.metadata.hdfs.dal.BlockChecksumDataAccess;
+import io.hops.metadata.hdfs.dal.BlockInfoDataAccess;
+import io.hops.metadata.hdfs.dal.BlockLookUpDataAccess;
+import io.hops.metadata.hdfs.dal.CorruptReplicaDataAccess;
+import io.hops.metadata.hdfs.dal.EncodingStatusDataAccess;
+import io.hops.metadata.hdfs.dal.ExcessReplicaDataAccess;
+import io.hops.metadata.hdfs.dal.GroupDataAccess;
+import io.hops.metadata.hdfs.dal.HashBucketDataAccess;
+import io.hops.metadata.hdfs.dal.INodeAttributesDataAccess;
+import io.hops.metadata.hdfs.dal.INodeDataAccess;
+import io.hops.metadata.hdfs.dal.InvalidateBlockDataAccess;
+import io.hops.metadata.hdfs.dal.LeaseDataAccess;
+import io.hops.metadata.hdfs.dal.LeasePathDataAccess;
+import io.hops.metadata.hdfs.dal.MetadataLogDataAccess;
+import io.hops.metadata.hdfs.dal.MisReplicatedRangeQueueDataAccess;
+import io.hops.metadata.hdfs.dal.OngoingSubTreeOpsDataAccess;
+import io.hops.metadata.hdfs.dal.PendingBlockDataAccess;
+import io.hops.metadata.hdfs.dal.QuotaUpdateDataAccess;
+import io.hops.metadata.hdfs.dal.ReplicaDataAccess;
+import io.hops.metadata.hdfs.dal.ReplicaUnderConstructionDataAccess;
+import io.hops.metadata.hdfs.dal.SafeBlocksDataAccess;
+import io.hops.metadata.hdfs.dal.StorageDataAccess;
+import io.hops.metadata.hdfs.dal.StorageIdMapDataAccess;
+import io.hops.metadata.hdfs.dal.UnderReplicatedBlockDataAccess;
+import io.hops.metadata.hdfs.dal.UserDataAccess;
+import io.hops.metadata.hdfs.dal.UserGroupDataAccess;
+import io.hops.metadata.hdfs.dal.VariableDataAccess;
+import io.hops.metadata.hdfs.entity.BlockInfo;
+import io.hops.metadata.hdfs.entity.BlockLookUp;
+import io.hops.metadata.hdfs.entity.Group;
+import io.hops.metadata.hdfs.entity.INode;
+import io.hops.metadata.hdfs.entity.INodeIdentifier;
+import io.hops.metadata.hdfs.entity.ProjectedINode;
+import io.hops.metadata.hdfs.entity.User;
+import io.hops.metadata.memory.InMemoryDataAccess.Definition;
+import io.hops.metadata.memory.InMemoryDataAccess.Query;
+import io.hops.metadata.memory.InMemoryDataAccess.Scan;
+import io.hops.metadata.memory.InMemoryDatabase.LockMode;
+import io.hops.metadata.memory.InMemoryTable.Filter;
+import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static io.hops.metadata.memory.InMemoryDataAccess.MODIFIED;
+import static io.hops.metadata.memory.InMemoryDataAccess.REMOVED;
+import static io.hops.metadata.memory.InMemoryDataAccess.in;
+import static io.hops.metadata.memory.InMemoryDataAccess.shape;
+import static io.hops.metadata.memory.InMemoryDataAccess.tuples;
+import static io.hops.metadata.memory.InMemoryDataAccess.values;
+import static io.hops.metadata.memory.InMemoryDataAccess.where;
+import static io.hops.metadata.memory.InMemoryTable.column;
+
+/**
+ * The tables of the in-memory storage, one per data access interface, with
+ * the finders the namenode uses. The data access interfaces that are not
+ * listed get a table whose rows are their own key, that only supports the
+ * generic writes.
+ */
+final class InMemorySchema {
+
+  private static final Map<Class<?>, Definition> definitions =
+      new HashMap<>();
+
+  private InMemorySchema() {
+  }
+
+  static Definition definition(Class<?> dataAccess) {
+    Definition definition = definitions.get(dataAccess);
+    return definition == null ? new Definition() : definition;
+  }
+
+  private static void define(Class<?> dataAccess, Definition definition) {
+    definitions.put(dataAccess, definition);
+  }
+
+  static {
+    define(INodeDataAccess.class, new Definition("id")
+        .query("findInodeByIdFTIS", where("id"))
+        .query("findInodesByParentIdFTIS", where("parentId"))
+        .query("findInodesByParentIdAndPartitionIdPPIS",
+            where("parentId", "partitionId"))
+        .query("findInodeByNameParentIdAndPartitionIdPK",
+            where("name", "parentId", "partitionId"))
+        .query("getINodesPkBatched", tuples("name", "parentId", "partitionId"))
+        .query("findInodesForSubtreeOperationsWithWriteLockFTIS",
+            projected(where(LockMode.EXCLUSIVE, "parentId")))
+        .query("findInodesForSubtreeOperationsWithWriteLockPPIS",
+            projected(where(LockMode.EXCLUSIVE, "parentId", "partitionId")))
+        .query("hasChildren", where("parentId", null))
+        .query("allINodes", where())
+        .query("countAllFiles", new FileScan() {
+          @Override
+          boolean accept(int id, Object[] args) {
+            return true;
+          }
+        })
+        .query("haveFilesWithIdsGreaterThan", new FileScan() {
+          @Override
+          boolean accept(int id, Object[] args) {
+            return id > ((Number) args[0]).longValue();
+          }
+        })
+        .query("haveFilesWithIdsBetween", new FileScan() {
+          @Override
+          boolean accept(int id, Object[] args) {
+            return inRange(id, args);
+          }
+        })
+        .query("getAllINodeFiles", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            List<INodeIdentifier> files = new ArrayList<>();
+            for (INode inode : files(table)) {
+              if (inRange(inode.getId(), args)) {
+                files.add(new INodeIdentifier(inode.getId(),
+                    inode.getParentId(), inode.getName(),
+                    inode.getPartitionId()));
+              }
+            }
+            return files;
+          }
+        })
+        .query("getMinFileId", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            int min = 0;
+            for (INode inode : files(table)) {
+              min = min == 0 ? inode.getId() : Math.min(min, inode.getId());
+            }
+            return min;
+          }
+        })
+        .query("getMaxFileId", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            int max = 0;
+            for (INode inode : files(table)) {
+              max = Math.max(max, inode.getId());
+            }
+            return max;
+          }
+        })
+        .query("updateLogicalTime", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            for (Object entry : (Collection<?>) args[0]) {
+              for (Object row : table.select(
+                  Filter.where("id", column(entry, "inodeId")))) {
+                ((INode) row).setLogicalTime(
+                    ((Number) column(entry, "logicalTime")).intValue());
+                table.write(row);
+              }
+            }
+            return null;
+          }
+        }));
+
+    define(INodeAttributesDataAccess.class, new Definition("inodeId")
+        .prepare(MODIFIED, REMOVED)
+        .query("findAttributesByPk", where("inodeId"))
+        .query("findAttributesByPkList", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            List<Object> rows = new ArrayList<>();
+            for (Object pk : (Collection<?>) args[0]) {
+              rows.addAll(table.select(
+                  Filter.where("inodeId", column(pk, "inodeId"))));
+            }
+            return shape(method, rows);
+          }
+        }));
+
+    define(BlockInfoDataAccess.class, new Definition("blockId")
+        .query("findById", where("blockId", "inodeId"))
+        .query("findByInodeId", where("inodeId"))
+        .query("findByInodeIds", in("inodeId"))
+        .query("findAllBlocks", where())
+        .query("findByIds", tuples("blockId", "inodeId"))
+        .query("countAllCompleteBlocks", new Scan() {
+          @Override
+          boolean accept(Object row, Object[] args) {
+            return ((BlockInfo) row).getBlockUCState() ==
+                HdfsServerConstants.BlockUCState.COMPLETE.ordinal();
+          }
+        })
+        .query("findBlockInfosByStorageId", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            return blocksOn(table, Collections.singletonList(args[0]));
+          }
+        })
+        .query("findBlockInfosBySids", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            return blocksOn(table, values(args[0]));
+          }
+        })
+        .query("findINodeIdsByStorageId", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            Set<Long> inodeIds = new HashSet<>();
+            for (Object replica : table.select(ReplicaDataAccess.class,
+                Filter.where("storageId", args[0]))) {
+              inodeIds.add(((Number) column(replica, "inodeId")).longValue());
+            }
+            return inodeIds;
+          }
+        })
+        .query("existsOnAnyStorage", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            for (Object sid : values(args[1])) {
+              if (!table.select(ReplicaDataAccess.class, InMemoryDataAccess
+                  .filter(new String[]{"blockId", "storageId"},
+                      new Object[]{args[0], sid})).isEmpty()) {
+                return true;
+              }
+            }
+            return false;
+          }
+        }));
+
+    // the block look ups are the block ids and inode ids of the blocks
+    define(BlockLookUpDataAccess.class, new Definition("blockId")
+        .query("findByBlockId", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            for (Object row : table.select(BlockInfoDataAccess.class,
+                Filter.where("blockId", args[0]))) {
+              BlockInfo block = (BlockInfo) row;
+              return new BlockLookUp(block.getBlockId(), block.getInodeId());
+            }
+            return null;
+          }
+        })
+        .query("findINodeIdsByBlockIds", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            long[] blockIds = (long[]) args[0];
+            int[] inodeIds = new int[blockIds.length];
+            for (int i = 0; i < blockIds.length; i++) {
+              // BlockInfo.NON_EXISTING_ID for the blocks that do not exist
+              inodeIds[i] = -1;
+              for (Object row : table.select(BlockInfoDataAccess.class,
+                  Filter.where("blockId", blockIds[i]))) {
+                inodeIds[i] = ((BlockInfo) row).getInodeId();
+              }
+            }
+            return inodeIds;
+          }
+        }));
+
+    define(ReplicaDataAccess.class, new Definition("storageId", "blockId")
+        .query("findReplicasById", where("blockId", "inodeId"))
+        .query("findReplicasByINodeId", where("inodeId"))
+        .query("findReplicasByINodeIds", in("inodeId"))
+        .query("countAllReplicasForStorageId", where("storageId"))
+        .query("findBlockAndInodeIdsByStorageId",
+            blockAndInodeIds(where("storageId")))
+        .query("findBlockAndInodeIdsByStorageIdAndBucketId",
+            blockAndInodeIds(where("storageId", "bucketId")))
+        .query("findBlockAndInodeIdsByStorageIdAndBucketIds",
+            blockAndInodeIds(new Query() {
+              @Override
+              public Object run(InMemoryDataAccess table, Method method,
+                  Object[] args) throws StorageException {
+                List<Object> rows = new ArrayList<>();
+                for (Object bucketId : values(args[1])) {
+                  rows.addAll(table.select(InMemoryDataAccess.filter(
+                      new String[]{"storageId", "bucketId"},
+                      new Object[]{args[0], bucketId})));
+                }
+                return rows;
+              }
+            })));
+
+    define(ReplicaUnderConstructionDataAccess.class,
+        new Definition("storageId", "blockId")
+            .query("findReplicaUnderConstructionByBlockId",
+                where("blockId", "inodeId"))
+            .query("findReplicaUnderConstructionByINodeId", where("inodeId"))
+            .query("findReplicaUnderConstructionByINodeIds", in("inodeId")));
+
+    define(ExcessReplicaDataAccess.class,
+        new Definition("storageId", "blockId")
+            .query("findByPK", where("blockId", "storageId", "inodeId"))
+            .query("findExcessReplicaByBlockId", where("blockId", "inodeId"))
+            .query("findExcessReplicaByINodeId", where("inodeId"))
+            .query("findExcessReplicaByINodeIds", in("inodeId"))
+            .query("findExcessReplicaBySid", where("storageId")));
+
+    define(InvalidateBlockDataAccess.class,
+        new Definition("storageId", "blockId")
+            .query("findInvBlockByPkey",
+                where("blockId", "storageId", "inodeId"))
+            .query("findInvalidatedBlocksByBlockId",
+                where("blockId", "inodeId"))
+            .query("findInvalidatedBlocksByINodeId", where("inodeId"))
+            .query("findInvalidatedBlocksByINodeIds", in("inodeId"))
+            .query("findAllInvalidatedBlocks", where())
+            .query("findInvalidatedBlockByStorageId", where("storageId"))
+            .query("findInvalidatedBlockBySidUsingMySQLServer", new Query() {
+              @Override
+              public Object run(InMemoryDataAccess table, Method method,
+                  Object[] args) throws StorageException {
+                Map<Long, Long> generationStamps = new HashMap<>();
+                for (Object row : table.select(
+                    Filter.where("storageId", args[0]))) {
+                  generationStamps.put(
+                      ((Number) column(row, "blockId")).longValue(),
+                      ((Number) column(row, "generationStamp")).longValue());
+                }
+                return generationStamps;
+              }
+            })
+            .query("removeAllByStorageId", delete(where("storageId")))
+            .query("removeByBlockIdAndStorageId",
+                delete(where("blockId", "storageId"))));
+
+    define(CorruptReplicaDataAccess.class,
+        new Definition("storageId", "blockId")
+            .query("findByBlockId", where("blockId", "inodeId"))
+            .query("findByINodeId", where("inodeId"))
+            .query("findByINodeIds", in("inodeId"))
+            .query("countAllUniqueBlk", new Query() {
+              @Override
+              public Object run(InMemoryDataAccess table, Method method,
+                  Object[] args) throws StorageException {
+                Set<Object> blockIds = new HashSet<>();
+                for (Object row : table.select(Filter.all())) {
+                  blockIds.add(column(row, "blockId"));
+                }
+                return blockIds.size();
+              }
+            }));
+
+    define(UnderReplicatedBlockDataAccess.class, new Definition("blockId")
+        .query("findByPk", where("blockId", "inodeId"))
+        .query("findByINodeId", where("inodeId"))
+        .query("findByINodeIds", in("inodeId"))
+        .query("countByLevel", where("level"))
+        .query("countLessThanALevel", new Scan() {
+          @Override
+          boolean accept(Object row, Object[] args) {
+            return ((Number) column(row, "level")).intValue() <
+                ((Number) args[0]).intValue();
+          }
+        })
+        .query("findByLevel", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            List<Object> rows = table.select(Filter.where("level", args[0]));
+            if (args.length == 3) {
+              int offset = Math.min(rows.size(), (Integer) args[1]);
+              int count = Math.min(rows.size() - offset, (Integer) args[2]);
+              rows = new ArrayList<>(rows.subList(offset, offset + count));
+            }
+            return shape(method, rows);
+          }
+        }));
+
+    define(PendingBlockDataAccess.class, new Definition("blockId")
+        .query("findByPKey", where("blockId", "inodeId"))
+        .query("findByINodeId", where("inodeId"))
+        .query("findByINodeIds", in("inodeId"))
+        .query("countValidPendingBlocks", new Scan() {
+          @Override
+          boolean accept(Object row, Object[] args) {
+            return ((Number) column(row, "timeStamp")).longValue() >
+                ((Number) args[0]).longValue();
+          }
+        })
+        .query("findByTimeLimitLessThan", new Scan() {
+          @Override
+          boolean accept(Object row, Object[] args) {
+            return ((Number) column(row, "timeStamp")).longValue() <
+                ((Number) args[0]).longValue();
+          }
+        }));
+
+    define(LeaseDataAccess.class, new Definition("holder")
+        .query("findByPKey", where("holder", "holderId"))
+        .query("findByHolderId", where("holderId"))
+        .query("findByTimeLimit", new Scan() {
+          @Override
+          boolean accept(Object row, Object[] args) {
+            return ((Number) column(row, "lastUpdate")).longValue() <
+                ((Number) args[0]).longValue();
+          }
+        }));
+
+    define(LeasePathDataAccess.class, new Definition("path")
+        .query("findByPath", where("path"))
+        .query("findByHolderId", where("holderId"))
+        .query("findByPrefix", pathPrefix()));
+
+    define(OngoingSubTreeOpsDataAccess.class, new Definition("path")
+        .query("findByPathsByPrefix", pathPrefix()));
+
+    define(QuotaUpdateDataAccess.class, new Definition("id")
+        .prepare(MODIFIED, REMOVED)
+        .query("findByInodeId", where("inodeId"))
+        .query("findLimited", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            List<Object> rows = table.select(Filter.all());
+            Collections.sort(rows, byColumn("id"));
+            int limit = Math.min(rows.size(), (Integer) args[0]);
+            return shape(method, new ArrayList<>(rows.subList(0, limit)));
+          }
+        }));
+
+    define(HashBucketDataAccess.class, new Definition("storageId", "bucketId")
+        .prepare(REMOVED, MODIFIED)
+        .query("findBucket", where("storageId", "bucketId"))
+        .query("findBucketsByStorageId", where("storageId")));
+
+    define(MetadataLogDataAccess.class,
+        new Definition("datasetId", "inodeId", "logicalTime"));
+
+    define(EncodingStatusDataAccess.class, new Definition("inodeId")
+        .query("findByInodeId", where("inodeId"))
+        .query("findByParityInodeId", where("parityInodeId")));
+
+    define(BlockChecksumDataAccess.class,
+        new Definition("inodeId", "blockIndex")
+            .query("find", where("inodeId", "blockIndex"))
+            .query("findAll", where("inodeId")));
+
+    define(StorageDataAccess.class, new Definition("storageID")
+        .query("findByPk", where("storageID")));
+
+    define(StorageIdMapDataAccess.class, new Definition("storageId")
+        .query("findByPk", where("storageId")));
+
+    define(MisReplicatedRangeQueueDataAccess.class, new Definition()
+        .query("insert", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            table.write(Arrays.asList(args));
+            return null;
+          }
+        })
+        .query("remove", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            table.delete(Arrays.asList(args));
+            return null;
+          }
+        }));
+
+    Definition leDescriptors = new Definition("id")
+        .query("findByPkey", where("id", null));
+    define(LeDescriptorDataAccess.class, leDescriptors);
+    define(HdfsLeDescriptorDataAccess.class, leDescriptors);
+
+    define(VariableDataAccess.class, new Definition("type")
+        .query("getVariable", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            Variable.Finder finder = (Variable.Finder) args[0];
+            List<Object> rows = table.select(Filter.where("type", finder));
+            return rows.isEmpty() ?
+                Variable.initVariable(finder, finder.getDefaultValue()) :
+                rows.get(0);
+          }
+        })
+        .query("setVariable", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            table.write(args[0]);
+            return null;
+          }
+        }));
+
+    define(UserDataAccess.class, new Definition("id")
+        .query("getUser", byIdOrName())
+        .query("addUser", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            synchronized (UserDataAccess.class) {
+              String name = (String) args[0];
+              List<Object> users = table.select(Filter.where("name", name));
+              if (!users.isEmpty()) {
+                return users.get(0);
+              }
+              User user = new User(nextId(table), name);
+              table.write(user);
+              return user;
+            }
+          }
+        }));
+
+    define(GroupDataAccess.class, new Definition("id")
+        .query("getGroup", byIdOrName())
+        .query("addGroup", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            synchronized (GroupDataAccess.class) {
+              String name = (String) args[0];
+              List<Object> groups = table.select(Filter.where("name", name));
+              if (!groups.isEmpty()) {
+                return groups.get(0);
+              }
+              Group group = new Group(nextId(table), name);
+              table.write(group);
+              return group;
+            }
+          }
+        }));
+
+    // the rows are the (user id, group id) pairs
+    define(UserGroupDataAccess.class, new Definition()
+        .query("addUserToGroups", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              Object[] args) throws StorageException {
+            for (Object groupId : values(args[1])) {
+              table.write(Arrays.asList(args[0], groupId));
+            }
+            return null;
+          }
+        })
+        .query("getGroupsForUser", new Query() {
+          @Override
+          public Object run(InMemoryDataAccess table, Method method,
+              final Object[] args) throws StorageException {
+            List<Object> groups = new ArrayList<>();
+            for (Object row : table.select(Filter.matching(
+                new InMemoryTable.RowPredicate() {
+                  @Override
+                  public boolean accept(Object row) {
+                    return InMemoryTable.normalize(((List<?>) row).get(0))
+                        .equals(InMemoryTable.normalize(args[0]));
+                  }
+                }))) {
+              groups.addAll(table.select(GroupDataAccess.class,
+                  Filter.where("id", ((List<?>) row).get(1))));
+            }
+            return groups;
+          }
+        }));
+
+    define(SafeBlocksDataAccess.class, new Definition());
+  }
+
+  /**
+   * Scans the files of the inode table, the result is shaped by the return
+   * type of the method.
+   */
+  private abstract static class FileScan implements Query {
+    abstract boolean accept(int id, Object[] args);
+
+    @Override
+    public Object run(InMemoryDataAccess table, Method method, Object[] args)
+        throws StorageException {
+      List<Object> rows = new ArrayList<>();
+      for (INode inode : files(table)) {
+        if (accept(inode.getId(), args)) {
+          rows.add(inode);
+        }
+      }
+      return shape(method, rows);
+    }
+  }
+
+  private static List<INode> files(InMemoryDataAccess table)
+      throws StorageException {
+    List<INode> files = new ArrayList<>();
+    for (Object row : table.select(Filter.matching(
+        new InMemoryTable.RowPredicate() {
+          @Override
+          public boolean accept(Object row) {
+            return !((INode) row).isDirectory();
+          }
+        }))) {
+      files.add((INode) row);
+    }
+    return files;
+  }
+
+  // the id ranges of the files are [start, end)
+  private static boolean inRange(int id, Object[] args) {
+    return id >= ((Number) args[0]).longValue() &&
+        id < ((Number) args[1]).longValue();
+  }
+
+  private static Query projected(final Query query) {
+    return new Query() {
+      @Override
+      public Object run(InMemoryDataAccess table, Method method,
+          Object[] args) throws StorageException {
+        List<ProjectedINode> projected = new ArrayList<>();
+        for (Object row : (Collection<?>) query.run(table, method, args)) {
+          INode inode = (INode) row;
+          projected.add(new ProjectedINode(inode.getId(), inode.getParentId(),
+              inode.getName(), inode.getPartitionId(), inode.isDirectory(),
+              inode.getPermission(), inode.getUserID(), inode.getGroupID(),
+              inode.getHeader(), inode.getSymlink() != null,
+              inode.isDirWithQuota(), inode.isUnderConstruction(),
+              inode.isSubtreeLocked(), inode.getSubtreeLockOwner(),
+              inode.getFileSize(), inode.getLogicalTime(),
+              inode.getStoragePolicy()));
+        }
+        return projected;
+      }
+    };
+  }
+
+  private static Query blockAndInodeIds(final Query replicas) {
+    return new Query() {
+      @Override
+      public Object run(InMemoryDataAccess table, Method method,
+          Object[] args) throws StorageException {
+        Map<Long, Integer> ids = new HashMap<>();
+        for (Object row : (Collection<?>) replicas.run(table, method, args)) {
+          ids.put(((Number) column(row, "blockId")).longValue(),
+              ((Number) column(row, "inodeId")).intValue());
+        }
+        return ids;
+      }
+    };
+  }
+
+  private static List<Object> blocksOn(InMemoryDataAccess table,
+      List<Object> storageIds) throws StorageException {
+    Set<Object> blockIds = new LinkedHashSet<>();
+    for (Object sid : storageIds) {
+      for (Object replica : table.select(ReplicaDataAccess.class,
+          Filter.where("storageId", sid))) {
+        blockIds.add(column(replica, "blockId"));
+      }
+    }
+    List<Object> blocks = new ArrayList<>();
+    for (Object blockId : blockIds) {
+      blocks.addAll(table.select(Filter.where("blockId", blockId)));
+    }
+    return blocks;
+  }
+
+  private static Query delete(final Query query) {
+    return new Query() {
+      @Override
+      public Object run(InMemoryDataAccess table, Method method,
+          Object[] args) throws StorageException {
+        for (Object row : (Collection<?>) query.run(table, method, args)) {
+          table.delete(row);
+        }
+        return null;
+      }
+    };
+  }
+
+  private static Query pathPrefix() {
+    return new Scan() {
+      @Override
+      boolean accept(Object row, Object[] args) {
+        return ((String) column(row, "path")).startsWith((String) args[0]);
+      }
+    };
+  }
+
+  private static Query byIdOrName() {
+    return new Query() {
+      @Override
+      public Object run(InMemoryDataAccess table, Method method,
+          Object[] args) throws StorageException {
+        return shape(method, table.select(Filter.where(
+            args[0] instanceof String ? "name" : "id", args[0])));
+      }
+    };
+  }
+
+  private static int nextId(InMemoryDataAccess table)
+      throws StorageException {
+    int id = 0;
+    for (Object row : table.select(Filter.all())) {
+      id = Math.max(id, ((Number) column(row, "id")).intValue());
+    }
+    return id + 1;
+  }
+
+  private static Comparator<Object> byColumn(final String column) {
+    return new Comparator<Object>() {
+      @Override
+      public int compare(Object a, Object b) {
+        return Long.compare(((Number) column(a, column)).longValue(),
+            ((Number) column(b, column)).longValue());
+      }
+    };
+  }
+}
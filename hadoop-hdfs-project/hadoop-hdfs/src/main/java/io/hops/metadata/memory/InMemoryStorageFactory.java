@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.metadata.memory;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.hops.DalStorageFactory;
+import io.hops.StorageConnector;
+import io.hops.metadata.common.EntityDataAccess;
+import io.hops.metadata.memory.InMemoryDatabase.LockMode;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A storage driver that keeps the metadata in memory, to run the namenode,
+ * and benchmarks like NNThroughputBenchmark, without a database cluster.
+ * Select it with dfs.storage.driver.class; it needs neither the driver jar
+ * nor the database configuration file, the only setting it reads is
+ * dfs.storage.memory.lock.wait.timeout.ms. The default lock wait timeout is
+ * the deadlock detection timeout of the clustered database.
+ * <p>
+ * The connector and the data access objects are proxies of the driver
+ * interfaces. The transactions are isolated and lock the rows as the
+ * clustered database does, see {@link InMemoryDatabase}, and the finders the
+ * namenode uses are declared in {@link InMemorySchema}. Like the database,
+ * the storage is shared by all the namenodes of the JVM, so that a
+ * MiniDFSCluster with several namenodes works. The metadata is lost when the
+ * JVM exits.
+ */
+public class InMemoryStorageFactory implements DalStorageFactory {
+
+  private static InMemoryDatabase database;
+
+  private final Map<Class<?>, EntityDataAccess> dataAccess =
+      new ConcurrentHashMap<>();
+  private StorageConnector connector;
+
+  @Override
+  public void setConfiguration(Properties conf) {
+    long lockWaitTimeout = Long.parseLong(conf.getProperty(
+        DFSConfigKeys.DFS_STORAGE_MEMORY_LOCK_WAIT_TIMEOUT_MS, Long.toString(
+            DFSConfigKeys.DFS_STORAGE_MEMORY_LOCK_WAIT_TIMEOUT_MS_DEFAULT)));
+    synchronized (InMemoryStorageFactory.class) {
+      if (database == null) {
+        database = new InMemoryDatabase(lockWaitTimeout);
+      }
+    }
+    dataAccess.clear();
+    connector = (StorageConnector) Proxy.newProxyInstance(
+        StorageConnector.class.getClassLoader(),
+        new Class<?>[]{StorageConnector.class}, new Connector(database));
+  }
+
+  /**
+   * Drop the storage, the next driver that is configured starts empty.
+   */
+  @VisibleForTesting
+  public static synchronized void reset() {
+    database = null;
+  }
+
+  @Override
+  public StorageConnector getConnector() {
+    return connector;
+  }
+
+  @Override
+  public EntityDataAccess getDataAccess(Class type) {
+    EntityDataAccess access = dataAccess.get(type);
+    if (access == null) {
+      access = (EntityDataAccess) Proxy.newProxyInstance(
+          type.getClassLoader(), new Class<?>[]{type},
+          new InMemoryDataAccess(type, database));
+      dataAccess.put(type, access);
+    }
+    return access;
+  }
+
+  private static class Connector implements InvocationHandler {
+    private final InMemoryDatabase database;
+
+    private Connector(InMemoryDatabase database) {
+      this.database = database;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+        throws Throwable {
+      String name = method.getName();
+      switch (name) {
+        case "beginTransaction":
+          database.begin();
+          return null;
+        case "commit":
+          database.commit();
+          return null;
+        case "rollback":
+          database.rollback();
+          return null;
+        case "isTransactionActive":
+          return database.isTransactionActive();
+        case "readCommitted":
+          database.setLockMode(LockMode.READ_COMMITTED);
+          return null;
+        case "readLock":
+          database.setLockMode(LockMode.SHARED);
+          return null;
+        case "writeLock":
+          database.setLockMode(LockMode.EXCLUSIVE);
+          return null;
+        case "getClusterConnectString":
+        case "getDatabaseName":
+        case "toString":
+          return "memory";
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "equals":
+          return proxy == args[0];
+        default:
+          break;
+      }
+      if (name.startsWith("format") || name.equals("dropAndRecreateDB")) {
+        if (args != null && args.length == 1 && args[0] instanceof Class[]) {
+          database.clear((Class<?>[]) args[0]);
+        } else {
+          database.clear();
+        }
+        return method.getReturnType() == boolean.class ? true : null;
+      }
+      // the partition key, flushes, sessions and the like
+      if (method.getReturnType() == void.class) {
+        return null;
+      }
+      throw new UnsupportedOperationException("StorageConnector." + name +
+          " is not supported by the in-memory storage");
+    }
+  }
+}
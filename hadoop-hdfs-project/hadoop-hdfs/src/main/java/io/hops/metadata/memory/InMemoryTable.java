@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.metadata.memory;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The committed rows of one table of the in-memory storage, keyed by their
+ * primary key, with hash indexes that are built the first time a set of
+ * columns is looked up. The rows are the entities of the data access
+ * interface. They are copied when they are stored and when they are read, so
+ * that a transaction never sees the changes another one has not committed,
+ * as with a database.
+ * <p>
+ * The columns of a row are read through its getters, or its fields if it has
+ * no getter of that name. Rows that are not entities, like the block ids of
+ * the safe blocks table, are their own key.
+ */
+class InMemoryTable {
+
+  private static final Unsafe UNSAFE;
+  static {
+    try {
+      Field field = Unsafe.class.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      UNSAFE = (Unsafe) field.get(null);
+    } catch (NoSuchFieldException | IllegalAccessException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  // the fields copied with the rows of each class
+  private static final Map<Class<?>, Field[]> fields =
+      new ConcurrentHashMap<>();
+  // the column readers of each class, by lower case column name
+  private static final Map<Class<?>, Map<String, Object>> columns =
+      new ConcurrentHashMap<>();
+
+  private final String name;
+  private final String[] key;
+  private final Map<Object, Object> rows = new LinkedHashMap<>();
+  private final Map<List<String>, Map<List<Object>, Set<Object>>> indexes =
+      new HashMap<>();
+
+  InMemoryTable(String name, String[] key) {
+    this.name = name;
+    this.key = key;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  Object key(Object row) {
+    if (key.length == 0) {
+      return normalize(row);
+    }
+    if (key.length == 1) {
+      return normalize(column(row, key[0]));
+    }
+    Object[] values = new Object[key.length];
+    for (int i = 0; i < key.length; i++) {
+      values[i] = normalize(column(row, key[i]));
+    }
+    return Arrays.asList(values);
+  }
+
+  synchronized Object get(Object rowKey) {
+    return copy(rows.get(rowKey));
+  }
+
+  synchronized int size() {
+    return rows.size();
+  }
+
+  /**
+   * @return copies of the committed rows that match the filter, by key
+   */
+  synchronized Map<Object, Object> select(Filter filter) {
+    Map<Object, Object> selected = new LinkedHashMap<>();
+    if (filter.fields.length == 0) {
+      for (Map.Entry<Object, Object> row : rows.entrySet()) {
+        if (filter.accept(row.getValue())) {
+          selected.put(row.getKey(), copy(row.getValue()));
+        }
+      }
+      return selected;
+    }
+    Set<Object> keys = index(filter.fields).get(Arrays.asList(filter.values));
+    if (keys != null) {
+      for (Object rowKey : keys) {
+        Object row = rows.get(rowKey);
+        if (filter.accept(row)) {
+          selected.put(rowKey, copy(row));
+        }
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Apply the changes of a committed transaction, a null row deletes the row
+   * of its key.
+   */
+  synchronized void apply(Map<Object, Object> changes) {
+    for (Map.Entry<Object, Object> change : changes.entrySet()) {
+      Object old = change.getValue() == null ?
+          rows.remove(change.getKey()) :
+          rows.put(change.getKey(), change.getValue());
+      for (Map.Entry<List<String>, Map<List<Object>, Set<Object>>> index :
+          indexes.entrySet()) {
+        if (old != null) {
+          unindex(index.getValue(), index.getKey(), change.getKey(), old);
+        }
+        if (change.getValue() != null) {
+          index(index.getValue(), index.getKey(), change.getKey(),
+              change.getValue());
+        }
+      }
+    }
+  }
+
+  synchronized void clear() {
+    rows.clear();
+    indexes.clear();
+  }
+
+  private Map<List<Object>, Set<Object>> index(String[] columnNames) {
+    List<String> indexColumns = Arrays.asList(columnNames);
+    Map<List<Object>, Set<Object>> index = indexes.get(indexColumns);
+    if (index == null) {
+      index = new HashMap<>();
+      for (Map.Entry<Object, Object> row : rows.entrySet()) {
+        index(index, indexColumns, row.getKey(), row.getValue());
+      }
+      indexes.put(indexColumns, index);
+    }
+    return index;
+  }
+
+  private static void index(Map<List<Object>, Set<Object>> index,
+      List<String> indexColumns, Object rowKey, Object row) {
+    List<Object> values = values(row, indexColumns);
+    Set<Object> keys = index.get(values);
+    if (keys == null) {
+      keys = new LinkedHashSet<>();
+      index.put(values, keys);
+    }
+    keys.add(rowKey);
+  }
+
+  private static void unindex(Map<List<Object>, Set<Object>> index,
+      List<String> indexColumns, Object rowKey, Object row) {
+    List<Object> values = values(row, indexColumns);
+    Set<Object> keys = index.get(values);
+    if (keys != null) {
+      keys.remove(rowKey);
+      if (keys.isEmpty()) {
+        index.remove(values);
+      }
+    }
+  }
+
+  private static List<Object> values(Object row, List<String> columnNames) {
+    Object[] values = new Object[columnNames.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = normalize(column(row, columnNames.get(i)));
+    }
+    return Arrays.asList(values);
+  }
+
+  /**
+   * Numbers are compared by value whatever their type, as the arguments of
+   * the finders are not always of the type of the column.
+   */
+  static Object normalize(Object value) {
+    if (value instanceof Integer || value instanceof Long ||
+        value instanceof Short || value instanceof Byte) {
+      return ((Number) value).longValue();
+    }
+    return value;
+  }
+
+  /**
+   * Read the column of a row through its getter, or its field.
+   */
+  static Object column(Object row, String column) {
+    Object reader = columnReaders(row.getClass())
+        .get(column.toLowerCase(Locale.ENGLISH));
+    if (reader == null) {
+      throw new IllegalArgumentException(
+          row.getClass().getSimpleName() + " has no column " + column);
+    }
+    try {
+      return reader instanceof Method ? ((Method) reader).invoke(row) :
+          ((Field) reader).get(row);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(
+          "Cannot read " + column + " of " + row.getClass().getSimpleName(),
+          e);
+    }
+  }
+
+  private static Map<String, Object> columnReaders(Class<?> type) {
+    Map<String, Object> readers = columns.get(type);
+    if (readers != null) {
+      return readers;
+    }
+    readers = new HashMap<>();
+    for (Class<?> c = type; c != null && c != Object.class;
+         c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers())) {
+          field.setAccessible(true);
+          String column = field.getName().toLowerCase(Locale.ENGLISH);
+          if (!readers.containsKey(column)) {
+            readers.put(column, field);
+          }
+        }
+      }
+    }
+    // getters take precedence over the fields
+    for (Method method : type.getMethods()) {
+      String getter = method.getName();
+      if (method.getParameterTypes().length != 0 ||
+          method.getReturnType() == void.class ||
+          Modifier.isStatic(method.getModifiers())) {
+        continue;
+      }
+      if (getter.startsWith("get") && getter.length() > 3) {
+        readers.put(getter.substring(3).toLowerCase(Locale.ENGLISH), method);
+      } else if (getter.startsWith("is") && getter.length() > 2) {
+        readers.put(getter.substring(2).toLowerCase(Locale.ENGLISH), method);
+      }
+    }
+    readers = Collections.unmodifiableMap(readers);
+    columns.put(type, readers);
+    return readers;
+  }
+
+  /**
+   * A shallow copy of the row. The entities of the data access layer only
+   * hold values, apart from the arrays, which are never changed in place.
+   */
+  static Object copy(Object row) {
+    if (row == null || row instanceof Number || row instanceof String ||
+        row instanceof Boolean || row instanceof Enum ||
+        row instanceof List) {
+      return row;
+    }
+    try {
+      Object copy = UNSAFE.allocateInstance(row.getClass());
+      for (Field field : copiedFields(row.getClass())) {
+        field.set(copy, field.get(row));
+      }
+      return copy;
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(
+          "Cannot copy " + row.getClass().getSimpleName(), e);
+    }
+  }
+
+  private static Field[] copiedFields(Class<?> type) {
+    Field[] copied = fields.get(type);
+    if (copied == null) {
+      List<Field> list = new ArrayList<>();
+      for (Class<?> c = type; c != null && c != Object.class;
+           c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          if (!Modifier.isStatic(field.getModifiers())) {
+            field.setAccessible(true);
+            list.add(field);
+          }
+        }
+      }
+      copied = list.toArray(new Field[list.size()]);
+      fields.put(type, copied);
+    }
+    return copied;
+  }
+
+  /**
+   * Selects the rows whose columns equal the given values, looked up in an
+   * index, and that are accepted by the predicate, if any.
+   */
+  static class Filter {
+    private final String[] fields;
+    private final Object[] values;
+    private final RowPredicate predicate;
+
+    Filter(String[] fields, Object[] values, RowPredicate predicate) {
+      this.fields = fields;
+      this.values = new Object[values.length];
+      for (int i = 0; i < values.length; i++) {
+        this.values[i] = normalize(values[i]);
+      }
+      this.predicate = predicate;
+    }
+
+    static Filter all() {
+      return new Filter(new String[0], new Object[0], null);
+    }
+
+    static Filter where(String field, Object value) {
+      return new Filter(new String[]{field}, new Object[]{value}, null);
+    }
+
+    static Filter matching(RowPredicate predicate) {
+      return new Filter(new String[0], new Object[0], predicate);
+    }
+
+    boolean accept(Object row) {
+      for (int i = 0; i < fields.length; i++) {
+        Object value = normalize(column(row, fields[i]));
+        if (value == null ? values[i] != null : !value.equals(values[i])) {
+          return false;
+        }
+      }
+      return predicate == null || predicate.accept(row);
+    }
+  }
+
+  interface RowPredicate {
+    boolean accept(Object row);
+  }
+}
@@ -17,6 +17,7 @@
  */
 package io.hops.transaction.context;
 
+import io.hops.erasure_coding.ErasureCodingManager;
 import io.hops.exception.StorageCallPreventedException;
 import io.hops.exception.StorageException;
 import io.hops.exception.TransactionContextException;
@@ -107,10 +108,12 @@ public void prepare(TransactionLocks tlm)
       throws TransactionContextException, StorageException {
     for (EncodingStatus status : getAdded()) {
       dataAccess.add(status);
+      ErasureCodingManager.stageStatusChange(status);
     }
 
     for (EncodingStatus status : getModified()) {
       dataAccess.update(status);
+      ErasureCodingManager.stageStatusChange(status);
     }
 
     for (EncodingStatus status : getRemoved()) {
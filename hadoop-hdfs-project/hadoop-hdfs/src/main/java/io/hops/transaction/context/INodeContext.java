@@ -160,6 +160,8 @@ public void prepare(TransactionLocks lks)
           }
         }
       }
+
+      hlk.validateBeforeCommit();
     }
 
 
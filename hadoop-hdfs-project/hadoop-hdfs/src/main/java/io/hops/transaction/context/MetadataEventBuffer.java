@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.transaction.context;
+
+import io.hops.metadata.hdfs.entity.MetadataLogEntry;
+import io.hops.transaction.handler.HDFSOperationType;
+import io.hops.transaction.handler.TransactionStage;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.protocol.MetadataEvent;
+import org.apache.hadoop.hdfs.protocol.MetadataEventBatch;
+import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
+import org.apache.hadoop.util.Time;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the metadata log entries written by the transactions a namenode
+ * committed, in commit order, so that clients can follow the changes of the
+ * meta enabled datasets without scanning the metadata log tables. Every
+ * namenode has its own buffer.
+ * <p/>
+ * {@link MetadataLogContext} stages the entries of a transaction when it is
+ * prepared, and they are published to the buffer of the namenode that ran the
+ * transaction once it committed, see {@link TransactionStage}. The few
+ * transactions that are run without their namesystem are published to the
+ * buffer of the only namenode of the JVM, and dropped if there are several.
+ * Each published entry gets the next position of the stream of the namenode.
+ * The stream is identified by an epoch, taken when the namenode starts, so
+ * that readers notice when the positions restart.
+ * <p/>
+ * The events are only kept in memory, they are not persisted next to the
+ * metadata log. Only the last
+ * {@link DFSConfigKeys#DFS_NAMENODE_METADATA_EVENTS_BUFFER_SIZE_KEY} events
+ * are kept, readers that fall further behind, or that followed the stream of
+ * a previous run of the namenode, are told that they missed events. The
+ * complete history stays available in the metadata log tables.
+ */
+public class MetadataEventBuffer {
+
+  static final Log LOG = LogFactory.getLog(MetadataEventBuffer.class);
+
+  // the buffers of the namenodes running in this JVM
+  private static final List<MetadataEventBuffer> running =
+      new CopyOnWriteArrayList<>();
+
+  private static final TransactionStage<List<MetadataLogEntry>> stage =
+      new TransactionStage<List<MetadataLogEntry>>() {
+        @Override
+        protected List<MetadataLogEntry> newChanges() {
+          return new ArrayList<>();
+        }
+
+        @Override
+        protected void publish(List<MetadataLogEntry> entries,
+            Object namesystem, HDFSOperationType opType) {
+          MetadataEventBuffer buffer = null;
+          if (namesystem instanceof FSNamesystem) {
+            buffer = ((FSNamesystem) namesystem).getMetadataEventBuffer();
+          } else if (running.size() == 1) {
+            buffer = running.get(0);
+          }
+          if (buffer != null) {
+            buffer.publish(opType, entries);
+          } else if (LOG.isDebugEnabled()) {
+            LOG.debug("Dropped the metadata events of " + opType +
+                ", the transaction was run without its namesystem");
+          }
+        }
+      };
+
+  private final long epoch = Time.now();
+  private final MetadataEvent[] events;
+  private long nextPosition = 0;
+
+  public MetadataEventBuffer(Configuration conf) {
+    int size = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_METADATA_EVENTS_BUFFER_SIZE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_METADATA_EVENTS_BUFFER_SIZE_DEFAULT);
+    events = new MetadataEvent[Math.max(size, 0)];
+  }
+
+  /**
+   * Receive the events of the transactions run without their namesystem,
+   * until the buffer is closed.
+   */
+  public void start() {
+    running.add(this);
+  }
+
+  public void close() {
+    running.remove(this);
+  }
+
+  public boolean isEnabled() {
+    return events.length > 0;
+  }
+
+  public long getEpoch() {
+    return epoch;
+  }
+
+  /**
+   * Stage the log entries written by the transaction of the current thread.
+   * They are dropped if the transaction does not commit.
+   */
+  static void stage(Collection<MetadataLogEntry> entries) {
+    if (entries.isEmpty()) {
+      return;
+    }
+    List<MetadataLogEntry> staged = stage.getChanges();
+    if (staged != null) {
+      staged.addAll(entries);
+    }
+  }
+
+  /**
+   * Publish the log entries of a committed transaction.
+   */
+  synchronized void publish(HDFSOperationType opType,
+      Collection<MetadataLogEntry> entries) {
+    if (events.length == 0) {
+      return;
+    }
+    for (MetadataLogEntry entry : entries) {
+      events[(int) (nextPosition % events.length)] =
+          new MetadataEvent(nextPosition, opType.name(),
+              entry.getOperation().name(), entry.getDatasetId(),
+              entry.getInodeId(), entry.getInodeParentId(),
+              entry.getInodeName(), entry.getLogicalTime());
+      nextPosition++;
+    }
+  }
+
+  /**
+   * @param readerEpoch
+   *     the epoch of the stream the reader was following, or 0 for a new
+   *     reader
+   * @param fromPosition
+   *     the position of the first event to return
+   * @param maxEvents
+   *     the maximum number of events to return
+   */
+  public synchronized MetadataEventBatch getEvents(long readerEpoch,
+      long fromPosition, int maxEvents) {
+    long oldest = Math.max(0, nextPosition - events.length);
+    boolean lost = false;
+    long from = fromPosition;
+    if (readerEpoch != epoch) {
+      // the namenode restarted, everything the old stream published after
+      // the cursor of the reader is gone, or this is a new reader
+      lost = readerEpoch != 0;
+      from = oldest;
+    } else if (from < oldest) {
+      // the reader fell behind, its next events were dropped
+      lost = true;
+      from = oldest;
+    } else if (from > nextPosition) {
+      from = nextPosition;
+    }
+    long to = Math.min(nextPosition, from + Math.max(maxEvents, 0));
+    List<MetadataEvent> batch = to > from ?
+        new ArrayList<MetadataEvent>((int) (to - from)) :
+        Collections.<MetadataEvent>emptyList();
+    for (long position = from; position < to; position++) {
+      batch.add(events[(int) (position % events.length)]);
+    }
+    return new MetadataEventBatch(epoch, batch, to, lost);
+  }
+}
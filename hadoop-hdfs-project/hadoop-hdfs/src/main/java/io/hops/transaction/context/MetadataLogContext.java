@@ -94,6 +94,7 @@ Key getKey(MetadataLogEntry metadataLogEntry) {
   public void prepare(TransactionLocks tlm)
       throws TransactionContextException, StorageException {
     dataAccess.addAll(getAdded());
+    MetadataEventBuffer.stage(getAdded());
   }
 
 }
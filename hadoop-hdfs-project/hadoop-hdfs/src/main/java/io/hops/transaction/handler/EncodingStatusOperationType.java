@@ -21,6 +21,7 @@
   DELETE,
   UPDATE,
   FIND_BY_INODE_ID,
+  FIND_BY_PARITY_INODE_ID,
   FIND_ACTIVE_ENCODINGS,
   FIND_REQUESTED_ENCODINGS,
   FIND_ENCODED,
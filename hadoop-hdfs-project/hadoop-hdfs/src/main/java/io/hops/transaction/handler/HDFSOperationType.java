@@ -30,6 +30,7 @@ public enum HDFSOperationType implements OperationType {
   GET_STATS,
   CONCAT,
   SET_TIMES,
+  FLUSH_ACCESS_TIMES,
   CREATE_SYM_LINK,
   SET_STORAGE_POLICY,
   GET_PREFERRED_BLOCK_SIZE,
@@ -46,6 +47,7 @@ public enum HDFSOperationType implements OperationType {
   RENAME,
   DELETE,
   GET_FILE_INFO,
+  GET_FILE_INFOS,
   MKDIRS,
   GET_CONTENT_SUMMARY,
   SET_QUOTA,
@@ -289,6 +291,7 @@ public enum HDFSOperationType implements OperationType {
   DELETE_ENCODING_STATUS,
   UPDATE_ENCODING_STATUS,
   REVOKE_ENCODING_STATUS,
+  COMPLETE_ENCODING,
   FIND_ENCODING_STATUS,
   FIND_ACTIVE_ENCODINGS,
   FIND_REQUESTED_ENCODINGS,
@@ -306,6 +309,7 @@ public enum HDFSOperationType implements OperationType {
   FIND_REVOKED,
   CHECK_FIXED_SOURCE,
   CHECK_FIXED_PARITY,
+  FINALIZE_ENCODING,
   RECOVER_ENCODING_JOBS,
   DELETE_ENCODING_JOBS,
   PERSIST_ENCODING_JOB,
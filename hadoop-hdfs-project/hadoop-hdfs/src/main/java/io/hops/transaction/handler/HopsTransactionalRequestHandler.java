@@ -17,6 +17,7 @@
 
 import io.hops.transaction.TransactionInfo;
 import io.hops.transaction.lock.HdfsTransactionalLockAcquirer;
+import io.hops.transaction.lock.INodeLockPolicy;
 import io.hops.transaction.lock.TransactionLockAcquirer;
 import org.apache.hadoop.hdfs.protocol.RecoveryInProgressException;
 import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
@@ -27,6 +28,8 @@
     extends TransactionalRequestHandler {
 
   private final String path;
+  private final HDFSOperationType hdfsOpType;
+  private TransactionProfiler.Sample sample;
   
   public HopsTransactionalRequestHandler(HDFSOperationType opType) {
     this(opType, null);
@@ -36,17 +39,36 @@ public HopsTransactionalRequestHandler(HDFSOperationType opType,
       String path) {
     super(opType);
     this.path = path;
+    this.hdfsOpType = opType;
   }
 
   @Override
   protected TransactionLockAcquirer newLockAcquirer() {
-    return new HdfsTransactionalLockAcquirer();
+    return new HdfsTransactionalLockAcquirer(sample);
   }
 
   
   @Override
   protected Object execute(final Object namesystem) throws IOException {
+    sample = TransactionProfiler.getInstance().startSample(hdfsOpType);
+    TransactionStage.enter();
+    try {
+      Object result = executeTransaction(namesystem);
+      INodeLockPolicy.getInstance().succeeded(hdfsOpType);
+      TransactionStage.publish(namesystem, hdfsOpType);
+      return result;
+    } finally {
+      TransactionStage.exit();
+      INodeLockPolicy.getInstance().finished();
+      if (sample != null) {
+        sample.finish();
+        sample = null;
+      }
+    }
+  }
 
+  private Object executeTransaction(final Object namesystem)
+      throws IOException {
     return super.execute(new TransactionInfo() {
       @Override
       public String getContextName(OperationType opType) {
@@ -69,7 +91,16 @@ public void performPostTransactionAction() throws IOException {
 
   @Override
   protected final void preTransactionSetup() throws IOException {
-    setUp();
+    if (sample == null) {
+      setUp();
+      return;
+    }
+    long start = System.nanoTime();
+    try {
+      setUp();
+    } finally {
+      sample.addSetupTime(System.nanoTime() - start);
+    }
   }
 
   public void setUp() throws IOException {
@@ -78,6 +109,11 @@ public void setUp() throws IOException {
 
   @Override
   protected final boolean shouldAbort(Exception e) {
+    if (sample != null) {
+      sample.attemptFailed(e);
+    }
+    INodeLockPolicy.getInstance().failed(hdfsOpType, e);
+    TransactionStage.discard();
     if (e instanceof RecoveryInProgressException.NonAbortingRecoveryInProgressException) {
       return false;
     }
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.transaction.handler;
+
+import io.hops.StorageConnector;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.MetricsSystem;
+import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableQuantiles;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Always-on, sampled profile of the transactions run by the namenode. For a
+ * sample of the transactions it records, per operation type:
+ * <ul>
+ * <li>the 50/75/90/95/99th percentiles of the time spent in setup, in lock
+ * acquisition, in reading, in the commit and in the whole transaction, in
+ * microseconds, over dfs.transaction.profiler.quantiles.interval
+ * seconds</li>
+ * <li>counters of the profiled transactions, their failed attempts, and the
+ * database round trips and rows read by them</li>
+ * <li>counters of the failed attempts by exception class</li>
+ * </ul>
+ * The read phase runs from the acquisition of the locks to the commit, the
+ * commit phase is the commit of the storage connector, which flushes the
+ * changes of the transaction. It is timed by the connector returned by
+ * {@link #profile(StorageConnector)}. The round trips are counted by the
+ * storage driver wrapped by {@link io.hops.metadata.RoundTripLatencyInjector},
+ * and are not counted when it is not.
+ * The profile is published as a metrics2 source, and is therefore available
+ * through JMX and the /jmx servlet of the namenode.
+ */
+public class TransactionProfiler implements MetricsSource {
+
+  public static final String NAME = "TransactionProfiler";
+
+  private static final TransactionProfiler instance = new TransactionProfiler();
+  // the sample of the transaction the thread is running, if it is profiled
+  private static final ThreadLocal<Sample> currentSample =
+      new ThreadLocal<Sample>();
+
+  private final MetricsRegistry registry = new MetricsRegistry(NAME);
+  private final ConcurrentMap<String, OperationMetrics> operations =
+      new ConcurrentHashMap<String, OperationMetrics>();
+  private final ConcurrentMap<String, AtomicLong> aborts =
+      new ConcurrentHashMap<String, AtomicLong>();
+
+  /**
+   * One out of samplingPeriod transactions is profiled, none if it is 0.
+   */
+  private volatile int samplingPeriod = 0;
+  private volatile int quantilesInterval = 60;
+
+  public static TransactionProfiler getInstance() {
+    return instance;
+  }
+
+  /**
+   * @return the sample of the transaction run by the current thread, or null
+   * if it is not profiled
+   */
+  public static Sample currentSample() {
+    return currentSample.get();
+  }
+
+  /**
+   * Wrap the storage connector so that its commits are timed for the profiled
+   * transactions.
+   */
+  public static StorageConnector profile(final StorageConnector connector) {
+    return (StorageConnector) Proxy.newProxyInstance(
+        StorageConnector.class.getClassLoader(),
+        new Class<?>[]{StorageConnector.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args)
+              throws Throwable {
+            Sample sample = currentSample.get();
+            boolean commit = sample != null && sample.readStart != 0 &&
+                method.getName().equals("commit");
+            if (commit) {
+              sample.commitStarted();
+            }
+            try {
+              return method.invoke(connector, args);
+            } catch (InvocationTargetException e) {
+              throw e.getCause();
+            } finally {
+              if (commit) {
+                sample.commitFinished();
+              }
+            }
+          }
+        });
+  }
+
+  /**
+   * @param samplingPeriod
+   *     one out of samplingPeriod transactions is profiled, none if it is 0
+   * @param quantilesInterval
+   *     rollover interval, in seconds, of the percentiles. It applies to the
+   *     operation types that have not been profiled yet.
+   */
+  public void setConfiguration(int samplingPeriod, int quantilesInterval) {
+    this.samplingPeriod = Math.max(0, samplingPeriod);
+    this.quantilesInterval = Math.max(1, quantilesInterval);
+  }
+
+  /**
+   * Register the profile with the given metrics system, unless it is already
+   * registered.
+   */
+  public synchronized void register(MetricsSystem ms) {
+    if (ms.getSource(NAME) == null) {
+      ms.register(NAME, "Profile of the namenode transactions", this);
+    }
+  }
+
+  /**
+   * @return whether transactions are profiled
+   */
+  public boolean isEnabled() {
+    return samplingPeriod > 0;
+  }
+
+  /**
+   * Decide whether the transaction about to start is profiled. A profiled
+   * transaction is the current sample of the thread until it finishes.
+   *
+   * @return the sample of the transaction, or null if it is not profiled
+   */
+  Sample startSample(HDFSOperationType opType) {
+    int period = samplingPeriod;
+    if (period == 0 ||
+        (period > 1 && ThreadLocalRandom.current().nextInt(period) != 0)) {
+      return null;
+    }
+    Sample sample = new Sample(opType.name(), currentSample.get());
+    currentSample.set(sample);
+    return sample;
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    MetricsRecordBuilder rb = collector.addRecord(registry.info());
+    registry.snapshot(rb, all);
+    for (Map.Entry<String, AtomicLong> abort : aborts.entrySet()) {
+      rb.addCounter(Interns.info(abort.getKey(), "Aborted attempts"),
+          abort.getValue().get());
+    }
+  }
+
+  private OperationMetrics getOperationMetrics(String opName) {
+    OperationMetrics metrics = operations.get(opName);
+    if (metrics == null) {
+      synchronized (this) {
+        metrics = operations.get(opName);
+        if (metrics == null) {
+          metrics = new OperationMetrics(opName);
+          operations.put(opName, metrics);
+        }
+      }
+    }
+    return metrics;
+  }
+
+  private void abort(String opName, Exception cause) {
+    String name = opName + "Abort" + cause.getClass().getSimpleName();
+    AtomicLong count = aborts.get(name);
+    if (count == null) {
+      AtomicLong newCount = new AtomicLong();
+      count = aborts.putIfAbsent(name, newCount);
+      if (count == null) {
+        count = newCount;
+      }
+    }
+    count.incrementAndGet();
+  }
+
+  /**
+   * The metrics of one operation type, created the first time a transaction
+   * of that type is profiled.
+   */
+  private class OperationMetrics {
+    private final MutableQuantiles setupTime;
+    private final MutableQuantiles lockTime;
+    private final MutableQuantiles readTime;
+    private final MutableQuantiles commitTime;
+    private final MutableQuantiles totalTime;
+    private final MutableCounterLong transactions;
+    private final MutableCounterLong retries;
+    private final MutableCounterLong roundTrips;
+    private final MutableCounterLong rowsRead;
+
+    private OperationMetrics(String opName) {
+      int interval = quantilesInterval;
+      setupTime = registry.newQuantiles(opName + "SetupTime",
+          "setup time of " + opName, "Ops", "LatencyMicros", interval);
+      lockTime = registry.newQuantiles(opName + "LockTime",
+          "lock acquisition time of " + opName, "Ops", "LatencyMicros",
+          interval);
+      readTime = registry.newQuantiles(opName + "ReadTime",
+          "read time of " + opName, "Ops", "LatencyMicros", interval);
+      commitTime = registry.newQuantiles(opName + "CommitTime",
+          "commit time of " + opName, "Ops", "LatencyMicros", interval);
+      totalTime = registry.newQuantiles(opName + "TotalTime",
+          "total time of " + opName, "Ops", "LatencyMicros", interval);
+      transactions = registry.newCounter(opName + "Transactions",
+          "Profiled " + opName + " transactions", 0L);
+      retries = registry.newCounter(opName + "Retries",
+          "Failed attempts of the profiled " + opName + " transactions", 0L);
+      roundTrips = registry.newCounter(opName + "RoundTrips",
+          "Database round trips of the profiled " + opName + " transactions",
+          0L);
+      rowsRead = registry.newCounter(opName + "RowsRead",
+          "Rows read by the profiled " + opName + " transactions", 0L);
+    }
+  }
+
+  /**
+   * The measurements of one profiled transaction. A sample is only used by
+   * the thread running the transaction.
+   */
+  public class Sample {
+    private final String opName;
+    // the sample of the transaction this one is nested in, if any
+    private final Sample outer;
+    private final long startTime;
+    private long setupTime;
+    private long lockTime;
+    private long readTime;
+    private long commitTime;
+    // start of the phase the current attempt is in, 0 if it is in neither
+    private long readStart;
+    private long commitStart;
+    private long roundTrips;
+    private long rowsRead;
+    private int attempts;
+
+    private Sample(String opName, Sample outer) {
+      this.opName = opName;
+      this.outer = outer;
+      this.startTime = System.nanoTime();
+    }
+
+    void addSetupTime(long nanos) {
+      setupTime += nanos;
+    }
+
+    public void addLockTime(long nanos) {
+      lockTime += nanos;
+    }
+
+    /**
+     * The locks of the current attempt are acquired, it starts reading.
+     */
+    public void locksAcquired() {
+      readStart = System.nanoTime();
+    }
+
+    /**
+     * The current attempt commits. The commits of the transactions that run
+     * before the locks are acquired, in the setup, are not timed.
+     */
+    void commitStarted() {
+      commitStart = System.nanoTime();
+      readTime += commitStart - readStart;
+      readStart = 0;
+    }
+
+    void commitFinished() {
+      commitTime += System.nanoTime() - commitStart;
+      commitStart = 0;
+    }
+
+    /**
+     * Count a call to the database that returned the given number of rows.
+     */
+    public void roundTrip(long rows) {
+      roundTrips++;
+      rowsRead += rows;
+    }
+
+    void attemptFailed(Exception cause) {
+      attempts++;
+      if (readStart != 0) {
+        readTime += System.nanoTime() - readStart;
+        readStart = 0;
+      }
+      abort(opName, cause);
+    }
+
+    /**
+     * Publish the measurements of this transaction. Times are published in
+     * microseconds.
+     */
+    void finish() {
+      if (outer == null) {
+        currentSample.remove();
+      } else {
+        currentSample.set(outer);
+      }
+      OperationMetrics metrics = getOperationMetrics(opName);
+      metrics.setupTime.add(setupTime / 1000);
+      metrics.lockTime.add(lockTime / 1000);
+      metrics.readTime.add(readTime / 1000);
+      metrics.commitTime.add(commitTime / 1000);
+      metrics.totalTime.add((System.nanoTime() - startTime) / 1000);
+      metrics.transactions.incr();
+      metrics.retries.incr(attempts);
+      metrics.roundTrips.incr(roundTrips);
+      metrics.rowsRead.incr(rowsRead);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.transaction.handler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Changes a transaction stages while it runs, to tell the rest of the
+ * namenode about them once the transaction committed. They are dropped when
+ * an attempt of the transaction fails.
+ * <p/>
+ * Every {@link HopsTransactionalRequestHandler} runs its transaction in a
+ * frame of its own. A handler run while another one is running, from its
+ * setup for instance, stages, publishes and drops its changes without
+ * touching the changes of the outer transaction.
+ *
+ * @param <T>
+ *     the changes staged by one transaction
+ */
+public abstract class TransactionStage<T> {
+
+  private static final ThreadLocal<Frame> frames = new ThreadLocal<>();
+
+  private static class Frame {
+    private final Frame outer;
+    // the changes of the current attempt of the transaction, by stage
+    private final Map<TransactionStage<?>, Object> changes =
+        new LinkedHashMap<>();
+
+    private Frame(Frame outer) {
+      this.outer = outer;
+    }
+  }
+
+  /**
+   * @return the changes staged so far by the transaction of the current
+   * thread, or null if the thread runs no transaction handler
+   */
+  @SuppressWarnings("unchecked")
+  public final T getChanges() {
+    Frame frame = frames.get();
+    if (frame == null) {
+      return null;
+    }
+    T changes = (T) frame.changes.get(this);
+    if (changes == null) {
+      changes = newChanges();
+      frame.changes.put(this, changes);
+    }
+    return changes;
+  }
+
+  /**
+   * @return the changes of a transaction that staged nothing yet
+   */
+  protected abstract T newChanges();
+
+  /**
+   * Tell the rest of the namenode about the changes of a committed
+   * transaction.
+   *
+   * @param namesystem
+   *     the namesystem the handler was run for, if any
+   */
+  protected abstract void publish(T changes, Object namesystem,
+      HDFSOperationType opType);
+
+  static void enter() {
+    frames.set(new Frame(frames.get()));
+  }
+
+  /**
+   * The current attempt of the transaction failed, drop its changes.
+   */
+  static void discard() {
+    Frame frame = frames.get();
+    if (frame != null) {
+      frame.changes.clear();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  static void publish(Object namesystem, HDFSOperationType opType) {
+    Frame frame = frames.get();
+    if (frame == null) {
+      return;
+    }
+    for (Map.Entry<TransactionStage<?>, Object> staged :
+        frame.changes.entrySet()) {
+      ((TransactionStage<Object>) staged.getKey())
+          .publish(staged.getValue(), namesystem, opType);
+    }
+    frame.changes.clear();
+  }
+
+  static void exit() {
+    Frame frame = frames.get();
+    if (frame == null) {
+      return;
+    }
+    if (frame.outer == null) {
+      frames.remove();
+    } else {
+      frames.set(frame.outer);
+    }
+  }
+}
@@ -112,7 +112,7 @@ private void putIndividualINodes(List<INode> iNodes) {
 
     private List<INode> getPathINodes(String path) {
       PathRelatedINodes pri = pathToPathINodes.get(path);
-      return pri.pathINodes;
+      return pri == null ? null : pri.pathINodes;
     }
 
     private final int countResolvedFilesStoredInDB() {
@@ -215,6 +215,13 @@ public TransactionLockTypes.INodeLockType getLockedINodeLockType(
     return allLockedInodesInTx.get(inode);
   }
 
+  /**
+   * Called before the transaction commits, to check that the inodes read
+   * without locks are still the ones the transaction worked on.
+   */
+  public void validateBeforeCommit() throws StorageException {
+  }
+
   protected INode find(TransactionLockTypes.INodeLockType lock, String name,
       int parentId, int partitionId, int possibleINodeId)
       throws StorageException, TransactionContextException {
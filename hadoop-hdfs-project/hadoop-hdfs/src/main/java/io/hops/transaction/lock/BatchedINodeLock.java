@@ -28,10 +28,17 @@
 
 public class BatchedINodeLock extends BaseINodeLock {
 
+  private final TransactionLockTypes.INodeLockType lockType;
   private final List<INodeIdentifier> inodeIdentifiers;
   private int[] inodeIds;
 
   public BatchedINodeLock(List<INodeIdentifier> inodeIdentifiers) {
+    this(DEFAULT_INODE_LOCK_TYPE, inodeIdentifiers);
+  }
+
+  public BatchedINodeLock(TransactionLockTypes.INodeLockType lockType,
+      List<INodeIdentifier> inodeIdentifiers) {
+    this.lockType = lockType;
     this.inodeIdentifiers = inodeIdentifiers;
     inodeIds = new int[inodeIdentifiers.size()];
   }
@@ -50,7 +57,7 @@ protected void acquire(TransactionLocks locks) throws IOException {
         inodeIds[i] = inodeIdentifier.getInodeId();
       }
 
-      List<INode> inodes = find(DEFAULT_INODE_LOCK_TYPE, names, parentIds,partitionIds, false);
+      List<INode> inodes = find(lockType, names, parentIds,partitionIds, false);
       addIndividualINodes(inodes);
     } else {
       throw new StorageException(
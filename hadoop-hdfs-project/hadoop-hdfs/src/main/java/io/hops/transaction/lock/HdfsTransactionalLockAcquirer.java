@@ -15,21 +15,44 @@
  */
 package io.hops.transaction.lock;
 
+import io.hops.transaction.handler.TransactionProfiler;
+
 import java.io.IOException;
 
 public final class HdfsTransactionalLockAcquirer
     extends TransactionLockAcquirer {
 
   private final HdfsTransactionLocks locks;
+  private final TransactionProfiler.Sample sample;
 
   public HdfsTransactionalLockAcquirer() {
-    locks = new HdfsTransactionLocks();
+    this(null);
+  }
+
+  /**
+   * @param sample
+   *     profile of the transaction the locks are acquired for, or null if
+   *     the transaction is not profiled
+   */
+  public HdfsTransactionalLockAcquirer(TransactionProfiler.Sample sample) {
+    this.locks = new HdfsTransactionLocks();
+    this.sample = sample;
   }
 
   @Override
   public void acquire() throws IOException {
-    for (Lock lock : locks.getSortedLocks()) {
-      lock.acquire(locks);
+    long start = sample == null ? 0 : System.nanoTime();
+    try {
+      for (Lock lock : locks.getSortedLocks()) {
+        lock.acquire(locks);
+      }
+      if (sample != null) {
+        sample.locksAcquired();
+      }
+    } finally {
+      if (sample != null) {
+        sample.addLockTime(System.nanoTime() - start);
+      }
     }
   }
 
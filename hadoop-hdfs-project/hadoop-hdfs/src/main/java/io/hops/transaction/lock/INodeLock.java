@@ -15,11 +15,13 @@
  */
 package io.hops.transaction.lock;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import io.hops.common.INodeResolver;
 import io.hops.exception.StorageException;
 import io.hops.exception.TransactionContextException;
 import io.hops.leader_election.node.ActiveNode;
+import io.hops.metadata.HdfsStorageFactory;
 import io.hops.metadata.hdfs.dal.INodeDataAccess;
 import io.hops.resolvingcache.Cache;
 import io.hops.resolvingcache.OptimalMemcache;
@@ -37,11 +39,17 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 class INodeLock extends BaseINodeLock {
-  
+
+  private static boolean ancestorPrefetchEnabled = true;
+
   private final TransactionLockTypes.INodeLockType lockType;
   private final TransactionLockTypes.INodeResolveType resolveType;
   private final boolean resolveLink;
@@ -78,9 +86,84 @@ class INodeLock extends BaseINodeLock {
     this(lockType, resolveType, true, false, false, -1, activeNamenodes, paths);
   }
 
+  @VisibleForTesting
+  static void enableAncestorPrefetch(boolean enable) {
+    ancestorPrefetchEnabled = enable;
+  }
+
+  void validatePathsBeforeCommit() {
+    validatePaths = true;
+  }
+
+  /**
+   * Read the resolved inodes of each path again, by primary key, and check
+   * that every component still has the same id and parent. A rename running
+   * concurrently with the read-committed resolution could otherwise have
+   * given the transaction a path made of inodes from before and after it.
+   */
+  @Override
+  public void validateBeforeCommit() throws StorageException {
+    if (!validatePaths) {
+      return;
+    }
+    INodeDataAccess<INode> da = (INodeDataAccess) HdfsStorageFactory
+        .getDataAccess(INodeDataAccess.class);
+    for (String path : paths) {
+      List<INode> resolved = new ArrayList<>();
+      List<INode> pathINodes = getPathINodes(path);
+      if (pathINodes != null) {
+        for (INode inode : pathINodes) {
+          if (inode != null) {
+            resolved.add(inode);
+          }
+        }
+      }
+      if (resolved.isEmpty()) {
+        continue;
+      }
+      String[] names = new String[resolved.size()];
+      int[] parentIds = new int[resolved.size()];
+      int[] partitionIds = new int[resolved.size()];
+      for (int i = 0; i < resolved.size(); i++) {
+        INode inode = resolved.get(i);
+        names[i] = inode.getLocalName();
+        parentIds[i] = inode.getParentId();
+        partitionIds[i] = inode.getPartitionId();
+      }
+      Map<Integer, INode> current = new HashMap<>();
+      for (INode inode : da.getINodesPkBatched(names, parentIds,
+          partitionIds)) {
+        if (inode != null) {
+          current.put(inode.getId(), inode);
+        }
+      }
+      for (INode inode : resolved) {
+        INode now = current.get(inode.getId());
+        if (now == null || now.getParentId() != inode.getParentId() ||
+            !now.getLocalName().equals(inode.getLocalName())) {
+          throw new OptimisticReadConflictException("The path " + path +
+              " changed while it was read without locks, at inode " +
+              inode.getLocalName() + " (id " + inode.getId() + ")");
+        }
+      }
+    }
+  }
+
 
   private CacheResolver instance = null;
 
+  /**
+   * Whether the paths were read in read-committed mode in place of the locks
+   * the operation normally takes, and must be checked before commit
+   */
+  private boolean validatePaths = false;
+
+  /**
+   * Resolving cache entries already fetched while prefetching the ancestors
+   * of the paths, so that they are not fetched a second time
+   */
+  private final Map<String, int[]> prefetchedCacheEntries = new HashMap<>();
+
   private CacheResolver getCacheResolver(){
     if(instance == null){
       if(Cache.getInstance() instanceof OptimalMemcache){
@@ -157,7 +240,7 @@ private class FullPathResolver extends CacheResolver {
 
     @Override
     List<INode> fetchINodes(String path) throws IOException {
-      int[] inodeIds = Cache.getInstance().get(path);
+      int[] inodeIds = getCachedINodeIds(path);
       if (inodeIds != null) {
         final String[] names = INode.getPathNames(path);
         final boolean partial = names.length > inodeIds.length;
@@ -198,18 +281,8 @@ protected List<INode> readINodesWhileRespectingLocks(final String path,
         final String[] names, final int[] parentIds, final int[] partitionIds)
         throws TransactionContextException, StorageException,
         UnresolvedPathException {
-      int rowsToReadWithDefaultLock = names.length;
-      if (!lockType.equals(DEFAULT_INODE_LOCK_TYPE)) {
-        if (lockType.equals(
-            TransactionLockTypes.INodeLockType.WRITE_ON_TARGET_AND_PARENT)) {
-          rowsToReadWithDefaultLock -= 2;
-        } else {
-          rowsToReadWithDefaultLock -= 1;
-        }
-      }
-
-      rowsToReadWithDefaultLock = Math.min(rowsToReadWithDefaultLock,
-          parentIds.length);
+      int rowsToReadWithDefaultLock = Math.min(
+          rowsToReadWithDefaultLock(names.length), parentIds.length);
 
       List<INode> inodes = null;
       if (rowsToReadWithDefaultLock > 0) {
@@ -263,7 +336,7 @@ private class PartialPathResolver extends FullPathResolver {
     @Override
     List<INode> fetchINodes(String path) throws
         IOException {
-      int[] inodeIds = Cache.getInstance().get(path);
+      int[] inodeIds = getCachedINodeIds(path);
       if (inodeIds != null) {
         final String[] names = INode.getPathNames(path);
         final boolean partial = names.length > inodeIds.length;
@@ -377,6 +450,8 @@ protected void acquireINodeLocks() throws IOException {
       throw new IllegalArgumentException("Unknown type " + resolveType.name());
     }
   
+    prefetchCachedAncestors();
+
     for (String path : paths) {
       List<INode> resolvedINodes = resolveUsingMemcache(path);
       if (resolvedINodes == null) {
@@ -404,6 +479,114 @@ protected void acquireINodeLocks() throws IOException {
     }
   }
 
+  /**
+   * Number of leading components of a path with the given number of
+   * components that are read with the default lock.
+   */
+  private int rowsToReadWithDefaultLock(int components) {
+    int rows = components;
+    if (!lockType.equals(DEFAULT_INODE_LOCK_TYPE)) {
+      if (lockType.equals(
+          TransactionLockTypes.INodeLockType.WRITE_ON_TARGET_AND_PARENT)) {
+        rows -= 2;
+      } else {
+        rows -= 1;
+      }
+    }
+    return rows;
+  }
+
+  private int[] getCachedINodeIds(String path) {
+    int[] inodeIds = prefetchedCacheEntries.remove(path);
+    if (inodeIds == null) {
+      inodeIds = Cache.getInstance().get(path);
+    }
+    return inodeIds;
+  }
+
+  /**
+   * When several paths are locked, read the ancestors that the resolving
+   * cache knows about for all of them in one batch, instead of one batch per
+   * path. Shared prefixes are read once. The per path resolution then finds
+   * these inodes in the transaction cache.
+   * <p/>
+   * Only the inodes read without row locks are prefetched, so the order in
+   * which the row locks are taken does not change. A prefix that any of the
+   * paths locks with a stronger lock is left to the per path resolution, as
+   * the transaction cache would otherwise hide it from the lock upgrade.
+   */
+  private void prefetchCachedAncestors() throws IOException {
+    if (!ancestorPrefetchEnabled || paths.length < 2 ||
+        getCacheResolver() == null ||
+        DEFAULT_INODE_LOCK_TYPE !=
+            TransactionLockTypes.INodeLockType.READ_COMMITTED) {
+      return;
+    }
+
+    Set<String> strongerLockedPrefixes = new HashSet<>();
+    for (String path : paths) {
+      String[] names = INode.getPathNames(path);
+      for (int i = Math.max(0, rowsToReadWithDefaultLock(names.length));
+           i < names.length; i++) {
+        strongerLockedPrefixes.add(prefix(names, i));
+      }
+    }
+
+    Set<String> prefetchedPrefixes = new HashSet<>();
+    List<String> names = new ArrayList<>();
+    List<Integer> parentIds = new ArrayList<>();
+    List<Integer> partitionIds = new ArrayList<>();
+    for (String path : paths) {
+      int[] inodeIds = Cache.getInstance().get(path);
+      if (inodeIds == null) {
+        continue;
+      }
+      prefetchedCacheEntries.put(path, inodeIds);
+      String[] pathNames = INode.getPathNames(path);
+      int rows = Math.min(rowsToReadWithDefaultLock(pathNames.length),
+          inodeIds.length);
+      for (int i = 0; i < rows; i++) {
+        String prefix = prefix(pathNames, i);
+        if (strongerLockedPrefixes.contains(prefix) ||
+            !prefetchedPrefixes.add(prefix)) {
+          continue;
+        }
+        if (i == 0) {
+          names.add(pathNames[0]);
+          parentIds.add(INodeDirectory.ROOT_PARENT_ID);
+          partitionIds.add(INodeDirectory.getRootDirPartitionKey());
+        } else {
+          names.add(pathNames[i]);
+          parentIds.add(inodeIds[i - 1]);
+          partitionIds.add(INode.calculatePartitionId(inodeIds[i - 1],
+              pathNames[i], (short) (INodeDirectory.ROOT_DIR_DEPTH + i)));
+        }
+      }
+    }
+
+    if (names.size() > 1) {
+      int[] parentIdsArray = new int[parentIds.size()];
+      int[] partitionIdsArray = new int[partitionIds.size()];
+      for (int i = 0; i < parentIdsArray.length; i++) {
+        parentIdsArray[i] = parentIds.get(i);
+        partitionIdsArray[i] = partitionIds.get(i);
+      }
+      find(DEFAULT_INODE_LOCK_TYPE, names.toArray(new String[names.size()]),
+          parentIdsArray, partitionIdsArray, true);
+    }
+  }
+
+  /**
+   * The path made of the first index + 1 components.
+   */
+  private static String prefix(String[] names, int index) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 1; i <= index; i++) {
+      builder.append(Path.SEPARATOR_CHAR).append(names[i]);
+    }
+    return builder.length() == 0 ? Path.SEPARATOR : builder.toString();
+  }
+
   private List<INode> resolveUsingMemcache(String path) throws IOException {
     CacheResolver memcacheResolver = getCacheResolver();
     if(memcacheResolver == null)
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.transaction.lock;
+
+import io.hops.transaction.handler.HDFSOperationType;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.MetricsSystem;
+import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.hadoop.util.Time;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Chooses the inode lock type of the read-only operations.
+ * <p/>
+ * The operations listed in
+ * {@link DFSConfigKeys#DFS_NAMENODE_OPTIMISTIC_READ_OPERATIONS} read their
+ * path in read-committed mode instead of taking shared locks on it. Before
+ * the transaction commits, the path is read again and checked against the
+ * inodes the transaction used. If it changed, the transaction fails with
+ * {@link OptimisticReadConflictException} and is retried with the
+ * pessimistic lock type.
+ * <p/>
+ * The outcome of the read-committed attempts is tracked per operation, and
+ * an operation whose ratio of failed validations over a window exceeds
+ * {@link DFSConfigKeys#DFS_NAMENODE_OPTIMISTIC_READ_CONFLICT_RATIO} is
+ * escalated back to its pessimistic lock type for the next window.
+ * <p/>
+ * The attempts, conflicts and escalations are published as a metrics2
+ * source.
+ */
+public class INodeLockPolicy implements MetricsSource {
+
+  static final Log LOG = LogFactory.getLog(INodeLockPolicy.class);
+
+  public static final String NAME = "INodeLockPolicy";
+
+  private static final INodeLockPolicy instance = new INodeLockPolicy();
+
+  private volatile Map<HDFSOperationType, OperationState> optimisticOps =
+      new EnumMap<>(HDFSOperationType.class);
+  private volatile float maxConflictRatio =
+      DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_CONFLICT_RATIO_DEFAULT;
+  private volatile long windowMs =
+      DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_WINDOW_MS_DEFAULT;
+  /**
+   * Set when the validation of the current transaction failed, so that its
+   * retries take locks
+   */
+  private final ThreadLocal<Boolean> retryWithLocks =
+      new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+          return false;
+        }
+      };
+
+  public static INodeLockPolicy getInstance() {
+    return instance;
+  }
+
+  public void setConfiguration(Configuration conf) {
+    Map<HDFSOperationType, OperationState> ops =
+        new EnumMap<>(HDFSOperationType.class);
+    for (String op : conf.getTrimmedStringCollection(
+        DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_OPERATIONS)) {
+      try {
+        HDFSOperationType opType = HDFSOperationType.valueOf(op);
+        ops.put(opType, new OperationState());
+      } catch (IllegalArgumentException e) {
+        LOG.warn("Ignoring unknown operation " + op + " in " +
+            DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_OPERATIONS);
+      }
+    }
+    maxConflictRatio = conf.getFloat(
+        DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_CONFLICT_RATIO,
+        DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_CONFLICT_RATIO_DEFAULT);
+    windowMs = conf.getLong(DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_WINDOW_MS,
+        DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_WINDOW_MS_DEFAULT);
+    optimisticOps = ops;
+    if (!ops.isEmpty()) {
+      LOG.info("Optimistic reads enabled for " + ops.keySet());
+    }
+  }
+
+  public synchronized void register(MetricsSystem ms) {
+    if (ms.getSource(NAME) == null) {
+      ms.register(NAME, "Lock types chosen for the read operations", this);
+    }
+  }
+
+  /**
+   * @param opType
+   *     the operation
+   * @param pessimisticLockType
+   *     the lock type the operation takes when it does not read optimistically
+   * @return the lock type to take on the path of the operation
+   */
+  public TransactionLockTypes.INodeLockType getINodeLockType(
+      HDFSOperationType opType,
+      TransactionLockTypes.INodeLockType pessimisticLockType) {
+    OperationState state = optimisticOps.get(opType);
+    if (state == null || state.isEscalated() || retryWithLocks.get()) {
+      return pessimisticLockType;
+    }
+    return TransactionLockTypes.INodeLockType.READ_COMMITTED;
+  }
+
+  /**
+   * Record that a transaction of the given operation completed. Only the
+   * attempts that did not take locks are recorded.
+   */
+  public void succeeded(HDFSOperationType opType) {
+    if (!retryWithLocks.get()) {
+      record(opType, false);
+    }
+  }
+
+  /**
+   * Record that an attempt of a transaction of the given operation failed.
+   * When the attempt failed its validation, the next attempts take locks.
+   */
+  public void failed(HDFSOperationType opType, Exception cause) {
+    if (cause instanceof OptimisticReadConflictException) {
+      record(opType, true);
+      retryWithLocks.set(true);
+    }
+  }
+
+  /**
+   * Called once the transaction of the current thread is over, whatever its
+   * outcome.
+   */
+  public void finished() {
+    retryWithLocks.set(false);
+  }
+
+  void record(HDFSOperationType opType, boolean conflict) {
+    OperationState state = optimisticOps.get(opType);
+    if (state != null) {
+      state.record(conflict);
+    }
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    MetricsRecordBuilder rb = collector.addRecord(NAME);
+    for (Map.Entry<HDFSOperationType, OperationState> op :
+        optimisticOps.entrySet()) {
+      String name = op.getKey().name();
+      OperationState state = op.getValue();
+      synchronized (state) {
+        rb.addCounter(Interns.info(name + "Attempts",
+            "Transactions run by the operation"), state.totalAttempts)
+            .addCounter(Interns.info(name + "Conflicts",
+                "Read-committed attempts that failed their validation"),
+                state.totalConflicts)
+            .addCounter(Interns.info(name + "Escalations",
+                "Times the operation was escalated to pessimistic locks"),
+                state.escalations)
+            .addGauge(Interns.info(name + "Escalated",
+                "1 if the operation currently takes pessimistic locks"),
+                state.escalated ? 1 : 0);
+      }
+    }
+  }
+
+  private class OperationState {
+    private long windowStart = Time.monotonicNow();
+    private long attempts;
+    private long conflicts;
+    private long totalAttempts;
+    private long totalConflicts;
+    private long escalations;
+    private volatile boolean escalated;
+
+    boolean isEscalated() {
+      return escalated;
+    }
+
+    synchronized void record(boolean conflict) {
+      attempts++;
+      totalAttempts++;
+      if (conflict) {
+        conflicts++;
+        totalConflicts++;
+      }
+      long now = Time.monotonicNow();
+      if (now - windowStart >= windowMs) {
+        boolean escalate = (float) conflicts / attempts > maxConflictRatio;
+        if (escalate && !escalated) {
+          escalations++;
+        }
+        escalated = escalate;
+        windowStart = now;
+        attempts = 0;
+        conflicts = 0;
+      }
+    }
+  }
+}
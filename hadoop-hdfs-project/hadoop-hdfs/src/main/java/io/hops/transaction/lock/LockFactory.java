@@ -18,6 +18,7 @@
 
 import io.hops.metadata.common.entity.Variable;
 import io.hops.metadata.hdfs.entity.INodeIdentifier;
+import io.hops.transaction.handler.HDFSOperationType;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.server.namenode.NameNode;
@@ -150,6 +151,11 @@ public Lock getBatchedINodesLock(List<INodeIdentifier> inodeIdentifiers) {
     return new BatchedINodeLock(inodeIdentifiers);
   }
 
+  public Lock getBatchedINodesLock(TransactionLockTypes.INodeLockType lockType,
+      List<INodeIdentifier> inodeIdentifiers) {
+    return new BatchedINodeLock(lockType, inodeIdentifiers);
+  }
+
   /**
    * @param lockType the lock to acquire
    * @param inodeIdentifier the id of the inode
@@ -218,6 +224,28 @@ public Lock getINodeLock(boolean skipReadingQuotaAttr, NameNode nameNode,
         nameNode.getActiveNameNodes().getActiveNodes(), paths);
   }
 
+  /**
+   * Lock on the paths of a read-only operation. {@link INodeLockPolicy}
+   * decides whether the paths are read in read-committed mode or with the
+   * pessimistic lock type. When they are read in read-committed mode, they
+   * are checked again before the transaction commits.
+   */
+  public Lock getReadOnlyINodeLock(HDFSOperationType opType,
+      boolean skipReadingQuotaAttr, NameNode nameNode,
+      TransactionLockTypes.INodeLockType pessimisticLockType,
+      TransactionLockTypes.INodeResolveType resolveType, boolean resolveLink,
+      String... paths) {
+    TransactionLockTypes.INodeLockType lockType = INodeLockPolicy
+        .getInstance().getINodeLockType(opType, pessimisticLockType);
+    INodeLock lock = new INodeLock(lockType, resolveType, resolveLink, false,
+        skipReadingQuotaAttr, nameNode.getId(),
+        nameNode.getActiveNameNodes().getActiveNodes(), paths);
+    if (lockType != pessimisticLockType) {
+      lock.validatePathsBeforeCommit();
+    }
+    return lock;
+  }
+
   public Lock getRenameINodeLock(NameNode nameNode,
       TransactionLockTypes.INodeLockType lockType,
       TransactionLockTypes.INodeResolveType resolveType,
@@ -56,6 +56,7 @@
 import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
 import org.apache.hadoop.hdfs.protocol.AlreadyBeingCreatedException;
 import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
+import org.apache.hadoop.hdfs.protocol.BulkFileInfo;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.CorruptFileBlocks;
 import org.apache.hadoop.hdfs.protocol.DSQuotaExceededException;
@@ -126,6 +127,7 @@
 import java.net.URI;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -259,6 +261,11 @@ static class Conf {
     //small delay before closing the file ensures that incremental block reporst are processed by the
     //namenodes before the file close operation.
     final int delayBeforeClose;
+    final int bulkFileInfoBatchSize;
+    final boolean degradedReadEnabled;
+    final int degradedReadThreads;
+    final boolean onlineEncodingEnabled;
+    final long onlineEncodingMaxBuffer;
     //only for testing
     final boolean hdfsClientEmulationForSF;
 
@@ -353,6 +360,21 @@ static class Conf {
 
       delayBeforeClose = conf.getInt(DFSConfigKeys.DFS_CLIENT_DELAY_BEFORE_FILE_CLOSE_KEY,
               DFSConfigKeys.DFS_CLIENT_DELAY_BEFORE_FILE_CLOSE_DEFAULT);
+      bulkFileInfoBatchSize = conf.getInt(
+          DFSConfigKeys.DFS_CLIENT_BULK_FILEINFO_BATCH_SIZE_KEY,
+          DFSConfigKeys.DFS_CLIENT_BULK_FILEINFO_BATCH_SIZE_DEFAULT);
+      degradedReadEnabled = conf.getBoolean(
+          DFSConfigKeys.DFS_CLIENT_DEGRADED_READ_ENABLED_KEY,
+          DFSConfigKeys.DFS_CLIENT_DEGRADED_READ_ENABLED_DEFAULT);
+      degradedReadThreads = conf.getInt(
+          DFSConfigKeys.DFS_CLIENT_DEGRADED_READ_THREADS_KEY,
+          DFSConfigKeys.DFS_CLIENT_DEGRADED_READ_THREADS_DEFAULT);
+      onlineEncodingEnabled = conf.getBoolean(
+          DFSConfigKeys.DFS_CLIENT_ONLINE_ENCODING_ENABLED_KEY,
+          DFSConfigKeys.DFS_CLIENT_ONLINE_ENCODING_ENABLED_DEFAULT);
+      onlineEncodingMaxBuffer = conf.getLong(
+          DFSConfigKeys.DFS_CLIENT_ONLINE_ENCODING_MAX_BUFFER_KEY,
+          DFSConfigKeys.DFS_CLIENT_ONLINE_ENCODING_MAX_BUFFER_DEFAULT);
     }
 
     private DataChecksum.Type getChecksumType(Configuration conf) {
@@ -410,6 +432,9 @@ Conf getConf() {
       new HashMap<>();
 
   private final DomainSocketFactory domainSocketFactory;
+
+  // bytes of parity buffers held by the files encoded while written
+  private final AtomicLong onlineEncodingBuffer = new AtomicLong();
   
   /**
    * Same as this(NameNode.getAddress(conf), conf);
@@ -2034,6 +2059,67 @@ public Object doAction(ClientProtocol namenode)
     }
   }
 
+  /**
+   * Get the file info of many files or directories, sending at most
+   * bulkFileInfoBatchSize paths per call to the namenode.
+   *
+   * @param srcs
+   *     The string representations of the paths
+   * @param needLocation
+   *     if true, the status of each file includes its block locations
+   * @return the status or the error of each path, in the order of srcs
+   * @see ClientProtocol#getFileInfos(String[], boolean)
+   */
+  public BulkFileInfo getFileInfos(final String[] srcs,
+      final boolean needLocation) throws IOException {
+    checkOpen();
+    HdfsFileStatus[] statuses = new HdfsFileStatus[srcs.length];
+    IOException[] errors = new IOException[srcs.length];
+    int batchSize = Math.max(1, dfsClientConf.bulkFileInfoBatchSize);
+    for (int start = 0; start < srcs.length; start += batchSize) {
+      final String[] batch = Arrays.copyOfRange(srcs, start,
+          Math.min(srcs.length, start + batchSize));
+      BulkFileInfo result;
+      try {
+        ClientActionHandler handler = new ClientActionHandler() {
+          @Override
+          public Object doAction(ClientProtocol namenode)
+              throws RemoteException, IOException {
+            return namenode.getFileInfos(batch, needLocation);
+          }
+        };
+        result = (BulkFileInfo) doClientActionWithRetry(handler,
+            "getFileInfos");
+      } catch (RemoteException re) {
+        throw re.unwrapRemoteException(AccessControlException.class);
+      }
+      for (int i = 0; i < batch.length; i++) {
+        errors[start + i] = result.getError(i);
+        if (errors[start + i] == null) {
+          statuses[start + i] = result.getFileInfo(i);
+        }
+      }
+    }
+    return new BulkFileInfo(statuses, errors);
+  }
+
+  /**
+   * Get a reader of the changes of the meta enabled datasets committed by
+   * all the namenodes.
+   *
+   * @param resumeToken
+   *     a token returned by {@link MetadataEventReader#getResumeToken()} to
+   *     continue after the events a previous reader returned, or null to
+   *     start from the oldest events the namenodes kept
+   * @param maxEvents
+   *     the maximum number of events read from each namenode per poll
+   */
+  public MetadataEventReader getMetadataEventReader(String resumeToken,
+      int maxEvents) throws IOException {
+    checkOpen();
+    return new MetadataEventReader(this, maxEvents, resumeToken);
+  }
+
   /**
    * Get the file info for a specific file or directory. If src
    * refers to a symlink then the FileStatus of the link is returned.
@@ -3214,6 +3300,42 @@ public Object doAction(ClientProtocol namenode) throws IOException {
     doClientActionWithRetry(handler, "revokeEncoding");
   }
 
+  /**
+   * @see org.apache.hadoop.hdfs.protocol.ClientProtocol#completeEncoding
+   */
+  public boolean completeEncoding(final String filePath,
+      final String parityFileName) throws IOException {
+    ClientActionHandler handler = new ClientActionHandler() {
+      @Override
+      public Object doAction(ClientProtocol namenode) throws IOException {
+        return namenode.completeEncoding(filePath, parityFileName);
+      }
+    };
+    return (Boolean) doClientActionWithRetry(handler, "completeEncoding");
+  }
+
+  /**
+   * Reserve heap for the parity buffers of a file encoded while written.
+   *
+   * @return false if the buffers would exceed
+   * {@link DFSConfigKeys#DFS_CLIENT_ONLINE_ENCODING_MAX_BUFFER_KEY}
+   */
+  boolean reserveOnlineEncodingBuffer(long bytes) {
+    while (true) {
+      long reserved = onlineEncodingBuffer.get();
+      if (reserved + bytes > dfsClientConf.onlineEncodingMaxBuffer) {
+        return false;
+      }
+      if (onlineEncodingBuffer.compareAndSet(reserved, reserved + bytes)) {
+        return true;
+      }
+    }
+  }
+
+  void releaseOnlineEncodingBuffer(long bytes) {
+    onlineEncodingBuffer.addAndGet(-bytes);
+  }
+
   /**
    * @see org.apache.hadoop.hdfs.protocol.ClientProtocol#getRepairedBlockLocations
    */
@@ -46,6 +46,20 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_STORAGE_DRIVER_CONFIG_FILE_DEFAULT =
       "ndb-config.properties";
 
+  // How long a transaction of the in-memory storage driver,
+  // io.hops.metadata.memory.InMemoryStorageFactory, waits for a row lock
+  public static final String DFS_STORAGE_MEMORY_LOCK_WAIT_TIMEOUT_MS =
+      "dfs.storage.memory.lock.wait.timeout.ms";
+  public static final long DFS_STORAGE_MEMORY_LOCK_WAIT_TIMEOUT_MS_DEFAULT =
+      1200;
+
+  // Latency added to every call to the storage driver, in microseconds.
+  // 0 counts the round trips without adding latency, a negative value leaves
+  // the driver alone.
+  public static final String DFS_STORAGE_INJECTED_LATENCY_US =
+      "dfs.storage.injected.latency.us";
+  public static final long DFS_STORAGE_INJECTED_LATENCY_US_DEFAULT = -1;
+
   public static final String DFS_STORAGE_ANCESTOR_LOCK_TYPE =
       "dfs.storage.ancestor.lock.type";
   public static final String DFS_STORAGE_ANCESTOR_LOCK_TYPE_DEFAULT =
@@ -129,6 +143,37 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.transaction.stats.writerround";
   public static final int DFS_TRANSACTION_STATS_WRITER_ROUND_DEFAULT = 120;
 
+  // One out of this many transactions is profiled, 0 disables the profiler
+  public static final String DFS_TRANSACTION_PROFILER_SAMPLING_PERIOD =
+      "dfs.transaction.profiler.sampling.period";
+  public static final int DFS_TRANSACTION_PROFILER_SAMPLING_PERIOD_DEFAULT =
+      100;
+  // Rollover interval, in seconds, of the latency percentiles of the profiler
+  public static final String DFS_TRANSACTION_PROFILER_QUANTILES_INTERVAL =
+      "dfs.transaction.profiler.quantiles.interval";
+  public static final int DFS_TRANSACTION_PROFILER_QUANTILES_INTERVAL_DEFAULT =
+      60;
+
+  // Comma separated list of HDFSOperationTypes that read their path in
+  // read-committed mode instead of taking shared locks
+  public static final String DFS_NAMENODE_OPTIMISTIC_READ_OPERATIONS =
+      "dfs.namenode.optimistic.read.operations";
+  public static final String DFS_NAMENODE_OPTIMISTIC_READ_CONFLICT_RATIO =
+      "dfs.namenode.optimistic.read.conflict.ratio";
+  public static final float DFS_NAMENODE_OPTIMISTIC_READ_CONFLICT_RATIO_DEFAULT =
+      0.1f;
+  public static final String DFS_NAMENODE_OPTIMISTIC_READ_WINDOW_MS =
+      "dfs.namenode.optimistic.read.window.ms";
+  public static final long DFS_NAMENODE_OPTIMISTIC_READ_WINDOW_MS_DEFAULT =
+      10000;
+
+  // Number of committed metadata log entries a namenode keeps for the
+  // readers of its metadata event stream, 0 disables the stream
+  public static final String DFS_NAMENODE_METADATA_EVENTS_BUFFER_SIZE_KEY =
+      "dfs.namenode.metadata.events.buffer.size";
+  public static final int DFS_NAMENODE_METADATA_EVENTS_BUFFER_SIZE_DEFAULT =
+      10000;
+
   public static final String  DFS_DIR_DELETE_BATCH_SIZE=
       "dfs.dir.delete.batch.size";
   public static final int DFS_DIR_DELETE_BATCH_SIZE_DEFAULT = 50;
@@ -240,6 +285,19 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String RECHECK_INTERVAL_KEY =
       "dfs.erasure_coding.recheck_interval";
   public static final int DEFAULT_RECHECK_INTERVAL = 5 * 60 * 1000;
+  // Status changes on the namenode are coalesced over this interval
+  public static final String MIN_RECHECK_INTERVAL_KEY =
+      "dfs.erasure_coding.min_recheck_interval";
+  public static final long DEFAULT_MIN_RECHECK_INTERVAL = 1000;
+  // The recheck interval of a state doubles up to this interval while
+  // nothing changes. Repairs and reports are always rechecked after the
+  // recheck interval.
+  public static final String MAX_RECHECK_INTERVAL_KEY =
+      "dfs.erasure_coding.max_recheck_interval";
+  public static final long DEFAULT_MAX_RECHECK_INTERVAL = 30 * 60 * 1000;
+  public static final String FINALIZE_BATCH_SIZE_KEY =
+      "dfs.erasure_coding.finalize_batch_size";
+  public static final int DEFAULT_FINALIZE_BATCH_SIZE = 50;
   public static final String ACTIVE_ENCODING_LIMIT_KEY =
       "dfs.erasure_coding.active_encoding_limit";
   public static final int DEFAULT_ACTIVE_ENCODING_LIMIT = 10;
@@ -258,6 +316,32 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DELETION_LIMIT_KEY =
       "dfs.erasure_coding.deletion_limit";
   public static final int DEFAULT_DELETION_LIMIT = 100;
+  // Parity files whose stripes are checked for placement in each round
+  public static final String PLACEMENT_CHECK_LIMIT_KEY =
+      "dfs.erasure_coding.placement_check_limit";
+  public static final int DEFAULT_PLACEMENT_CHECK_LIMIT = 100;
+  public static final String ENCODING_TASKS_PER_HEARTBEAT_KEY =
+      "dfs.erasure_coding.encoding_tasks_per_heartbeat";
+  public static final int DEFAULT_ENCODING_TASKS_PER_HEARTBEAT = 10;
+  public static final String ENCODING_TASK_EXECUTION_LIMIT_KEY =
+      "dfs.erasure_coding.encoding_task_execution_limit";
+  public static final long DEFAULT_ENCODING_TASK_EXECUTION_LIMIT =
+      24L * 3600L * 1000L;
+  public static final String DATANODE_ENCODING_THREADS_KEY =
+      "dfs.erasure_coding.datanode.encoding_threads";
+  public static final int DEFAULT_DATANODE_ENCODING_THREADS = 2;
+  public static final String FILE_ENCODER_CLASSNAME_KEY =
+      "dfs.erasure_coding.datanode.file_encoder";
+  public static final String DEFAULT_FILE_ENCODER_CLASSNAME =
+      "io.hops.erasure_coding.DatanodeFileEncoder";
+  public static final String REPAIR_THREADS_KEY =
+      "dfs.erasure_coding.repair_threads";
+  public static final int DEFAULT_REPAIR_THREADS = 4;
+  // Bytes per second read from each datanode by repairs, 0 for no limit
+  public static final String REPAIR_BANDWIDTH_PER_DATANODE_KEY =
+      "dfs.erasure_coding.repair_bandwidth_per_datanode";
+  public static final long DEFAULT_REPAIR_BANDWIDTH_PER_DATANODE =
+      10L * 1024L * 1024L;
 
   public static final String DFS_BR_LB_MAX_BLK_PER_TW =
           "dfs.block.report.load.balancing.max.blks.per.time.window";
@@ -453,6 +537,58 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_NAMENODE_ACCESSTIME_PRECISION_KEY =
       "dfs.namenode.accesstime.precision";
   public static final long DFS_NAMENODE_ACCESSTIME_PRECISION_DEFAULT = 3600000;
+  // Number of paths resolved per transaction by a bulk getFileInfos
+  public static final String DFS_NAMENODE_BULK_FILEINFO_BATCH_SIZE_KEY =
+      "dfs.namenode.bulk.fileinfo.batch.size";
+  public static final int DFS_NAMENODE_BULK_FILEINFO_BATCH_SIZE_DEFAULT = 100;
+  // Number of paths sent per getFileInfos call by the client
+  public static final String DFS_CLIENT_BULK_FILEINFO_BATCH_SIZE_KEY =
+      "dfs.client.bulk.fileinfo.batch.size";
+  public static final int DFS_CLIENT_BULK_FILEINFO_BATCH_SIZE_DEFAULT = 1000;
+  // Decode the missing blocks of erasure coded files while reading them
+  public static final String DFS_CLIENT_DEGRADED_READ_ENABLED_KEY =
+      "dfs.client.degraded-read.enabled";
+  public static final boolean DFS_CLIENT_DEGRADED_READ_ENABLED_DEFAULT = false;
+  public static final String DFS_CLIENT_DEGRADED_READ_THREADS_KEY =
+      "dfs.client.degraded-read.threads";
+  public static final int DFS_CLIENT_DEGRADED_READ_THREADS_DEFAULT = 16;
+  public static final String DFS_CLIENT_ONLINE_ENCODING_ENABLED_KEY =
+      "dfs.client.online-encoding.enabled";
+  public static final boolean DFS_CLIENT_ONLINE_ENCODING_ENABLED_DEFAULT =
+      false;
+  // Heap the parity buffers of all files encoded while written may take
+  public static final String DFS_CLIENT_ONLINE_ENCODING_MAX_BUFFER_KEY =
+      "dfs.client.online-encoding.max-buffer-bytes";
+  public static final long DFS_CLIENT_ONLINE_ENCODING_MAX_BUFFER_DEFAULT =
+      1024L * 1024 * 1024;
+  public static final String DFS_NAMENODE_ACCESSTIME_DEFERRED_KEY =
+      "dfs.namenode.accesstime.deferred";
+  public static final boolean DFS_NAMENODE_ACCESSTIME_DEFERRED_DEFAULT = false;
+  public static final String DFS_NAMENODE_ACCESSTIME_FLUSH_INTERVAL_MS_KEY =
+      "dfs.namenode.accesstime.flush.interval.ms";
+  public static final long DFS_NAMENODE_ACCESSTIME_FLUSH_INTERVAL_MS_DEFAULT =
+      5000;
+  public static final String DFS_NAMENODE_ACCESSTIME_FLUSH_BATCH_SIZE_KEY =
+      "dfs.namenode.accesstime.flush.batch.size";
+  public static final int DFS_NAMENODE_ACCESSTIME_FLUSH_BATCH_SIZE_DEFAULT =
+      500;
+  // Maximum number of directories whose content summary is cached, 0
+  // disables the cache
+  public static final String DFS_NAMENODE_CONTENT_SUMMARY_CACHE_SIZE_KEY =
+      "dfs.namenode.content-summary.cache.size";
+  public static final int DFS_NAMENODE_CONTENT_SUMMARY_CACHE_SIZE_DEFAULT = 0;
+  public static final String DFS_NAMENODE_CONTENT_SUMMARY_CACHE_PATHS_KEY =
+      "dfs.namenode.content-summary.cache.paths";
+  public static final String
+      DFS_NAMENODE_CONTENT_SUMMARY_CACHE_STALENESS_MS_KEY =
+      "dfs.namenode.content-summary.cache.staleness.ms";
+  public static final long
+      DFS_NAMENODE_CONTENT_SUMMARY_CACHE_STALENESS_MS_DEFAULT = 60000;
+  public static final String
+      DFS_NAMENODE_CONTENT_SUMMARY_CACHE_POPULARITY_KEY =
+      "dfs.namenode.content-summary.cache.popularity";
+  public static final int
+      DFS_NAMENODE_CONTENT_SUMMARY_CACHE_POPULARITY_DEFAULT = 10;
   public static final String DFS_NAMENODE_REPLICATION_CONSIDERLOAD_KEY =
       "dfs.namenode.replication.considerLoad";
   public static final boolean DFS_NAMENODE_REPLICATION_CONSIDERLOAD_DEFAULT =
@@ -556,6 +692,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.replication.work.multiplier.per.iteration";
   public static final int
       DFS_NAMENODE_REPLICATION_WORK_MULTIPLIER_PER_ITERATION_DEFAULT = 2;
+  public static final String DFS_NAMENODE_REPLICATION_DISTRIBUTED_KEY =
+      "dfs.namenode.replication.distributed";
+  public static final boolean DFS_NAMENODE_REPLICATION_DISTRIBUTED_DEFAULT =
+      false;
 
   //Delegation token related keys
   public static final String DFS_NAMENODE_DELEGATION_KEY_UPDATE_INTERVAL_KEY =
@@ -673,6 +813,16 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_DATANODE_HTTP_ADDRESS_DEFAULT = "0.0.0.0:" + DFS_DATANODE_HTTP_DEFAULT_PORT;
   public static final String  DFS_DATANODE_MAX_RECEIVER_THREADS_KEY = "dfs.datanode.max.transfer.threads";
   public static final int     DFS_DATANODE_MAX_RECEIVER_THREADS_DEFAULT = 4096;
+  public static final String  DFS_DATANODE_TRANSFER_NIO_ENABLED_KEY = "dfs.datanode.transfer.nio.enabled";
+  public static final boolean DFS_DATANODE_TRANSFER_NIO_ENABLED_DEFAULT = false;
+  public static final String  DFS_DATANODE_TRANSFER_SELECTOR_THREADS_KEY = "dfs.datanode.transfer.selector.threads";
+  public static final int     DFS_DATANODE_TRANSFER_SELECTOR_THREADS_DEFAULT = 2;
+  public static final String  DFS_DATANODE_TRANSFER_SENDER_THREADS_KEY = "dfs.datanode.transfer.sender.threads";
+  public static final int     DFS_DATANODE_TRANSFER_SENDER_THREADS_DEFAULT = 256;
+  public static final String  DFS_DATANODE_TRANSFER_RECEIVER_THREADS_KEY = "dfs.datanode.transfer.receiver.threads";
+  public static final int     DFS_DATANODE_TRANSFER_RECEIVER_THREADS_DEFAULT = 256;
+  public static final String  DFS_DATANODE_TRANSFER_MAX_QUEUED_OPS_KEY = "dfs.datanode.transfer.max.queued.ops";
+  public static final int     DFS_DATANODE_TRANSFER_MAX_QUEUED_OPS_DEFAULT = 1024;
 
   public static final String DFS_DATANODE_NUMBLOCKS_KEY =
       "dfs.datanode.numblocks";
@@ -18,6 +18,7 @@
 package org.apache.hadoop.hdfs;
 
 import com.google.common.annotations.VisibleForTesting;
+import io.hops.metadata.hdfs.entity.EncodingStatus;
 import java.io.FileInputStream;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.fs.ByteBufferReadable;
@@ -116,6 +117,18 @@ public class DFSInputStream extends FSInputStream
 
   private final int nCachedConnRetry;
 
+  /**
+   * Degraded reads decode the blocks of erasure coded files that have no
+   * live replica. The reader is created with the first missing block.
+   */
+  private boolean degradedReads;
+  private boolean failOnMissingBlocks = false;
+  private boolean encodingStatusFetched = false;
+  private DegradedReader degradedReader = null;
+  // the range of the block the stream is currently decoding
+  private long degradedBlockStart = -1;
+  private long degradedBlockEnd = -1;
+
   void addToDeadNodes(DatanodeInfo dnInfo) {
     deadNodes.put(dnInfo, dnInfo);
   }
@@ -135,6 +148,7 @@ void addToDeadNodes(DatanodeInfo dnInfo) {
     prefetchSize = dfsClient.getConf().prefetchSize;
     timeWindow = dfsClient.getConf().timeWindow;
     nCachedConnRetry = dfsClient.getConf().nCachedConnRetry;
+    degradedReads = dfsClient.getConf().degradedReadEnabled;
     this.emulateHdfsClient = emulateHdfsClient;
     openInfo();
   }
@@ -544,6 +558,10 @@ public synchronized void close() throws IOException {
       blockReader.close();
       blockReader = null;
     }
+    if (degradedReader != null) {
+      degradedReader.close();
+      degradedReader = null;
+    }
     super.close();
     fileInputStreamCache.close();
     closed = true;
@@ -562,6 +580,11 @@ public synchronized int read() throws IOException {
   private interface ReaderStrategy {
     public int doRead(BlockReader blockReader, int off, int len)
         throws ChecksumException, IOException;
+
+    /**
+     * Copy bytes that were decoded instead of read from a block.
+     */
+    public void copyFrom(byte[] decoded, int off, int len);
   }
 
   /**
@@ -579,6 +602,11 @@ public int doRead(BlockReader blockReader, int off, int len)
         throws ChecksumException, IOException {
       return blockReader.read(buf, off, len);
     }
+
+    @Override
+    public void copyFrom(byte[] decoded, int off, int len) {
+      System.arraycopy(decoded, 0, buf, off, len);
+    }
   }
 
   /**
@@ -609,6 +637,11 @@ public int doRead(BlockReader blockReader, int off, int len)
         }
       }
     }
+
+    @Override
+    public void copyFrom(byte[] decoded, int off, int len) {
+      buf.put(decoded, 0, len);
+    }
   }
 
   /* This is a used by regular read() and handles ChecksumExceptions.
@@ -680,14 +713,41 @@ private int readWithStrategy(ReaderStrategy strategy, int off, int len)
       int retries = 2;
       while (retries > 0) {
         try {
-          // currentNode can be left as null if previous read had a checksum
-          // error on the same block. See HDFS-3067
-          if (pos > blockEnd || currentNode == null) {
-            currentNode = blockSeekTo(pos);
+          int result;
+          if (pos >= degradedBlockStart && pos <= degradedBlockEnd) {
+            result = readDegraded(strategy, off, len);
+          } else {
+            try {
+              // currentNode can be left as null if previous read had a
+              // checksum error on the same block. See HDFS-3067
+              if (pos > blockEnd || currentNode == null) {
+                currentNode = blockSeekTo(pos);
+              }
+              int realLen = (int) Math.min(len, (blockEnd - pos + 1L));
+              result = readBuffer(strategy, off, realLen, corruptedBlockMap);
+            } catch (BlockMissingException e) {
+              if (getDegradedReader() == null) {
+                throw e;
+              }
+              // decode the rest of the block without trying its replicas
+              LocatedBlock blk = getBlockAt(pos, false);
+              degradedBlockStart = blk.getStartOffset();
+              degradedBlockEnd =
+                  blk.getStartOffset() + blk.getBlockSize() - 1;
+              blockEnd = -1;
+              currentNode = null;
+              try {
+                result = readDegraded(strategy, off, len);
+              } catch (IOException de) {
+                degradedBlockStart = -1;
+                degradedBlockEnd = -1;
+                DFSClient.LOG.warn("Could not decode " + blk.getBlock() +
+                    " of " + src, de);
+                throw e;
+              }
+            }
           }
-          int realLen = (int) Math.min(len, (blockEnd - pos + 1L));
-          int result = readBuffer(strategy, off, realLen, corruptedBlockMap);
-          
+
           if (result >= 0) {
             pos += result;
           } else {
@@ -760,6 +820,51 @@ private void addIntoCorruptedBlockMap(ExtendedBlock blk, DatanodeInfo node,
     }
   }
 
+  /**
+   * Decode the bytes at the current position up to the end of the block
+   * being decoded.
+   */
+  private int readDegraded(ReaderStrategy strategy, int off, int len)
+      throws IOException {
+    int realLen = (int) Math.min(Math.min(len, degradedBlockEnd - pos + 1L),
+        DegradedReader.DECODE_CHUNK_SIZE);
+    byte[] decoded = new byte[realLen];
+    degradedReader.read(pos, decoded, 0, realLen);
+    strategy.copyFrom(decoded, off, realLen);
+    return realLen;
+  }
+
+  /**
+   * @return the reader decoding the missing blocks of the file, or null if
+   * degraded reads are disabled or the file is not encoded
+   */
+  private synchronized DegradedReader getDegradedReader() {
+    if (!degradedReads || encodingStatusFetched) {
+      return degradedReader;
+    }
+    try {
+      EncodingStatus status = dfsClient.getEncodingStatus(src);
+      if (DegradedReader.canDecode(status)) {
+        degradedReader = new DegradedReader(dfsClient, src, status,
+            dfsClient.getFileInfo(src).getBlockSize());
+      }
+      encodingStatusFetched = true;
+    } catch (IOException e) {
+      DFSClient.LOG.warn("Could not set up degraded reads of " + src, e);
+    }
+    return degradedReader;
+  }
+
+  /**
+   * Used for the streams that read the stripes of a degraded read. They
+   * fail as soon as a block has no live replica instead of decoding it or
+   * waiting for the namenode to find one.
+   */
+  synchronized void disableDegradedReads() {
+    degradedReads = false;
+    failOnMissingBlocks = true;
+  }
+
   private DNAddrPair chooseDataNode(LocatedBlock block) throws IOException {
     while (true) {
       DatanodeInfo[] nodes = block.getLocations();
@@ -774,7 +879,8 @@ private DNAddrPair chooseDataNode(LocatedBlock block) throws IOException {
         return new DNAddrPair(chosenNode, targetAddr);
       } catch (IOException ie) {
         String blockInfo = block.getBlock() + " file=" + src;
-        if (failures >= dfsClient.getMaxBlockAcquireFailures()) {
+        if (failures >= dfsClient.getMaxBlockAcquireFailures() ||
+            failOnMissingBlocks || getDegradedReader() != null) {
           throw new BlockMissingException(src,
               "Could not obtain block: " + blockInfo, block.getStartOffset());
         }
@@ -1103,6 +1209,18 @@ public int read(long position, byte[] buffer, int offset, int length)
       try {
         fetchBlockByteRange(blk, targetStart, targetStart + bytesToRead - 1,
             buffer, offset, corruptedBlockMap);
+      } catch (BlockMissingException e) {
+        DegradedReader reader = getDegradedReader();
+        if (reader == null) {
+          throw e;
+        }
+        try {
+          reader.read(position, buffer, offset, (int) bytesToRead);
+        } catch (IOException de) {
+          DFSClient.LOG.warn("Could not decode " + blk.getBlock() + " of " +
+              src, de);
+          throw e;
+        }
       } finally {
         // Check and report if any block replicas are corrupted.
         // BlockMissingException may be caught if all block replicas are
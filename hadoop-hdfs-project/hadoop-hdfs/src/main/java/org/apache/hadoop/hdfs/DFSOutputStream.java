@@ -56,6 +56,7 @@
 import org.apache.hadoop.hdfs.security.token.block.InvalidBlockTokenException;
 import org.apache.hadoop.hdfs.server.namenode.NotReplicatedYetException;
 import org.apache.hadoop.hdfs.server.namenode.SafeModeException;
+import org.apache.hadoop.hdfs.util.DirectBufferPool;
 import org.apache.hadoop.io.EnumSetWritable;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.ipc.RemoteException;
@@ -80,7 +81,9 @@
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -90,6 +93,7 @@
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.Status.SUCCESS;
 
@@ -124,6 +128,11 @@ public class DFSOutputStream extends FSOutputSummer implements Syncable {
 
   private final DFSClient dfsClient;
   private static final int MAX_PACKETS = 80; // each packet 64K, total 5MB
+  // Packet buffers are returned once the packet is acked, or when the
+  // stream is closed or aborted
+  private static final DirectBufferPool packetBufferPool =
+      new DirectBufferPool();
+  private static final AtomicInteger packetBuffersInUse = new AtomicInteger();
   private Socket s;
   // closed is accessed by different threads under different locks.
   private volatile boolean closed = false;
@@ -136,6 +145,8 @@ public class DFSOutputStream extends FSOutputSummer implements Syncable {
   private final LinkedList<Packet> dataQueue = new LinkedList<>();
   private final LinkedList<Packet> ackQueue = new LinkedList<>();
   private Packet currentPacket = null;
+  // copy of a packet for streams that cannot be written from a direct buffer
+  private byte[] packetScratch;
   private DataStreamer streamer;
   private long currentSeqno = 0;
   private long lastQueuedSeqno = -1;
@@ -165,6 +176,8 @@ public class DFSOutputStream extends FSOutputSummer implements Syncable {
   private List<LocatedBlock> sourceBlocks = Collections.emptyList();
   private List<DatanodeInfo> stripeNodes = new LinkedList<>();
   private List<DatanodeInfo> parityStripeNodes = new LinkedList<>();
+  // computes the parity while the file is written, if enabled
+  private OnlineEncoder onlineEncoder;
 
   //this queue holds data for small files that are stored in the database.
   //when the file is closed the data is send to a NameNode in the close RPC
@@ -190,26 +203,30 @@ private class Packet {
     int numChunks;           // number of chunks currently in packet
     int maxChunks;           // max chunks in packet
 
-    byte[] buf;
+    // direct buffer from packetBufferPool, null once released. Its position
+    // and limit are only used within the methods of the packet.
+    ByteBuffer buf;
 
     /**
      * buf is pointed into like follows:
      * (C is checksum data, D is payload data)
      * <p/>
      * [_________CCCCCCCCC________________DDDDDDDDDDDDDDDD___]
-     * ^        ^               ^               ^
-     * |        checksumPos     dataStart       dataPos
-     * checksumStart
+     * ^        ^                        ^               ^
+     * |        checksumStart            dataStart       dataPos
+     * headerStart
      * <p/>
-     * Right before sending, we move the checksum data to immediately precede
-     * the actual data, and then insert the header into the buffer immediately
-     * preceding the checksum data, so we make sure to keep enough space in
-     * front of the checksum data to support the largest conceivable header.
+     * Only the data is copied in while the packet is filled. Right before
+     * sending, the checksums of the chunks are computed in place
+     * immediately preceding the data, and the header is inserted
+     * immediately preceding the checksums, so we make sure to keep enough
+     * space in front of the data for the checksums of all chunks and the
+     * largest conceivable header.
      */
     int checksumStart;
-    int checksumPos;
     int dataStart;
     int dataPos;
+    private final int dataEnd;
 
     private static final long HEART_BEAT_SEQNO = -1L;
 
@@ -222,10 +239,11 @@ private class Packet {
       this.offsetInBlock = 0;
       this.seqno = HEART_BEAT_SEQNO;
 
-      buf = new byte[PacketHeader.PKT_MAX_HEADER_LEN];
+      buf = packetBufferPool.getBuffer(PacketHeader.PKT_MAX_HEADER_LEN);
+      packetBuffersInUse.incrementAndGet();
 
-      checksumStart =
-              checksumPos = dataPos = dataStart = PacketHeader.PKT_MAX_HEADER_LEN;
+      checksumStart = dataPos = dataStart = dataEnd =
+          PacketHeader.PKT_MAX_HEADER_LEN;
       maxChunks = 0;
     }
 
@@ -246,66 +264,110 @@ private class Packet {
       this.seqno = currentSeqno;
       currentSeqno++;
 
-      buf = new byte[PacketHeader.PKT_MAX_HEADER_LEN + pktSize];
+      // Packets at the end of a block are smaller, take buffers of the size
+      // of a full packet so that they can be reused for any packet
+      buf = packetBufferPool.getBuffer(PacketHeader.PKT_MAX_HEADER_LEN +
+          Math.max(pktSize, dfsClient.getConf().writePacketSize));
+      packetBuffersInUse.incrementAndGet();
 
       checksumStart = PacketHeader.PKT_MAX_HEADER_LEN;
-      checksumPos = checksumStart;
       dataStart = checksumStart + (chunksPerPkt * checksum.getChecksumSize());
       dataPos = dataStart;
+      dataEnd = PacketHeader.PKT_MAX_HEADER_LEN + pktSize;
       maxChunks = chunksPerPkt;
     }
 
     void writeData(byte[] inarray, int off, int len) {
-      if (dataPos + len > buf.length) {
+      if (dataPos + len > dataEnd) {
         throw new BufferOverflowException();
       }
-      System.arraycopy(inarray, off, buf, dataPos, len);
+      buf.clear();
+      buf.position(dataPos);
+      buf.put(inarray, off, len);
       dataPos += len;
     }
 
-    void writeChecksum(byte[] inarray, int off, int len) {
-      if (checksumPos + len > dataStart) {
-        throw new BufferOverflowException();
-      }
-      System.arraycopy(inarray, off, buf, checksumPos, len);
-      checksumPos += len;
-    }
-
     /**
-     * Write the full packet, including the header, to the given output stream.
+     * Write the full packet, including the header, to the given output
+     * stream. If the stream sends to a socket channel, the packet is written
+     * to the channel from the direct buffer instead of being copied into
+     * the stream.
+     *
+     * @param stm
+     *     the stream to the first datanode of the pipeline
+     * @param channel
+     *     the channel under stm, or null if the data has to go through stm
      */
-    void writeTo(DataOutputStream stm) throws IOException {
+    void writeTo(DataOutputStream stm, WritableByteChannel channel)
+        throws IOException {
       final int dataLen = dataPos - dataStart;
-      final int checksumLen = checksumPos - checksumStart;
+      final int checksumLen = numChunks * checksum.getChecksumSize();
       final int pktLen = HdfsConstants.BYTES_IN_INTEGER + dataLen + checksumLen;
 
       PacketHeader header =
               new PacketHeader(pktLen, offsetInBlock, seqno, lastPacketInBlock,
                       dataLen, syncBlock);
 
-      if (checksumPos != dataStart) {
-        // Move the checksum to cover the gap. This can happen for the last
-        // packet or during an hflush/hsync call.
-        System.arraycopy(buf, checksumStart, buf, dataStart - checksumLen,
-                checksumLen);
-        checksumPos = dataStart;
-        checksumStart = checksumPos - checksumLen;
+      // Compute the checksums of the chunks in place, immediately preceding
+      // the data. A packet sent again after a pipeline recovery gets the
+      // same checksums.
+      checksumStart = dataStart - checksumLen;
+      if (checksumLen > 0) {
+        ByteBuffer sums = buf.duplicate();
+        sums.clear();
+        sums.position(checksumStart);
+        buf.clear();
+        buf.limit(dataPos);
+        buf.position(dataStart);
+        checksum.calculateChunkedSums(buf, sums);
       }
 
       final int headerStart = checksumStart - header.getSerializedSize();
       assert checksumStart + 1 >= header.getSerializedSize();
-      assert checksumPos == dataStart;
       assert headerStart >= 0;
-      assert headerStart + header.getSerializedSize() == checksumStart;
 
-      // Copy the header data into the buffer immediately preceding the checksum
+      // Put the header into the buffer immediately preceding the checksum
       // data.
-      System.arraycopy(header.getBytes(), 0, buf, headerStart,
-              header.getSerializedSize());
+      buf.clear();
+      buf.position(headerStart);
+      header.putInBuffer(buf);
+      assert buf.position() == checksumStart;
+
+      // Write the now contiguous full packet.
+      buf.limit(dataPos);
+      buf.position(headerStart);
+      if (channel != null) {
+        stm.flush();
+        while (buf.hasRemaining()) {
+          channel.write(buf);
+        }
+      } else {
+        int len = buf.remaining();
+        byte[] scratch = getPacketScratch(len);
+        buf.get(scratch, 0, len);
+        stm.write(scratch, 0, len);
+      }
+    }
 
-      // Write the now contiguous full packet to the output stream.
-      stm.write(buf, headerStart,
-              header.getSerializedSize() + checksumLen + dataLen);
+    /**
+     * Copy the data of the packet into the given array.
+     */
+    void getData(byte[] dst, int off) {
+      buf.clear();
+      buf.position(dataStart);
+      buf.get(dst, off, dataPos - dataStart);
+    }
+
+    /**
+     * Return the buffer of the packet to the pool. The packet must not be
+     * used anymore.
+     */
+    void releaseBuffer() {
+      if (buf != null) {
+        packetBufferPool.returnBuffer(buf);
+        packetBuffersInUse.decrementAndGet();
+        buf = null;
+      }
     }
 
     // get the packet's last byte's offset in the block
@@ -331,6 +393,17 @@ public String toString() {
     }
   }
 
+  /**
+   * @return an array of at least len bytes to copy packets into, only used
+   * by the streamer thread
+   */
+  private byte[] getPacketScratch(int len) {
+    if (packetScratch == null || packetScratch.length < len) {
+      packetScratch = new byte[len];
+    }
+    return packetScratch;
+  }
+
   //
   // The DataStreamer class is responsible for sending data packets to the
   // datanodes in the pipeline. It retrieves a new blockid and block locations
@@ -344,6 +417,8 @@ class DataStreamer extends Daemon {
     private ExtendedBlock block; // its length is number of bytes acked
     private Token<BlockTokenIdentifier> accessToken;
     private DataOutputStream blockStream;
+    // the socket channel under blockStream, null if the data is encrypted
+    private WritableByteChannel blockChannel;
     private DataInputStream blockReplyStream;
     private ResponseProcessor response = null;
     // list of targets for current block
@@ -624,13 +699,17 @@ public void run() {
 
           // write out data to remote datanode
           try {
-            one.writeTo(blockStream);
+            one.writeTo(blockStream, blockChannel);
             blockStream.flush();
           } catch (IOException e) {
             // HDFS-3398 treat primary DN is down since client is unable to 
             // write to primary DN 
             errorIndex = 0;
             throw e;
+          } finally {
+            if (one.isHeartbeatPacket()) {
+              one.releaseBuffer();
+            }
           }
           lastPacket = Time.now();
 
@@ -733,6 +812,7 @@ private void closeStream() {
           setLastException(e);
         } finally {
           blockStream = null;
+          blockChannel = null;
         }
       }
       if (blockReplyStream != null) {
@@ -824,6 +904,7 @@ public void run() {
               ackQueue.removeFirst();
               dataQueue.notifyAll();
             }
+            one.releaseBuffer();
           } catch (Exception e) {
             if (!responderClosed) {
               if (e instanceof IOException) {
@@ -887,6 +968,7 @@ private boolean processDatanodeError() throws IOException {
             assert endOfBlockPacket.lastPacketInBlock;
             assert lastAckedSeqno == endOfBlockPacket.seqno - 1;
             lastAckedSeqno = endOfBlockPacket.seqno;
+            endOfBlockPacket.releaseBuffer();
             dataQueue.notifyAll();
           }
           endBlock();
@@ -1334,6 +1416,8 @@ private boolean createBlockOutputStream(DatanodeInfo[] nodes,
           }
           assert null == blockStream : "Previous blockStream unclosed";
           blockStream = out;
+          blockChannel = unbufOut instanceof WritableByteChannel ?
+              (WritableByteChannel) unbufOut : null;
           result = true; // success
 
         } catch (IOException ie) {
@@ -1512,7 +1596,11 @@ private DFSOutputStream(DFSClient dfsClient, String src, Progressable progress,
       DataChecksum checksum, boolean saveSmallFilesInDB,
       final int dbFileMaxSize)
           throws IOException {
-    super(checksum, checksum.getBytesPerChecksum(), checksum.getChecksumSize());
+    // The summer only cuts the data into chunks, the checksums of a packet
+    // are computed at once in Packet#writeTo
+    super(DataChecksum.newDataChecksum(DataChecksum.Type.NULL,
+            checksum.getBytesPerChecksum()), checksum.getBytesPerChecksum(),
+        checksum.getChecksumSize());
     this.dfsClient = dfsClient;
     this.src = src;
     this.fileId = stat.getFileId();
@@ -1548,7 +1636,8 @@ private DFSOutputStream(DFSClient dfsClient, String src, Progressable progress,
   private DFSOutputStream(DFSClient dfsClient, String src, HdfsFileStatus stat,
                           EnumSet<CreateFlag> flag, Progressable progress,
                           DataChecksum checksum, String[] favoredNodes,
-                          EncodingPolicy policy, boolean saveSmallFilesInDB, final int dbFileMaxSize)
+                          EncodingPolicy policy, OnlineEncoder onlineEncoder,
+                          boolean saveSmallFilesInDB, final int dbFileMaxSize)
           throws IOException {
     this(dfsClient, src, progress, stat, checksum, saveSmallFilesInDB, dbFileMaxSize);
     this.shouldSyncBlock = flag.contains(CreateFlag.SYNC_BLOCK);
@@ -1559,6 +1648,13 @@ private DFSOutputStream(DFSClient dfsClient, String src, HdfsFileStatus stat,
         throw new IOException("Unkown codec: " + policy.getCodec());
       }
       enableSourceStream(codec.getStripeLength());
+      if (onlineEncoder != null) {
+        this.onlineEncoder = onlineEncoder;
+        onlineEncoder.sourceCreated(stat.getStoragePolicy());
+        // The parity only protects blocks stored on datanodes
+        this.saveSmallFilesInDB = false;
+        this.isThisFileStoredInDB = false;
+      }
     }
 
     computePacketChunkSize(dfsClient.getConf().writePacketSize,
@@ -1576,22 +1672,43 @@ static DFSOutputStream newStreamForCreate(DFSClient dfsClient, String src,
       DataChecksum checksum, String[] favoredNodes,
       EncodingPolicy policy, boolean saveSmallFilesInDB,
       final int dbFileMaxSize) throws IOException {
-    final HdfsFileStatus stat;
+    OnlineEncoder onlineEncoder = null;
+    if (policy != null && dfsClient.getConf().onlineEncodingEnabled) {
+      try {
+        onlineEncoder = new OnlineEncoder(dfsClient, src, policy, blockSize,
+            replication);
+        // The parity written along with the file replaces the extra replicas
+        replication = onlineEncoder.getReplication();
+      } catch (IOException e) {
+        DFSClient.LOG.warn("Not encoding " + src + " while writing it", e);
+      }
+    }
+    boolean started = false;
     try {
-      stat = dfsClient.create(src, masked, dfsClient.clientName,
-          new EnumSetWritable<>(flag), createParent, replication,
-              blockSize, policy);
-    } catch (RemoteException re) {
-      throw re.unwrapRemoteException(AccessControlException.class,
-              DSQuotaExceededException.class, FileAlreadyExistsException.class,
-              FileNotFoundException.class, ParentNotDirectoryException.class,
-              NSQuotaExceededException.class, SafeModeException.class,
-              UnresolvedPathException.class);
-    }
-    final DFSOutputStream out = new DFSOutputStream(dfsClient, src, stat,
-        flag, progress, checksum,favoredNodes, policy,saveSmallFilesInDB, dbFileMaxSize);
-    out.start();
-    return out;
+      final HdfsFileStatus stat;
+      try {
+        stat = dfsClient.create(src, masked, dfsClient.clientName,
+            new EnumSetWritable<>(flag), createParent, replication,
+                blockSize, policy);
+      } catch (RemoteException re) {
+        throw re.unwrapRemoteException(AccessControlException.class,
+                DSQuotaExceededException.class, FileAlreadyExistsException.class,
+                FileNotFoundException.class, ParentNotDirectoryException.class,
+                NSQuotaExceededException.class, SafeModeException.class,
+                UnresolvedPathException.class);
+      }
+      final DFSOutputStream out = new DFSOutputStream(dfsClient, src, stat,
+          flag, progress, checksum,favoredNodes, policy, onlineEncoder,
+          saveSmallFilesInDB, dbFileMaxSize);
+      out.start();
+      started = true;
+      return out;
+    } finally {
+      if (!started && onlineEncoder != null) {
+        // Release the parity buffers
+        onlineEncoder.abort();
+      }
+    }
   }
 
 //  static DFSOutputStream newStreamForCreate(DFSClient dfsClient, String src,
@@ -1809,7 +1926,6 @@ protected synchronized void writeChunk(byte[] b, int offset, int len,
     dfsClient.checkOpen();
     isClosed();
 
-    int cklen = checksum.length;
     int bytesPerChecksum = this.checksum.getBytesPerChecksum();
     if (len > bytesPerChecksum) {
       throw new IOException("writeChunk() buffer size is " + len +
@@ -1835,10 +1951,12 @@ protected synchronized void writeChunk(byte[] b, int offset, int len,
       }
     }
 
-    currentPacket.writeChecksum(checksum, 0, cklen);
+    // The checksums are computed for the whole packet when it is sent
     currentPacket.writeData(b, offset, len);
     currentPacket.numChunks++;
     bytesCurBlock += len;
+    boolean stripeComplete = onlineEncoder != null &&
+        onlineEncoder.write(bytesCurBlock - len, b, offset, len);
 
     // If packet is full, enqueue it for transmission
     //
@@ -1880,6 +1998,13 @@ protected synchronized void writeChunk(byte[] b, int offset, int len,
         lastFlushOffset = 0;
       }
     }
+
+    if (stripeComplete) {
+      // Wait for the last block of the stripe to be allocated so that its
+      // parity avoids the datanodes of the whole stripe
+      flushInternal();
+      onlineEncoder.writeStripe(new ArrayList<>(getUsedNodes()));
+    }
   }
 
   @Override
@@ -2145,6 +2270,9 @@ synchronized void abort() throws IOException {
             (dfsClient.hdfsTimeout / 1000) + " seconds expired."));
     closeThreads(true);
     dfsClient.endFileLease(src);
+    if (onlineEncoder != null) {
+      onlineEncoder.abort();
+    }
   }
 
   // shutdown datastreamer and responseprocessor threads.
@@ -2153,6 +2281,9 @@ private void closeThreads(boolean force) throws IOException {
     try {
       streamer.close(force);
       streamer.join();
+      // The streamer joined the response processor, nothing sends or acks
+      // the queued packets anymore
+      releasePackets();
       if (s != null) {
         s.close();
       }
@@ -2165,6 +2296,34 @@ private void closeThreads(boolean force) throws IOException {
     }
   }
 
+  /**
+   * Return the buffers of the packets that were not acked, and of the
+   * packets held back for a small file, to the pool.
+   */
+  private void releasePackets() {
+    synchronized (dataQueue) {
+      releasePackets(dataQueue);
+      releasePackets(ackQueue);
+      releasePackets(smallFileDataQueue);
+      if (currentPacket != null) {
+        currentPacket.releaseBuffer();
+        currentPacket = null;
+      }
+    }
+  }
+
+  private static void releasePackets(LinkedList<Packet> packets) {
+    for (Packet packet : packets) {
+      packet.releaseBuffer();
+    }
+    packets.clear();
+  }
+
+  @VisibleForTesting
+  static int getPacketBuffersInUse() {
+    return packetBuffersInUse.get();
+  }
+
   /**
    * Closes this output stream and releases any system
    * resources associated with this stream.
@@ -2194,7 +2353,19 @@ public synchronized void close() throws IOException {
       }
     }
     finally {
+      if (streamer != null) {
+        // The file could not be closed, stop sending the queued packets
+        try {
+          closeThreads(true);
+        } catch (IOException e) {
+          DFSClient.LOG.warn("Failed to close streamer of " + src, e);
+        }
+      }
       closed = true;
+      if (onlineEncoder != null) {
+        // no-op once the encoding completed
+        onlineEncoder.abort();
+      }
     }
   }
 
@@ -2214,11 +2385,17 @@ private void closeInternal() throws  IOException{
     }
 
     flushInternal();             // flush all data to Datanodes
+    if (onlineEncoder != null) {
+      onlineEncoder.close(new ArrayList<>(getUsedNodes()));
+    }
     // get last block before destroying the streamer
     ExtendedBlock lastBlock = streamer.getBlock();
     completeFile(lastBlock);
     closeThreads(false);
     dfsClient.endFileLease(src);
+    if (onlineEncoder != null) {
+      onlineEncoder.complete();
+    }
   }
 
   // should be called holding (this) lock since setTestFilename() may 
@@ -2282,6 +2459,13 @@ private boolean completeFileInternal(ExtendedBlock last) throws IOException {
     try {
       fileComplete =
               dfsClient.complete(src, dfsClient.clientName, last, data);
+      if (fileComplete && data != null) {
+        // The data is stored in the database, the packets are not needed
+        // anymore
+        synchronized (dataQueue) {
+          releasePackets(smallFileDataQueue);
+        }
+      }
     } catch (RemoteException e) {
       IOException nonRetirableExceptions =
               e.unwrapRemoteException(NSQuotaExceededException.class,
@@ -2304,8 +2488,7 @@ private byte[] getSmallFileData(){
         int length = 0;
         for (Packet packet : smallFileDataQueue) {
           LOG.debug("Stuffed Inode:  No: " + packet.seqno + " " + packet.dataStart + " " + packet.dataPos + " " + packet
-                  .checksumStart + " " + packet
-                  .checksumPos + " " + packet.buf.length);
+                  .checksumStart + " " + packet.buf.capacity());
           if (!packet.isHeartbeatPacket()) {
             length += (packet.dataPos - packet.dataStart);
           }
@@ -2314,7 +2497,7 @@ private byte[] getSmallFileData(){
         data = new byte[length];
         int index = 0;
         for (Packet packet : smallFileDataQueue) {
-          System.arraycopy(packet.buf, packet.dataStart, data, index, (packet.dataPos - packet.dataStart));
+          packet.getData(data, index);
           index += (packet.dataPos - packet.dataStart);
         }
       }
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.hops.erasure_coding.Codec;
+import io.hops.erasure_coding.ErasureCode;
+import io.hops.metadata.hdfs.entity.EncodingStatus;
+import org.apache.hadoop.fs.ChecksumException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reconstructs byte ranges of a lost block of an erasure coded file from the
+ * other blocks of its stripe and from the parity file.
+ * <p/>
+ * Only the requested range is decoded: the same range of the blocks chosen
+ * by {@link ErasureCode#locationsToReadForDecode} is read in parallel with
+ * positional reads and decoded with the codec of the file. A block that
+ * cannot be read either is added to the erased locations and the range is
+ * decoded again from the remaining blocks. The streams on the source and
+ * parity files fail as soon as a block is missing, they never decode or wait
+ * themselves.
+ */
+class DegradedReader {
+
+  /**
+   * The maximum number of bytes of each block decoded at once.
+   */
+  static final int DECODE_CHUNK_SIZE = 1024 * 1024;
+
+  private static ExecutorService executor;
+
+  private final DFSClient dfsClient;
+  private final String src;
+  private final String parityPath;
+  private final long blockSize;
+  private final ErasureCode code;
+  private final int stripeLength;
+  private final int parityLength;
+  private DFSInputStream sourceStream;
+  private DFSInputStream parityStream;
+  private long parityBlockSize;
+
+  DegradedReader(DFSClient dfsClient, String src, EncodingStatus status,
+      long blockSize) throws IOException {
+    Codec codec = Codec.getCodec(status.getEncodingPolicy().getCodec());
+    if (codec == null) {
+      throw new IOException(
+          "Unknown codec " + status.getEncodingPolicy().getCodec());
+    }
+    try {
+      this.code = codec.createErasureCode(dfsClient.conf);
+    } catch (RuntimeException e) {
+      throw new IOException("Could not create the erasure code of " + codec,
+          e);
+    }
+    this.dfsClient = dfsClient;
+    this.src = src;
+    this.parityPath = dfsClient.conf.get(DFSConfigKeys.PARITY_FOLDER,
+        DFSConfigKeys.DEFAULT_PARITY_FOLDER) + "/" +
+        status.getParityFileName();
+    this.blockSize = blockSize;
+    this.stripeLength = code.stripeSize();
+    this.parityLength = code.paritySize();
+    initExecutor(dfsClient.getConf().degradedReadThreads);
+  }
+
+  /**
+   * @return true if the parity file of the given status can be used to
+   * decode lost blocks
+   */
+  static boolean canDecode(EncodingStatus status) {
+    if (status == null || status.getParityFileName() == null ||
+        status.getEncodingPolicy() == null) {
+      return false;
+    }
+    switch (status.getStatus()) {
+      case ENCODED:
+      case REPAIR_REQUESTED:
+      case REPAIR_ACTIVE:
+      case REPAIR_FAILED:
+      case REPAIR_CANCELED:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static synchronized void initExecutor(int threads) {
+    if (executor == null) {
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60,
+          TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("DegradedReader-%d").build());
+      pool.allowCoreThreadTimeOut(true);
+      executor = pool;
+    }
+  }
+
+  /**
+   * Decode a range of the source file that lies within a single block.
+   *
+   * @param position
+   *     the position of the range in the source file
+   * @param buf
+   *     the buffer to decode into
+   * @param off
+   *     offset into buf
+   * @param len
+   *     the length of the range
+   */
+  void read(long position, byte[] buf, int off, int len) throws IOException {
+    while (len > 0) {
+      int chunk = Math.min(len, DECODE_CHUNK_SIZE);
+      decode(position, buf, off, chunk);
+      position += chunk;
+      off += chunk;
+      len -= chunk;
+    }
+  }
+
+  synchronized void close() throws IOException {
+    try {
+      if (sourceStream != null) {
+        sourceStream.close();
+      }
+    } finally {
+      sourceStream = null;
+      if (parityStream != null) {
+        parityStream.close();
+      }
+      parityStream = null;
+    }
+  }
+
+  private void decode(long position, byte[] buf, int off, int len)
+      throws IOException {
+    long blockIdx = position / blockSize;
+    long stripeIdx = blockIdx / stripeLength;
+    long offsetInBlock = position - blockIdx * blockSize;
+    int erasedLocation = parityLength + (int) (blockIdx % stripeLength);
+    openStreams();
+
+    List<Integer> erasedLocations = new ArrayList<>();
+    erasedLocations.add(erasedLocation);
+    while (true) {
+      // Throws TooManyErasedLocations once the stripe cannot be decoded
+      List<Integer> locationsToRead =
+          code.locationsToReadForDecode(erasedLocations);
+      byte[][] readBufs = new byte[stripeLength + parityLength][];
+      List<Future<byte[]>> reads = new ArrayList<>(locationsToRead.size());
+      for (int location : locationsToRead) {
+        reads.add(executor.submit(
+            new LocationReader(stripeIdx, location, offsetInBlock, len)));
+      }
+
+      boolean failed = false;
+      for (int i = 0; i < reads.size(); i++) {
+        int location = locationsToRead.get(i);
+        try {
+          readBufs[location] = reads.get(i).get();
+        } catch (InterruptedException e) {
+          cancel(reads);
+          throw new InterruptedIOException(
+              "Interrupted while decoding " + src + " at " + position);
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (!(cause instanceof BlockMissingException ||
+              cause instanceof ChecksumException)) {
+            cancel(reads);
+            throw cause instanceof IOException ? (IOException) cause :
+                new IOException(cause);
+          }
+          DFSClient.LOG.warn("Could not read location " + location +
+              " of stripe " + stripeIdx + " of " + src + ": " + cause);
+          erasedLocations.add(location);
+          failed = true;
+        }
+      }
+      if (failed) {
+        continue;
+      }
+
+      int[] locationsToReadArray = new int[locationsToRead.size()];
+      int[] locationsNotToReadArray =
+          new int[readBufs.length - locationsToRead.size()];
+      int toRead = 0;
+      int notToRead = 0;
+      for (int location = 0; location < readBufs.length; location++) {
+        if (readBufs[location] != null) {
+          locationsToReadArray[toRead++] = location;
+        } else {
+          locationsNotToReadArray[notToRead++] = location;
+          readBufs[location] = new byte[len];
+        }
+      }
+      byte[][] writeBufs = new byte[][]{new byte[len]};
+      code.decodeBulk(readBufs, writeBufs, new int[]{erasedLocation},
+          locationsToReadArray, locationsNotToReadArray);
+      System.arraycopy(writeBufs[0], 0, buf, off, len);
+      return;
+    }
+  }
+
+  private synchronized void openStreams() throws IOException {
+    if (sourceStream == null) {
+      sourceStream = openStream(src);
+    }
+    if (parityStream == null) {
+      parityStream = openStream(parityPath);
+      parityBlockSize = dfsClient.getFileInfo(parityPath).getBlockSize();
+    }
+  }
+
+  private DFSInputStream openStream(String path) throws IOException {
+    DFSInputStream stream = new DFSInputStream(dfsClient, path,
+        dfsClient.getConf().ioBufferSize, true, false);
+    stream.disableDegradedReads();
+    return stream;
+  }
+
+  private static void cancel(List<Future<byte[]>> reads) {
+    for (Future<byte[]> read : reads) {
+      read.cancel(true);
+    }
+  }
+
+  /**
+   * Reads the range of one location of a stripe. Blocks past the end of
+   * their file are treated as zeros, as they were when encoding it.
+   */
+  private class LocationReader implements Callable<byte[]> {
+    private final long stripeIdx;
+    private final int location;
+    private final long offsetInBlock;
+    private final int len;
+
+    LocationReader(long stripeIdx, int location, long offsetInBlock,
+        int len) {
+      this.stripeIdx = stripeIdx;
+      this.location = location;
+      this.offsetInBlock = offsetInBlock;
+      this.len = len;
+    }
+
+    @Override
+    public byte[] call() throws IOException {
+      DFSInputStream stream;
+      long position;
+      if (location < parityLength) {
+        stream = parityStream;
+        position = (stripeIdx * parityLength + location) * parityBlockSize +
+            offsetInBlock;
+      } else {
+        stream = sourceStream;
+        position = (stripeIdx * stripeLength + location - parityLength) *
+            blockSize + offsetInBlock;
+      }
+      byte[] buf = new byte[len];
+      long available = stream.getFileLength() - position;
+      if (available > 0) {
+        stream.readFully(position, buf, 0, (int) Math.min(len, available));
+      }
+      return buf;
+    }
+  }
+}
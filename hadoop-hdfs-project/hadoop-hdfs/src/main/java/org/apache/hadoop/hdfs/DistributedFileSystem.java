@@ -47,6 +47,7 @@
 import org.apache.hadoop.hdfs.client.HdfsDataInputStream;
 import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
 import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
+import org.apache.hadoop.hdfs.protocol.BulkFileInfo;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.DirectoryListing;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
@@ -1050,6 +1051,52 @@ public FileStatus getFileStatus(Path f) throws IOException {
     }
   }
 
+  /**
+   * Returns the stat information about many paths, fetched from the namenode
+   * in a few calls instead of one call per path.
+   *
+   * @return the statuses in the order of the paths, null for the paths that
+   * do not exist
+   * @throws IOException
+   *     the error of the first path that could not be read
+   */
+  public FileStatus[] getFileStatuses(Path[] paths) throws IOException {
+    BulkFileInfo infos = getFileInfos(paths, false);
+    FileStatus[] statuses = new FileStatus[paths.length];
+    for (int i = 0; i < paths.length; i++) {
+      HdfsFileStatus fi = infos.getFileInfo(i);
+      statuses[i] = fi == null ? null : makeQualified(fi, paths[i]);
+    }
+    return statuses;
+  }
+
+  /**
+   * Same as {@link #getFileStatuses(Path[])}, with the locations of all the
+   * blocks of the files. This replaces one getFileBlockLocations call per
+   * file, e.g. when computing the splits of many input files.
+   */
+  public LocatedFileStatus[] getLocatedFileStatuses(Path[] paths)
+      throws IOException {
+    BulkFileInfo infos = getFileInfos(paths, true);
+    LocatedFileStatus[] statuses = new LocatedFileStatus[paths.length];
+    for (int i = 0; i < paths.length; i++) {
+      HdfsFileStatus fi = infos.getFileInfo(i);
+      statuses[i] = fi == null ? null :
+          makeQualifiedLocated((HdfsLocatedFileStatus) fi, paths[i]);
+    }
+    return statuses;
+  }
+
+  private BulkFileInfo getFileInfos(Path[] paths, boolean needLocation)
+      throws IOException {
+    String[] srcs = new String[paths.length];
+    for (int i = 0; i < paths.length; i++) {
+      srcs[i] = getPathName(paths[i]);
+    }
+    statistics.incrementLargeReadOps(1);
+    return dfs.getFileInfos(srcs, needLocation);
+  }
+
   @Override
   public MD5MD5CRC32FileChecksum getFileChecksum(Path f) throws IOException {
     statistics.incrementReadOps(1);
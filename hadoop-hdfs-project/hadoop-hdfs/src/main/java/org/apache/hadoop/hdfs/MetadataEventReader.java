@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hdfs.protocol.MetadataEvent;
+import org.apache.hadoop.hdfs.protocol.MetadataEventBatch;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.security.AccessControlException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Follows the changes of the meta enabled datasets of the whole namespace.
+ * <p/>
+ * Every namenode streams the changes committed by its own transactions, so
+ * the reader keeps a cursor per namenode and each call of {@link #poll()}
+ * reads the next batch of every alive namenode. The events of one namenode
+ * are returned in commit order. When the events a poll returns for one inode
+ * come from several namenodes, they are merged by their logical time. An
+ * event of a namenode that was not reached in time can still arrive in a
+ * later poll than a newer event of the same inode from another namenode.
+ * <p/>
+ * {@link #getResumeToken()} captures the cursors, a reader created with the
+ * token continues where the previous one stopped as long as the namenodes
+ * did not restart or drop the events from their buffer in the meantime.
+ * <p/>
+ * The namenodes only keep their events in memory, the events a namenode did
+ * not hand out yet are gone when it dies or restarts. {@link #isEventsLost()}
+ * reports it, as well as events dropped from the buffer of a namenode, the
+ * complete history stays available in the metadata log tables.
+ */
+public class MetadataEventReader {
+
+  static final Log LOG = LogFactory.getLog(MetadataEventReader.class);
+
+  private static final Comparator<MetadataEvent> LOGICAL_TIME_ORDER =
+      new Comparator<MetadataEvent>() {
+        @Override
+        public int compare(MetadataEvent e1, MetadataEvent e2) {
+          return Integer.compare(e1.getLogicalTime(), e2.getLogicalTime());
+        }
+      };
+
+  private static class Cursor {
+    private long epoch;
+    private long position;
+
+    Cursor(long epoch, long position) {
+      this.epoch = epoch;
+      this.position = position;
+    }
+  }
+
+  private final DFSClient dfsClient;
+  private final int maxEvents;
+  private final Map<Long, Cursor> cursors = new HashMap<>();
+  private boolean eventsLost;
+  private boolean started;
+
+  MetadataEventReader(DFSClient dfsClient, int maxEvents,
+      String resumeToken) {
+    this.dfsClient = dfsClient;
+    this.maxEvents = maxEvents;
+    if (resumeToken != null && !resumeToken.isEmpty()) {
+      for (String cursor : resumeToken.split(",")) {
+        String[] fields = cursor.split(":");
+        if (fields.length != 3) {
+          throw new IllegalArgumentException("Invalid resume token " +
+              resumeToken);
+        }
+        cursors.put(Long.parseLong(fields[0]),
+            new Cursor(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+      }
+      started = true;
+    }
+  }
+
+  /**
+   * Read the next events of every alive namenode, at most maxEvents per
+   * namenode. A namenode that cannot be reached is skipped and read again by
+   * the next poll, a namenode that is not alive anymore took its unread
+   * events with it and the poll reports them lost.
+   *
+   * @return the events, possibly none
+   * @throws AccessControlException
+   *     if the user is not a superuser
+   * @throws IOException
+   *     if no namenode is alive
+   */
+  public synchronized List<MetadataEvent> poll() throws IOException {
+    dfsClient.checkOpen();
+    eventsLost = false;
+    List<MetadataEvent> events = new ArrayList<>();
+    List<NamenodeSelector.NamenodeHandle> namenodes =
+        dfsClient.namenodeSelector.getAllNameNode();
+    Set<Long> alive = new HashSet<>();
+    for (NamenodeSelector.NamenodeHandle handle : namenodes) {
+      alive.add(handle.getNamenode().getId());
+    }
+    for (Iterator<Long> it = cursors.keySet().iterator(); it.hasNext(); ) {
+      long id = it.next();
+      if (!alive.contains(id)) {
+        LOG.warn("Missed metadata events of namenode " + id +
+            ", it is not alive anymore");
+        eventsLost = true;
+        it.remove();
+      }
+    }
+    for (NamenodeSelector.NamenodeHandle handle : namenodes) {
+      long id = handle.getNamenode().getId();
+      Cursor cursor = cursors.get(id);
+      boolean joined = cursor == null;
+      if (joined) {
+        cursor = new Cursor(0, 0);
+        cursors.put(id, cursor);
+      }
+      MetadataEventBatch batch;
+      try {
+        batch = handle.getRPCHandle().getMetadataEvents(cursor.epoch,
+            cursor.position, maxEvents);
+      } catch (RemoteException re) {
+        IOException e = re.unwrapRemoteException(AccessControlException.class);
+        if (e instanceof AccessControlException) {
+          throw e;
+        }
+        LOG.warn("Could not read the metadata events of namenode " +
+            handle.getNamenode() + ", Exception " + e);
+        continue;
+      } catch (IOException e) {
+        LOG.warn("Could not read the metadata events of namenode " +
+            handle.getNamenode() + ", Exception " + e);
+        continue;
+      }
+      // a namenode that joined after the first poll already dropped the
+      // events before the first one it returned
+      boolean dropped = joined && started &&
+          batch.getNextPosition() - batch.getEvents().size() > 0;
+      if (batch.isEventsLost() || dropped) {
+        LOG.warn("Missed metadata events of namenode " + handle.getNamenode());
+        eventsLost = true;
+      }
+      cursor.epoch = batch.getEpoch();
+      cursor.position = batch.getNextPosition();
+      events.addAll(batch.getEvents());
+    }
+    started = true;
+    if (namenodes.size() > 1) {
+      orderByLogicalTime(events);
+    }
+    return events;
+  }
+
+  /**
+   * Put the events of every inode in the order of their logical time. The
+   * events of an inode are sorted within the slots they take in the list, so
+   * the events of the other inodes keep their place.
+   */
+  private static void orderByLogicalTime(List<MetadataEvent> events) {
+    Map<Integer, List<Integer>> slots = new HashMap<>();
+    for (int i = 0; i < events.size(); i++) {
+      int inodeId = events.get(i).getInodeId();
+      List<Integer> inodeSlots = slots.get(inodeId);
+      if (inodeSlots == null) {
+        inodeSlots = new ArrayList<>(1);
+        slots.put(inodeId, inodeSlots);
+      }
+      inodeSlots.add(i);
+    }
+    for (List<Integer> inodeSlots : slots.values()) {
+      if (inodeSlots.size() < 2) {
+        continue;
+      }
+      List<MetadataEvent> inodeEvents = new ArrayList<>(inodeSlots.size());
+      for (int slot : inodeSlots) {
+        inodeEvents.add(events.get(slot));
+      }
+      Collections.sort(inodeEvents, LOGICAL_TIME_ORDER);
+      for (int i = 0; i < inodeSlots.size(); i++) {
+        events.set(inodeSlots.get(i), inodeEvents.get(i));
+      }
+    }
+  }
+
+  /**
+   * @return true if some events were missed before the events returned by
+   * the last poll
+   */
+  public synchronized boolean isEventsLost() {
+    return eventsLost;
+  }
+
+  /**
+   * @return a token to create a reader that continues after the events
+   * returned so far
+   */
+  public synchronized String getResumeToken() {
+    StringBuilder token = new StringBuilder();
+    for (Map.Entry<Long, Cursor> entry : cursors.entrySet()) {
+      if (token.length() > 0) {
+        token.append(',');
+      }
+      token.append(entry.getKey()).append(':')
+          .append(entry.getValue().epoch).append(':')
+          .append(entry.getValue().position);
+    }
+    return token.toString();
+  }
+}
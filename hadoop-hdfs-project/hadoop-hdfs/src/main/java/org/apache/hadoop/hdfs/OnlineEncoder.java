@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import io.hops.erasure_coding.Codec;
+import io.hops.erasure_coding.ErasureCode;
+import io.hops.metadata.hdfs.entity.EncodingPolicy;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockStoragePolicySuite;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.UUID;
+
+/**
+ * Computes the parity of a file created with an encoding policy while the
+ * file is written, and writes it to a parity file in the parity folder.
+ * <p/>
+ * The parity file has the same layout as the one written by the encoding
+ * managers: for each stripe of stripeLength source blocks, parityLength
+ * parity blocks of the source block size, with the blocks missing from the
+ * last stripe taken as zeros. Source blocks arrive one after the other, so
+ * the parity of the current stripe is accumulated with
+ * {@link ErasureCode#encodeBulkIncremental} into parityLength buffers of a
+ * block each and written once the stripe is complete. The parity blocks of a
+ * stripe are placed on other datanodes than its source blocks.
+ * <p/>
+ * The parity of a stripe depends on all its source blocks, so the buffers
+ * cannot be smaller than a block. Their heap is reserved from the limit
+ * {@link DFSConfigKeys#DFS_CLIENT_ONLINE_ENCODING_MAX_BUFFER_KEY} of the
+ * client, a file that does not fit is not encoded while written and left to
+ * the namenode.
+ * <p/>
+ * The encoder is created before the file, which is then written at the
+ * target replication of its encoding policy: the parity replaces the extra
+ * replicas during the write already. Once the file is closed,
+ * {@link org.apache.hadoop.hdfs.protocol.ClientProtocol#completeEncoding}
+ * registers the parity file with the namenode. Encoding in the client is
+ * best effort: if it fails for any reason, the parity file is dropped, the
+ * file is set back to the replication it was created for and the namenode
+ * encodes it as it does for files it has to encode itself.
+ */
+class OnlineEncoder {
+
+  private final DFSClient dfsClient;
+  private final String src;
+  private final ErasureCode code;
+  private final long blockSize;
+  private final long stripeBytes;
+  private final short replication;
+  private final short fullReplication;
+  private byte storagePolicy = BlockStoragePolicySuite.ID_UNSPECIFIED;
+  private boolean sourceCreated = false;
+  private final String parityFileName;
+  private final String parityPath;
+  private final long bufferBytes;
+  private boolean bufferReserved;
+  private byte[][] parityBufs;
+  private DFSOutputStream parityStream;
+  private long position = 0;
+  private boolean parityClosed = false;
+  private boolean done = false;
+
+  /**
+   * @param fullReplication
+   *     the replication the file was asked for, which it gets back if it
+   *     cannot be encoded while it is written
+   */
+  OnlineEncoder(DFSClient dfsClient, String src, EncodingPolicy policy,
+      long blockSize, short fullReplication) throws IOException {
+    Codec codec = Codec.getCodec(policy.getCodec());
+    if (codec == null) {
+      throw new IOException("Unknown codec " + policy.getCodec());
+    }
+    if (blockSize > Integer.MAX_VALUE) {
+      throw new IOException("Cannot buffer parity blocks of " + blockSize +
+          " bytes");
+    }
+    try {
+      this.code = codec.createErasureCode(dfsClient.conf);
+    } catch (RuntimeException e) {
+      throw new IOException("Could not create the erasure code of " + codec,
+          e);
+    }
+    this.dfsClient = dfsClient;
+    this.src = src;
+    this.blockSize = blockSize;
+    this.stripeBytes = blockSize * code.stripeSize();
+    this.replication = policy.getTargetReplication();
+    this.fullReplication = fullReplication;
+    this.parityFileName = UUID.randomUUID().toString();
+    this.parityPath = dfsClient.conf.get(DFSConfigKeys.PARITY_FOLDER,
+        DFSConfigKeys.DEFAULT_PARITY_FOLDER) + "/" + parityFileName;
+    this.bufferBytes = blockSize * code.paritySize();
+    if (!dfsClient.reserveOnlineEncodingBuffer(bufferBytes)) {
+      throw new IOException("The parity buffers of " + bufferBytes +
+          " bytes exceed the limit of the files encoded while written");
+    }
+    this.bufferReserved = true;
+  }
+
+  /**
+   * @return the replication to create the source file with
+   */
+  short getReplication() {
+    return replication;
+  }
+
+  /**
+   * The source file was created at the target replication.
+   *
+   * @param storagePolicy
+   *     the storage policy of the source file, which the parity file gets
+   *     too
+   */
+  void sourceCreated(byte storagePolicy) {
+    this.sourceCreated = true;
+    this.storagePolicy = storagePolicy;
+  }
+
+  /**
+   * Add data of the source file to the parity of its stripe.
+   * <p/>
+   * A flush sends the last partial checksum chunk and sends it again as part
+   * of the full chunk later on. The bytes added before are skipped then, as
+   * adding the same bytes twice would cancel them out.
+   *
+   * @param offsetInBlock
+   *     the offset of the data in the current block
+   * @param b
+   *     the data, which must not cross a block boundary
+   * @param off
+   *     offset into b
+   * @param len
+   *     the number of bytes
+   * @return true if the data completed a stripe, which must then be written
+   * with {@link #writeStripe} before adding more data
+   */
+  boolean write(long offsetInBlock, byte[] b, int off, int len) {
+    if (done) {
+      return false;
+    }
+    long blockStart = position - position % blockSize;
+    int skip = (int) (position - (blockStart + offsetInBlock));
+    if (skip < 0 || skip > len || offsetInBlock + len > blockSize) {
+      fail(new IOException("Unexpected write of " + len + " bytes at " +
+          offsetInBlock + " in the block of position " + position));
+      return false;
+    }
+    if (skip == len) {
+      return false;
+    }
+    if (parityBufs == null) {
+      parityBufs = new byte[code.paritySize()][(int) blockSize];
+    }
+    int index = (int) ((position / blockSize) % code.stripeSize());
+    code.encodeBulkIncremental(index, b, off + skip, len - skip, parityBufs,
+        (int) offsetInBlock + skip);
+    position += len - skip;
+    return position % stripeBytes == 0;
+  }
+
+  /**
+   * Write the parity of the current stripe and start the next one.
+   *
+   * @param sourceNodes
+   *     the datanodes holding the source blocks of the stripe
+   */
+  void writeStripe(Collection<DatanodeInfo> sourceNodes) {
+    if (done) {
+      return;
+    }
+    try {
+      if (parityStream == null) {
+        openParityStream();
+      } else {
+        // The blocks of the previous stripe must be allocated before the
+        // nodes to exclude change
+        parityStream.hflush();
+      }
+      parityStream.setParityStripeNodesForNextStripe(sourceNodes);
+      for (byte[] buf : parityBufs) {
+        parityStream.write(buf, 0, buf.length);
+        Arrays.fill(buf, (byte) 0);
+      }
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * Write the parity of the last stripe if it is incomplete and close the
+   * parity file.
+   *
+   * @param sourceNodes
+   *     the datanodes holding the source blocks of the last stripe
+   */
+  void close(Collection<DatanodeInfo> sourceNodes) {
+    if (done || parityClosed) {
+      return;
+    }
+    if (position == 0) {
+      // Nothing to protect, leave the file to the namenode
+      abort();
+      return;
+    }
+    if (position % stripeBytes != 0) {
+      writeStripe(sourceNodes);
+    }
+    if (done) {
+      return;
+    }
+    try {
+      parityStream.close();
+      parityClosed = true;
+      releaseBuffers();
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * Register the parity file with the namenode once the source file is
+   * complete.
+   */
+  void complete() {
+    if (done || !parityClosed) {
+      return;
+    }
+    done = true;
+    try {
+      if (dfsClient.completeEncoding(src, parityFileName)) {
+        DFSClient.LOG.info("Encoded " + src + " into " + parityPath);
+      } else {
+        DFSClient.LOG.info("The namenode is encoding " + src +
+            " itself, dropping " + parityPath);
+        deleteParityFile();
+        restoreReplication();
+      }
+    } catch (IOException e) {
+      // The call might have succeeded, keep the parity file
+      DFSClient.LOG.warn("Could not register the parity file " + parityPath +
+          " of " + src, e);
+    }
+  }
+
+  /**
+   * Stop encoding, drop the parity file and set the source file back to its
+   * full replication. The namenode encodes the source file once it is
+   * closed.
+   */
+  void abort() {
+    if (done) {
+      return;
+    }
+    done = true;
+    releaseBuffers();
+    restoreReplication();
+    if (parityStream == null) {
+      return;
+    }
+    try {
+      if (!parityClosed) {
+        parityStream.abort();
+      }
+    } catch (IOException e) {
+      DFSClient.LOG.debug("Could not abort " + parityPath, e);
+    }
+    deleteParityFile();
+  }
+
+  private void openParityStream() throws IOException {
+    parityStream = dfsClient.create(parityPath, FsPermission.getFileDefault(),
+        EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE), true, replication,
+        blockSize, null, dfsClient.getConf().ioBufferSize, null);
+    parityStream.enableParityStream(code.stripeSize(), code.paritySize(),
+        null);
+    if (storagePolicy != BlockStoragePolicySuite.ID_UNSPECIFIED) {
+      dfsClient.setStoragePolicy(parityPath,
+          dfsClient.getStoragePolicy(storagePolicy).getName());
+    }
+  }
+
+  private void releaseBuffers() {
+    parityBufs = null;
+    if (bufferReserved) {
+      bufferReserved = false;
+      dfsClient.releaseOnlineEncodingBuffer(bufferBytes);
+    }
+  }
+
+  private void fail(IOException e) {
+    DFSClient.LOG.warn("Could not encode " + src + " while writing it," +
+        " leaving it to the namenode", e);
+    abort();
+  }
+
+  private void restoreReplication() {
+    if (!sourceCreated || fullReplication <= replication) {
+      return;
+    }
+    try {
+      dfsClient.setReplication(src, fullReplication);
+    } catch (IOException e) {
+      DFSClient.LOG.warn("Could not set " + src + " back to replication " +
+          fullReplication, e);
+    }
+  }
+
+  private void deleteParityFile() {
+    try {
+      dfsClient.delete(parityPath, false);
+    } catch (IOException e) {
+      DFSClient.LOG.warn("Could not delete the parity file " + parityPath, e);
+    }
+  }
+}
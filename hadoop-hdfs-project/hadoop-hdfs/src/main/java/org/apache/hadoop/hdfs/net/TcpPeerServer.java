@@ -74,6 +74,15 @@ public static Peer peerFromSocket(Socket socket)
     }
   }
 
+  /**
+   * @return the channel of a peer created by {@link #peerFromSocket}, or
+   * null if it does not have one
+   */
+  public static SocketChannel getChannel(Peer peer) {
+    return peer instanceof NioInetPeer ?
+        ((NioInetPeer) peer).getChannel() : null;
+  }
+
   public static Peer peerFromSocketAndKey(Socket s,
         DataEncryptionKey key) throws IOException {
     Peer peer = null;
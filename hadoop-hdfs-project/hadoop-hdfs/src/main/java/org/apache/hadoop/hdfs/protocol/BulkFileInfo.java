@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.protocol;
+
+import java.io.IOException;
+
+/**
+ * The result of {@link ClientProtocol#getFileInfos(String[], boolean)}: for
+ * each requested path, either its file status, null if it does not exist, or
+ * the error that prevented reading it.
+ */
+public class BulkFileInfo {
+
+  private final HdfsFileStatus[] statuses;
+  private final IOException[] errors;
+
+  public BulkFileInfo(HdfsFileStatus[] statuses, IOException[] errors) {
+    if (statuses.length != errors.length) {
+      throw new IllegalArgumentException("Got " + statuses.length +
+          " statuses for " + errors.length + " paths");
+    }
+    this.statuses = statuses;
+    this.errors = errors;
+  }
+
+  public int size() {
+    return statuses.length;
+  }
+
+  /**
+   * @return the status of the i-th path, or null if it does not exist
+   * @throws IOException
+   *     the error that prevented reading the i-th path
+   */
+  public HdfsFileStatus getFileInfo(int i) throws IOException {
+    if (errors[i] != null) {
+      throw errors[i];
+    }
+    return statuses[i];
+  }
+
+  /**
+   * @return the error that prevented reading the i-th path, or null
+   */
+  public IOException getError(int i) {
+    return errors[i];
+  }
+}
@@ -1027,6 +1027,48 @@ public HdfsFileStatus getFileInfo(String src)
       throws AccessControlException, FileNotFoundException,
       UnresolvedLinkException, IOException;
 
+  /**
+   * Get the file info of many files or directories at once. The paths are
+   * resolved together, in as few transactions as possible, and an error on
+   * one path does not fail the others.
+   *
+   * @param srcs
+   *     The string representations of the paths
+   * @param needLocation
+   *     if true, the status of each file includes the locations of all its
+   *     blocks, see {@link HdfsLocatedFileStatus}
+   * @return the status or the error of each path, in the order of srcs
+   * @throws IOException
+   *     If an I/O error occurred
+   */
+  @Idempotent
+  public BulkFileInfo getFileInfos(String[] srcs, boolean needLocation)
+      throws IOException;
+
+  /**
+   * Get the next changes of the meta enabled datasets committed by this
+   * namenode, in commit order. Each namenode numbers the changes it commits,
+   * so a reader following the whole namespace keeps a position per namenode.
+   *
+   * @param epoch
+   *     the epoch of the last batch read from this namenode, or 0 for a new
+   *     reader
+   * @param fromPosition
+   *     the next position of the last batch read from this namenode, or 0
+   *     for a new reader
+   * @param maxEvents
+   *     the maximum number of events to return
+   * @return the events, the epoch and position to read the next batch from,
+   * and whether events were missed since the last batch
+   * @throws AccessControlException
+   *     if the user is not a superuser
+   * @throws IOException
+   *     If an I/O error occurred
+   */
+  @Idempotent
+  public MetadataEventBatch getMetadataEvents(long epoch, long fromPosition,
+      int maxEvents) throws AccessControlException, IOException;
+
   /**
    * Get the file info for a specific file or directory. If the path
    * refers to a symlink then the FileStatus of the symlink is returned.
@@ -1368,6 +1410,24 @@ public void encodeFile(String filePath, EncodingPolicy policy)
   public void revokeEncoding(String filePath, short replication)
       throws IOException;
 
+  /**
+   * Register the parity file a client wrote while writing a file created
+   * with an encoding policy. The file is only marked as encoded if its
+   * encoding was requested but not yet started by the namenode.
+   *
+   * @param filePath
+   *    the path of the file
+   * @param parityFileName
+   *    the name of the parity file in the parity folder
+   * @return
+   *    true if the file is now encoded with the given parity file, false if
+   *    the namenode encodes it itself
+   * @throws IOException
+   */
+  @Idempotent
+  public boolean completeEncoding(String filePath, String parityFileName)
+      throws IOException;
+
   /**
    * Get locations to store a repaired block of an erasure-coded file. The
    * returned locations will fulfill placement constraints in order to
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.protocol;
+
+/**
+ * A change of the namespace of a meta enabled dataset, as written in the
+ * metadata log.
+ */
+public class MetadataEvent {
+
+  private final long position;
+  private final String operation;
+  private final String logOperation;
+  private final int datasetId;
+  private final int inodeId;
+  private final int parentId;
+  private final String name;
+  private final int logicalTime;
+
+  /**
+   * @param position
+   *     the position of the event in the stream of the namenode that
+   *     committed it
+   * @param operation
+   *     the namenode operation that made the change, e.g. RENAME,
+   *     COMPLETE_FILE or DELETE
+   * @param logOperation
+   *     the operation written to the metadata log, ADD or DELETE
+   */
+  public MetadataEvent(long position, String operation, String logOperation,
+      int datasetId, int inodeId, int parentId, String name,
+      int logicalTime) {
+    this.position = position;
+    this.operation = operation;
+    this.logOperation = logOperation;
+    this.datasetId = datasetId;
+    this.inodeId = inodeId;
+    this.parentId = parentId;
+    this.name = name;
+    this.logicalTime = logicalTime;
+  }
+
+  public long getPosition() {
+    return position;
+  }
+
+  public String getOperation() {
+    return operation;
+  }
+
+  public String getLogOperation() {
+    return logOperation;
+  }
+
+  public int getDatasetId() {
+    return datasetId;
+  }
+
+  public int getInodeId() {
+    return inodeId;
+  }
+
+  public int getParentId() {
+    return parentId;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getLogicalTime() {
+    return logicalTime;
+  }
+
+  @Override
+  public String toString() {
+    return "MetadataEvent{position=" + position + ", operation=" + operation +
+        ", logOperation=" + logOperation + ", datasetId=" + datasetId +
+        ", inodeId=" + inodeId + ", parentId=" + parentId + ", name=" + name +
+        ", logicalTime=" + logicalTime + "}";
+  }
+}
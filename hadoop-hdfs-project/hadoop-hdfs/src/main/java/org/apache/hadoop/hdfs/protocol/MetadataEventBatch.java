@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.protocol;
+
+import java.util.List;
+
+/**
+ * The result of {@link ClientProtocol#getMetadataEvents(long, long, int)}:
+ * the next events of the stream of a namenode, in commit order.
+ */
+public class MetadataEventBatch {
+
+  private final long epoch;
+  private final List<MetadataEvent> events;
+  private final long nextPosition;
+  private final boolean eventsLost;
+
+  /**
+   * @param epoch
+   *     identifies the stream, it changes when the namenode restarts
+   * @param nextPosition
+   *     the position to read the following events from
+   * @param eventsLost
+   *     true if some events between the requested position and the first
+   *     returned event are not available anymore, either because the
+   *     namenode restarted or because they were dropped from its buffer
+   */
+  public MetadataEventBatch(long epoch, List<MetadataEvent> events,
+      long nextPosition, boolean eventsLost) {
+    this.epoch = epoch;
+    this.events = events;
+    this.nextPosition = nextPosition;
+    this.eventsLost = eventsLost;
+  }
+
+  public long getEpoch() {
+    return epoch;
+  }
+
+  public List<MetadataEvent> getEvents() {
+    return events;
+  }
+
+  public long getNextPosition() {
+    return nextPosition;
+  }
+
+  public boolean isEventsLost() {
+    return eventsLost;
+  }
+}
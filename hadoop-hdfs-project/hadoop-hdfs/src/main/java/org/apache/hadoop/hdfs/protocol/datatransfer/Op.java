@@ -51,9 +51,10 @@ private Op(byte code) {
   private static final int FIRST_CODE = values()[0].code;
 
   /**
-   * Return the object represented by the code.
+   * Return the object represented by the code, or null if the code is
+   * unknown.
    */
-  private static Op valueOf(byte code) {
+  public static Op valueOf(byte code) {
     final int i = (code & 0xff) - FIRST_CODE;
     return i < 0 || i >= values().length ? null : values()[i];
   }
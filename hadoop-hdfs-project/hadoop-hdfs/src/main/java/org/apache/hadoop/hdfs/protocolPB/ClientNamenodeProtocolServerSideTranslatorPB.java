@@ -30,6 +30,8 @@
 import org.apache.hadoop.fs.Options;
 import org.apache.hadoop.fs.Options.Rename;
 import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
+import org.apache.hadoop.hdfs.protocol.BulkFileInfo;
+import org.apache.hadoop.hdfs.protocol.MetadataEventBatch;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.CorruptFileBlocks;
 import org.apache.hadoop.hdfs.protocol.DirectoryListing;
@@ -69,6 +71,10 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetDatanodeReportResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfoRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfoResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfosRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfosResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetMetadataEventsRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetMetadataEventsResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileLinkInfoRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileLinkInfoResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFsStatsResponseProto;
@@ -772,6 +778,32 @@ public GetFileInfoResponseProto getFileInfo(RpcController controller,
     }
   }
 
+  @Override
+  public GetFileInfosResponseProto getFileInfos(RpcController controller,
+      GetFileInfosRequestProto req) throws ServiceException {
+    try {
+      List<String> srcs = req.getSrcsList();
+      BulkFileInfo result = server.getFileInfos(
+          srcs.toArray(new String[srcs.size()]), req.getNeedLocation());
+      return PBHelper.convert(result);
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+
+  @Override
+  public GetMetadataEventsResponseProto getMetadataEvents(
+      RpcController controller, GetMetadataEventsRequestProto req)
+      throws ServiceException {
+    try {
+      MetadataEventBatch result = server.getMetadataEvents(req.getEpoch(),
+          req.getFromPosition(), req.getMaxEvents());
+      return PBHelper.convert(result);
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+
   @Override
   public GetFileLinkInfoResponseProto getFileLinkInfo(RpcController controller,
       GetFileLinkInfoRequestProto req) throws ServiceException {
@@ -1039,6 +1071,21 @@ public ClientNamenodeProtocolProtos.RevokeEncodingResponseProto revokeEncoding(
     }
   }
 
+  @Override
+  public ClientNamenodeProtocolProtos.CompleteEncodingResponseProto completeEncoding(
+      RpcController controller,
+      ClientNamenodeProtocolProtos.CompleteEncodingRequestProto request)
+      throws ServiceException {
+    try {
+      boolean result = server
+          .completeEncoding(request.getPath(), request.getParityFileName());
+      return ClientNamenodeProtocolProtos.CompleteEncodingResponseProto
+          .newBuilder().setResult(result).build();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+
   @Override
   public ClientNamenodeProtocolProtos.GetRepairedBlockLocationsResponseProto getRepairedBlockLocations(
       RpcController controller,
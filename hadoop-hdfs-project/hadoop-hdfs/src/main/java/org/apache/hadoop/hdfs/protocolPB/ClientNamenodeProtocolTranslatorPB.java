@@ -39,6 +39,8 @@
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.protocol.AlreadyBeingCreatedException;
 import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
+import org.apache.hadoop.hdfs.protocol.BulkFileInfo;
+import org.apache.hadoop.hdfs.protocol.MetadataEventBatch;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.CorruptFileBlocks;
 import org.apache.hadoop.hdfs.protocol.DSQuotaExceededException;
@@ -75,6 +77,8 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetDatanodeReportRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfoRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfoResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfosRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetMetadataEventsRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileLinkInfoRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileLinkInfoResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFsStatusRequestProto;
@@ -725,6 +729,31 @@ public HdfsFileStatus getFileInfo(String src)
     }
   }
 
+  @Override
+  public BulkFileInfo getFileInfos(String[] srcs, boolean needLocation)
+      throws IOException {
+    GetFileInfosRequestProto req = GetFileInfosRequestProto.newBuilder()
+        .addAllSrcs(Arrays.asList(srcs)).setNeedLocation(needLocation).build();
+    try {
+      return PBHelper.convert(rpcProxy.getFileInfos(null, req));
+    } catch (ServiceException e) {
+      throw ProtobufHelper.getRemoteException(e);
+    }
+  }
+
+  @Override
+  public MetadataEventBatch getMetadataEvents(long epoch, long fromPosition,
+      int maxEvents) throws AccessControlException, IOException {
+    GetMetadataEventsRequestProto req = GetMetadataEventsRequestProto
+        .newBuilder().setEpoch(epoch).setFromPosition(fromPosition)
+        .setMaxEvents(maxEvents).build();
+    try {
+      return PBHelper.convert(rpcProxy.getMetadataEvents(null, req));
+    } catch (ServiceException e) {
+      throw ProtobufHelper.getRemoteException(e);
+    }
+  }
+
   @Override
   public HdfsFileStatus getFileLinkInfo(String src)
       throws AccessControlException, UnresolvedLinkException, IOException {
@@ -1020,6 +1049,19 @@ public void revokeEncoding(String filePath, short replication)
     }
   }
 
+  @Override
+  public boolean completeEncoding(String filePath, String parityFileName)
+      throws IOException {
+    try {
+      ClientNamenodeProtocolProtos.CompleteEncodingRequestProto request =
+          ClientNamenodeProtocolProtos.CompleteEncodingRequestProto.newBuilder()
+              .setPath(filePath).setParityFileName(parityFileName).build();
+      return rpcProxy.completeEncoding(null, request).getResult();
+    } catch (ServiceException e) {
+      throw ProtobufHelper.getRemoteException(e);
+    }
+  }
+
   private SortedActiveNodeList convertProtoANListToANList(
       ClientNamenodeProtocolProtos.ActiveNamenodeListResponseProto p) {
     List<ActiveNode> anl = new ArrayList<>();
@@ -18,6 +18,7 @@
 
 import com.google.protobuf.RpcController;
 import com.google.protobuf.ServiceException;
+import io.hops.erasure_coding.Report;
 import io.hops.leader_election.node.ActiveNode;
 import io.hops.leader_election.node.SortedActiveNodeList;
 import io.hops.leader_election.proto.ActiveNodeProtos;
@@ -38,6 +39,7 @@
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.BlockReportResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.CommitBlockSynchronizationRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.DatanodeCommandProto;
+import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.EncodingReportRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.ErrorReportRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.HeartbeatRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.HeartbeatResponseProto;
@@ -360,5 +362,19 @@ public byte[] getSmallFileData(int id) throws IOException {
     }
   }
 
-
+  @Override
+  public void encodingReport(DatanodeRegistration registration,
+      Report[] reports) throws IOException {
+    EncodingReportRequestProto.Builder builder =
+        EncodingReportRequestProto.newBuilder()
+            .setRegistration(PBHelper.convert(registration));
+    for (Report report : reports) {
+      builder.addReports(PBHelper.convert(report));
+    }
+    try {
+      rpcProxy.encodingReport(NULL_CONTROLLER, builder.build());
+    } catch (ServiceException se) {
+      throw ProtobufHelper.getRemoteException(se);
+    }
+  }
 }
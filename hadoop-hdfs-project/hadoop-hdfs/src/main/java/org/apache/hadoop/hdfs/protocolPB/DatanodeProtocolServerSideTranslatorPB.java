@@ -20,6 +20,7 @@
 
 import com.google.protobuf.RpcController;
 import com.google.protobuf.ServiceException;
+import io.hops.erasure_coding.Report;
 import io.hops.leader_election.node.ActiveNode;
 import io.hops.leader_election.node.SortedActiveNodeList;
 import io.hops.leader_election.proto.ActiveNodeProtos;
@@ -34,6 +35,9 @@
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.BlockReportResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.CommitBlockSynchronizationRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.CommitBlockSynchronizationResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.EncodingReportProto;
+import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.EncodingReportRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.EncodingReportResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.ErrorReportRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.ErrorReportResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.HeartbeatRequestProto;
@@ -78,6 +82,9 @@
   private static final CommitBlockSynchronizationResponseProto
       VOID_COMMIT_BLOCK_SYNCHRONIZATION_RESPONSE_PROTO =
       CommitBlockSynchronizationResponseProto.newBuilder().build();
+  private static final EncodingReportResponseProto
+      VOID_ENCODING_REPORT_RESPONSE_PROTO =
+      EncodingReportResponseProto.newBuilder().build();
 
   public DatanodeProtocolServerSideTranslatorPB(DatanodeProtocol impl) {
     this.impl = impl;
@@ -293,4 +300,20 @@ public DatanodeProtocolProtos.SmallFileDataResponseProto getSmallFileData(RpcCon
     }
   }
 
+  @Override
+  public EncodingReportResponseProto encodingReport(RpcController controller,
+      EncodingReportRequestProto request) throws ServiceException {
+    List<EncodingReportProto> protos = request.getReportsList();
+    Report[] reports = new Report[protos.size()];
+    for (int i = 0; i < reports.length; i++) {
+      reports[i] = PBHelper.convert(protos.get(i));
+    }
+    try {
+      impl.encodingReport(PBHelper.convert(request.getRegistration()),
+          reports);
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+    return VOID_ENCODING_REPORT_RESPONSE_PROTO;
+  }
 }
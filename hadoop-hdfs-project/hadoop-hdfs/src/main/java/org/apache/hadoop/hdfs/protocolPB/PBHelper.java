@@ -21,6 +21,7 @@
 import com.google.common.collect.Lists;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.CodedInputStream;
+import io.hops.erasure_coding.Report;
 import io.hops.leader_election.node.ActiveNode;
 import io.hops.leader_election.node.ActiveNodePBImpl;
 import io.hops.leader_election.node.SortedActiveNodeList;
@@ -36,6 +37,9 @@
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
+import org.apache.hadoop.hdfs.protocol.BulkFileInfo;
+import org.apache.hadoop.hdfs.protocol.MetadataEvent;
+import org.apache.hadoop.hdfs.protocol.MetadataEventBatch;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.CorruptFileBlocks;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
@@ -53,6 +57,10 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateFlagProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.DatanodeReportTypeProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.FileInfoResultProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfosResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetMetadataEventsResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.MetadataEventProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFsStatsResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.SafeModeActionProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.FsActionProto;
@@ -62,6 +70,9 @@
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.BalancerBandwidthCommandProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.BlockCommandProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.BlockRecoveryCommandProto;
+import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.EncodingCommandProto;
+import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.EncodingReportProto;
+import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.EncodingTaskProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.DatanodeCommandProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.DatanodeRegistrationProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.DatanodeStorageProto;
@@ -115,6 +126,7 @@
 import org.apache.hadoop.hdfs.server.protocol.BalancerBandwidthCommand;
 import org.apache.hadoop.hdfs.server.protocol.BlockCommand;
 import org.apache.hadoop.hdfs.server.protocol.BlockRecoveryCommand;
+import org.apache.hadoop.hdfs.server.protocol.EncodingCommand;
 import org.apache.hadoop.hdfs.server.protocol.BlockRecoveryCommand.RecoveringBlock;
 import org.apache.hadoop.hdfs.server.protocol.BlockReport;
 import org.apache.hadoop.hdfs.server.protocol.BlockReportBlock;
@@ -140,6 +152,7 @@
 import org.apache.hadoop.hdfs.util.ExactSizeInputStream;
 import org.apache.hadoop.io.EnumSetWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.ipc.RemoteException;
 import org.apache.hadoop.security.proto.SecurityProtos.TokenProto;
 import org.apache.hadoop.security.token.Token;
 import org.apache.hadoop.util.DataChecksum;
@@ -715,6 +728,8 @@ public static DatanodeCommand convert(DatanodeCommandProto proto) {
         return PBHelper.convert(proto.getKeyUpdateCmd());
       case RegisterCommand:
         return REG_CMD;
+      case EncodingCommand:
+        return PBHelper.convert(proto.getEncodingCmd());
     }
     return null;
   }
@@ -834,6 +849,12 @@ public static DatanodeCommandProto convert(DatanodeCommand datanodeCommand) {
         builder.setCmdType(DatanodeCommandProto.Type.RegisterCommand)
             .setRegisterCmd(REG_CMD_PROTO);
         break;
+      case DatanodeProtocol.DNA_ENCODE:
+      case DatanodeProtocol.DNA_ENCODE_CANCEL:
+        builder.setCmdType(DatanodeCommandProto.Type.EncodingCommand)
+            .setEncodingCmd(
+                PBHelper.convert((EncodingCommand) datanodeCommand));
+        break;
       case DatanodeProtocol.DNA_TRANSFER:
       case DatanodeProtocol.DNA_INVALIDATE:
       case DatanodeProtocol.DNA_SHUTDOWN:
@@ -933,6 +954,80 @@ public static BalancerBandwidthCommand convert(
     return new BalancerBandwidthCommand(balancerCmd.getBandwidth());
   }
 
+  public static EncodingCommandProto convert(EncodingCommand cmd) {
+    EncodingCommandProto.Builder builder = EncodingCommandProto.newBuilder();
+    for (EncodingCommand.EncodingTask task : cmd.getTasks()) {
+      builder.addTasks(EncodingTaskProto.newBuilder()
+          .setSourcePath(task.getSourcePath())
+          .setParityPath(task.getParityPath())
+          .setCodecId(task.getCodecId())
+          .setTargetReplication(task.getTargetReplication())
+          .setCopy(task.isCopy()));
+    }
+    if (cmd.getAction() == DatanodeProtocol.DNA_ENCODE_CANCEL) {
+      builder.setCancel(true);
+    }
+    return builder.build();
+  }
+
+  public static EncodingCommand convert(EncodingCommandProto encodingCmd) {
+    List<EncodingCommand.EncodingTask> tasks =
+        new ArrayList<>(encodingCmd.getTasksCount());
+    for (EncodingTaskProto task : encodingCmd.getTasksList()) {
+      tasks.add(new EncodingCommand.EncodingTask(task.getSourcePath(),
+          task.getParityPath(), task.getCodecId(), task.getTargetReplication(),
+          task.getCopy()));
+    }
+    return new EncodingCommand(encodingCmd.getCancel() ?
+        DatanodeProtocol.DNA_ENCODE_CANCEL : DatanodeProtocol.DNA_ENCODE,
+        tasks);
+  }
+
+  public static EncodingReportProto convert(Report report) {
+    EncodingReportProto.Status status;
+    switch (report.getStatus()) {
+      case ACTIVE:
+        status = EncodingReportProto.Status.ACTIVE;
+        break;
+      case FINISHED:
+        status = EncodingReportProto.Status.FINISHED;
+        break;
+      case FAILED:
+        status = EncodingReportProto.Status.FAILED;
+        break;
+      case CANCELED:
+        status = EncodingReportProto.Status.CANCELED;
+        break;
+      default:
+        throw new IllegalArgumentException("Unexpected status " +
+            report.getStatus());
+    }
+    return EncodingReportProto.newBuilder()
+        .setFilePath(report.getFilePath()).setStatus(status).build();
+  }
+
+  public static Report convert(EncodingReportProto report) {
+    Report.Status status;
+    switch (report.getStatus()) {
+      case ACTIVE:
+        status = Report.Status.ACTIVE;
+        break;
+      case FINISHED:
+        status = Report.Status.FINISHED;
+        break;
+      case FAILED:
+        status = Report.Status.FAILED;
+        break;
+      case CANCELED:
+        status = Report.Status.CANCELED;
+        break;
+      default:
+        throw new IllegalArgumentException("Unexpected status " +
+            report.getStatus());
+    }
+    return new Report(report.getFilePath(), status);
+  }
+
   public static ReceivedDeletedBlockInfoProto convert(
       ReceivedDeletedBlockInfo receivedDeletedBlockInfo) {
     ReceivedDeletedBlockInfoProto.Builder builder =
@@ -1851,6 +1946,89 @@ public static LastUpdatedContentSummaryProto convert(LastUpdatedContentSummary c
         build();
   }
 
+  public static GetFileInfosResponseProto convert(BulkFileInfo fileInfos)
+      throws IOException {
+    GetFileInfosResponseProto.Builder builder =
+        GetFileInfosResponseProto.newBuilder();
+    for (int i = 0; i < fileInfos.size(); i++) {
+      FileInfoResultProto.Builder result = FileInfoResultProto.newBuilder();
+      IOException error = fileInfos.getError(i);
+      if (error != null) {
+        result.setExceptionClassName(error.getClass().getName());
+        if (error.getMessage() != null) {
+          result.setExceptionMessage(error.getMessage());
+        }
+      } else {
+        HdfsFileStatus fs = fileInfos.getFileInfo(i);
+        if (fs != null) {
+          result.setFs(convert(fs));
+        }
+      }
+      builder.addResults(result);
+    }
+    return builder.build();
+  }
+
+  public static BulkFileInfo convert(GetFileInfosResponseProto proto)
+      throws IOException {
+    HdfsFileStatus[] statuses = new HdfsFileStatus[proto.getResultsCount()];
+    IOException[] errors = new IOException[proto.getResultsCount()];
+    for (int i = 0; i < statuses.length; i++) {
+      FileInfoResultProto result = proto.getResults(i);
+      if (result.hasExceptionClassName()) {
+        errors[i] = new RemoteException(result.getExceptionClassName(),
+            result.hasExceptionMessage() ? result.getExceptionMessage() : null)
+            .unwrapRemoteException();
+      } else if (result.hasFs()) {
+        statuses[i] = convert(result.getFs());
+      }
+    }
+    return new BulkFileInfo(statuses, errors);
+  }
+
+  public static MetadataEventProto convert(MetadataEvent event) {
+    return MetadataEventProto.newBuilder()
+        .setPosition(event.getPosition())
+        .setOperation(event.getOperation())
+        .setLogOperation(event.getLogOperation())
+        .setDatasetId(event.getDatasetId())
+        .setInodeId(event.getInodeId())
+        .setParentId(event.getParentId())
+        .setName(event.getName())
+        .setLogicalTime(event.getLogicalTime())
+        .build();
+  }
+
+  public static MetadataEvent convert(MetadataEventProto proto) {
+    return new MetadataEvent(proto.getPosition(), proto.getOperation(),
+        proto.getLogOperation(), proto.getDatasetId(), proto.getInodeId(),
+        proto.getParentId(), proto.getName(), proto.getLogicalTime());
+  }
+
+  public static GetMetadataEventsResponseProto convert(
+      MetadataEventBatch batch) {
+    GetMetadataEventsResponseProto.Builder builder =
+        GetMetadataEventsResponseProto.newBuilder()
+            .setEpoch(batch.getEpoch())
+            .setNextPosition(batch.getNextPosition())
+            .setEventsLost(batch.isEventsLost());
+    for (MetadataEvent event : batch.getEvents()) {
+      builder.addEvents(convert(event));
+    }
+    return builder.build();
+  }
+
+  public static MetadataEventBatch convert(
+      GetMetadataEventsResponseProto proto) {
+    List<MetadataEvent> events =
+        new ArrayList<MetadataEvent>(proto.getEventsCount());
+    for (MetadataEventProto event : proto.getEventsList()) {
+      events.add(convert(event));
+    }
+    return new MetadataEventBatch(proto.getEpoch(), events,
+        proto.getNextPosition(), proto.getEventsLost());
+  }
+
   public static BlockStoragePolicy[] convertStoragePolicies(
       List<HdfsProtos.BlockStoragePolicyProto> policyProtos) {
     if (policyProtos == null || policyProtos.size() == 0) {
@@ -26,6 +26,7 @@
 import io.hops.exception.StorageException;
 import io.hops.exception.TransactionContextException;
 import io.hops.exception.TransientStorageException;
+import io.hops.leader_election.node.SortedActiveNodeList;
 import io.hops.metadata.HdfsStorageFactory;
 import io.hops.metadata.HdfsVariables;
 import io.hops.metadata.blockmanagement.ExcessReplicasMap;
@@ -91,6 +92,7 @@
 import org.apache.hadoop.hdfs.server.protocol.ReceivedDeletedBlockInfo;
 import org.apache.hadoop.hdfs.server.protocol.StorageReceivedDeletedBlocks;
 import org.apache.hadoop.hdfs.util.LightWeightLinkedSet;
+import org.apache.hadoop.net.NetworkTopology;
 import org.apache.hadoop.net.Node;
 import org.apache.hadoop.util.Daemon;
 import org.apache.hadoop.util.Time;
@@ -283,6 +285,20 @@ public long getPostponedMisreplicatedBlocksCount() {
   final float blocksInvalidateWorkPct;
   final int blocksReplWorkMultiplier;
 
+  /**
+   * Whether replication and invalidation work is shared by all the active
+   * namenodes instead of being done by the leader alone
+   */
+  final boolean distributeReplicationWork;
+
+  /**
+   * The partition of the replication work last computed by this namenode. The
+   * replication stream limits of the datanodes are split between the
+   * partitions, so that all the namenodes together stay close to them.
+   */
+  volatile ReplicationWorkPartition replicationWorkPartition =
+      ReplicationWorkPartition.ALL;
+
   /**
    * variable to enable check for enough racks
    */
@@ -376,6 +392,11 @@ public BlockManager(final Namesystem namesystem, final FSClusterStats stats,
     this.blocksInvalidateWorkPct =
         DFSUtil.getInvalidateWorkPctPerIteration(conf);
     this.blocksReplWorkMultiplier = DFSUtil.getReplWorkMultiplier(conf);
+    this.distributeReplicationWork = conf.getBoolean(
+        DFSConfigKeys.DFS_NAMENODE_REPLICATION_DISTRIBUTED_KEY,
+        DFSConfigKeys.DFS_NAMENODE_REPLICATION_DISTRIBUTED_DEFAULT);
+    neededReplications.setForwardOnlyReplicationIndex(
+        distributeReplicationWork);
 
     this.replicationRecheckInterval =
         conf.getInt(DFSConfigKeys.DFS_NAMENODE_REPLICATION_INTERVAL_KEY,
@@ -403,6 +424,7 @@ public BlockManager(final Namesystem namesystem, final FSClusterStats stats,
     LOG.info("maxReplicationStreams      = " + maxReplicationStreams);
     LOG.info("shouldCheckForEnoughRacks  = " + shouldCheckForEnoughRacks);
     LOG.info("replicationRecheckInterval = " + replicationRecheckInterval);
+    LOG.info("distributeReplicationWork  = " + distributeReplicationWork);
     LOG.info("encryptDataTransfer        = " + encryptDataTransfer);
     LOG.info("misReplicatedBatchSize     = " + processMisReplicatedBatchSize);
     LOG.info("misReplicatedNoOfBatchs     = " + processMisReplicatedNoOfBatchs);
@@ -1480,7 +1502,29 @@ public int getUnderReplicatedNotMissingBlocks() throws IOException {
    * @return total number of block for deletion
    */
   int computeInvalidateWork(int nodesToProcess) throws IOException {
+    return computeInvalidateWork(nodesToProcess, ReplicationWorkPartition.ALL);
+  }
+
+  /**
+   * Schedule blocks for deletion at the datanodes owned by the given
+   * partition
+   *
+   * @param nodesToProcess
+   *     number of datanodes to schedule deletion work
+   * @param partition
+   *     the partition of the work done by this namenode
+   * @return total number of block for deletion
+   */
+  int computeInvalidateWork(int nodesToProcess,
+      ReplicationWorkPartition partition) throws IOException {
     final List<DatanodeInfo> nodes = invalidateBlocks.getDatanodes(datanodeManager);
+    if (partition.getCount() > 1) {
+      for (Iterator<DatanodeInfo> it = nodes.iterator(); it.hasNext(); ) {
+        if (!partition.owns(it.next())) {
+          it.remove();
+        }
+      }
+    }
     Collections.shuffle(nodes);
 
     nodesToProcess = Math.min(nodes.size(), nodesToProcess);
@@ -1772,14 +1816,102 @@ public DatanodeStorageInfo[] chooseTarget4AdditionalDatanode(String src,
         chosen, true, excludes, blocksize, storagePolicy);
   }
   
+  /**
+   * Choose targets for repairing a block of an erasure-coded stripe.
+   *
+   * @param excludes the datanodes holding the other blocks of the stripe
+   * @see #getStripeExcludedNodes(Set)
+   */
   public DatanodeStorageInfo[] chooseTarget4ParityRepair(String src,  int numOfReplicas,
       DatanodeDescriptor clientnode,List<DatanodeStorageInfo> chosen, Set<Node> excludes, long blocksize,
       byte storagePolicyID) {
     final BlockStoragePolicy storagePolicy = storagePolicySuite.getPolicy(storagePolicyID);
+    Set<Node> stripeExcludes = getStripeExcludedNodes(excludes);
+    if (stripeExcludes != excludes) {
+      final DatanodeStorageInfo[] targets = blockplacement.chooseTarget(src,
+          numOfReplicas, clientnode, new ArrayList<>(chosen), false,
+          stripeExcludes, blocksize, storagePolicy);
+      if (targets.length >= numOfReplicas) {
+        return targets;
+      }
+    }
     return blockplacement.chooseTarget(src, numOfReplicas, clientnode,
         chosen, false, excludes, blocksize, storagePolicy);
   }
 
+  /**
+   * Choose target datanodes for a new block of an erasure-coded source or
+   * parity file. Unlike {@link #chooseTarget4NewBlock}, the block is kept
+   * off the racks holding more blocks of the stripe than others if possible.
+   *
+   * @param stripeNodes the datanodes holding the other blocks of the stripe
+   * @see #getStripeExcludedNodes(Set)
+   */
+  public DatanodeStorageInfo[] chooseTarget4NewStripeBlock(final String src,
+      final int numOfReplicas, final Node client,
+      final Set<Node> stripeNodes,
+      final long blocksize,
+      final List<String> favoredNodes,
+      final byte storagePolicyID) throws IOException {
+    Set<Node> stripeExcludes = getStripeExcludedNodes(stripeNodes);
+    if (stripeExcludes != stripeNodes) {
+      try {
+        final DatanodeStorageInfo[] targets = chooseTarget4NewBlock(src,
+            numOfReplicas, client, stripeExcludes, blocksize, favoredNodes,
+            storagePolicyID);
+        if (targets.length >= numOfReplicas) {
+          return targets;
+        }
+      } catch (IOException e) {
+        LOG.debug("Could not spread a block of " + src + " over racks", e);
+      }
+    }
+    return chooseTarget4NewBlock(src, numOfReplicas, client, stripeNodes,
+        blocksize, favoredNodes, storagePolicyID);
+  }
+
+  /**
+   * Extend the datanodes holding the blocks of a stripe with all datanodes of
+   * the racks holding more blocks of the stripe than the least used racks.
+   * Placing the next block of the stripe outside these racks spreads the
+   * stripe evenly, so that losing a rack loses as few of its blocks as
+   * possible. Only the racks of the stripe are looked at, any other rack
+   * holds none of its blocks.
+   *
+   * @param stripeNodes the datanodes holding blocks of the stripe
+   * @return the datanodes to exclude, stripeNodes itself if there is a single
+   * rack
+   */
+  @VisibleForTesting
+  Set<Node> getStripeExcludedNodes(Set<Node> stripeNodes) {
+    if (stripeNodes == null || stripeNodes.isEmpty()) {
+      return stripeNodes;
+    }
+    final NetworkTopology topology = datanodeManager.getNetworkTopology();
+    final int numOfRacks = topology.getNumOfRacks();
+    if (numOfRacks < 2) {
+      return stripeNodes;
+    }
+    Map<String, Integer> nodesPerRack = new HashMap<>();
+    for (Node node : stripeNodes) {
+      Integer count = nodesPerRack.get(node.getNetworkLocation());
+      nodesPerRack.put(node.getNetworkLocation(),
+          count == null ? 1 : count + 1);
+    }
+    int least = nodesPerRack.size() < numOfRacks ? 0 :
+        Collections.min(nodesPerRack.values());
+    Set<Node> excludes = new HashSet<>(stripeNodes);
+    for (Map.Entry<String, Integer> rack : nodesPerRack.entrySet()) {
+      if (rack.getValue() > least) {
+        List<Node> rackNodes = topology.getDatanodesInRack(rack.getKey());
+        if (rackNodes != null) {
+          excludes.addAll(rackNodes);
+        }
+      }
+    }
+    return excludes;
+  }
+
 
   /**
    * Get list of datanode descriptors for given list of nodes. Nodes are
@@ -1849,6 +1981,14 @@ DatanodeDescriptor chooseSourceDatanode(Block b,
     int excess = 0;
     final BlockInfo block = getBlockInfo(b);
 
+    // Each namenode only hands out its share of the streams of a datanode,
+    // the datanode gets commands from all of them
+    final ReplicationWorkPartition partition = replicationWorkPartition;
+    final int replicationStreams =
+        partition.shareOfLimit(maxReplicationStreams);
+    final int replicationStreamsHard =
+        partition.shareOfLimit(replicationStreamsHardLimit);
+
     Collection<DatanodeDescriptor> nodesCorrupt = corruptReplicas.getNodes(block);
     for(DatanodeStorageInfo storage : block.getStorages(datanodeManager)) {
       final DatanodeDescriptor node = storage.getDatanodeDescriptor();
@@ -1874,10 +2014,10 @@ DatanodeDescriptor chooseSourceDatanode(Block b,
       }
       if (priority != UnderReplicatedBlocks.QUEUE_HIGHEST_PRIORITY
           && !node.isDecommissionInProgress()
-          && node.getNumberOfBlocksToBeReplicated() >= maxReplicationStreams) {
+          && node.getNumberOfBlocksToBeReplicated() >= replicationStreams) {
         continue; // already reached replication limit
       }
-      if (node.getNumberOfBlocksToBeReplicated() >= replicationStreamsHardLimit) {
+      if (node.getNumberOfBlocksToBeReplicated() >= replicationStreamsHard) {
         continue;
       }
       // the block must not be scheduled for removal on srcNode
@@ -4259,14 +4399,25 @@ public int numOfUnderReplicatedBlocks() throws IOException {
    */
   private class ReplicationMonitor implements Runnable {
 
+    private ReplicationWorkPartition lastPartition = null;
+
     @Override
     public void run() {
       while (namesystem.isRunning()) {
         try {
-          if (namesystem.isLeader()) {
-            LOG.debug("Running replication monitor");
-            computeDatanodeWork();
-            processPendingReplications();
+          ReplicationWorkPartition partition = getReplicationWorkPartition();
+          if (!(partition == null ? lastPartition == null :
+              partition.equals(lastPartition))) {
+            LOG.info("Replication monitor partition changed from " +
+                lastPartition + " to " + partition);
+            lastPartition = partition;
+          }
+          if (partition != null) {
+            LOG.debug("Running replication monitor for " + partition);
+            computeDatanodeWork(partition);
+            if (namesystem.isLeader()) {
+              processPendingReplications();
+            }
           } else {
             LOG.warn("Namesystem is not leader: will not run replication monitor");
           }
@@ -4302,6 +4453,23 @@ public void run() {
    * @throws IOException
    */
   int computeDatanodeWork() throws IOException {
+    return computeDatanodeWork(ReplicationWorkPartition.ALL);
+  }
+
+  /**
+   * Compute the share of the block replication and block invalidation work
+   * that belongs to the given partition.
+   * <p/>
+   * Replication work is taken from {@link #neededReplications}, whose
+   * replication index is advanced under a write lock, so the namenodes
+   * pick disjoint windows of under-replicated blocks. Invalidation work is
+   * split by datanode.
+   *
+   * @return number of blocks scheduled for replication or removal.
+   * @throws IOException
+   */
+  int computeDatanodeWork(ReplicationWorkPartition partition)
+      throws IOException {
     // Blocks should not be replicated or removed if in safe mode.
     // It's OK to check safe mode here w/o holding lock, in the worst
     // case extra replications will be scheduled, and these will get
@@ -4310,18 +4478,53 @@ int computeDatanodeWork() throws IOException {
       return 0;
     }
 
+    replicationWorkPartition = partition;
     final int numlive = heartbeatManager.getLiveDatanodeCount();
-    final int blocksToProcess = numlive * this.blocksReplWorkMultiplier;
-    final int nodesToProcess =
-        (int) Math.ceil(numlive * this.blocksInvalidateWorkPct);
+    final int blocksToProcess =
+        partition.share(numlive * this.blocksReplWorkMultiplier);
+    // Every namenode owns datanodes, so every one must process some
+    final int nodesToProcess = partition.shareOfLimit(
+        (int) Math.ceil(numlive * this.blocksInvalidateWorkPct));
 
-    int workFound = this.computeReplicationWork(blocksToProcess);
+    int replicationWork = this.computeReplicationWork(blocksToProcess);
 
     // Update counters
     this.updateState();
-    this.scheduledReplicationBlocksCount = workFound;
-    workFound += this.computeInvalidateWork(nodesToProcess);
-    return workFound;
+    this.scheduledReplicationBlocksCount = replicationWork;
+    int invalidationWork =
+        this.computeInvalidateWork(nodesToProcess, partition);
+
+    final NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (metrics != null) {
+      metrics.incrReplicationBlocksScheduled(replicationWork);
+      metrics.incrInvalidationBlocksScheduled(invalidationWork);
+    }
+    return replicationWork + invalidationWork;
+  }
+
+  /**
+   * Get the part of the replication work this namenode is responsible for.
+   * Unless the work is distributed, the leader does all of it. Otherwise
+   * the work is split between the active namenodes, and the partitions
+   * follow the membership kept by the leader election.
+   *
+   * @return the partition of this namenode, or null if this namenode should
+   * not do any replication work
+   */
+  ReplicationWorkPartition getReplicationWorkPartition() {
+    if (!distributeReplicationWork) {
+      return namesystem.isLeader() ? ReplicationWorkPartition.ALL : null;
+    }
+    NameNode nameNode = namesystem.getNameNode();
+    if (nameNode == null || nameNode.getLeaderElectionInstance() == null) {
+      return namesystem.isLeader() ? ReplicationWorkPartition.ALL : null;
+    }
+    SortedActiveNodeList activeNodes = nameNode.getActiveNameNodes();
+    if (activeNodes == null || activeNodes.isEmpty()) {
+      return namesystem.isLeader() ? ReplicationWorkPartition.ALL : null;
+    }
+    return ReplicationWorkPartition
+        .of(activeNodes.getSortedActiveNodes(), namesystem.getNamenodeId());
   }
 
   /**
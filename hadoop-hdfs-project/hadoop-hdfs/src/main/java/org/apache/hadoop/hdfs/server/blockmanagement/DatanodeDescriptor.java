@@ -36,6 +36,7 @@
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
+import org.apache.hadoop.hdfs.server.protocol.EncodingCommand;
 import org.apache.hadoop.hdfs.server.protocol.StorageReport;
 import org.apache.hadoop.hdfs.util.EnumCounters;
 import org.apache.hadoop.hdfs.util.LightWeightHashSet;
@@ -167,6 +168,13 @@ boolean contains(E e) {
       return blockq.contains(e);
     }
 
+    /**
+     * Removes the specified element if it is still queued
+     */
+    synchronized boolean remove(E e) {
+      return blockq.remove(e);
+    }
+
     synchronized void clear() {
       blockq.clear();
     }
@@ -193,6 +201,16 @@ synchronized void clear() {
    */
   private BlockQueue<BlockInfoUnderConstruction> recoverBlocks =
       new BlockQueue<>();
+  /**
+   * A queue of files to be encoded by this datanode
+   */
+  private BlockQueue<EncodingCommand.EncodingTask> encodingTasks =
+      new BlockQueue<>();
+  /**
+   * A queue of file encodings sent to this datanode that it has to cancel
+   */
+  private BlockQueue<EncodingCommand.EncodingTask> canceledEncodingTasks =
+      new BlockQueue<>();
 
   /**
    * A set of blocks to be invalidated by this datanode
@@ -335,6 +353,8 @@ public void clearBlockQueues() {
       this.invalidateBlocks.clear();
       this.recoverBlocks.clear();
       this.replicateBlocks.clear();
+      this.encodingTasks.clear();
+      this.canceledEncodingTasks.clear();
     }
   }
 
@@ -575,6 +595,23 @@ void addBlockToBeRecovered(BlockInfoUnderConstruction block) {
     recoverBlocks.offer(block);
   }
 
+  /**
+   * Store file encoding work.
+   */
+  public void addEncodingTask(EncodingCommand.EncodingTask task) {
+    encodingTasks.offer(task);
+  }
+
+  /**
+   * Withdraw file encoding work. The task is removed if it was not sent to
+   * the datanode yet, otherwise the datanode is told to cancel it.
+   */
+  public void cancelEncodingTask(EncodingCommand.EncodingTask task) {
+    if (!encodingTasks.remove(task)) {
+      canceledEncodingTasks.offer(task);
+    }
+  }
+
   /**
    * Store block invalidation work.
    */
@@ -631,6 +668,14 @@ public List<BlockTargetPair> getReplicationCommand(int maxTransfers) {
     return replicateBlocks.poll(maxTransfers);
   }
 
+  public List<EncodingCommand.EncodingTask> getEncodingCommand(int maxTasks) {
+    return encodingTasks.poll(maxTasks);
+  }
+
+  public List<EncodingCommand.EncodingTask> getEncodingCancelCommand() {
+    return canceledEncodingTasks.poll(Integer.MAX_VALUE);
+  }
+
   public BlockInfoUnderConstruction[] getLeaseRecoveryCommand(
       int maxTransfers) {
     List<BlockInfoUnderConstruction> blocks = recoverBlocks.poll(maxTransfers);
@@ -57,6 +57,7 @@
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
 import org.apache.hadoop.hdfs.server.protocol.DisallowedDatanodeException;
+import org.apache.hadoop.hdfs.server.protocol.EncodingCommand;
 import org.apache.hadoop.hdfs.server.protocol.RegisterCommand;
 import org.apache.hadoop.hdfs.server.protocol.StorageReport;
 import org.apache.hadoop.hdfs.util.CyclicIteration;
@@ -140,6 +141,10 @@ public class DatanodeManager {
    * Ask Datanode only up to this many blocks to delete.
    */
   final int blockInvalidateLimit;
+  /**
+   * Ask Datanode only up to this many files to encode.
+   */
+  private final int encodingTasksPerHeartbeat;
 
   /**
    * The interval for judging stale DataNodes for read/write
@@ -225,6 +230,9 @@ public class DatanodeManager {
             blockInvalidateLimit);
     LOG.info(DFSConfigKeys.DFS_BLOCK_INVALIDATE_LIMIT_KEY + "=" +
         this.blockInvalidateLimit);
+    this.encodingTasksPerHeartbeat = conf.getInt(
+        DFSConfigKeys.ENCODING_TASKS_PER_HEARTBEAT_KEY,
+        DFSConfigKeys.DEFAULT_ENCODING_TASKS_PER_HEARTBEAT);
 
     this.checkIpHostnameInRegistration = conf.getBoolean(
         DFSConfigKeys.DFS_NAMENODE_DATANODE_REGISTRATION_IP_HOSTNAME_CHECK_KEY,
@@ -1231,6 +1239,20 @@ public DatanodeCommand[] handleHeartbeat(DatanodeRegistration nodeReg,
                   blks));
         }
         
+        //check file encoding, the cancels go first so that the encoding of a
+        //file rescheduled on the same datanode is not canceled
+        List<EncodingCommand.EncodingTask> canceledEncodingTasks =
+            nodeinfo.getEncodingCancelCommand();
+        if (canceledEncodingTasks != null) {
+          cmds.add(new EncodingCommand(DatanodeProtocol.DNA_ENCODE_CANCEL,
+              canceledEncodingTasks));
+        }
+        List<EncodingCommand.EncodingTask> encodingTasks =
+            nodeinfo.getEncodingCommand(encodingTasksPerHeartbeat);
+        if (encodingTasks != null) {
+          cmds.add(new EncodingCommand(encodingTasks));
+        }
+
         blockManager.addKeyUpdateCommand(cmds, nodeinfo);
 
         // check for balancer bandwidth update
@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import io.hops.leader_election.node.ActiveNode;
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+
+import java.util.List;
+
+/**
+ * The share of the replication and invalidation work that a namenode is
+ * responsible for. Every active namenode sorts the active namenode list the
+ * same way, so each one can compute its own partition locally and all of
+ * them agree on who owns which datanode.
+ */
+class ReplicationWorkPartition {
+
+  /**
+   * Partition of a namenode that does all the work by itself.
+   */
+  static final ReplicationWorkPartition ALL =
+      new ReplicationWorkPartition(0, 1);
+
+  private final int index;
+  private final int count;
+
+  ReplicationWorkPartition(int index, int count) {
+    if (count <= 0 || index < 0 || index >= count) {
+      throw new IllegalArgumentException(
+          "Invalid partition " + index + " of " + count);
+    }
+    this.index = index;
+    this.count = count;
+  }
+
+  /**
+   * Compute the partition of the namenode with the given id.
+   *
+   * @param sortedActiveNodes
+   *     active namenodes, sorted by id
+   * @param namenodeId
+   *     id of this namenode
+   * @return the partition of this namenode, or null if it is not in the
+   * active namenode list yet
+   */
+  static ReplicationWorkPartition of(List<ActiveNode> sortedActiveNodes,
+      long namenodeId) {
+    if (sortedActiveNodes == null) {
+      return null;
+    }
+    for (int i = 0; i < sortedActiveNodes.size(); i++) {
+      if (sortedActiveNodes.get(i).getId() == namenodeId) {
+        return new ReplicationWorkPartition(i, sortedActiveNodes.size());
+      }
+    }
+    return null;
+  }
+
+  int getIndex() {
+    return index;
+  }
+
+  int getCount() {
+    return count;
+  }
+
+  /**
+   * Share of a work budget of the given size for this namenode. The
+   * budgets of all partitions add up to the given size.
+   */
+  int share(int total) {
+    int share = total / count;
+    if (index < total % count) {
+      share++;
+    }
+    return share;
+  }
+
+  /**
+   * Share of a per datanode limit for this namenode. Unlike {@link #share},
+   * every namenode gets at least one unit of a positive limit, otherwise
+   * the namenodes past the limit could never schedule work. With more
+   * namenodes than the limit allows, the namenodes together may go over
+   * the limit by up to one unit each.
+   */
+  int shareOfLimit(int limit) {
+    return limit <= 0 ? limit : Math.max(1, share(limit));
+  }
+
+  /**
+   * Is the given datanode's invalidation work owned by this namenode?
+   */
+  boolean owns(DatanodeID datanode) {
+    String uuid = datanode.getDatanodeUuid();
+    int hash = uuid == null ? datanode.getXferAddr().hashCode() :
+        uuid.hashCode();
+    return (hash & Integer.MAX_VALUE) % count == index;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ReplicationWorkPartition)) {
+      return false;
+    }
+    ReplicationWorkPartition that = (ReplicationWorkPartition) o;
+    return index == that.index && count == that.count;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * index + count;
+  }
+
+  @Override
+  public String toString() {
+    return "partition " + (index + 1) + " of " + count;
+  }
+}
@@ -109,12 +109,33 @@ class UnderReplicatedBlocks implements Iterable<Block> {
    */
   static final int QUEUE_WITH_CORRUPT_BLOCKS = 4;
   
+  /**
+   * Whether the replication index only moves forward within a pass over the
+   * queues. This is needed when several namenodes pick blocks from the
+   * queues, see {@link #setForwardOnlyReplicationIndex(boolean)}.
+   */
+  private volatile boolean forwardOnlyReplicationIndex = false;
+
   /**
    * Create an object.
    */
   UnderReplicatedBlocks() {
   }
 
+  /**
+   * When several namenodes share the replication work, each of them claims a
+   * window of blocks by advancing the shared replication index. Moving the
+   * index back, when a block before it leaves the queue, would hand blocks
+   * of a window already claimed by one namenode to the next one. With a
+   * forward-only index, {@link #decrementReplicationIndex(int)} does nothing
+   * and the index only goes back to the start of the queues once the last
+   * queue has been read to its end. Blocks skipped because the queues
+   * shrank are picked up on the next pass.
+   */
+  void setForwardOnlyReplicationIndex(boolean forwardOnly) {
+    this.forwardOnlyReplicationIndex = forwardOnly;
+  }
+
   /**
    * Empty the queues.
    */
@@ -400,9 +421,13 @@ private List<List<Block>> chooseUnderReplicatedBlocksInt(int blocksToProcess)
       List<Block> blks = priorityQueuestmp.get(priority);
       blocksToReplicate.get(priority).addAll(blks);
       blockCount += blks.size();
-      replIndex += blks.size();
+      // a forward-only index skips the whole window it claimed, including
+      // the blocks that were filtered out
+      replIndex += forwardOnlyReplicationIndex ? urbs.size() : blks.size();
       
-      if (count(priority) <= remainingblksToProcess && priority == LEVEL - 1) {
+      if (priority == LEVEL - 1 && (forwardOnlyReplicationIndex
+          ? replIndex >= count(priority)
+          : count(priority) <= remainingblksToProcess)) {
         // reset all priorities replication index to 0 because there is no
         // recently added blocks in any list.
         for (int i = 0; i < LEVEL; i++) {
@@ -554,13 +579,17 @@ int getPriority() {
   }
 
   /**
-   * This method is to decrement the replication index for the given priority
+   * This method is to decrement the replication index for the given priority.
+   * It does nothing when the index is forward-only.
    *
    * @param priority
    *     - int priority level
    */
   public void decrementReplicationIndex(int priority)
       throws StorageException, TransactionContextException {
+    if (forwardOnlyReplicationIndex) {
+      return;
+    }
     List<Integer> priorityToReplIdx = getReplicationIndex();
     Integer replIdx = priorityToReplIdx.get(priority);
     replIdx = replIdx <= 0 ? 0 : (replIdx - 1);
@@ -42,6 +42,7 @@
 import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
+import org.apache.hadoop.hdfs.server.protocol.EncodingCommand;
 import org.apache.hadoop.hdfs.server.protocol.FinalizeCommand;
 import org.apache.hadoop.hdfs.server.protocol.KeyUpdateCommand;
 import org.apache.hadoop.hdfs.server.protocol.NamespaceInfo;
@@ -637,6 +638,18 @@ assert getBlockPoolId().equals(bp) :
           dxcs.balanceThrottler.setBandwidth(bandwidth);
         }
         break;
+      case DatanodeProtocol.DNA_ENCODE:
+        EncodingCommand ecmd = (EncodingCommand) cmd;
+        LOG.info("DatanodeCommand action: DNA_ENCODE of " +
+            ecmd.getTasks().size() + " files");
+        dn.encodingWorker.encode(ecmd, actor);
+        break;
+      case DatanodeProtocol.DNA_ENCODE_CANCEL:
+        EncodingCommand ccmd = (EncodingCommand) cmd;
+        LOG.info("DatanodeCommand action: DNA_ENCODE_CANCEL of " +
+            ccmd.getTasks().size() + " files");
+        dn.encodingWorker.cancel(ccmd);
+        break;
       default:
         LOG.warn("Unknown DatanodeCommand action: " + cmd.getAction());
     }
@@ -18,6 +18,7 @@
 package org.apache.hadoop.hdfs.server.datanode;
 
 import com.google.common.annotations.VisibleForTesting;
+import io.hops.erasure_coding.Report;
 import io.hops.leader_election.node.ActiveNode;
 import io.hops.leader_election.node.SortedActiveNodeList;
 import org.apache.commons.logging.Log;
@@ -513,6 +514,13 @@ void trySendErrorReport(int errCode, String errMsg) {
     }
   }
 
+  /**
+   * Report the outcome of encoding tasks sent by this namenode.
+   */
+  void reportEncodings(Report[] reports) throws IOException {
+    bpNamenode.encodingReport(bpRegistration, reports);
+  }
+
   /**
    * Report a bad block from another DN in this cluster.
    */
@@ -275,6 +275,7 @@ public static InetSocketAddress createSocketAddr(String target) {
   
   volatile DataBlockScanner blockScanner = null;
   private DirectoryScanner directoryScanner = null;
+  EncodingWorker encodingWorker;
   
   /**
    * Activated plug-ins.
@@ -805,6 +806,8 @@ void startDataNode(Configuration conf, AbstractList<StorageLocation> dataDirs,
     // Create the ReadaheadPool from the DataNode context so we can
     // exit without having to explicitly shutdown its thread pool.
     readaheadPool = ReadaheadPool.getInstance();
+
+    encodingWorker = new EncodingWorker(conf);
   }
 
   public static String generateUuid() {
@@ -1285,6 +1288,9 @@ public void shutdown() {
     if (ipcServer != null) {
       ipcServer.stop();
     }
+    if (encodingWorker != null) {
+      encodingWorker.shutdown();
+    }
     
     // Interrupt the checkDiskErrorThread and terminate it.
     if(this.checkDiskErrorThread != null) {
@@ -1475,7 +1481,12 @@ private void handleDiskError(String errMsgr) {
    */
   @Override // DataNodeMXBean
   public int getXceiverCount() {
-    return threadGroup == null ? 0 : threadGroup.activeCount();
+    int count = threadGroup == null ? 0 : threadGroup.activeCount();
+    if (dataXceiverServer != null) {
+      count += ((DataXceiverServer) dataXceiverServer.getRunnable())
+          .getPooledXceiverCount();
+    }
+    return count;
   }
 
   private void reportBadBlock(final BPOfferService bpos,
@@ -101,16 +101,32 @@ class DataXceiver extends Receiver implements Runnable {
    * on the socket.
    */
   private String previousOpClientName;
+
+  /**
+   * Whether this xceiver runs on a {@link DataXceiverPool}, in which case
+   * it returns from {@link #run} rather than wait for the next operation.
+   */
+  private final boolean pooled;
+  private int opsProcessed = 0;
+  private boolean idle = false;
+  private boolean resumed = false;
+  private Op nextOp;
   
   public static DataXceiver create(Peer peer, DataNode dn,
       DataXceiverServer dataXceiverServer) throws IOException {
-    return new DataXceiver(peer, dn, dataXceiverServer);
+    return new DataXceiver(peer, dn, dataXceiverServer, false);
+  }
+
+  static DataXceiver createPooled(Peer peer, DataNode dn,
+      DataXceiverServer dataXceiverServer) throws IOException {
+    return new DataXceiver(peer, dn, dataXceiverServer, true);
   }
   
   private DataXceiver(Peer peer, DataNode datanode,
-      DataXceiverServer dataXceiverServer) throws IOException {
+      DataXceiverServer dataXceiverServer, boolean pooled) throws IOException {
 
     this.peer = peer;
+    this.pooled = pooled;
     this.dnConf = datanode.getDnConf();
     this.socketIn = peer.getInputStream();
     this.socketOut = peer.getOutputStream();
@@ -155,67 +171,116 @@ private OutputStream getOutputStream() {
     return socketOut;
   }
 
+  /**
+   * Called by the pool before it runs the xceiver again once its connection
+   * has data for the next operation.
+   *
+   * @param op
+   *     the next operation if the pool already read its header, null
+   *     otherwise
+   */
+  void resume(Op op) {
+    this.nextOp = op;
+    this.resumed = true;
+    this.idle = false;
+  }
+
+  /**
+   * @return true if the last run of a pooled xceiver returned to wait for
+   * the next operation on its connection
+   */
+  boolean isIdle() {
+    return idle;
+  }
+
+  int getOpsProcessed() {
+    return opsProcessed;
+  }
+
+  /**
+   * Close the connection.
+   */
+  void release() {
+    dataXceiverServer.closePeer(peer);
+    IOUtils.closeStream(in);
+  }
+
   /**
    * Read/write data from/to the DataXceiverServer.
    */
   @Override
   public void run() {
-    int opsProcessed = 0;
     Op op = null;
     
-    dataXceiverServer.addPeer(peer);
     try {
-      peer.setWriteTimeout(datanode.getDnConf().socketWriteTimeout);
-      InputStream input = socketIn;
-      if (dnConf.encryptDataTransfer) {
-        IOStreamPair encryptedStreams = null;
-        try {
-          encryptedStreams = DataTransferEncryptor
-              .getEncryptedStreams(socketOut, socketIn,
-                  datanode.blockPoolTokenSecretManager,
-                  dnConf.encryptionAlgorithm);
-        } catch (InvalidMagicNumberException imne) {
-          LOG.info("Failed to read expected encryption handshake from client " + "at " + peer.getRemoteAddressString()
-              + ". Perhaps the client " + "is running an older version of Hadoop which does not support " + "encryption");
-          return;
+      if (in == null) {
+        dataXceiverServer.addPeer(peer);
+        peer.setWriteTimeout(datanode.getDnConf().socketWriteTimeout);
+        InputStream input = socketIn;
+        if (dnConf.encryptDataTransfer) {
+          IOStreamPair encryptedStreams = null;
+          try {
+            encryptedStreams = DataTransferEncryptor
+                .getEncryptedStreams(socketOut, socketIn,
+                    datanode.blockPoolTokenSecretManager,
+                    dnConf.encryptionAlgorithm);
+          } catch (InvalidMagicNumberException imne) {
+            LOG.info("Failed to read expected encryption handshake from client " + "at " + peer.getRemoteAddressString()
+                + ". Perhaps the client " + "is running an older version of Hadoop which does not support " + "encryption");
+            return;
+          }
+          input = encryptedStreams.in;
+          socketOut = encryptedStreams.out;
         }
-        input = encryptedStreams.in;
-        socketOut = encryptedStreams.out;
+        input = new BufferedInputStream(input, HdfsConstants.SMALL_BUFFER_SIZE);
+
+        super.initialize(new DataInputStream(input));
       }
-      input = new BufferedInputStream(input, HdfsConstants.SMALL_BUFFER_SIZE);
-      
-      super.initialize(new DataInputStream(input));
       
       // We process requests in a loop, and stay around for a short timeout.
       // This optimistic behaviour allows the other end to reuse connections.
       // Setting keepalive timeout to 0 disable this behavior.
       do {
-        updateCurrentThreadName("Waiting for operation #" + (opsProcessed + 1));
-
-        try {
-          if (opsProcessed != 0) {
-            assert dnConf.socketKeepaliveTimeout > 0;
-            peer.setReadTimeout(dnConf.socketKeepaliveTimeout);
-          } else {
-            peer.setReadTimeout(dnConf.socketTimeout);
-          }
-          op = readOp();
-        } catch (InterruptedIOException ignored) {
-          // Time out while we wait for client rpc
+        boolean hasData = resumed;
+        resumed = false;
+        if (nextOp != null) {
+          // the pool already read the header of the op
+          peer.setReadTimeout(dnConf.socketTimeout);
+          op = nextOp;
+          nextOp = null;
+        } else if (pooled && !hasData && in.available() == 0) {
+          // Let the pool wait for the next op rather than hold a thread
+          idle = true;
           break;
-        } catch (IOException err) {
-          // Since we optimistically expect the next op, it's quite normal to get EOF here.
-          if (opsProcessed > 0 && (err instanceof EOFException ||
-              err instanceof ClosedChannelException)) {
-            if (LOG.isDebugEnabled()) {
-              LOG.debug(
-                  "Cached " + peer + " closing after " + opsProcessed +
-                      " ops");
+        } else {
+          updateCurrentThreadName(
+              "Waiting for operation #" + (opsProcessed + 1));
+
+          try {
+            if (opsProcessed != 0) {
+              assert dnConf.socketKeepaliveTimeout > 0;
+              peer.setReadTimeout(dnConf.socketKeepaliveTimeout);
+            } else {
+              peer.setReadTimeout(dnConf.socketTimeout);
             }
-          } else {
-            throw err;
+            op = readOp();
+          } catch (InterruptedIOException ignored) {
+            // Time out while we wait for client rpc
+            break;
+          } catch (IOException err) {
+            // Since we optimistically expect the next op, it's quite normal to get EOF here.
+            if (opsProcessed > 0 && (err instanceof EOFException ||
+                err instanceof ClosedChannelException)) {
+              if (LOG.isDebugEnabled()) {
+                LOG.debug(
+                    "Cached " + peer + " closing after " + opsProcessed +
+                        " ops");
+              }
+            } else {
+              throw err;
+            }
+            break;
           }
-          break;
         }
 
         // restore normal timeout
@@ -244,14 +309,15 @@ public void run() {
         LOG.error(s, t);
       }
     } finally {
-      if (LOG.isDebugEnabled()) {
-        LOG.debug(
-            datanode.getDisplayName() + ":Number of active connections is: " +
-                datanode.getXceiverCount());
+      if (!idle) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug(
+              datanode.getDisplayName() + ":Number of active connections is: " +
+                  datanode.getXceiverCount());
+        }
+        updateCurrentThreadName("Cleaning up");
+        release();
       }
-      updateCurrentThreadName("Cleaning up");
-      dataXceiverServer.closePeer(peer);
-      IOUtils.closeStream(in);
     }
   }
 
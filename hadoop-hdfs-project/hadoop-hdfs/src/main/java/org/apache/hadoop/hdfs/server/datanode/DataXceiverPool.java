@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.net.Peer;
+import org.apache.hadoop.hdfs.net.TcpPeerServer;
+import org.apache.hadoop.hdfs.protocol.datatransfer.DataTransferProtocol;
+import org.apache.hadoop.hdfs.protocol.datatransfer.Op;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.util.Daemon;
+import org.apache.hadoop.util.Time;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the {@link DataXceiver}s of TCP connections on bounded worker pools
+ * instead of a thread per connection.
+ * <p/>
+ * A few selector threads wait for the next operation on idle connections
+ * and read its header, so that connections kept alive between operations
+ * do not hold a thread. Operations sending data run on the sender pool and
+ * operations receiving blocks on the receiver pool, so that long pipeline
+ * writes cannot starve reads. A send is admitted only if the sender pool
+ * has room in its queue, otherwise its connection is closed and the client
+ * retries the operation on another datanode.
+ * <p/>
+ * Receiving operations are never queued. A pipeline write holds its thread
+ * until the write it mirrors to the next datanode started, and mirrored
+ * writes and transfers from other datanodes cannot be told apart from the
+ * writes of clients by their header. Queueing them behind each other could
+ * deadlock datanodes mirroring to each other, so they are handed to an
+ * idle receiver thread, or to a new one up to the xceiver limit of the
+ * server.
+ */
+class DataXceiverPool {
+  public static final Log LOG = DataNode.LOG;
+
+  /**
+   * The data transfer version and the op code.
+   */
+  private static final int OP_HEADER_LENGTH = 3;
+
+  private final DataNode datanode;
+  private final DataXceiverServer dataXceiverServer;
+  private final DNConf dnConf;
+  private final ThreadPoolExecutor senders;
+  private final ThreadPoolExecutor receivers;
+  private final SelectorThread[] selectors;
+  private final AtomicInteger nextSelector = new AtomicInteger();
+  private volatile boolean running = true;
+
+  /**
+   * A connection and its xceiver, waiting in a selector or running on a
+   * worker pool.
+   */
+  private class Connection implements Runnable {
+    private final Peer peer;
+    private final DataXceiver xceiver;
+    private final SocketChannel channel;
+    private final SelectorThread selector;
+    private final ByteBuffer header = ByteBuffer.allocate(OP_HEADER_LENGTH);
+    private SelectionKey key;
+    private boolean waiting;
+    private long deadline;
+    private long queuedAt;
+    private Op op;
+
+    Connection(Peer peer, DataXceiver xceiver, SocketChannel channel,
+        SelectorThread selector) {
+      this.peer = peer;
+      this.xceiver = xceiver;
+      this.channel = channel;
+      this.selector = selector;
+    }
+
+    @Override
+    public void run() {
+      if (datanode.metrics != null) {
+        datanode.metrics.decrOpsQueued(op);
+        datanode.metrics.addXceiverQueueTime(Time.monotonicNow() - queuedAt);
+      }
+      Thread thread = Thread.currentThread();
+      String name = thread.getName();
+      try {
+        xceiver.run();
+      } finally {
+        thread.setName(name);
+      }
+      if (xceiver.isIdle()) {
+        deadline = Time.monotonicNow() + dnConf.socketKeepaliveTimeout;
+        selector.add(this);
+      }
+    }
+  }
+
+  DataXceiverPool(Configuration conf, DataNode datanode,
+      DataXceiverServer dataXceiverServer) throws IOException {
+    this.datanode = datanode;
+    this.dataXceiverServer = dataXceiverServer;
+    this.dnConf = datanode.getDnConf();
+
+    int senderThreads =
+        conf.getInt(DFSConfigKeys.DFS_DATANODE_TRANSFER_SENDER_THREADS_KEY,
+            DFSConfigKeys.DFS_DATANODE_TRANSFER_SENDER_THREADS_DEFAULT);
+    this.senders = createPool(senderThreads, senderThreads,
+        new LinkedBlockingQueue<Runnable>(conf.getInt(
+            DFSConfigKeys.DFS_DATANODE_TRANSFER_MAX_QUEUED_OPS_KEY,
+            DFSConfigKeys.DFS_DATANODE_TRANSFER_MAX_QUEUED_OPS_DEFAULT)),
+        "DataXceiver sender-%d");
+    int receiverThreads =
+        conf.getInt(DFSConfigKeys.DFS_DATANODE_TRANSFER_RECEIVER_THREADS_KEY,
+            DFSConfigKeys.DFS_DATANODE_TRANSFER_RECEIVER_THREADS_DEFAULT);
+    this.receivers = createPool(receiverThreads,
+        Math.max(receiverThreads, dataXceiverServer.maxXceiverCount),
+        new SynchronousQueue<Runnable>(), "DataXceiver receiver-%d");
+
+    int numSelectors =
+        conf.getInt(DFSConfigKeys.DFS_DATANODE_TRANSFER_SELECTOR_THREADS_KEY,
+            DFSConfigKeys.DFS_DATANODE_TRANSFER_SELECTOR_THREADS_DEFAULT);
+    this.selectors = new SelectorThread[Math.max(1, numSelectors)];
+    for (int i = 0; i < selectors.length; i++) {
+      selectors[i] = new SelectorThread(i);
+    }
+    LOG.info("Transferring data with " + selectors.length +
+        " selector threads, " + senders.getMaximumPoolSize() +
+        " sender threads and " + receivers.getCorePoolSize() + " to " +
+        receivers.getMaximumPoolSize() + " receiver threads");
+  }
+
+  private static ThreadPoolExecutor createPool(int threads, int maxThreads,
+      BlockingQueue<Runnable> queue, String nameFormat) {
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, maxThreads, 60,
+        TimeUnit.SECONDS, queue,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat(nameFormat)
+            .build());
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  void start() {
+    for (SelectorThread selector : selectors) {
+      selector.start();
+    }
+  }
+
+  void shutdown() {
+    running = false;
+    for (SelectorThread selector : selectors) {
+      selector.selector.wakeup();
+    }
+    senders.shutdownNow();
+    receivers.shutdownNow();
+  }
+
+  /**
+   * Wait for the first operation of a new connection.
+   *
+   * @return false if the connection cannot be selected and needs a thread
+   * of its own
+   */
+  boolean add(Peer peer) throws IOException {
+    SocketChannel channel = TcpPeerServer.getChannel(peer);
+    if (channel == null) {
+      return false;
+    }
+    dataXceiverServer.addPeer(peer);
+    SelectorThread selector = selectors[
+        (nextSelector.getAndIncrement() & Integer.MAX_VALUE) %
+            selectors.length];
+    Connection connection = new Connection(peer,
+        DataXceiver.createPooled(peer, datanode, dataXceiverServer), channel,
+        selector);
+    connection.deadline = Time.monotonicNow() + dnConf.socketTimeout;
+    selector.add(connection);
+    return true;
+  }
+
+  /**
+   * @return the number of operations running on the pools
+   */
+  int getActiveCount() {
+    return senders.getActiveCount() + receivers.getActiveCount();
+  }
+
+  /**
+   * Queue the next operation of a connection on the pool for its kind.
+   */
+  private void dispatch(Connection connection, Op op) {
+    connection.op = op;
+    connection.xceiver.resume(op);
+    ThreadPoolExecutor pool = isReceiving(op) ? receivers : senders;
+    connection.queuedAt = Time.monotonicNow();
+    if (datanode.metrics != null) {
+      datanode.metrics.incrOpsQueued(op);
+    }
+    try {
+      pool.execute(connection);
+    } catch (RejectedExecutionException e) {
+      if (datanode.metrics != null) {
+        datanode.metrics.decrOpsQueued(op);
+        datanode.metrics.incrXceiverOpsRejected();
+      }
+      if (running) {
+        LOG.warn(datanode.getDisplayName() + ":DataXceiverPool: " +
+            (op == null ? "operation" : op) + " from " +
+            connection.peer + " rejected, " + pool.getActiveCount() +
+            " operations are running and " + pool.getQueue().size() +
+            " are waiting");
+      }
+      connection.xceiver.release();
+    }
+  }
+
+  /**
+   * @return true if the operation receives a block. The op is null if the
+   * data transfer is encrypted, these run on the receiver pool as they may
+   * be writes.
+   */
+  private static boolean isReceiving(Op op) {
+    if (op == null) {
+      return true;
+    }
+    switch (op) {
+      case WRITE_BLOCK:
+      case REPLACE_BLOCK:
+      case TRANSFER_BLOCK:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private class SelectorThread implements Runnable {
+    private final Selector selector;
+    private final Daemon daemon;
+    private final Queue<Connection> pending =
+        new ConcurrentLinkedQueue<Connection>();
+
+    SelectorThread(int id) throws IOException {
+      this.selector = Selector.open();
+      this.daemon = new Daemon(this);
+      this.daemon.setName("DataXceiver selector-" + id);
+    }
+
+    void start() {
+      daemon.start();
+    }
+
+    /**
+     * Wait for the next operation of the connection.
+     */
+    void add(Connection connection) {
+      pending.add(connection);
+      selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+      // idle connections are closed at most half a keepalive timeout late
+      long checkInterval = dnConf.socketKeepaliveTimeout > 0 ?
+          Math.max(10, Math.min(1000, dnConf.socketKeepaliveTimeout / 2)) :
+          1000;
+      long nextCheck = Time.monotonicNow() + checkInterval;
+      while (running) {
+        try {
+          register();
+          selector.select(checkInterval);
+          Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+          while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            if (key.isValid() && key.isReadable()) {
+              readable((Connection) key.attachment());
+            }
+          }
+          long now = Time.monotonicNow();
+          if (now >= nextCheck) {
+            closeExpired(now);
+            nextCheck = now + checkInterval;
+          }
+        } catch (Throwable t) {
+          LOG.error(datanode.getDisplayName() + ":DataXceiverPool: ", t);
+        }
+      }
+      for (SelectionKey key : selector.keys()) {
+        ((Connection) key.attachment()).xceiver.release();
+      }
+      Connection connection;
+      while ((connection = pending.poll()) != null) {
+        connection.xceiver.release();
+      }
+      IOUtils.cleanup(LOG, selector);
+    }
+
+    private void register() {
+      Connection connection;
+      while ((connection = pending.poll()) != null) {
+        try {
+          if (connection.key == null) {
+            connection.channel.configureBlocking(false);
+            connection.key = connection.channel
+                .register(selector, SelectionKey.OP_READ, connection);
+          } else {
+            connection.key.interestOps(SelectionKey.OP_READ);
+          }
+          connection.waiting = true;
+        } catch (CancelledKeyException e) {
+          // the connection was closed while running
+          connection.xceiver.release();
+        } catch (IOException e) {
+          // the xceiver or the client closed the connection
+          if (!(e instanceof ClosedChannelException)) {
+            LOG.warn(datanode.getDisplayName() + ":DataXceiverPool: ", e);
+          }
+          connection.xceiver.release();
+        }
+      }
+    }
+
+    private void readable(Connection connection) {
+      Op op = null;
+      if (!dnConf.encryptDataTransfer) {
+        try {
+          if (connection.channel.read(connection.header) < 0) {
+            if (LOG.isDebugEnabled()) {
+              LOG.debug("Cached " + connection.peer + " closing after " +
+                  connection.xceiver.getOpsProcessed() + " ops");
+            }
+            connection.xceiver.release();
+            return;
+          }
+        } catch (IOException e) {
+          LOG.warn(datanode.getDisplayName() + ":DataXceiverPool: ", e);
+          connection.xceiver.release();
+          return;
+        }
+        if (connection.header.hasRemaining()) {
+          return;
+        }
+        connection.header.flip();
+        short version = connection.header.getShort();
+        byte code = connection.header.get();
+        connection.header.clear();
+        if (version != DataTransferProtocol.DATA_TRANSFER_VERSION) {
+          LOG.warn(datanode.getDisplayName() + ":DataXceiverPool: " +
+              "Version Mismatch (Expected: " +
+              DataTransferProtocol.DATA_TRANSFER_VERSION + ", Received: " +
+              version + " ) from " + connection.peer);
+          connection.xceiver.release();
+          return;
+        }
+        op = Op.valueOf(code);
+        if (op == null) {
+          LOG.warn(datanode.getDisplayName() + ":DataXceiverPool: " +
+              "Unknown op " + code + " from " + connection.peer);
+          connection.xceiver.release();
+          return;
+        }
+      }
+      // an encrypted op is read by the xceiver itself
+      connection.waiting = false;
+      connection.key.interestOps(0);
+      dispatch(connection, op);
+    }
+
+    private void closeExpired(long now) {
+      for (SelectionKey key : selector.keys()) {
+        Connection connection = (Connection) key.attachment();
+        if (connection.waiting && connection.deadline <= now) {
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Cached " + connection.peer + " closing after " +
+                connection.xceiver.getOpsProcessed() + " ops");
+          }
+          connection.xceiver.release();
+        }
+      }
+    }
+  }
+}
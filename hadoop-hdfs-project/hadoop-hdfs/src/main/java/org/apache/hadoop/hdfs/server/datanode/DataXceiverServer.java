@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hdfs.server.datanode;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.logging.Log;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
@@ -36,6 +37,7 @@
 import java.util.Set;
 import org.apache.hadoop.hdfs.net.Peer;
 import org.apache.hadoop.hdfs.net.PeerServer;
+import org.apache.hadoop.hdfs.net.TcpPeerServer;
 
 
 /**
@@ -113,9 +115,17 @@ synchronized void release() {
    * i.e. either the actual block size or the default block size.
    */
   long estimateBlockSize;
+
+  /**
+   * Runs the xceivers of TCP connections on bounded worker pools if
+   * {@link DFSConfigKeys#DFS_DATANODE_TRANSFER_NIO_ENABLED_KEY} is set, null
+   * otherwise.
+   */
+  private final DataXceiverPool xceiverPool;
   
   
-  DataXceiverServer(PeerServer peerServer, Configuration conf, DataNode datanode) {
+  DataXceiverServer(PeerServer peerServer, Configuration conf,
+      DataNode datanode) throws IOException {
     
     this.peerServer = peerServer;
     this.datanode = datanode;
@@ -133,15 +143,32 @@ synchronized void release() {
             DFSConfigKeys.DFS_DATANODE_BALANCE_BANDWIDTHPERSEC_DEFAULT),
         conf.getInt(DFSConfigKeys.DFS_DATANODE_BALANCE_MAX_NUM_CONCURRENT_MOVES_KEY,
             DFSConfigKeys.DFS_DATANODE_BALANCE_MAX_NUM_CONCURRENT_MOVES_DEFAULT));
+
+    if (peerServer instanceof TcpPeerServer &&
+        conf.getBoolean(DFSConfigKeys.DFS_DATANODE_TRANSFER_NIO_ENABLED_KEY,
+            DFSConfigKeys.DFS_DATANODE_TRANSFER_NIO_ENABLED_DEFAULT)) {
+      this.xceiverPool = new DataXceiverPool(conf, datanode, this);
+    } else {
+      this.xceiverPool = null;
+    }
   }
 
   @Override
   public void run() {
     Peer peer = null;
+    if (xceiverPool != null) {
+      xceiverPool.start();
+    }
     while (datanode.shouldRun) {
       try {
         peer = peerServer.accept();
 
+        // Pooled connections are bounded by the pools, and hold no thread
+        // while they wait for an operation
+        if (xceiverPool != null && xceiverPool.add(peer)) {
+          continue;
+        }
+
         // Make sure the xceiver count is not exceeded
         int curXceiverCount = datanode.getXceiverCount();
         if (curXceiverCount > maxXceiverCount) {
@@ -180,6 +207,9 @@ public void run() {
         datanode.shouldRun = false;
       }
     }
+    if (xceiverPool != null) {
+      xceiverPool.shutdown();
+    }
     synchronized (this) {
       for (Peer p : peers) {
         IOUtils.cleanup(LOG, p);
@@ -204,6 +234,22 @@ void kill() {
     }
   }
   
+  /**
+   * @return the number of xceivers running on the worker pools
+   */
+  int getPooledXceiverCount() {
+    return xceiverPool == null ? 0 : xceiverPool.getActiveCount();
+  }
+
+  /**
+   * @return the number of open connections, running or waiting for their
+   * next operation
+   */
+  @VisibleForTesting
+  synchronized int getPeerCount() {
+    return peers.size();
+  }
+
   synchronized void addPeer(Peer peer) {
     peers.add(peer);
   }
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.hops.erasure_coding.Codec;
+import io.hops.erasure_coding.FileEncoder;
+import io.hops.erasure_coding.Report;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
+import org.apache.hadoop.hdfs.server.protocol.EncodingCommand;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the encoding tasks sent by the namenode in {@link EncodingCommand}s
+ * on a bounded pool of threads and reports their outcome to the namenode
+ * that sent them.
+ * <p/>
+ * The encoding itself is done by the {@link FileEncoder} configured in
+ * {@link DFSConfigKeys#FILE_ENCODER_CLASSNAME_KEY}, it is loaded with the
+ * first command so that datanodes without the erasure coding library only
+ * fail the tasks they receive.
+ * <p/>
+ * The namenode cancels the tasks it gave up on with a
+ * {@link DatanodeProtocol#DNA_ENCODE_CANCEL} command. A canceled task that
+ * did not start is dropped, a running one is interrupted, and neither is
+ * reported: the namenode forgot them and may already have sent a new
+ * encoding of the same file.
+ */
+class EncodingWorker {
+
+  static final Log LOG = LogFactory.getLog(EncodingWorker.class);
+
+  private final Configuration conf;
+  private final ExecutorService executor;
+  // the tasks queued or running, by source path
+  private final Map<String, Encoding> encodings = new HashMap<>();
+  private FileEncoder encoder;
+
+  private class Encoding implements Runnable {
+    private final EncodingCommand.EncodingTask task;
+    private final BPServiceActor actor;
+    private Thread thread;
+    private boolean canceled;
+
+    private Encoding(EncodingCommand.EncodingTask task, BPServiceActor actor) {
+      this.task = task;
+      this.actor = actor;
+    }
+
+    @Override
+    public void run() {
+      synchronized (EncodingWorker.this) {
+        if (canceled) {
+          return;
+        }
+        thread = Thread.currentThread();
+      }
+      Report.Status status = encode(task);
+      synchronized (EncodingWorker.this) {
+        thread = null;
+        if (canceled) {
+          // the interrupt may not have been seen by the encoder
+          Thread.interrupted();
+          LOG.info("Encoding of " + task.getSourcePath() + " was canceled");
+          return;
+        }
+        encodings.remove(task.getSourcePath());
+      }
+      try {
+        actor.reportEncodings(new Report[]{
+            new Report(task.getSourcePath(), status)});
+      } catch (IOException e) {
+        LOG.warn("Could not report the encoding of " +
+            task.getSourcePath() + " to " + actor.getNNSocketAddress(), e);
+      }
+    }
+
+    /**
+     * Called with the lock of the worker held.
+     */
+    private void cancel() {
+      canceled = true;
+      if (thread != null) {
+        thread.interrupt();
+      }
+    }
+  }
+
+  EncodingWorker(Configuration conf) {
+    this.conf = conf;
+    int threads = conf.getInt(DFSConfigKeys.DATANODE_ENCODING_THREADS_KEY,
+        DFSConfigKeys.DEFAULT_DATANODE_ENCODING_THREADS);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+        60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("EncodingWorker-%d").build());
+    executor.allowCoreThreadTimeOut(true);
+    this.executor = executor;
+  }
+
+  /**
+   * Queue the tasks of the command.
+   *
+   * @param actor
+   *     the actor of the namenode that sent the command
+   */
+  synchronized void encode(EncodingCommand cmd, BPServiceActor actor) {
+    for (EncodingCommand.EncodingTask task : cmd.getTasks()) {
+      Encoding encoding = new Encoding(task, actor);
+      Encoding previous = encodings.put(task.getSourcePath(), encoding);
+      if (previous != null) {
+        previous.cancel();
+      }
+      executor.execute(encoding);
+    }
+  }
+
+  /**
+   * Cancel the tasks of the command that are queued or running.
+   */
+  synchronized void cancel(EncodingCommand cmd) {
+    for (EncodingCommand.EncodingTask task : cmd.getTasks()) {
+      Encoding encoding = encodings.remove(task.getSourcePath());
+      if (encoding != null) {
+        LOG.info("Canceling the encoding of " + task.getSourcePath());
+        encoding.cancel();
+      }
+    }
+  }
+
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private Report.Status encode(EncodingCommand.EncodingTask task) {
+    LOG.info("Encoding " + task);
+    try {
+      Codec codec = Codec.getCodec(task.getCodecId());
+      if (codec == null) {
+        throw new IOException("Unknown codec " + task.getCodecId());
+      }
+      getEncoder().encodeFile(conf, new Path(task.getSourcePath()),
+          new Path(task.getParityPath()), codec, task.getTargetReplication(),
+          task.isCopy());
+      LOG.info("Encoded " + task.getSourcePath());
+      return Report.Status.FINISHED;
+    } catch (Exception e) {
+      LOG.warn("Encoding of " + task.getSourcePath() + " failed", e);
+      return Report.Status.FAILED;
+    }
+  }
+
+  private synchronized FileEncoder getEncoder() throws IOException {
+    if (encoder == null) {
+      Class<?> encoderClass;
+      try {
+        encoderClass = conf.getClassByName(conf.get(
+            DFSConfigKeys.FILE_ENCODER_CLASSNAME_KEY,
+            DFSConfigKeys.DEFAULT_FILE_ENCODER_CLASSNAME));
+      } catch (ClassNotFoundException e) {
+        throw new IOException("Could not load the file encoder", e);
+      }
+      if (!FileEncoder.class.isAssignableFrom(encoderClass)) {
+        throw new IOException(encoderClass + " is not an implementation of " +
+            FileEncoder.class.getCanonicalName());
+      }
+      encoder = (FileEncoder) ReflectionUtils.newInstance(encoderClass, conf);
+    }
+    return encoder;
+  }
+}
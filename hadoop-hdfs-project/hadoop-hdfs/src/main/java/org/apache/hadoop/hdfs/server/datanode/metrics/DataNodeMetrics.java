@@ -21,12 +21,14 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.protocol.datatransfer.Op;
 import org.apache.hadoop.metrics2.MetricsSystem;
 import org.apache.hadoop.metrics2.annotation.Metric;
 import org.apache.hadoop.metrics2.annotation.Metrics;
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.hadoop.metrics2.lib.MetricsRegistry;
 import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
 import org.apache.hadoop.metrics2.lib.MutableQuantiles;
 import org.apache.hadoop.metrics2.lib.MutableRate;
 import org.apache.hadoop.metrics2.source.JvmMetrics;
@@ -112,6 +114,16 @@ public class DataNodeMetrics {
   @Metric
   MutableRate sendDataPacketTransferNanos;
   MutableQuantiles[] sendDataPacketTransferNanosQuantiles;
+
+  @Metric
+  MutableCounterLong xceiverOpsRejected;
+  @Metric
+  MutableRate xceiverQueueTime;
+  /**
+   * Operations waiting for a worker thread, by op, with the operations
+   * whose op is not known until they run last
+   */
+  MutableGaugeInt[] opsQueued;
   
 
   final MetricsRegistry registry = new MetricsRegistry("datanode");
@@ -127,6 +139,15 @@ public DataNodeMetrics(String name, String sessionId, int[] intervals) {
     fsyncNanosQuantiles = new MutableQuantiles[len];
     sendDataPacketBlockedOnNetworkNanosQuantiles = new MutableQuantiles[len];
     sendDataPacketTransferNanosQuantiles = new MutableQuantiles[len];
+
+    Op[] ops = Op.values();
+    opsQueued = new MutableGaugeInt[ops.length + 1];
+    for (Op op : ops) {
+      opsQueued[op.ordinal()] = registry.newGauge(opMetricName(op) + "Queued",
+          "Number of " + op + " operations waiting for a thread", 0);
+    }
+    opsQueued[ops.length] = registry.newGauge("unknownOpQueued",
+        "Number of operations of unknown type waiting for a thread", 0);
     
     for (int i = 0; i < len; i++) {
       int interval = intervals[i];
@@ -150,6 +171,19 @@ public DataNodeMetrics(String name, String sessionId, int[] intervals) {
     }
   }
 
+  private static String opMetricName(Op op) {
+    StringBuilder name = new StringBuilder();
+    for (String word : op.name().toLowerCase().split("_")) {
+      if (name.length() == 0) {
+        name.append(word);
+      } else {
+        name.append(Character.toUpperCase(word.charAt(0)))
+            .append(word.substring(1));
+      }
+    }
+    return name.append("Op").toString();
+  }
+
   public static DataNodeMetrics create(Configuration conf, String dnName) {
     String sessionId = conf.get(DFSConfigKeys.DFS_METRICS_SESSION_ID_KEY);
     MetricsSystem ms = DefaultMetricsSystem.instance();
@@ -291,4 +325,28 @@ public void addSendDataPacketTransferNanos(long latencyNanos) {
       q.add(latencyNanos);
     }
   }
+
+  /**
+   * @param op
+   *     the queued operation, or null if it is not known yet
+   */
+  public void incrOpsQueued(Op op) {
+    opsQueued[op == null ? opsQueued.length - 1 : op.ordinal()].incr();
+  }
+
+  /**
+   * @param op
+   *     the dequeued operation, or null if it is not known yet
+   */
+  public void decrOpsQueued(Op op) {
+    opsQueued[op == null ? opsQueued.length - 1 : op.ordinal()].decr();
+  }
+
+  public void addXceiverQueueTime(long latency) {
+    xceiverQueueTime.add(latency);
+  }
+
+  public void incrXceiverOpsRejected() {
+    xceiverOpsRejected.incr();
+  }
 }
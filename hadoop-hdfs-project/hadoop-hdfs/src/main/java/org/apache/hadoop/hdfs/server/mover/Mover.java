@@ -21,6 +21,10 @@
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import io.hops.erasure_coding.Codec;
+import io.hops.erasure_coding.ErasureCodingManager;
+import io.hops.erasure_coding.StripePlacement;
+import io.hops.metadata.hdfs.entity.EncodingStatus;
 import org.apache.commons.cli.*;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -104,6 +108,9 @@ private List<StorageGroup> getTargetStorages(StorageType t) {
   private final List<Path> targetPaths;
   
   private final BlockStoragePolicy[] blockStoragePolicies;
+  private final Configuration conf;
+  private final boolean erasureCodingEnabled;
+  private final String parityFolder;
 
   Mover(NameNodeConnector nnc, Configuration conf) {
     final long movedWinWidth = conf.getLong(
@@ -123,10 +130,18 @@ private List<StorageGroup> getTargetStorages(StorageType t) {
     this.targetPaths = nnc.getTargetPaths();
     this.blockStoragePolicies = new BlockStoragePolicy[1 <<
         BlockStoragePolicySuite.ID_BIT_LENGTH];
+    this.conf = conf;
+    this.erasureCodingEnabled =
+        ErasureCodingManager.isErasureCodingEnabled(conf);
+    this.parityFolder = conf.get(DFSConfigKeys.PARITY_FOLDER,
+        DFSConfigKeys.DEFAULT_PARITY_FOLDER);
   }
 
   void init() throws IOException {
     initStoragePolicies();
+    if (erasureCodingEnabled) {
+      Codec.initializeCodecs(conf);
+    }
     final List<DatanodeStorageReport> reports = dispatcher.init();
     for (DatanodeStorageReport r : reports) {
       final DDatanode dn = dispatcher.newDatanode(r.getDatanodeInfo());
@@ -257,21 +272,24 @@ private boolean processRecursively(String parent, HdfsFileStatus status) {
 
     /** @return true if it is necessary to run another round of migration */
     private boolean processFile(String fullPath, HdfsLocatedFileStatus status) {
+      boolean hasRemaining = false;
+      if (erasureCodingEnabled) {
+        hasRemaining = processStripes(fullPath, status);
+      }
       final byte policyId = status.getStoragePolicy();
       // currently we ignore files with unspecified storage policy
       if (policyId == BlockStoragePolicySuite.ID_UNSPECIFIED) {
-        return false;
+        return hasRemaining;
       }
       final BlockStoragePolicy policy = blockStoragePolicies[policyId];
       if (policy == null) {
         LOG.warn("Failed to get the storage policy of file " + fullPath);
-        return false;
+        return hasRemaining;
       }
       final List<StorageType> types = policy.chooseStorageTypes(
           status.getReplication());
 
       final LocatedBlocks locatedBlocks = status.getBlockLocations();
-      boolean hasRemaining = false;
       final boolean lastBlkComplete = locatedBlocks.isLastBlockComplete();
       List<LocatedBlock> lbs = locatedBlocks.getLocatedBlocks();
       for (int i = 0; i < lbs.size(); i++) {
@@ -292,6 +310,72 @@ private boolean processFile(String fullPath, HdfsLocatedFileStatus status) {
       return hasRemaining;
     }
 
+    /**
+     * Move the blocks of the stripes of an encoded file that share a datanode
+     * with another block of their stripe, or exceed the share of their rack.
+     *
+     * @return true if moves were scheduled
+     */
+    private boolean processStripes(String fullPath,
+        HdfsLocatedFileStatus status) {
+      final Codec codec;
+      final LocatedBlocks parityBlocks;
+      try {
+        EncodingStatus encodingStatus = dfs.getEncodingStatus(fullPath);
+        if (!encodingStatus.isEncoded()) {
+          return false;
+        }
+        codec = Codec.getCodec(encodingStatus.getEncodingPolicy().getCodec());
+        if (codec == null) {
+          return false;
+        }
+        parityBlocks = dfs.getLocatedBlocks(parityFolder + "/" +
+            encodingStatus.getParityFileName(), 0, Long.MAX_VALUE);
+      } catch (IOException e) {
+        LOG.warn("Failed to get the stripes of file " + fullPath, e);
+        return false;
+      }
+
+      boolean scheduled = false;
+      List<StripePlacement> stripes = StripePlacement.getStripes(
+          status.getBlockLocations().getLocatedBlocks(),
+          parityBlocks.getLocatedBlocks(), codec,
+          dispatcher.getCluster().getNumOfRacks());
+      for (StripePlacement stripe : stripes) {
+        List<StripePlacement.Replica> misplaced =
+            new ArrayList<StripePlacement.Replica>(
+                stripe.getMisplacedReplicas());
+        for (StripePlacement.Replica replica : misplaced) {
+          scheduled |= scheduleMove4Stripe(stripe, replica);
+        }
+      }
+      return scheduled;
+    }
+
+    private boolean scheduleMove4Stripe(StripePlacement stripe,
+        StripePlacement.Replica replica) {
+      final LocatedBlock lb = replica.getBlock();
+      final MLocation ml = new MLocation(replica.getDatanode(),
+          replica.getStorageType(), lb.getBlockSize());
+      final Source source = storages.getSource(ml);
+      if (source == null) {
+        return false;
+      }
+      final DBlock db = newDBlock(lb.getBlock().getLocalBlock(),
+          MLocation.toLocations(lb));
+      for (StorageGroup target : storages.getTargetStorages(ml.storageType)) {
+        if (stripe.canHost(target.getDatanodeInfo())) {
+          final PendingMove pm = source.addPendingMove(db, target);
+          if (pm != null) {
+            stripe.moved(replica, target.getDatanodeInfo());
+            dispatcher.executePendingMove(pm);
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
     boolean scheduleMoves4Block(StorageTypeDiff diff, LocatedBlock lb) {
       final List<MLocation> locations = MLocation.toLocations(lb);
       Collections.shuffle(locations);
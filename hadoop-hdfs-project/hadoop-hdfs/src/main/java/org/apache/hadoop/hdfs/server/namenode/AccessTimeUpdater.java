@@ -0,0 +1,266 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import io.hops.metadata.hdfs.entity.INodeIdentifier;
+import io.hops.transaction.EntityManager;
+import io.hops.transaction.handler.HDFSOperationType;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
+import io.hops.transaction.lock.LockFactory;
+import io.hops.transaction.lock.TransactionLockTypes.INodeLockType;
+import io.hops.transaction.lock.TransactionLocks;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.util.Daemon;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.apache.hadoop.util.Time.monotonicNow;
+
+/**
+ * Buffers the access time updates of the reads instead of writing them in
+ * the read transactions. Only the latest access time of each inode is kept,
+ * and the buffered updates are written in batches by a background thread
+ * every flush interval, so the reads never need an exclusive lock on the
+ * inode and an access time is at most about one flush interval late.
+ * <p/>
+ * The queued updates are immutable and are only replaced or removed with
+ * the conditional operations of the map, so an update queued while the
+ * flusher takes the entry of its inode is never lost. A batch that fails
+ * to be written is queued again, up to MAX_FLUSH_ATTEMPTS times.
+ * <p/>
+ * Buffered updates are lost if the namenode dies before flushing them, which
+ * is acceptable for access times.
+ */
+class AccessTimeUpdater {
+
+  static final Log LOG = LogFactory.getLog(AccessTimeUpdater.class);
+
+  static final int MAX_FLUSH_ATTEMPTS = 3;
+
+  private static class PendingUpdate {
+    private final INodeIdentifier inode;
+    private final long firstQueued;
+    private final long accessTime;
+    private final int failedFlushes;
+
+    PendingUpdate(INodeIdentifier inode, long accessTime, long firstQueued,
+        int failedFlushes) {
+      this.inode = inode;
+      this.accessTime = accessTime;
+      this.firstQueued = firstQueued;
+      this.failedFlushes = failedFlushes;
+    }
+
+    PendingUpdate merge(PendingUpdate other) {
+      return new PendingUpdate(inode, Math.max(accessTime, other.accessTime),
+          Math.min(firstQueued, other.firstQueued),
+          Math.max(failedFlushes, other.failedFlushes));
+    }
+  }
+
+  private static final Comparator<PendingUpdate> BY_INODE_ID =
+      new Comparator<PendingUpdate>() {
+        @Override
+        public int compare(PendingUpdate a, PendingUpdate b) {
+          return Integer.compare(a.inode.getInodeId(), b.inode.getInodeId());
+        }
+      };
+
+  private final ConcurrentMap<Integer, PendingUpdate> pending =
+      new ConcurrentHashMap<>();
+  private final long flushInterval;
+  private final int batchSize;
+  private Daemon flusher;
+  private volatile boolean running;
+
+  AccessTimeUpdater(long flushInterval, int batchSize) {
+    this.flushInterval = flushInterval;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Queue an access time update of the given inode. If an update of the inode
+   * is already queued, it keeps the latest of the two access times.
+   */
+  void update(INode inode, long accessTime) {
+    PendingUpdate update = new PendingUpdate(new INodeIdentifier(inode.getId(),
+        inode.getParentId(), inode.getLocalName(), inode.getPartitionId()),
+        accessTime, monotonicNow(), 0);
+    if (!queue(update)) {
+      NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+      if (metrics != null) {
+        metrics.incrAccessTimeUpdatesCoalesced();
+      }
+    }
+  }
+
+  /**
+   * Add the update to the queue, merging it with the queued update of the
+   * same inode if there is one.
+   *
+   * @return true if no update of the inode was queued
+   */
+  private boolean queue(PendingUpdate update) {
+    Integer inodeId = update.inode.getInodeId();
+    while (true) {
+      PendingUpdate existing = pending.putIfAbsent(inodeId, update);
+      if (existing == null) {
+        return true;
+      }
+      if (pending.replace(inodeId, existing, existing.merge(update))) {
+        return false;
+      }
+    }
+  }
+
+  int getPendingCount() {
+    return pending.size();
+  }
+
+  void start() {
+    running = true;
+    flusher = new Daemon(new Runnable() {
+      @Override
+      public void run() {
+        while (running) {
+          try {
+            Thread.sleep(flushInterval);
+          } catch (InterruptedException e) {
+            // flush what is left before stopping
+          }
+          flush();
+        }
+      }
+    });
+    flusher.setName("AccessTimeUpdater");
+    flusher.start();
+  }
+
+  void stop() {
+    running = false;
+    if (flusher != null) {
+      flusher.interrupt();
+      try {
+        flusher.join(flushInterval);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      flusher = null;
+    }
+  }
+
+  /**
+   * Write all the queued updates, batchSize inodes per transaction. The
+   * inodes of a batch are locked in the order of their ids.
+   */
+  void flush() {
+    List<PendingUpdate> updates = new ArrayList<>(pending.size());
+    for (Integer inodeId : pending.keySet()) {
+      PendingUpdate update = take(inodeId);
+      if (update != null) {
+        updates.add(update);
+      }
+    }
+    Collections.sort(updates, BY_INODE_ID);
+    for (int i = 0; i < updates.size(); i += batchSize) {
+      flush(updates.subList(i, Math.min(i + batchSize, updates.size())));
+    }
+  }
+
+  /**
+   * Remove the queued update of the inode, unless it is replaced by a newer
+   * one at the same time.
+   */
+  private PendingUpdate take(Integer inodeId) {
+    while (true) {
+      PendingUpdate update = pending.get(inodeId);
+      if (update == null || pending.remove(inodeId, update)) {
+        return update;
+      }
+    }
+  }
+
+  private void flush(final List<PendingUpdate> batch) {
+    final List<INodeIdentifier> inodes = new ArrayList<>(batch.size());
+    long oldest = Long.MAX_VALUE;
+    for (PendingUpdate update : batch) {
+      inodes.add(update.inode);
+      oldest = Math.min(oldest, update.firstQueued);
+    }
+    try {
+      new HopsTransactionalRequestHandler(
+          HDFSOperationType.FLUSH_ACCESS_TIMES) {
+        @Override
+        public void acquireLock(TransactionLocks locks) throws IOException {
+          locks.add(LockFactory.getInstance()
+              .getBatchedINodesLock(INodeLockType.WRITE, inodes));
+        }
+
+        @Override
+        public Object performTask() throws IOException {
+          for (PendingUpdate update : batch) {
+            INode inode = EntityManager.find(INode.Finder.ByINodeIdFTIS,
+                update.inode.getInodeId());
+            // the file may have been deleted or read with a later access
+            // time by another namenode in the meantime
+            if (inode != null && update.accessTime > inode.getAccessTime()) {
+              inode.setAccessTime(update.accessTime);
+            }
+          }
+          return null;
+        }
+      }.handle();
+    } catch (IOException e) {
+      requeue(batch, e);
+      return;
+    }
+    NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (metrics != null) {
+      metrics.addAccessTimeFlush(batch.size(), monotonicNow() - oldest);
+    }
+  }
+
+  /**
+   * Queue the updates of a batch that could not be written again, so that
+   * the next flush retries them, and drop those that failed too many times.
+   */
+  private void requeue(List<PendingUpdate> batch, IOException cause) {
+    int dropped = 0;
+    for (PendingUpdate update : batch) {
+      int failedFlushes = update.failedFlushes + 1;
+      if (failedFlushes >= MAX_FLUSH_ATTEMPTS) {
+        dropped++;
+        continue;
+      }
+      queue(new PendingUpdate(update.inode, update.accessTime,
+          update.firstQueued, failedFlushes));
+    }
+    LOG.warn("Could not write the access times of " + batch.size() +
+        " inodes, " + (batch.size() - dropped) + " are queued again and " +
+        dropped + " are dropped after " + MAX_FLUSH_ATTEMPTS + " attempts",
+        cause);
+  }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.permission.FsAction;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.util.Daemon;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.hadoop.util.Time.monotonicNow;
+
+/**
+ * Caches the content summaries of the directories listed in
+ * {@link DFSConfigKeys#DFS_NAMENODE_CONTENT_SUMMARY_CACHE_PATHS_KEY} and of
+ * the directories queried at least
+ * {@link DFSConfigKeys#DFS_NAMENODE_CONTENT_SUMMARY_CACHE_POPULARITY_KEY}
+ * times within a staleness period, so that polling the usage of large
+ * directories does not count their whole subtree every time.
+ * <p/>
+ * A summary is counted the first time its directory is queried and answered
+ * from the cache while it is at most one staleness period old. The metadata
+ * keeps no file, directory and length counts a summary could be maintained
+ * from, only the namespace and diskspace counts of the directories with a
+ * quota. These counts are read with the directory on every query, from the
+ * database, so a change committed through any namenode is noticed: the
+ * cached summary is still answered, and recounted in the background. A
+ * summary that is half a staleness period old is recounted in the background
+ * as well. Summaries that are not queried are never recounted, and the
+ * popular directories that were not queried during the last staleness period
+ * are dropped.
+ * <p/>
+ * Counting a summary checks that the user can read and list every directory
+ * of the subtree, answering from the cache only checks the directory itself.
+ * Even the owner of the directory may not be allowed to list all of its
+ * subtree, so cached summaries are only answered to the superuser. Other
+ * users get the summary counted for them.
+ */
+class ContentSummaryCache {
+
+  static final Log LOG = LogFactory.getLog(ContentSummaryCache.class);
+
+  /**
+   * The directory a summary is asked for, as read by the query.
+   */
+  static class Root {
+    private final INode inode;
+    // null if the directory has no quota
+    private final INodeAttributes attributes;
+
+    Root(INode inode, INodeAttributes attributes) {
+      this.inode = inode;
+      this.attributes = attributes;
+    }
+  }
+
+  /**
+   * A summary and the quota counts of its directory when it was counted.
+   */
+  private static class Counted {
+    private final int inodeId;
+    private final ContentSummary summary;
+    private final long time;
+    private final Long nsCount;
+    private final Long diskspace;
+
+    Counted(Root root, ContentSummary summary, long time) {
+      this.inodeId = root.inode.getId();
+      this.summary = summary;
+      this.time = time;
+      this.nsCount = root.attributes == null ? null :
+          root.attributes.getNsCount();
+      this.diskspace = root.attributes == null ? null :
+          root.attributes.getDiskspace();
+    }
+
+    boolean isChanged(INodeAttributes attributes) {
+      if (attributes == null) {
+        return nsCount != null;
+      }
+      return !Objects.equals(nsCount, attributes.getNsCount()) ||
+          !Objects.equals(diskspace, attributes.getDiskspace());
+    }
+
+    /**
+     * @return the summary with the current quotas of the directory
+     */
+    ContentSummary get(INodeAttributes attributes) {
+      if (attributes == null) {
+        return summary;
+      }
+      return new ContentSummary(summary.getLength(), summary.getFileCount(),
+          summary.getDirectoryCount(), attributes.getNsQuota(),
+          summary.getSpaceConsumed(), attributes.getDsQuota());
+    }
+  }
+
+  private static class Entry {
+    private final String path;
+    private final boolean configured;
+    private volatile Counted counted;
+    private volatile boolean recount;
+    private volatile boolean queried;
+
+    Entry(String path, boolean configured) {
+      this.path = path;
+      this.configured = configured;
+    }
+  }
+
+  private final FSNamesystem namesystem;
+  private final int maxEntries;
+  private final long staleness;
+  private final int popularity;
+  private final Set<String> configuredPaths = new HashSet<>();
+  private final ConcurrentMap<String, Entry> entries =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AtomicInteger> queries =
+      new ConcurrentHashMap<>();
+  private Daemon refresher;
+  private volatile boolean running;
+
+  ContentSummaryCache(FSNamesystem namesystem, Configuration conf) {
+    this.namesystem = namesystem;
+    this.maxEntries = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_CACHE_SIZE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_CACHE_SIZE_DEFAULT);
+    this.staleness = conf.getLong(
+        DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_CACHE_STALENESS_MS_KEY,
+        DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_CACHE_STALENESS_MS_DEFAULT);
+    this.popularity = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_CACHE_POPULARITY_KEY,
+        DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_CACHE_POPULARITY_DEFAULT);
+    for (String path : conf.getTrimmedStringCollection(
+        DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_CACHE_PATHS_KEY)) {
+      configuredPaths.add(path);
+      entries.put(path, new Entry(path, true));
+    }
+  }
+
+  /**
+   * @param path
+   *     the resolved path of the directory
+   */
+  ContentSummary getContentSummary(String path) throws IOException {
+    Entry entry = entries.get(path);
+    if (entry == null) {
+      entry = admit(path);
+    }
+    if (entry == null || !canReadCached()) {
+      incrMisses();
+      return namesystem.multiTransactionalGetContentSummary(path);
+    }
+    Root root = namesystem.getContentSummaryRoot(path, FsAction.READ_EXECUTE);
+    entry.queried = true;
+    Counted counted = entry.counted;
+    if (counted != null && counted.inodeId == root.inode.getId()) {
+      long age = monotonicNow() - counted.time;
+      if (age <= staleness) {
+        if (age >= staleness / 2 || counted.isChanged(root.attributes)) {
+          entry.recount = true;
+        }
+        NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+        if (metrics != null) {
+          metrics.incrContentSummaryCacheHits();
+        }
+        return counted.get(root.attributes);
+      }
+    }
+    incrMisses();
+    return count(entry);
+  }
+
+  private boolean canReadCached() throws IOException {
+    return !namesystem.isPermissionEnabled() ||
+        namesystem.getPermissionChecker().isSuperUser();
+  }
+
+  void start() {
+    running = true;
+    refresher = new Daemon(new Runnable() {
+      @Override
+      public void run() {
+        long lastWindow = monotonicNow();
+        while (running) {
+          try {
+            Thread.sleep(Math.max(1, staleness / 4));
+          } catch (InterruptedException e) {
+            continue;
+          }
+          if (monotonicNow() - lastWindow >= staleness) {
+            evictIdle();
+            queries.clear();
+            lastWindow = monotonicNow();
+          }
+          refresh();
+        }
+      }
+    });
+    refresher.setName("ContentSummaryCacheRefresher");
+    refresher.start();
+  }
+
+  void stop() {
+    running = false;
+    if (refresher != null) {
+      refresher.interrupt();
+      try {
+        refresher.join(3000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      refresher = null;
+    }
+  }
+
+  private Entry admit(String path) {
+    AtomicInteger count = queries.get(path);
+    if (count == null) {
+      if (queries.size() >= maxEntries * 10) {
+        // do not track an unbounded number of paths per period
+        return null;
+      }
+      AtomicInteger existing = queries.putIfAbsent(path, new AtomicInteger());
+      count = existing != null ? existing : queries.get(path);
+    }
+    if (count == null || count.incrementAndGet() < popularity ||
+        entries.size() >= maxEntries + configuredPaths.size()) {
+      return null;
+    }
+    Entry entry = new Entry(path, false);
+    Entry existing = entries.putIfAbsent(path, entry);
+    return existing != null ? existing : entry;
+  }
+
+  private ContentSummary count(Entry entry) throws IOException {
+    long start = monotonicNow();
+    Root root;
+    ContentSummary summary;
+    try {
+      // read the quota counts first, a change while counting is noticed by
+      // the next query
+      root = namesystem.getContentSummaryRoot(entry.path, null);
+      summary = namesystem.multiTransactionalGetContentSummary(entry.path);
+    } catch (FileNotFoundException e) {
+      if (!entry.configured) {
+        entries.remove(entry.path, entry);
+      }
+      entry.counted = null;
+      throw e;
+    }
+    entry.recount = false;
+    entry.counted = new Counted(root, summary, start);
+    return summary;
+  }
+
+  private void refresh() {
+    for (Entry entry : entries.values()) {
+      if (!running) {
+        return;
+      }
+      if (!entry.recount) {
+        continue;
+      }
+      try {
+        count(entry);
+      } catch (FileNotFoundException e) {
+        LOG.debug("Not caching the content summary of " + entry.path +
+            ", it does not exist");
+      } catch (IOException e) {
+        entry.recount = false;
+        LOG.warn("Could not count the content summary of " + entry.path, e);
+      }
+    }
+  }
+
+  private void evictIdle() {
+    Iterator<Entry> it = entries.values().iterator();
+    while (it.hasNext()) {
+      Entry entry = it.next();
+      if (!entry.queried) {
+        if (entry.configured) {
+          // keep the path, not a summary nobody asks for
+          entry.counted = null;
+        } else {
+          it.remove();
+        }
+      }
+      entry.queried = false;
+    }
+  }
+
+  private void incrMisses() {
+    NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (metrics != null) {
+      metrics.incrContentSummaryCacheMisses();
+    }
+  }
+}
@@ -1117,6 +1117,18 @@ DirectoryListing getListing(String src, byte[] startAfter,
    */
   HdfsFileStatus getFileInfo(String src, boolean resolveLink, boolean includeStoragePolicy)
       throws IOException {
+    return getFileInfo(src, resolveLink, includeStoragePolicy, false);
+  }
+
+  /**
+   * Get the file info for a specific file.
+   *
+   * @param needLocation
+   *     if true, return an {@link HdfsLocatedFileStatus} with the locations
+   *     of all the blocks of the file
+   */
+  HdfsFileStatus getFileInfo(String src, boolean resolveLink,
+      boolean includeStoragePolicy, boolean needLocation) throws IOException {
     String srcs = normalizePath(src);
     INode targetNode = getRootDir().getNode(srcs, resolveLink);
     if (targetNode == null) {
@@ -1124,7 +1136,8 @@ HdfsFileStatus getFileInfo(String src, boolean resolveLink, boolean includeStora
     } else {
       byte policyId = includeStoragePolicy && targetNode != null && !targetNode.isSymlink() ? targetNode.
           getStoragePolicyID() : BlockStoragePolicySuite.ID_UNSPECIFIED;
-      return createFileStatus(HdfsFileStatus.EMPTY_NAME, targetNode, policyId);
+      return createFileStatus(HdfsFileStatus.EMPTY_NAME, targetNode,
+          needLocation, policyId);
     }
   }
 
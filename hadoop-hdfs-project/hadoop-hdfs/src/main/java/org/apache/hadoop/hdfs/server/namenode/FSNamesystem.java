@@ -44,6 +44,7 @@
 import io.hops.resolvingcache.Cache;
 import io.hops.security.Users;
 import io.hops.transaction.EntityManager;
+import io.hops.transaction.context.MetadataEventBuffer;
 import io.hops.transaction.context.RootINodeCache;
 import io.hops.transaction.handler.EncodingStatusOperationType;
 import io.hops.transaction.handler.HDFSOperationType;
@@ -83,6 +84,7 @@
 import org.apache.hadoop.hdfs.protocol.AlreadyBeingCreatedException;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
+import org.apache.hadoop.hdfs.protocol.BulkFileInfo;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
@@ -395,6 +397,10 @@ private void logAuditEvent(boolean succeeded, UserGroupInformation ugi,
   
   // precision of access times.
   private final long accessTimePrecision;
+  // null unless the access time updates of the reads are deferred
+  private final AccessTimeUpdater accessTimeUpdater;
+  private final int bulkFileInfoBatchSize;
+  private final ContentSummaryCache contentSummaryCache;
 
   private NameNode nameNode;
   private final Configuration conf;
@@ -403,6 +409,7 @@ private void logAuditEvent(boolean succeeded, UserGroupInformation ugi,
   private final ExecutorService subtreeOperationsExecutor;
   private final boolean erasureCodingEnabled;
   private final ErasureCodingManager erasureCodingManager;
+  private final MetadataEventBuffer metadataEventBuffer;
 
   private final boolean storeSmallFilesInDB;
   private static int DB_ON_DISK_FILE_MAX_SIZE;
@@ -483,6 +490,8 @@ private FSNamesystem(Configuration conf, NameNode namenode) throws IOException {
       this.erasureCodingEnabled =
           ErasureCodingManager.isErasureCodingEnabled(conf);
       this.erasureCodingManager = new ErasureCodingManager(this, conf);
+      this.metadataEventBuffer = new MetadataEventBuffer(conf);
+      metadataEventBuffer.start();
       this.storeSmallFilesInDB =
           conf.getBoolean(DFSConfigKeys.DFS_STORE_SMALL_FILES_IN_DB_KEY,
               DFSConfigKeys.DFS_STORE_SMALL_FILES_IN_DB_DEFAULT);
@@ -570,6 +579,26 @@ private FSNamesystem(Configuration conf, NameNode namenode) throws IOException {
           DFSConfigKeys.DFS_NAMENODE_MAX_BLOCKS_PER_FILE_DEFAULT);
       this.accessTimePrecision =
           conf.getLong(DFS_NAMENODE_ACCESSTIME_PRECISION_KEY, DFS_NAMENODE_ACCESSTIME_PRECISION_DEFAULT);
+      this.bulkFileInfoBatchSize = conf.getInt(
+          DFSConfigKeys.DFS_NAMENODE_BULK_FILEINFO_BATCH_SIZE_KEY,
+          DFSConfigKeys.DFS_NAMENODE_BULK_FILEINFO_BATCH_SIZE_DEFAULT);
+      if (accessTimePrecision > 0 && conf.getBoolean(
+          DFSConfigKeys.DFS_NAMENODE_ACCESSTIME_DEFERRED_KEY,
+          DFSConfigKeys.DFS_NAMENODE_ACCESSTIME_DEFERRED_DEFAULT)) {
+        this.accessTimeUpdater = new AccessTimeUpdater(
+            conf.getLong(DFSConfigKeys.DFS_NAMENODE_ACCESSTIME_FLUSH_INTERVAL_MS_KEY,
+                DFSConfigKeys.DFS_NAMENODE_ACCESSTIME_FLUSH_INTERVAL_MS_DEFAULT),
+            conf.getInt(DFSConfigKeys.DFS_NAMENODE_ACCESSTIME_FLUSH_BATCH_SIZE_KEY,
+                DFSConfigKeys.DFS_NAMENODE_ACCESSTIME_FLUSH_BATCH_SIZE_DEFAULT));
+      } else {
+        this.accessTimeUpdater = null;
+      }
+      if (conf.getInt(DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_CACHE_SIZE_KEY,
+          DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_CACHE_SIZE_DEFAULT) > 0) {
+        this.contentSummaryCache = new ContentSummaryCache(this, conf);
+      } else {
+        this.contentSummaryCache = null;
+      }
       this.supportAppends =
           conf.getBoolean(DFS_SUPPORT_APPEND_KEY, DFS_SUPPORT_APPEND_DEFAULT);
       LOG.info("Append Enabled: " + supportAppends);
@@ -673,6 +702,12 @@ void startCommonServices(Configuration conf) throws IOException {
     if (dir.isQuotaEnabled()) {
       quotaUpdateManager.activate();
     }
+    if (accessTimeUpdater != null) {
+      accessTimeUpdater.start();
+    }
+    if (contentSummaryCache != null) {
+      contentSummaryCache.start();
+    }
 
     registerMXBean();
     DefaultMetricsSystem.instance().register(this);
@@ -689,6 +724,12 @@ private void stopCommonServices() {
     if (quotaUpdateManager != null) {
       quotaUpdateManager.close();
     }
+    if (accessTimeUpdater != null) {
+      accessTimeUpdater.stop();
+    }
+    if (contentSummaryCache != null) {
+      contentSummaryCache.stop();
+    }
     RootINodeCache.stop();
   }
 
@@ -770,6 +811,9 @@ private NamespaceInfo unprotectedGetNamespaceInfo() throws IOException {
    */
   void close() {
     fsRunning = false;
+    if (metadataEventBuffer != null) {
+      metadataEventBuffer.close();
+    }
     try {
       stopCommonServices();
       if (smmthread != null) {
@@ -1077,6 +1121,8 @@ public LocatedBlocks getBlockLocations(final String clientMachine, final String
     // The lock upgrade exception is thrown when the inode access time stamp is
     // updated while holding shared lock on the inode. In this case retry the operation
     // using an exclusive lock.
+    // When the access time updates are deferred the inode is never updated
+    // here and the operation always completes with the shared lock.
     try{
       return getBlockLocationsWithLock(clientMachine, src, offset, length, INodeLockType.READ);
     }catch(LockUpgradeException e){
@@ -1236,7 +1282,10 @@ private LocatedBlocks getPhantomBlockLocationsUpdateTimes(String src,
 
       long now = now();
       final INodeFile inode = INodeFile.valueOf(dir.getINode(src), src);
-      if (doAccessTime && isAccessTimeSupported()) {
+      if (doAccessTime && isAccessTimeSupported()
+          && accessTimeUpdater != null) {
+        deferAccessTime(inode, now);
+      } else if (doAccessTime && isAccessTimeSupported()) {
         if (now <= inode.getAccessTime() + getAccessTimePrecision()) {
           // if we have to set access time but we only have a read lock, then
           // restart this entire operation with the writeLock.
@@ -1268,13 +1317,27 @@ private LocatedBlocks getBlockLocationsUpdateTimes(String src, long offset,
       long now = now();
       final INodeFile inode = INodeFile.valueOf(dir.getINode(src), src);
       if (doAccessTime && isAccessTimeSupported()) {
-        dir.setTimes(src, inode, -1, now, false);
+        if (accessTimeUpdater != null) {
+          deferAccessTime(inode, now);
+        } else {
+          dir.setTimes(src, inode, -1, now, false);
+        }
       }
       return blockManager
           .createLocatedBlocks(inode.getBlocks(), inode.computeFileSize(false),
               inode.isUnderConstruction(), offset, length, needBlockToken);
   }
 
+  /**
+   * Queue the access time update of a read, unless the access time of the
+   * inode is still within the precision.
+   */
+  private void deferAccessTime(INode inode, long now) {
+    if (now > inode.getAccessTime() + getAccessTimePrecision()) {
+      accessTimeUpdater.update(inode, now);
+    }
+  }
+
   /**
    * Moves all the blocks from srcs and appends them to trg
    * To avoid rollbacks we will verify validity of ALL of the args
@@ -2397,6 +2460,15 @@ LocatedBlock getAdditionalBlock(final String src1, final long fileId, final Stri
       final List<String> favoredNodes) throws IOException {
     byte[][] pathComponents = FSDirectory.getPathComponentsForReservedPath(src1);
     final String src = FSDirectory.resolvePath(src1, pathComponents, dir);
+    // Only the blocks after the first of a stripe are placed apart from the
+    // stripe, the client then excludes the nodes of the stripe. Parity files
+    // are known by their path, the encoding status of other files is only
+    // read for these blocks.
+    final boolean stripeNodesExcluded = erasureCodingEnabled &&
+        excludedNodes != null && !excludedNodes.isEmpty();
+    final boolean parityFile = stripeNodesExcluded &&
+        erasureCodingManager.isParityFile(src);
+    final boolean readEncodingStatus = stripeNodesExcluded && !parityFile;
     HopsTransactionalRequestHandler additionalBlockHandler =
         new HopsTransactionalRequestHandler(
             HDFSOperationType.GET_ADDITIONAL_BLOCK, src) {
@@ -2409,6 +2481,9 @@ public void acquireLock(TransactionLocks locks) throws IOException {
                 .add(lf.getLeasePathLock(LockType.READ_COMMITTED))
                 .add(lf.getLastTwoBlocksLock(src))
                 .add(lf.getBlockRelated(BLK.RE, BLK.CR, BLK.ER, BLK.UC));
+            if (readEncodingStatus) {
+              locks.add(lf.getEncodingStatusLock(LockType.READ_COMMITTED, src));
+            }
           }
 
           @Override
@@ -2461,9 +2536,18 @@ public Object performTask() throws IOException {
             byte storagePolicyID = pendingFile.getStoragePolicyID();
 
             // choose targets for the new block to be allocated.
-            final DatanodeStorageInfo targets[] = getBlockManager().chooseTarget4NewBlock(
-                src, replication, clientNode, excludedNodes, blockSize,
-                favoredNodes, storagePolicyID);
+            final DatanodeStorageInfo targets[];
+            if (parityFile || (readEncodingStatus &&
+                hasEncodingStatus(pendingFile))) {
+              // the client excludes the nodes of the stripe
+              targets = getBlockManager().chooseTarget4NewStripeBlock(
+                  src, replication, clientNode, excludedNodes, blockSize,
+                  favoredNodes, storagePolicyID);
+            } else {
+              targets = getBlockManager().chooseTarget4NewBlock(
+                  src, replication, clientNode, excludedNodes, blockSize,
+                  favoredNodes, storagePolicyID);
+            }
 
             // Part II.
             // Allocate a new block, add it to the INode and the BlocksMap.
@@ -3200,7 +3284,8 @@ public HdfsFileStatus getFileInfo(final String src1, final boolean resolveLink)
           @Override
           public void acquireLock(TransactionLocks locks) throws IOException {
             LockFactory lf = getInstance();
-            locks.add(lf.getINodeLock(true/*skip quota*/,nameNode, INodeLockType.READ,
+            locks.add(lf.getReadOnlyINodeLock(HDFSOperationType.GET_FILE_INFO,
+                true/*skip quota*/, nameNode, INodeLockType.READ,
                 INodeResolveType.PATH, resolveLink, src));
           }
 
@@ -3229,6 +3314,111 @@ public Object performTask() throws IOException {
     return (HdfsFileStatus) getFileInfoHandler.handle(this);
   }
 
+  /**
+   * Get the file info of many paths. The paths are resolved
+   * bulkFileInfoBatchSize at a time, each batch in a single transaction. If
+   * the transaction of a batch fails, its paths are retried one by one so
+   * that only the paths that really fail get an error.
+   *
+   * @see ClientProtocol#getFileInfos(String[], boolean)
+   */
+  BulkFileInfo getFileInfos(final String[] srcs1, final boolean needLocation)
+      throws IOException {
+    HdfsFileStatus[] statuses = new HdfsFileStatus[srcs1.length];
+    IOException[] errors = new IOException[srcs1.length];
+    String[] srcs = new String[srcs1.length];
+    List<Integer> batch = new ArrayList<>(bulkFileInfoBatchSize);
+    for (int i = 0; i < srcs1.length; i++) {
+      try {
+        byte[][] pathComponents =
+            FSDirectory.getPathComponentsForReservedPath(srcs1[i]);
+        srcs[i] = FSDirectory.resolvePath(srcs1[i], pathComponents, dir);
+        if (!DFSUtil.isValidName(srcs[i])) {
+          throw new InvalidPathException("Invalid file name: " + srcs[i]);
+        }
+      } catch (IOException e) {
+        errors[i] = e;
+        continue;
+      }
+      batch.add(i);
+      if (batch.size() == bulkFileInfoBatchSize) {
+        getFileInfosBatch(srcs, batch, needLocation, statuses, errors);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      getFileInfosBatch(srcs, batch, needLocation, statuses, errors);
+    }
+    return new BulkFileInfo(statuses, errors);
+  }
+
+  private void getFileInfosBatch(String[] srcs, List<Integer> batch,
+      boolean needLocation, HdfsFileStatus[] statuses, IOException[] errors) {
+    try {
+      getFileInfosInt(srcs, batch, needLocation, statuses, errors);
+    } catch (IOException e) {
+      if (batch.size() == 1) {
+        errors[batch.get(0)] = e;
+        return;
+      }
+      LOG.debug("Could not get the file info of " + batch.size() +
+          " paths at once, getting them one by one", e);
+      for (int i : batch) {
+        try {
+          getFileInfosInt(srcs, Collections.singletonList(i), needLocation,
+              statuses, errors);
+        } catch (IOException ex) {
+          errors[i] = ex;
+        }
+      }
+    }
+  }
+
+  private void getFileInfosInt(final String[] srcs, final List<Integer> batch,
+      final boolean needLocation, final HdfsFileStatus[] statuses,
+      final IOException[] errors) throws IOException {
+    final String[] paths = new String[batch.size()];
+    for (int i = 0; i < paths.length; i++) {
+      paths[i] = srcs[batch.get(i)];
+    }
+    new HopsTransactionalRequestHandler(HDFSOperationType.GET_FILE_INFOS) {
+      @Override
+      public void acquireLock(TransactionLocks locks) throws IOException {
+        LockFactory lf = getInstance();
+        locks.add(lf.getReadOnlyINodeLock(HDFSOperationType.GET_FILE_INFOS,
+            true/*skip quota*/, nameNode, INodeLockType.READ,
+            INodeResolveType.PATH, true, paths));
+        if (needLocation) {
+          locks.add(lf.getBlockLock())
+              .add(lf.getBlockRelated(BLK.RE, BLK.ER, BLK.CR, BLK.UC));
+        }
+      }
+
+      @Override
+      public Object performTask() throws IOException {
+        FSPermissionChecker pc = getPermissionChecker();
+        for (int i : batch) {
+          statuses[i] = null;
+          errors[i] = null;
+          try {
+            boolean isSuperUser = true;
+            if (isPermissionEnabled) {
+              checkTraverse(pc, srcs[i]);
+              isSuperUser = pc.isSuperUser();
+            }
+            statuses[i] =
+                dir.getFileInfo(srcs[i], true, isSuperUser, needLocation);
+            logAuditEvent(true, "getfileinfo", srcs[i]);
+          } catch (AccessControlException | UnresolvedLinkException e) {
+            logAuditEvent(false, "getfileinfo", srcs[i]);
+            errors[i] = e;
+          }
+        }
+        return null;
+      }
+    }.handle(this);
+  }
+
   /**
    * Create all the necessary directories
    */
@@ -3322,9 +3512,35 @@ private boolean mkdirsInternal(FSPermissionChecker pc, String src,
   ContentSummary getContentSummary(final String src)
       throws
       IOException {
+    if (contentSummaryCache != null) {
+      byte[][] pathComponents = FSDirectory.getPathComponentsForReservedPath(src);
+      return contentSummaryCache.getContentSummary(
+          FSDirectory.resolvePath(src, pathComponents, dir));
+    }
     return multiTransactionalGetContentSummary(src);
   }
 
+  /**
+   * Get the root of the content summary of the given path, with its quota
+   * attributes if it has a quota.
+   *
+   * @param access
+   *     the access the user needs on the root, or null
+   * @throws FileNotFoundException
+   *     if the path does not exist
+   */
+  ContentSummaryCache.Root getContentSummaryRoot(final String path,
+      final FsAction access) throws IOException {
+    PathInformation pathInfo = getPathExistingINodesFromDB(path,
+        false, null, null, access, null);
+    INode root = pathInfo.getPathInodes()[pathInfo.getPathComponents().length-1];
+    if (root == null) {
+      throw new FileNotFoundException("File does not exist: " + path);
+    }
+    return new ContentSummaryCache.Root(root,
+        pathInfo.getSubtreeRootAttributes());
+  }
+
   /**
    * Persist all metadata about this file.
    *
@@ -3741,8 +3957,8 @@ public Object performTask() throws IOException {
    * @throws IOException
    *     if other I/O error occurred
    */
-  DirectoryListing getListing(final String src1, final byte[] startAfter,
-      final boolean needLocation)
+  public DirectoryListing getListing(final String src1,
+      final byte[] startAfter, final boolean needLocation)
       throws IOException {
     byte[][] pathComponents = FSDirectory.getPathComponentsForReservedPath(src1);
     final String src = FSDirectory.resolvePath(src1, pathComponents, dir);
@@ -3752,9 +3968,9 @@ DirectoryListing getListing(final String src1, final byte[] startAfter,
           @Override
           public void acquireLock(TransactionLocks locks) throws IOException {
             LockFactory lf = LockFactory.getInstance();
-            locks.add(lf.getINodeLock(true/*skip INodeAttr*/, nameNode,
-                INodeLockType.READ,
-                INodeResolveType.PATH_AND_IMMEDIATE_CHILDREN, src));
+            locks.add(lf.getReadOnlyINodeLock(HDFSOperationType.GET_LISTING,
+                true/*skip INodeAttr*/, nameNode, INodeLockType.READ,
+                INodeResolveType.PATH_AND_IMMEDIATE_CHILDREN, true, src));
             if(needLocation){
               locks.add(lf.getBlockLock())
                   .add(lf.getBlockRelated(BLK.RE, BLK.ER, BLK.CR, BLK.UC));
@@ -4944,6 +5160,16 @@ public long getCorruptReplicaBlocks() {
     return blockManager.getCorruptReplicaBlocksCount();
   }
 
+  /**
+   * Returns the number of stripes of encoded files that a single datanode or
+   * rack failure would make unrecoverable, as of the last complete check
+   */
+  @Metric({"StripesAtRisk",
+      "Number of stripes of encoded files at risk of a node or rack failure"})
+  public long getStripesAtRisk() {
+    return erasureCodingEnabled ? erasureCodingManager.getStripesAtRisk() : 0;
+  }
+
   @Override // FSNamesystemMBean
   @Metric
   public long getScheduledReplicationBlocks() {
@@ -6223,7 +6449,7 @@ public Object performTask() throws IOException {
   // I have removed sub tree locking from the content summary for now
   // TODO : fix content summary sub tree locking
   //
-  private ContentSummary multiTransactionalGetContentSummary(final String path1)
+  ContentSummary multiTransactionalGetContentSummary(final String path1)
       throws
       IOException {
     byte[][] pathComponents = FSDirectory.getPathComponentsForReservedPath(path1);
@@ -7428,6 +7654,97 @@ public Object performTask() throws IOException {
     }.handle();
   }
 
+  /**
+   * @see org.apache.hadoop.hdfs.protocol.ClientProtocol#completeEncoding
+   */
+  public boolean completeEncoding(final String sourcePath,
+      final String parityFileName) throws IOException {
+    // the parity file must be a file of the parity folder
+    if (parityFileName == null || parityFileName.isEmpty() ||
+        parityFileName.contains(Path.SEPARATOR) ||
+        parityFileName.equals(".") || parityFileName.equals("..")) {
+      throw new InvalidPathException("Invalid parity file name: " +
+          parityFileName);
+    }
+    final String parityPath = conf.get(DFSConfigKeys.PARITY_FOLDER,
+        DFSConfigKeys.DEFAULT_PARITY_FOLDER) + "/" + parityFileName;
+    if (!DFSUtil.isValidName(parityPath)) {
+      throw new InvalidPathException("Invalid parity file: " + parityPath);
+    }
+    return (Boolean) new HopsTransactionalRequestHandler(
+        HDFSOperationType.COMPLETE_ENCODING) {
+
+      @Override
+      public void acquireLock(TransactionLocks locks) throws IOException {
+        LockFactory lf = LockFactory.getInstance();
+        locks.add(lf.getINodeLock(nameNode, INodeLockType.WRITE,
+            INodeResolveType.PATH, sourcePath, parityPath))
+            .add(lf.getBlockLock()).add(
+            lf.getBlockRelated(BLK.RE, BLK.ER, BLK.CR, BLK.UC, BLK.UR,
+                BLK.IV))
+            .add(lf.getEncodingStatusLock(LockType.WRITE, sourcePath));
+      }
+
+      @Override
+      public Object performTask() throws IOException {
+        FSPermissionChecker pc = getPermissionChecker();
+        try {
+          if (isPermissionEnabled) {
+            // the caller writes the source file and wrote the parity file
+            checkPathAccess(pc, sourcePath, FsAction.WRITE);
+            checkOwner(pc, parityPath);
+            checkPathAccess(pc, parityPath, FsAction.WRITE);
+          }
+        } catch (AccessControlException e) {
+          logAuditEvent(false, "completeEncoding", sourcePath);
+          throw e;
+        }
+        INode sourceInode = getINode(sourcePath);
+        INode parityInode = getINode(parityPath);
+        if (sourceInode == null) {
+          throw new FileNotFoundException("File does not exist: " + sourcePath);
+        }
+        if (parityInode == null) {
+          throw new FileNotFoundException(
+              "Parity file does not exist: " + parityPath);
+        }
+        if (sourceInode.isUnderConstruction() ||
+            parityInode.isUnderConstruction()) {
+          throw new IOException("Cannot complete the encoding of " +
+              sourcePath + " before it and its parity file are closed");
+        }
+        EncodingStatus encodingStatus = EntityManager
+            .find(EncodingStatus.Finder.ByInodeId, sourceInode.getId());
+        if (encodingStatus == null) {
+          throw new IOException("No encoding was requested for " + sourcePath);
+        }
+        if (encodingStatus.getStatus() == EncodingStatus.Status.ENCODED) {
+          // A retry of a call that already succeeded
+          return parityFileName.equals(encodingStatus.getParityFileName());
+        }
+        if (encodingStatus.getStatus() !=
+            EncodingStatus.Status.ENCODING_REQUESTED) {
+          // The namenode already started encoding the file itself
+          return false;
+        }
+        long now = System.currentTimeMillis();
+        encodingStatus.setStatus(EncodingStatus.Status.ENCODED);
+        encodingStatus.setStatusModificationTime(now);
+        encodingStatus.setParityFileName(parityFileName);
+        encodingStatus.setParityInodeId(parityInode.getId());
+        encodingStatus.setParityStatus(EncodingStatus.ParityStatus.HEALTHY);
+        encodingStatus.setParityStatusModificationTime(now);
+        EntityManager.update(encodingStatus);
+        // the client wrote the file at the target replication, unless it
+        // created it fully replicated
+        setReplicationInt(sourcePath,
+            encodingStatus.getEncodingPolicy().getTargetReplication());
+        logAuditEvent(true, "completeEncoding", sourcePath);
+        return true;
+      }
+    }.handle();
+  }
+
   /**
    * Set the status of an erasure-coded file.
    *
@@ -7535,6 +7852,21 @@ public boolean isErasureCodingEnabled() {
     return erasureCodingEnabled;
   }
 
+  /**
+   * @return the committed metadata log entries of this namenode
+   */
+  public MetadataEventBuffer getMetadataEventBuffer() {
+    return metadataEventBuffer;
+  }
+
+  /**
+   * @return the erasure coding manager, its monitor only runs if erasure
+   * coding is enabled
+   */
+  public ErasureCodingManager getErasureCodingManager() {
+    return erasureCodingManager;
+  }
+
   /**
    * @see org.apache.hadoop.hdfs.protocol.ClientProtocol#addBlockChecksum
    */
@@ -7683,6 +8015,20 @@ public Object performTask() throws IOException {
     return new LocatedBlock(block.getBlock(), descriptors);
   }
 
+  /**
+   * @return true if the file is encoded or to be encoded, so that its blocks
+   * belong to stripes. The encoding status must be locked.
+   */
+  private boolean hasEncodingStatus(INodeFile inode)
+      throws TransactionContextException, StorageException {
+    if (inode.isFileStoredInDB()) {
+      // the encoding status of files stored in the database is not locked
+      return false;
+    }
+    return EntityManager.find(EncodingStatus.Finder.ByInodeId, inode.getId())
+        != null;
+  }
+
   private int getStripe(LocatedBlock block,
       ArrayList<LocatedBlock> locatedBlocks, int length) {
     int i = 0;
@@ -7882,8 +8228,8 @@ void checkAccess(final String src, final FsAction mode) throws IOException {
           @Override
           public void acquireLock(TransactionLocks locks) throws IOException {
             LockFactory lf = getInstance();
-            locks.add(lf.getINodeLock(true/*skip quota*/, nameNode,
-                INodeLockType.READ,
+            locks.add(lf.getReadOnlyINodeLock(HDFSOperationType.CHECK_ACCESS,
+                true/*skip quota*/, nameNode, INodeLockType.READ,
                 INodeResolveType.PATH, true, src));
           }
 
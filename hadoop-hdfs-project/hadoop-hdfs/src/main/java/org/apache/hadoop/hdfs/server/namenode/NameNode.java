@@ -26,6 +26,8 @@
 import io.hops.metadata.HdfsStorageFactory;
 import io.hops.metadata.HdfsVariables;
 import io.hops.transaction.handler.RequestHandler;
+import io.hops.transaction.handler.TransactionProfiler;
+import io.hops.transaction.lock.INodeLockPolicy;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.HadoopIllegalArgumentException;
@@ -263,6 +265,8 @@ public NamenodeProtocols getRpcServer() {
 
   static void initMetrics(Configuration conf, NamenodeRole role) {
     metrics = NameNodeMetrics.create(conf, role);
+    TransactionProfiler.getInstance().register(DefaultMetricsSystem.instance());
+    INodeLockPolicy.getInstance().register(DefaultMetricsSystem.instance());
   }
 
   public static NameNodeMetrics getNameNodeMetrics() {
@@ -1170,6 +1174,9 @@ private void startLeaderElectionService() throws IOException {
             DFSConfigKeys.DFS_LEADER_MISSED_HB_THRESHOLD_DEFAULT);
     int leIncrement = conf.getInt(DFSConfigKeys.DFS_LEADER_TP_INCREMENT_KEY,
         DFSConfigKeys.DFS_LEADER_TP_INCREMENT_DEFAULT);
+    boolean leLightweight =
+        conf.getBoolean(DFSConfigKeys.DFS_LEADER_LIGHTWEIGHT_KEY,
+            DFSConfigKeys.DFS_LEADER_LIGHTWEIGHT_DEFAULT);
 
     String rpcAddresses = "";
     rpcAddresses = rpcServer.getRpcAddress().getAddress().getHostAddress() + ":" +rpcServer.getRpcAddress().getPort()+",";
@@ -1190,7 +1197,7 @@ private void startLeaderElectionService() throws IOException {
     leaderElection =
         new LeaderElection(new HdfsLeDescriptorFactory(), leadercheckInterval,
             missedHeartBeatThreshold, leIncrement, httpAddress,
-            rpcAddresses);
+            rpcAddresses, leLightweight);
     leaderElection.start();
 
     try {
@@ -18,6 +18,7 @@
 package org.apache.hadoop.hdfs.server.namenode;
 
 import com.google.protobuf.BlockingService;
+import io.hops.erasure_coding.Report;
 import io.hops.exception.ForeignKeyConstraintViolationException;
 import io.hops.leader_election.node.ActiveNode;
 import io.hops.leader_election.node.SortedActiveNodeList;
@@ -41,6 +42,8 @@
 import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.HDFSPolicyProvider;
 import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
+import org.apache.hadoop.hdfs.protocol.BulkFileInfo;
+import org.apache.hadoop.hdfs.protocol.MetadataEventBatch;
 import org.apache.hadoop.hdfs.protocol.CorruptFileBlocks;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
@@ -693,6 +696,21 @@ public HdfsFileStatus getFileInfo(String src) throws IOException {
     return namesystem.getFileInfo(src, true);
   }
 
+  @Override // ClientProtocol
+  public BulkFileInfo getFileInfos(String[] srcs, boolean needLocation)
+      throws IOException {
+    metrics.incrFileInfoOps(srcs.length);
+    return namesystem.getFileInfos(srcs, needLocation);
+  }
+
+  @Override // ClientProtocol
+  public MetadataEventBatch getMetadataEvents(long epoch, long fromPosition,
+      int maxEvents) throws IOException {
+    namesystem.checkSuperuserPrivilege();
+    return namesystem.getMetadataEventBuffer().getEvents(epoch, fromPosition,
+        maxEvents);
+  }
+
   @Override // ClientProtocol
   public HdfsFileStatus getFileLinkInfo(String src) throws IOException {
     metrics.incrFileInfoOps();
@@ -919,6 +937,13 @@ public byte[] getSmallFileData(int id) throws IOException {
     return namesystem.getSmallFileData(id);
   }
 
+  @Override // DatanodeProtocol
+  public void encodingReport(DatanodeRegistration nodeReg, Report[] reports)
+      throws IOException {
+    verifyRequest(nodeReg);
+    namesystem.getErasureCodingManager().encodingReport(nodeReg, reports);
+  }
+
   /**
    * Verifies the given registration.
    *
@@ -1118,6 +1143,16 @@ public void revokeEncoding(String filePath, short replication)
     namesystem.revokeEncoding(filePath, replication);
   }
 
+  @Override // ClientProtocol
+  public boolean completeEncoding(String filePath, String parityFileName)
+      throws IOException {
+    if (!namesystem.isErasureCodingEnabled()) {
+      throw new IOException("Completing encoding although erasure coding" +
+          " was disabled");
+    }
+    return namesystem.completeEncoding(filePath, parityFileName);
+  }
+
   @Override // ClientProtocol
   public LocatedBlocks getMissingBlockLocations(String filePath)
       throws IOException {
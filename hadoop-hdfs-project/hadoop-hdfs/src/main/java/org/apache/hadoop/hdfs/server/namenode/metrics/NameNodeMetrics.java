@@ -74,6 +74,20 @@ public class NameNodeMetrics {
   MutableCounterLong blockReceivedAndDeletedOps;
   @Metric("Number of blockReports from individual storages")
   MutableCounterLong storageBlockReportOps;
+  @Metric("Number of blocks scheduled for replication by this namenode")
+  MutableCounterLong replicationBlocksScheduled;
+  @Metric("Number of blocks scheduled for deletion by this namenode")
+  MutableCounterLong invalidationBlocksScheduled;
+  @Metric("Number of deferred access time updates written")
+  MutableCounterLong accessTimeUpdatesFlushed;
+  @Metric("Number of deferred access time updates merged into a pending one")
+  MutableCounterLong accessTimeUpdatesCoalesced;
+  @Metric("Time between a deferred access time update and its write")
+  MutableRate accessTimeFlushLag;
+  @Metric("Number of content summaries answered from the cache")
+  MutableCounterLong contentSummaryCacheHits;
+  @Metric("Number of content summaries counted over the subtree")
+  MutableCounterLong contentSummaryCacheMisses;
 
   MutableQuantiles[] syncsQuantiles;
   @Metric("Block report")
@@ -167,6 +181,10 @@ public void incrFileInfoOps() {
     fileInfoOps.incr();
   }
 
+  public void incrFileInfoOps(int delta) {
+    fileInfoOps.incr(delta);
+  }
+
   public void incrCreateSymlinkOps() {
     createSymlinkOps.incr();
   }
@@ -179,6 +197,31 @@ public void incrBlockReceivedAndDeletedOps() {
     blockReceivedAndDeletedOps.incr();
   }
 
+  public void incrReplicationBlocksScheduled(int delta) {
+    replicationBlocksScheduled.incr(delta);
+  }
+
+  public void incrInvalidationBlocksScheduled(int delta) {
+    invalidationBlocksScheduled.incr(delta);
+  }
+
+  public void incrAccessTimeUpdatesCoalesced() {
+    accessTimeUpdatesCoalesced.incr();
+  }
+
+  public void addAccessTimeFlush(int updates, long maxLag) {
+    accessTimeUpdatesFlushed.incr(updates);
+    accessTimeFlushLag.add(maxLag);
+  }
+
+  public void incrContentSummaryCacheHits() {
+    contentSummaryCacheHits.incr();
+  }
+
+  public void incrContentSummaryCacheMisses() {
+    contentSummaryCacheMisses.incr();
+  }
+
   public void incrStorageBlockReportOps() {
     storageBlockReportOps.incr();
   }
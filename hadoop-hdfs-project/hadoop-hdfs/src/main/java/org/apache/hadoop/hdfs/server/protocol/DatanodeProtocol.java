@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.hdfs.server.protocol;
 
+import io.hops.erasure_coding.Report;
 import io.hops.leader_election.node.ActiveNode;
 import io.hops.leader_election.node.SortedActiveNodeList;
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -76,6 +77,8 @@ public interface DatanodeProtocol {
   final static int DNA_RECOVERBLOCK = 6;  // request a block recovery
   final static int DNA_ACCESSKEYUPDATE = 7;  // update access key
   final static int DNA_BALANCERBANDWIDTHUPDATE = 8; // update balancer bandwidth
+  final static int DNA_ENCODE = 9; // compute the parity of files
+  final static int DNA_ENCODE_CANCEL = 10; // stop computing the parity
 
   /**
    * Register Datanode.
@@ -198,4 +201,16 @@ public void commitBlockSynchronization(ExtendedBlock block,
    */
   public byte[] getSmallFileData(int id) throws IOException;
 
+  /**
+   * Report the outcome of the encoding tasks received through
+   * {@link EncodingCommand}s to the namenode that sent them.
+   *
+   * @param registration
+   *     the datanode
+   * @param reports
+   *     one report per finished or failed task
+   */
+  public void encodingReport(DatanodeRegistration registration,
+      Report[] reports) throws IOException;
+
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.protocol;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+import java.util.List;
+
+/**
+ * Encoding command instructs a datanode to compute the parity files of a
+ * batch of source files. The datanode reports the outcome of every task to
+ * the namenode that sent the command through
+ * {@link DatanodeProtocol#encodingReport}.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class EncodingCommand extends DatanodeCommand {
+
+  /**
+   * The encoding of one source file.
+   */
+  public static class EncodingTask {
+    private final String sourcePath;
+    private final String parityPath;
+    private final String codecId;
+    private final int targetReplication;
+    private final boolean copy;
+
+    public EncodingTask(String sourcePath, String parityPath, String codecId,
+        int targetReplication, boolean copy) {
+      this.sourcePath = sourcePath;
+      this.parityPath = parityPath;
+      this.codecId = codecId;
+      this.targetReplication = targetReplication;
+      this.copy = copy;
+    }
+
+    public String getSourcePath() {
+      return sourcePath;
+    }
+
+    public String getParityPath() {
+      return parityPath;
+    }
+
+    public String getCodecId() {
+      return codecId;
+    }
+
+    /**
+     * @return the replication of the source file once it is encoded
+     */
+    public int getTargetReplication() {
+      return targetReplication;
+    }
+
+    /**
+     * @return true if the source file has to be rewritten while encoding it
+     */
+    public boolean isCopy() {
+      return copy;
+    }
+
+    @Override
+    public String toString() {
+      return "EncodingTask{sourcePath=" + sourcePath + ", parityPath=" +
+          parityPath + ", codecId=" + codecId + ", targetReplication=" +
+          targetReplication + ", copy=" + copy + "}";
+    }
+  }
+
+  private final List<EncodingTask> tasks;
+
+  public EncodingCommand(List<EncodingTask> tasks) {
+    this(DatanodeProtocol.DNA_ENCODE, tasks);
+  }
+
+  /**
+   * @param action
+   *     {@link DatanodeProtocol#DNA_ENCODE} to start the tasks or
+   *     {@link DatanodeProtocol#DNA_ENCODE_CANCEL} to cancel them
+   */
+  public EncodingCommand(int action, List<EncodingTask> tasks) {
+    super(action);
+    this.tasks = tasks;
+  }
+
+  public List<EncodingTask> getTasks() {
+    return tasks;
+  }
+}
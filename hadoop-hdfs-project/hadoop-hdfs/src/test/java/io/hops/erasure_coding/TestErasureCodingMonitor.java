@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.erasure_coding;
+
+import io.hops.metadata.HdfsStorageFactory;
+import io.hops.metadata.hdfs.dal.EncodingStatusDataAccess;
+import io.hops.metadata.hdfs.entity.EncodingPolicy;
+import io.hops.metadata.hdfs.entity.EncodingStatus;
+import io.hops.transaction.handler.HDFSOperationType;
+import io.hops.transaction.handler.LightWeightRequestHandler;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.util.Time;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class TestErasureCodingMonitor extends BasicClusterTestCase {
+
+  private static final int RECHECK_INTERVAL = 20000;
+
+  private final Path testFile = new Path("/test_file");
+
+  public TestErasureCodingMonitor() {
+    super();
+    getConf().setInt(DFSConfigKeys.RECHECK_INTERVAL_KEY, RECHECK_INTERVAL);
+    getConf().setLong(DFSConfigKeys.MIN_RECHECK_INTERVAL_KEY, 100);
+    getConf().setLong(DFSConfigKeys.MAX_RECHECK_INTERVAL_KEY,
+        2 * RECHECK_INTERVAL);
+  }
+
+  @Test
+  public void testCommittedRequestSignalsMonitor() throws Exception {
+    // The monitor scanned its queues when it started, the next periodic scan
+    // is at least a recheck interval away
+    Codec codec = Codec.getCodec("src");
+    EncodingPolicy policy = new EncodingPolicy(codec.getId(), (short) 1);
+    FSDataOutputStream out = getDfs().create(testFile, policy);
+    out.close();
+
+    waitForStatus(EncodingStatus.Status.ENCODING_ACTIVE,
+        RECHECK_INTERVAL / 2);
+  }
+
+  @Test
+  public void testRequestOnOtherNamenodeIsPickedUp() throws Exception {
+    FSDataOutputStream out = getDfs().create(testFile);
+    out.close();
+    EncodingStatus status =
+        getDfs().getEncodingStatus(testFile.toUri().getPath());
+    assertEquals(EncodingStatus.Status.NOT_ENCODED, status.getStatus());
+
+    // Request the encoding behind the back of the namenode, as another
+    // namenode would, so that its monitor is not signaled
+    Codec codec = Codec.getCodec("src");
+    final EncodingStatus requested = new EncodingStatus(status);
+    requested.setStatus(EncodingStatus.Status.ENCODING_REQUESTED);
+    requested.setEncodingPolicy(
+        new EncodingPolicy(codec.getId(), (short) 1));
+    new LightWeightRequestHandler(HDFSOperationType.UPDATE_ENCODING_STATUS) {
+      @Override
+      public Object performTask() throws IOException {
+        EncodingStatusDataAccess<EncodingStatus> dataAccess =
+            (EncodingStatusDataAccess) HdfsStorageFactory
+                .getDataAccess(EncodingStatusDataAccess.class);
+        dataAccess.update(requested);
+        return null;
+      }
+    }.handle();
+
+    // The encodings queue does not back off, it is rescanned within a
+    // recheck interval
+    waitForStatus(EncodingStatus.Status.ENCODING_ACTIVE,
+        RECHECK_INTERVAL + RECHECK_INTERVAL / 2);
+  }
+
+  private void waitForStatus(EncodingStatus.Status expected, long timeout)
+      throws IOException, InterruptedException {
+    long deadline = Time.monotonicNow() + timeout;
+    EncodingStatus status;
+    do {
+      status = getDfs().getEncodingStatus(testFile.toUri().getPath());
+      if (status.getStatus() == expected) {
+        return;
+      }
+      Thread.sleep(100);
+    } while (Time.monotonicNow() < deadline);
+    fail("Status is " + status.getStatus() + " instead of " + expected +
+        " after " + timeout + " ms");
+  }
+}
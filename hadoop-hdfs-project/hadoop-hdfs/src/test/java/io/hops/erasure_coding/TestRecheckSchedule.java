@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.erasure_coding;
+
+import io.hops.erasure_coding.RecheckSchedule.StatusQueue;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestRecheckSchedule {
+
+  private static final long RECHECK = 1000;
+  private static final long MIN_RECHECK = 100;
+  private static final long MAX_RECHECK = 8000;
+
+  private final RecheckSchedule schedule =
+      new RecheckSchedule(RECHECK, MIN_RECHECK, MAX_RECHECK);
+
+  @Test
+  public void testSignalWakesQueueAfterMinInterval() {
+    long now = 0;
+    for (StatusQueue queue : StatusQueue.values()) {
+      scan(queue, now, false);
+    }
+    assertEquals(now + RECHECK, schedule.nextWakeUp(now));
+
+    schedule.signal(StatusQueue.ENCODINGS);
+    assertEquals(now + MIN_RECHECK, schedule.nextWakeUp(now));
+    assertFalse(schedule.startScan(StatusQueue.ENCODINGS,
+        now + MIN_RECHECK - 1));
+    assertTrue(schedule.startScan(StatusQueue.ENCODINGS, now + MIN_RECHECK));
+  }
+
+  @Test
+  public void testSignalsAreCoalesced() {
+    long now = scan(StatusQueue.DELETIONS, 0, false);
+    schedule.signal(StatusQueue.DELETIONS);
+    schedule.signal(StatusQueue.DELETIONS);
+    now += MIN_RECHECK;
+    assertTrue(schedule.startScan(StatusQueue.DELETIONS, now));
+    schedule.finishScan(StatusQueue.DELETIONS, false, now);
+    assertFalse(schedule.startScan(StatusQueue.DELETIONS, now + MIN_RECHECK));
+  }
+
+  @Test
+  public void testBackoffGrowsAndResets() {
+    long now = 0;
+    long[] expected = {2000, 4000, 8000, 8000};
+    for (long interval : expected) {
+      now = scan(StatusQueue.PLACEMENT, now, false);
+      assertEquals(interval, schedule.getInterval(StatusQueue.PLACEMENT));
+      assertFalse(schedule.startScan(StatusQueue.PLACEMENT,
+          now + interval - 1));
+      now += interval;
+    }
+
+    // A scan that finds work resets the interval
+    now = scan(StatusQueue.PLACEMENT, now, true);
+    assertEquals(RECHECK, schedule.getInterval(StatusQueue.PLACEMENT));
+
+    now = scan(StatusQueue.PLACEMENT, now + RECHECK, false);
+    now = scan(StatusQueue.PLACEMENT, now + 2 * RECHECK, false);
+    assertEquals(4 * RECHECK, schedule.getInterval(StatusQueue.PLACEMENT));
+
+    // So does a signaled scan, even if it finds nothing
+    schedule.signal(StatusQueue.PLACEMENT);
+    scan(StatusQueue.PLACEMENT, now + MIN_RECHECK, false);
+    assertEquals(RECHECK, schedule.getInterval(StatusQueue.PLACEMENT));
+  }
+
+  @Test
+  public void testSharedQueuesAndReportsDoNotBackOff() {
+    StatusQueue[] queues = {StatusQueue.REPORTS, StatusQueue.ENCODINGS,
+        StatusQueue.SOURCE_REPAIRS, StatusQueue.PARITY_REPAIRS,
+        StatusQueue.DELETIONS, StatusQueue.REVOCATIONS};
+    for (StatusQueue queue : queues) {
+      long now = 0;
+      for (int i = 0; i < 5; i++) {
+        now = scan(queue, now, false);
+        assertEquals(RECHECK, schedule.getInterval(queue));
+        now += RECHECK;
+      }
+    }
+  }
+
+  @Test
+  public void testUnsignaledChangeIsPickedUpByPeriodicScan() {
+    // A change committed on another namenode does not signal this one, the
+    // queue is scanned once its interval elapsed, however long it backed
+    // off
+    long now = 0;
+    for (int i = 0; i < 10; i++) {
+      now = scan(StatusQueue.PLACEMENT, now, false);
+      now += schedule.getInterval(StatusQueue.PLACEMENT);
+    }
+    assertEquals(MAX_RECHECK, schedule.getInterval(StatusQueue.PLACEMENT));
+    assertFalse(schedule.startScan(StatusQueue.PLACEMENT, now - 1));
+    assertTrue(schedule.startScan(StatusQueue.PLACEMENT, now));
+    schedule.finishScan(StatusQueue.PLACEMENT, true, now);
+    assertEquals(RECHECK, schedule.getInterval(StatusQueue.PLACEMENT));
+
+    // Encodings and repairs are picked up after the recheck interval
+    for (StatusQueue queue : new StatusQueue[]{StatusQueue.ENCODINGS,
+        StatusQueue.SOURCE_REPAIRS}) {
+      now = 0;
+      for (int i = 0; i < 10; i++) {
+        now = scan(queue, now, false) + RECHECK;
+      }
+      assertFalse(schedule.startScan(queue, now - 1));
+      assertTrue(schedule.startScan(queue, now));
+    }
+  }
+
+  /**
+   * Scan the queue, which must be due.
+   *
+   * @return the time of the scan
+   */
+  private long scan(StatusQueue queue, long now, boolean foundWork) {
+    assertTrue(schedule.startScan(queue, now));
+    schedule.finishScan(queue, foundWork, now);
+    return now;
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.erasure_coding;
+
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestStripePlacement {
+
+  private static final int PARITY_LENGTH = 2;
+
+  private final DatanodeInfo[] rack1 = new DatanodeInfo[]{
+      DFSTestUtil.getDatanodeDescriptor("1.1.1.1", "/r1"),
+      DFSTestUtil.getDatanodeDescriptor("1.1.1.2", "/r1"),
+      DFSTestUtil.getDatanodeDescriptor("1.1.1.3", "/r1")};
+  private final DatanodeInfo[] rack2 = new DatanodeInfo[]{
+      DFSTestUtil.getDatanodeDescriptor("2.2.2.1", "/r2"),
+      DFSTestUtil.getDatanodeDescriptor("2.2.2.2", "/r2"),
+      DFSTestUtil.getDatanodeDescriptor("2.2.2.3", "/r2")};
+
+  private long blockId = 0;
+
+  private LocatedBlock block(DatanodeInfo... locations) {
+    return new LocatedBlock(new ExtendedBlock("bp", blockId++), locations);
+  }
+
+  @Test
+  public void testWellPlacedStripe() {
+    List<LocatedBlock> blocks = new ArrayList<LocatedBlock>();
+    for (int i = 0; i < 3; i++) {
+      blocks.add(block(rack1[i]));
+      blocks.add(block(rack2[i]));
+    }
+    StripePlacement stripe = new StripePlacement(blocks, PARITY_LENGTH, 1);
+    assertFalse(stripe.isAtRisk());
+    assertTrue(stripe.getMisplacedReplicas().isEmpty());
+    assertFalse(stripe.canHost(rack1[0]));
+  }
+
+  @Test
+  public void testBlocksSharingANode() {
+    List<LocatedBlock> blocks = new ArrayList<LocatedBlock>();
+    blocks.add(block(rack1[0]));
+    blocks.add(block(rack1[0]));
+    blocks.add(block(rack1[0]));
+    blocks.add(block(rack1[1]));
+    StripePlacement stripe = new StripePlacement(blocks, PARITY_LENGTH, 1);
+    assertTrue(stripe.isAtRisk());
+
+    List<StripePlacement.Replica> misplaced =
+        new ArrayList<StripePlacement.Replica>(stripe.getMisplacedReplicas());
+    assertEquals(2, misplaced.size());
+    assertFalse(stripe.canHost(rack1[1]));
+    assertTrue(stripe.canHost(rack1[2]));
+
+    stripe.moved(misplaced.get(0), rack1[2]);
+    assertEquals(1, stripe.getMisplacedReplicas().size());
+    assertFalse(stripe.canHost(rack1[2]));
+  }
+
+  @Test
+  public void testStripeOnOneRack() {
+    List<LocatedBlock> blocks = new ArrayList<LocatedBlock>();
+    for (int i = 0; i < 3; i++) {
+      blocks.add(block(rack1[i]));
+    }
+    blocks.add(block(rack2[0]));
+    StripePlacement stripe = new StripePlacement(blocks, PARITY_LENGTH, 2);
+    // losing /r1 loses 3 blocks, more than the 2 parity blocks recover
+    assertTrue(stripe.isAtRisk());
+    assertEquals(1, stripe.getMisplacedReplicas().size());
+    assertFalse(stripe.canHost(rack1[0]));
+    assertTrue(stripe.canHost(rack2[1]));
+  }
+
+  @Test
+  public void testReplicatedBlocksAreNotLostWithOneNode() {
+    List<LocatedBlock> blocks = new ArrayList<LocatedBlock>();
+    for (int i = 0; i < 3; i++) {
+      blocks.add(block(rack1[0], rack2[i]));
+    }
+    StripePlacement stripe = new StripePlacement(blocks, PARITY_LENGTH, 2);
+    assertFalse(stripe.isAtRisk());
+  }
+
+  @Test
+  public void testBlocksWithoutLocations() {
+    List<LocatedBlock> blocks = new ArrayList<LocatedBlock>();
+    blocks.add(block());
+    blocks.add(block());
+    blocks.add(block(rack1[0]));
+    blocks.add(block(rack2[0]));
+    StripePlacement stripe = new StripePlacement(blocks, PARITY_LENGTH, 2);
+    assertTrue(stripe.isAtRisk());
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.metadata;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestRoundTripLatencyInjector {
+
+  public interface Store {
+    int get(int key) throws IOException;
+  }
+
+  public interface Connector {
+    void readLock();
+
+    boolean isTransactionActive();
+
+    void commit() throws IOException;
+  }
+
+  private static class LocalConnector implements Connector {
+    @Override
+    public void readLock() {
+    }
+
+    @Override
+    public boolean isTransactionActive() {
+      return true;
+    }
+
+    @Override
+    public void commit() {
+    }
+  }
+
+  private static class FailingStore implements Store {
+    @Override
+    public int get(int key) throws IOException {
+      if (key < 0) {
+        throw new IOException("negative key");
+      }
+      return key * 2;
+    }
+  }
+
+  @Test
+  public void testRoundTripsAreCountedAndDelayed() throws Exception {
+    long roundTrips = RoundTripLatencyInjector.getThreadRoundTrips();
+    Store store = new RoundTripLatencyInjector(2000)
+        .wrap(Store.class, new FailingStore());
+
+    long start = System.nanoTime();
+    assertEquals(2, store.get(1));
+    assertEquals(4, store.get(2));
+    long elapsed = System.nanoTime() - start;
+
+    assertEquals(2,
+        RoundTripLatencyInjector.getThreadRoundTrips() - roundTrips);
+    assertTrue(elapsed >= TimeUnit.MICROSECONDS.toNanos(4000));
+
+    // Object methods are not round trips
+    store.toString();
+    assertEquals(2,
+        RoundTripLatencyInjector.getThreadRoundTrips() - roundTrips);
+  }
+
+  @Test
+  public void testLocalMethodsAreNotRoundTrips() throws Exception {
+    long roundTrips = RoundTripLatencyInjector.getThreadRoundTrips();
+    Connector connector = new RoundTripLatencyInjector(0).wrap(
+        Connector.class, new LocalConnector(),
+        RoundTripLatencyInjector.LOCAL_CONNECTOR_METHODS);
+
+    connector.readLock();
+    assertTrue(connector.isTransactionActive());
+    assertEquals(0,
+        RoundTripLatencyInjector.getThreadRoundTrips() - roundTrips);
+
+    connector.commit();
+    assertEquals(1,
+        RoundTripLatencyInjector.getThreadRoundTrips() - roundTrips);
+  }
+
+  @Test
+  public void testExceptionsAreUnwrapped() throws Exception {
+    Store store = new RoundTripLatencyInjector(0)
+        .wrap(Store.class, new FailingStore());
+    try {
+      store.get(-1);
+      fail("expected an IOException");
+    } catch (IOException e) {
+      assertEquals("negative key", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.metadata.memory;
+
+import io.hops.StorageConnector;
+import io.hops.exception.TransientStorageException;
+import io.hops.metadata.hdfs.dal.LeasePathDataAccess;
+import io.hops.metadata.hdfs.entity.LeasePath;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestInMemoryStorage {
+
+  private static final long LOCK_WAIT_TIMEOUT = 500;
+
+  private StorageConnector connector;
+  private LeasePathDataAccess<LeasePath> leasePaths;
+  private ExecutorService executor;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    InMemoryStorageFactory.reset();
+    InMemoryStorageFactory factory = new InMemoryStorageFactory();
+    Properties conf = new Properties();
+    conf.setProperty(DFSConfigKeys.DFS_STORAGE_MEMORY_LOCK_WAIT_TIMEOUT_MS,
+        Long.toString(LOCK_WAIT_TIMEOUT));
+    factory.setConfiguration(conf);
+    connector = factory.getConnector();
+    leasePaths = (LeasePathDataAccess<LeasePath>) factory
+        .getDataAccess(LeasePathDataAccess.class);
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+    InMemoryStorageFactory.reset();
+  }
+
+  @Test
+  public void testWritesAreVisibleAfterCommit() throws Exception {
+    connector.beginTransaction();
+    add(new LeasePath("/a/1", 1));
+    assertEquals(1, leasePaths.findByPath("/a/1").getHolderId());
+    // not committed yet
+    assertNull(inOtherTransaction(new Callable<LeasePath>() {
+      @Override
+      public LeasePath call() throws Exception {
+        return leasePaths.findByPath("/a/1");
+      }
+    }));
+    connector.commit();
+
+    assertEquals(1, inOtherTransaction(new Callable<LeasePath>() {
+      @Override
+      public LeasePath call() throws Exception {
+        return leasePaths.findByPath("/a/1");
+      }
+    }).getHolderId());
+  }
+
+  @Test
+  public void testRollbackDiscardsWrites() throws Exception {
+    connector.beginTransaction();
+    add(new LeasePath("/a/1", 1));
+    connector.rollback();
+
+    connector.beginTransaction();
+    assertNull(leasePaths.findByPath("/a/1"));
+    connector.commit();
+  }
+
+  @Test
+  public void testFinders() throws Exception {
+    add(new LeasePath("/a/1", 1));
+    add(new LeasePath("/a/2", 1));
+    add(new LeasePath("/b/1", 2));
+
+    assertEquals(2, leasePaths.findByHolderId(1).size());
+    Collection<LeasePath> prefixed = leasePaths.findByPrefix("/a");
+    assertEquals(2, prefixed.size());
+    for (LeasePath path : prefixed) {
+      assertTrue(path.getPath().startsWith("/a"));
+    }
+
+    // an update changes the indexed column
+    connector.beginTransaction();
+    leasePaths.prepare(Collections.<LeasePath>emptyList(),
+        Collections.<LeasePath>emptyList(),
+        Arrays.asList(new LeasePath("/a/2", 2)));
+    assertEquals(2, leasePaths.findByHolderId(2).size());
+    connector.commit();
+    assertEquals(1, leasePaths.findByHolderId(1).size());
+    assertEquals(2, leasePaths.findByHolderId(2).size());
+  }
+
+  @Test
+  public void testWriteLockBlocksOtherWriters() throws Exception {
+    add(new LeasePath("/a/1", 1));
+
+    connector.beginTransaction();
+    connector.writeLock();
+    assertEquals(1, leasePaths.findByPath("/a/1").getHolderId());
+
+    Future<Void> writer = executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        connector.beginTransaction();
+        connector.writeLock();
+        increment(leasePaths.findByPath("/a/1"));
+        connector.commit();
+        return null;
+      }
+    });
+    Thread.sleep(LOCK_WAIT_TIMEOUT / 5);
+    assertFalse(writer.isDone());
+
+    increment(leasePaths.findByPath("/a/1"));
+    connector.commit();
+
+    // the writer read the row once the lock was released, no lost update
+    writer.get(LOCK_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+    assertEquals(3, leasePaths.findByPath("/a/1").getHolderId());
+  }
+
+  @Test
+  public void testLockWaitTimesOut() throws Exception {
+    add(new LeasePath("/a/1", 1));
+
+    connector.beginTransaction();
+    connector.readLock();
+    leasePaths.findByPath("/a/1");
+
+    try {
+      inOtherTransaction(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          connector.writeLock();
+          leasePaths.findByPath("/a/1");
+          return null;
+        }
+      });
+      fail("The write lock was granted while the row is read locked");
+    } catch (TransientStorageException e) {
+      // expected
+    } finally {
+      connector.commit();
+    }
+
+    // shared locks do not block each other
+    connector.beginTransaction();
+    connector.readLock();
+    leasePaths.findByPath("/a/1");
+    assertEquals(1, inOtherTransaction(new Callable<LeasePath>() {
+      @Override
+      public LeasePath call() throws Exception {
+        connector.readLock();
+        return leasePaths.findByPath("/a/1");
+      }
+    }).getHolderId());
+    connector.commit();
+  }
+
+  private void add(LeasePath path) throws Exception {
+    leasePaths.prepare(Collections.<LeasePath>emptyList(),
+        Arrays.asList(path), Collections.<LeasePath>emptyList());
+  }
+
+  private void increment(LeasePath path) throws Exception {
+    leasePaths.prepare(Collections.<LeasePath>emptyList(),
+        Collections.<LeasePath>emptyList(),
+        Arrays.asList(new LeasePath(path.getPath(), path.getHolderId() + 1)));
+  }
+
+  /**
+   * Run the task in a transaction of another thread and commit it.
+   */
+  private <T> T inOtherTransaction(final Callable<T> task) throws Exception {
+    Future<T> result = executor.submit(new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        connector.beginTransaction();
+        try {
+          T value = task.call();
+          connector.commit();
+          return value;
+        } finally {
+          connector.rollback();
+        }
+      }
+    });
+    try {
+      return result.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.transaction.handler;
+
+import io.hops.StorageConnector;
+import io.hops.metadata.RoundTripLatencyInjector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
+import static org.apache.hadoop.test.MetricsAsserts.assertGauge;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestTransactionProfiler {
+
+  public interface Store {
+    List<Integer> list() throws IOException;
+  }
+
+  @Test
+  public void testSampling() {
+    TransactionProfiler profiler = TransactionProfiler.getInstance();
+    profiler.setConfiguration(0, 60);
+    assertNull(profiler.startSample(HDFSOperationType.GET_BLOCK_LOCATIONS));
+    profiler.setConfiguration(1, 60);
+    assertNotNull(profiler.startSample(HDFSOperationType.GET_BLOCK_LOCATIONS));
+  }
+
+  @Test
+  public void testSamplesArePublished() throws Exception {
+    TransactionProfiler profiler = TransactionProfiler.getInstance();
+    profiler.setConfiguration(1, 1);
+    Store store = new RoundTripLatencyInjector(0).wrap(Store.class,
+        new Store() {
+          @Override
+          public List<Integer> list() {
+            return Arrays.asList(1, 2, 3);
+          }
+        });
+
+    StorageConnector connector = TransactionProfiler.profile(
+        (StorageConnector) Proxy.newProxyInstance(
+            StorageConnector.class.getClassLoader(),
+            new Class<?>[]{StorageConnector.class}, new InvocationHandler() {
+              @Override
+              public Object invoke(Object proxy, Method method,
+                  Object[] args) throws Throwable {
+                return null;
+              }
+            }));
+
+    TransactionProfiler.Sample sample =
+        profiler.startSample(HDFSOperationType.CHOOSE_UNDER_REPLICATED_BLKS);
+    assertSame(sample, TransactionProfiler.currentSample());
+    sample.addSetupTime(1000);
+    sample.addLockTime(5000);
+    sample.attemptFailed(new IOException("timeout"));
+    sample.locksAcquired();
+    store.list();
+    store.list();
+    connector.commit();
+    sample.finish();
+    assertNull(TransactionProfiler.currentSample());
+    // not profiled, the round trips are not counted
+    store.list();
+
+    MetricsRecordBuilder rb = getMetrics(profiler);
+    assertCounter("CHOOSE_UNDER_REPLICATED_BLKSTransactions", 1L, rb);
+    assertCounter("CHOOSE_UNDER_REPLICATED_BLKSRetries", 1L, rb);
+    assertCounter("CHOOSE_UNDER_REPLICATED_BLKSRoundTrips", 2L, rb);
+    assertCounter("CHOOSE_UNDER_REPLICATED_BLKSRowsRead", 6L, rb);
+    assertCounter("CHOOSE_UNDER_REPLICATED_BLKSAbortIOException", 1L, rb);
+
+    // the percentiles are published once their interval rolls over
+    Thread.sleep(1500);
+    rb = getMetrics(profiler);
+    assertGauge("CHOOSE_UNDER_REPLICATED_BLKSLockTimeNumOps", 1L, rb);
+    assertGauge("CHOOSE_UNDER_REPLICATED_BLKSLockTime50thPercentileLatencyMicros",
+        5L, rb);
+    assertGauge("CHOOSE_UNDER_REPLICATED_BLKSReadTimeNumOps", 1L, rb);
+    assertGauge("CHOOSE_UNDER_REPLICATED_BLKSCommitTimeNumOps", 1L, rb);
+    assertGauge("CHOOSE_UNDER_REPLICATED_BLKSTotalTimeNumOps", 1L, rb);
+  }
+}
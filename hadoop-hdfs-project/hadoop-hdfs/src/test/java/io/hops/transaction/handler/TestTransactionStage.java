@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.transaction.handler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestTransactionStage {
+
+  private static class Names extends TransactionStage<List<String>> {
+    private final List<String> published = new ArrayList<>();
+
+    void stage(String name) {
+      getChanges().add(name);
+    }
+
+    @Override
+    protected List<String> newChanges() {
+      return new ArrayList<>();
+    }
+
+    @Override
+    protected void publish(List<String> changes, Object namesystem,
+        HDFSOperationType opType) {
+      published.addAll(changes);
+    }
+  }
+
+  @Test
+  public void testNothingIsStagedOutsideOfATransaction() {
+    assertNull(new Names().getChanges());
+  }
+
+  @Test
+  public void testNestedTransactionsKeepTheirOwnChanges() {
+    Names names = new Names();
+    TransactionStage.enter();
+    try {
+      names.stage("outer");
+
+      // a transaction run in the setup of the outer one fails once, then
+      // commits
+      TransactionStage.enter();
+      try {
+        names.stage("inner-failed");
+        TransactionStage.discard();
+        names.stage("inner");
+        TransactionStage.publish(null, HDFSOperationType.TEST);
+      } finally {
+        TransactionStage.exit();
+      }
+      assertEquals(Arrays.asList("inner"), names.published);
+
+      names.stage("outer-after-inner");
+      TransactionStage.publish(null, HDFSOperationType.TEST);
+    } finally {
+      TransactionStage.exit();
+    }
+    assertEquals(Arrays.asList("inner", "outer", "outer-after-inner"),
+        names.published);
+    assertNull(names.getChanges());
+  }
+
+  @Test
+  public void testFailedAttemptDropsItsChanges() {
+    Names names = new Names();
+    TransactionStage.enter();
+    try {
+      names.stage("failed");
+      TransactionStage.discard();
+      TransactionStage.publish(null, HDFSOperationType.TEST);
+    } finally {
+      TransactionStage.exit();
+    }
+    assertTrue(names.published.isEmpty());
+  }
+}
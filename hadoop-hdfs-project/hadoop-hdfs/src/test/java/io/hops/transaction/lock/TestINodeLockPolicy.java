@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.transaction.lock;
+
+import io.hops.exception.TransientStorageException;
+import io.hops.transaction.handler.HDFSOperationType;
+import io.hops.transaction.lock.TransactionLockTypes.INodeLockType;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestINodeLockPolicy {
+
+  private final INodeLockPolicy policy = INodeLockPolicy.getInstance();
+
+  @After
+  public void tearDown() {
+    policy.finished();
+    policy.setConfiguration(new Configuration());
+  }
+
+  @Test
+  public void testOnlyConfiguredOperationsAreOptimistic() {
+    Configuration conf = new Configuration();
+    conf.set(DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_OPERATIONS,
+        "GET_FILE_INFO, NOT_AN_OPERATION");
+    policy.setConfiguration(conf);
+
+    assertEquals(INodeLockType.READ_COMMITTED, policy.getINodeLockType(
+        HDFSOperationType.GET_FILE_INFO, INodeLockType.READ));
+    assertEquals(INodeLockType.READ, policy.getINodeLockType(
+        HDFSOperationType.GET_LISTING, INodeLockType.READ));
+  }
+
+  @Test
+  public void testEscalationFollowsConflictRatio() {
+    Configuration conf = new Configuration();
+    conf.set(DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_OPERATIONS,
+        "GET_LISTING");
+    conf.setFloat(DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_CONFLICT_RATIO,
+        0.5f);
+    // every attempt closes its window
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_WINDOW_MS, 0);
+    policy.setConfiguration(conf);
+
+    policy.record(HDFSOperationType.GET_LISTING, true);
+    assertEquals(INodeLockType.READ, policy.getINodeLockType(
+        HDFSOperationType.GET_LISTING, INodeLockType.READ));
+
+    policy.succeeded(HDFSOperationType.GET_LISTING);
+    assertEquals(INodeLockType.READ_COMMITTED, policy.getINodeLockType(
+        HDFSOperationType.GET_LISTING, INodeLockType.READ));
+  }
+
+  @Test
+  public void testFailedValidationRetriesWithLocks() {
+    Configuration conf = new Configuration();
+    conf.set(DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_OPERATIONS,
+        "GET_FILE_INFO");
+    conf.setFloat(DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_CONFLICT_RATIO,
+        0.5f);
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_OPTIMISTIC_READ_WINDOW_MS, 0);
+    policy.setConfiguration(conf);
+
+    // other transient failures are not conflicts
+    policy.failed(HDFSOperationType.GET_FILE_INFO,
+        new TransientStorageException("timeout"));
+    assertEquals(INodeLockType.READ_COMMITTED, policy.getINodeLockType(
+        HDFSOperationType.GET_FILE_INFO, INodeLockType.READ));
+
+    // the retry after a failed validation takes locks
+    policy.failed(HDFSOperationType.GET_FILE_INFO,
+        new OptimisticReadConflictException("renamed"));
+    assertEquals(INodeLockType.READ, policy.getINodeLockType(
+        HDFSOperationType.GET_FILE_INFO, INodeLockType.READ));
+    // and its success is not counted as a read-committed attempt
+    policy.succeeded(HDFSOperationType.GET_FILE_INFO);
+    policy.finished();
+    assertEquals(INodeLockType.READ, policy.getINodeLockType(
+        HDFSOperationType.GET_FILE_INFO, INodeLockType.READ));
+
+    // a successful read-committed attempt closes the next window
+    policy.record(HDFSOperationType.GET_FILE_INFO, false);
+    assertEquals(INodeLockType.READ_COMMITTED, policy.getINodeLockType(
+        HDFSOperationType.GET_FILE_INFO, INodeLockType.READ));
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.transaction.lock;
+
+import io.hops.metadata.RoundTripLatencyInjector;
+import io.hops.transaction.handler.HDFSOperationType;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestINodeLockPrefetch {
+
+  private static final String SRC = "/a/b/c/d/e/f/g/src";
+  private static final String DST = "/a/b/c/d/e/h/i/dst";
+
+  private MiniDFSCluster cluster;
+
+  @Before
+  public void setUp() throws IOException {
+    Configuration conf = new HdfsConfiguration();
+    // count the round trips, without adding latency
+    conf.setLong(DFSConfigKeys.DFS_STORAGE_INJECTED_LATENCY_US, 0);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(0).build();
+    cluster.waitActive();
+    DistributedFileSystem dfs = cluster.getFileSystem();
+    dfs.mkdirs(new Path(SRC));
+    dfs.mkdirs(new Path(DST));
+  }
+
+  @After
+  public void tearDown() {
+    INodeLock.enableAncestorPrefetch(true);
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  @Test
+  public void testPrefetchLocksSameINodesWithFewerRoundTrips()
+      throws IOException {
+    // fill the resolving cache with both paths
+    lockPaths(new HashMap<Integer, TransactionLockTypes.INodeLockType>());
+
+    INodeLock.enableAncestorPrefetch(false);
+    Map<Integer, TransactionLockTypes.INodeLockType> withoutPrefetch =
+        new HashMap<>();
+    long roundTripsWithoutPrefetch = lockPaths(withoutPrefetch);
+
+    INodeLock.enableAncestorPrefetch(true);
+    Map<Integer, TransactionLockTypes.INodeLockType> withPrefetch =
+        new HashMap<>();
+    long roundTripsWithPrefetch = lockPaths(withPrefetch);
+
+    // the root, the five shared ancestors and three inodes of each path,
+    // with the same lock on each of them
+    assertEquals(12, withPrefetch.size());
+    assertEquals(withoutPrefetch, withPrefetch);
+    assertTrue("prefetch took " + roundTripsWithPrefetch +
+            " round trips, " + roundTripsWithoutPrefetch + " without",
+        roundTripsWithPrefetch < roundTripsWithoutPrefetch);
+  }
+
+  /**
+   * Write lock both paths in one transaction, the way a rename does.
+   *
+   * @param locked
+   *     filled with the id and lock type of every inode locked by the
+   *     transaction
+   * @return the number of round trips made to acquire the inode lock
+   */
+  private long lockPaths(
+      final Map<Integer, TransactionLockTypes.INodeLockType> locked)
+      throws IOException {
+    final long[] roundTrips = new long[1];
+    new HopsTransactionalRequestHandler(HDFSOperationType.TEST) {
+      private TransactionLocks locks;
+
+      @Override
+      public void acquireLock(TransactionLocks locks) throws IOException {
+        this.locks = locks;
+        LockFactory lf = LockFactory.getInstance();
+        locks.add(lf.getINodeLock(cluster.getNameNode(),
+            TransactionLockTypes.INodeLockType.WRITE,
+            TransactionLockTypes.INodeResolveType.PATH, SRC, DST));
+        roundTrips[0] = RoundTripLatencyInjector.getThreadRoundTrips();
+      }
+
+      @Override
+      public Object performTask() throws IOException {
+        roundTrips[0] =
+            RoundTripLatencyInjector.getThreadRoundTrips() - roundTrips[0];
+        BaseINodeLock lock = (BaseINodeLock) locks.getLock(Lock.Type.INode);
+        for (INode inode : lock.getAllResolvedINodes()) {
+          locked.put(inode.getId(), lock.getLockedINodeLockType(inode));
+        }
+        return null;
+      }
+    }.handle();
+    return roundTrips[0];
+  }
+}
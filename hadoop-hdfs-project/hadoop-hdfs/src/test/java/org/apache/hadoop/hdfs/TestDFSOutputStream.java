@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The packet buffers of {@link DFSOutputStream} come from a pool, check that
+ * every path a packet takes returns its buffer.
+ */
+public class TestDFSOutputStream {
+
+  private static final int BLOCK_SIZE = 1024 * 1024;
+  private static final int SOCKET_TIMEOUT = 2000;
+
+  private MiniDFSCluster cluster;
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  private DistributedFileSystem startCluster(Configuration conf,
+      int numDataNodes) throws IOException {
+    conf.setInt(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, BLOCK_SIZE);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(numDataNodes)
+        .build();
+    cluster.waitActive();
+    return cluster.getFileSystem();
+  }
+
+  private static void write(FSDataOutputStream out, int len)
+      throws IOException {
+    byte[] data = new byte[4096];
+    for (int written = 0; written < len; written += data.length) {
+      out.write(data, 0, Math.min(data.length, len - written));
+    }
+  }
+
+  @Test
+  public void testPipelineReturnsBuffers() throws IOException {
+    DistributedFileSystem dfs = startCluster(new HdfsConfiguration(), 3);
+    int inUse = DFSOutputStream.getPacketBuffersInUse();
+
+    FSDataOutputStream out = dfs.create(new Path("/pipeline"));
+    write(out, 3 * BLOCK_SIZE + BLOCK_SIZE / 2);
+    out.close();
+
+    assertEquals(inUse, DFSOutputStream.getPacketBuffersInUse());
+  }
+
+  @Test
+  public void testHeartbeatsReturnBuffers() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    // heartbeats are sent after half the socket timeout without packets
+    conf.setInt(DFSConfigKeys.DFS_CLIENT_SOCKET_TIMEOUT_KEY, SOCKET_TIMEOUT);
+    DistributedFileSystem dfs = startCluster(conf, 1);
+    int inUse = DFSOutputStream.getPacketBuffersInUse();
+
+    FSDataOutputStream out = dfs.create(new Path("/heartbeat"));
+    write(out, BLOCK_SIZE / 2);
+    out.hflush();
+    Thread.sleep(3 * SOCKET_TIMEOUT);
+    write(out, BLOCK_SIZE / 2);
+    out.close();
+
+    assertEquals(inUse, DFSOutputStream.getPacketBuffersInUse());
+  }
+
+  @Test
+  public void testPipelineRecoveryReturnsBuffers() throws IOException {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_CLIENT_WRITE_REPLACE_DATANODE_ON_FAILURE_ENABLE_KEY,
+        false);
+    DistributedFileSystem dfs = startCluster(conf, 3);
+    int inUse = DFSOutputStream.getPacketBuffersInUse();
+
+    FSDataOutputStream out = dfs.create(new Path("/recovery"));
+    write(out, BLOCK_SIZE / 2);
+    out.hflush();
+    // The packets that were not acked are sent again to the remaining
+    // datanodes
+    cluster.stopDataNode(0);
+    write(out, BLOCK_SIZE);
+    out.close();
+
+    assertEquals(inUse, DFSOutputStream.getPacketBuffersInUse());
+  }
+
+  @Test
+  public void testAbortReturnsBuffers() throws IOException {
+    DistributedFileSystem dfs = startCluster(new HdfsConfiguration(), 1);
+    int inUse = DFSOutputStream.getPacketBuffersInUse();
+
+    FSDataOutputStream out = dfs.create(new Path("/abort"));
+    write(out, BLOCK_SIZE + 100);
+    ((DFSOutputStream) out.getWrappedStream()).abort();
+
+    assertEquals(inUse, DFSOutputStream.getPacketBuffersInUse());
+  }
+
+  @Test
+  public void testSmallFileReturnsBuffers() throws IOException {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_STORE_SMALL_FILES_IN_DB_KEY, true);
+    DistributedFileSystem dfs = startCluster(conf, 1);
+    int inUse = DFSOutputStream.getPacketBuffersInUse();
+
+    // Stored in the database, the held back packets are never sent
+    FSDataOutputStream out = dfs.create(new Path("/small"));
+    write(out, 1024);
+    out.close();
+    assertEquals(inUse, DFSOutputStream.getPacketBuffersInUse());
+
+    // Too large for the database, the held back packets are sent after all
+    out = dfs.create(new Path("/large"));
+    write(out, conf.getInt(DFSConfigKeys.DFS_DB_FILE_MAX_SIZE_KEY,
+        DFSConfigKeys.DFS_DB_FILE_MAX_SIZE_DEFAULT) + 1024);
+    out.close();
+    assertEquals(inUse, DFSOutputStream.getPacketBuffersInUse());
+  }
+}
@@ -27,8 +27,10 @@
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.protocol.BulkFileInfo;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.HdfsLocatedFileStatus;
 import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
 import org.apache.hadoop.hdfs.server.namenode.NameNode;
 import org.apache.hadoop.hdfs.web.HftpFileSystem;
@@ -132,6 +134,40 @@ public void testGetFileInfo() throws IOException {
   }
 
 
+  /**
+   * Test getting the file info of many paths at once, with a batch size
+   * smaller than the number of paths
+   */
+  @Test
+  public void testGetFileInfos() throws IOException {
+    Configuration clientConf = new HdfsConfiguration(conf);
+    clientConf.setInt(DFSConfigKeys.DFS_CLIENT_BULK_FILEINFO_BATCH_SIZE_KEY, 2);
+    DFSClient client = new DFSClient(NameNode.getAddress(conf), clientConf);
+    try {
+      String file = fs.getFileStatus(file1).getPath().toUri().getPath();
+      BulkFileInfo infos = client.getFileInfos(
+          new String[]{"/", file, "/noSuchFile", "non-absolute", file}, true);
+      assertEquals(5, infos.size());
+      assertTrue(infos.getFileInfo(0).isDir());
+      HdfsLocatedFileStatus status =
+          (HdfsLocatedFileStatus) infos.getFileInfo(1);
+      assertEquals(fileSize, status.getLen());
+      assertEquals(fileSize / blockSize,
+          status.getBlockLocations().locatedBlockCount());
+      assertEquals(null, infos.getFileInfo(2));
+      assertTrue(infos.getError(3).getMessage().contains("Invalid"));
+      assertEquals(fileSize, infos.getFileInfo(4).getLen());
+    } finally {
+      client.close();
+    }
+
+    FileStatus[] statuses = ((DistributedFileSystem) fs).getFileStatuses(
+        new Path[]{file1, new Path("/noSuchFile")});
+    assertEquals(fs.getFileStatus(file1), statuses[0]);
+    assertEquals(null, statuses[1]);
+  }
+
+
   /**
    * Test the FileStatus obtained calling getFileStatus on a file
    */
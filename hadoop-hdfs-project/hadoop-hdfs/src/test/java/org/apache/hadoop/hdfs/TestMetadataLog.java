@@ -29,6 +29,7 @@
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
+import org.apache.hadoop.hdfs.protocol.MetadataEvent;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -748,6 +749,113 @@ private void testDeleteDatasetAfterRename(boolean oldRename) throws
     }
   }
 
+  @Test
+  public void testMetadataEventStream() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    final MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1)
+        .build();
+    try {
+      DistributedFileSystem dfs = cluster.getFileSystem();
+      final Path dataset = new Path("/projects/project/dataset");
+      final Path subdir = new Path(dataset, "subdir");
+      Path file = new Path(subdir, "file");
+      dfs.mkdirs(dataset, FsPermission.getDefault());
+      dfs.setMetaEnabled(dataset, true);
+      dfs.mkdirs(subdir);
+      HdfsDataOutputStream out = TestFileCreation.create(dfs, file, 1);
+      out.close();
+      int subdirId = TestUtil.getINodeId(cluster.getNameNode(), subdir);
+      int fileId = TestUtil.getINodeId(cluster.getNameNode(), file);
+
+      MetadataEventReader reader =
+          dfs.getClient().getMetadataEventReader(null, 10000);
+      List<MetadataEvent> events = reader.poll();
+      assertFalse(reader.isEventsLost());
+      assertTrue(hasEvent(events, subdirId, MetadataLogEntry.Operation.ADD));
+      assertTrue(hasEvent(events, fileId, MetadataLogEntry.Operation.ADD));
+
+      // a reader resuming from the token only gets the later events
+      reader = dfs.getClient().getMetadataEventReader(
+          reader.getResumeToken(), 100);
+      dfs.delete(file, false);
+      events = reader.poll();
+      assertFalse(reader.isEventsLost());
+      assertEquals(1, events.size());
+      assertTrue(hasEvent(events, fileId, MetadataLogEntry.Operation.DELETE));
+      assertTrue(reader.poll().isEmpty());
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
+  @Test
+  public void testMetadataEventStreamReportsLostEvents() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_METADATA_EVENTS_BUFFER_SIZE_KEY, 2);
+    final MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1)
+        .build();
+    try {
+      DistributedFileSystem dfs = cluster.getFileSystem();
+      final Path dataset = new Path("/projects/project/dataset");
+      dfs.mkdirs(dataset, FsPermission.getDefault());
+      dfs.setMetaEnabled(dataset, true);
+      dfs.mkdirs(new Path(dataset, "before"));
+
+      MetadataEventReader reader =
+          dfs.getClient().getMetadataEventReader(null, 100);
+      reader.poll();
+      assertFalse(reader.isEventsLost());
+
+      // the buffer only keeps the last two events
+      dfs.mkdirs(new Path(dataset, "lost"));
+      dfs.mkdirs(new Path(dataset, "kept"));
+      Path afterOverflow = new Path(dataset, "afterOverflow");
+      dfs.mkdirs(afterOverflow);
+      List<MetadataEvent> events = reader.poll();
+      assertTrue(reader.isEventsLost());
+      assertEquals(2, events.size());
+      assertTrue(hasEvent(events,
+          TestUtil.getINodeId(cluster.getNameNode(), afterOverflow),
+          MetadataLogEntry.Operation.ADD));
+      assertTrue(reader.poll().isEmpty());
+      assertFalse(reader.isEventsLost());
+
+      // the unread events of a namenode do not survive its restart
+      String token = reader.getResumeToken();
+      dfs.mkdirs(new Path(dataset, "lostOnRestart"));
+      cluster.restartNameNode();
+      Path afterRestart = new Path(dataset, "afterRestart");
+      dfs = cluster.getFileSystem();
+      dfs.mkdirs(afterRestart);
+      reader = dfs.getClient().getMetadataEventReader(token, 100);
+      events = reader.poll();
+      assertTrue(reader.isEventsLost());
+      assertEquals(1, events.size());
+      assertTrue(hasEvent(events,
+          TestUtil.getINodeId(cluster.getNameNode(), afterRestart),
+          MetadataLogEntry.Operation.ADD));
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
+  private boolean hasEvent(List<MetadataEvent> events, int inodeId,
+      MetadataLogEntry.Operation operation) {
+    for (MetadataEvent event : events) {
+      if (event.getInodeId() == inodeId &&
+          event.getLogOperation().equals(operation.name())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void checkLogicalTimeDeleteAfterAdd(int[] inodesIds) throws
       IOException {
     for(int inodeId : inodesIds){
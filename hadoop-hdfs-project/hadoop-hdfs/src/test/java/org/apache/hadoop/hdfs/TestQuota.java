@@ -27,6 +27,7 @@
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.*;
+import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.protocol.DSQuotaExceededException;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.protocol.LastUpdatedContentSummary;
@@ -35,6 +36,8 @@
 import org.apache.hadoop.hdfs.tools.DFSAdmin;
 import org.apache.hadoop.hdfs.web.WebHdfsFileSystem;
 import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.security.AccessControlException;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.util.Time;
 import org.junit.Test;
@@ -46,6 +49,8 @@
 
 import org.apache.hadoop.hdfs.server.namenode.TestSubtreeLock;
 
+import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -1178,4 +1183,102 @@ public void testSetQuotaOnNonExistingDirectory() throws Exception {
     }
   }
 
+  @Test
+  public void testCachedContentSummaryStaleness() throws Exception {
+    final Configuration conf = new HdfsConfiguration();
+    final long STALENESS = 5000;
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_CACHE_SIZE_KEY, 10);
+    conf.set(DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_CACHE_PATHS_KEY,
+        "/project");
+    conf.setLong(
+        DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_CACHE_STALENESS_MS_KEY,
+        STALENESS);
+    final MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      final DistributedFileSystem dfs = cluster.getFileSystem();
+      Path project = new Path("/project");
+      dfs.mkdirs(project);
+      DFSTestUtil.createFile(dfs, new Path(project, "file1"), 1024, (short) 1,
+          0L);
+
+      // the first query counts the summary
+      ContentSummary summary = dfs.getContentSummary(project);
+      assertEquals(1, summary.getFileCount());
+      assertEquals(1024, summary.getLength());
+      assertContentSummaryCache(0, 1);
+
+      // a change within the staleness period is not seen yet
+      DFSTestUtil.createFile(dfs, new Path(project, "file2"), 1024, (short) 1,
+          0L);
+      summary = dfs.getContentSummary(project);
+      assertEquals(1, summary.getFileCount());
+      assertEquals(1024, summary.getLength());
+      assertContentSummaryCache(1, 1);
+
+      // but the summary is never older than the staleness period
+      Thread.sleep(STALENESS + 500);
+      summary = dfs.getContentSummary(project);
+      assertEquals(2, summary.getFileCount());
+      assertEquals(2048, summary.getLength());
+      assertContentSummaryCache(1, 2);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  @Test
+  public void testCachedContentSummaryChecksSubtreePermissions()
+      throws Exception {
+    final Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_CACHE_SIZE_KEY, 10);
+    conf.set(DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_CACHE_PATHS_KEY,
+        "/project");
+    final MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      final DistributedFileSystem dfs = cluster.getFileSystem();
+      final Path project = new Path("/project");
+      Path hidden = new Path(project, "hidden");
+      dfs.mkdirs(project, new FsPermission((short) 0755));
+      dfs.mkdirs(hidden, new FsPermission((short) 0700));
+      DFSTestUtil.createFile(dfs, new Path(hidden, "file"), 1024, (short) 1,
+          0L);
+
+      // the superuser fills the cache
+      assertEquals(1, dfs.getContentSummary(project).getFileCount());
+      assertEquals(1, dfs.getContentSummary(project).getFileCount());
+      assertContentSummaryCache(1, 1);
+
+      // the owner of the directory cannot list all of its subtree
+      dfs.setOwner(project, "user", "group");
+      UserGroupInformation user = UserGroupInformation
+          .createUserForTesting("user", new String[]{"group"});
+      FileSystem userFs = user.doAs(
+          new PrivilegedExceptionAction<FileSystem>() {
+            @Override
+            public FileSystem run() throws Exception {
+              return FileSystem.newInstance(cluster.getURI(), conf);
+            }
+          });
+      try {
+        userFs.getContentSummary(project);
+        fail("The cached summary was answered without checking the subtree");
+      } catch (AccessControlException e) {
+        // expected
+      } finally {
+        userFs.close();
+      }
+      assertContentSummaryCache(1, 2);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  private static void assertContentSummaryCache(long hits, long misses) {
+    MetricsRecordBuilder rb = getMetrics("NameNodeActivity");
+    assertCounter("ContentSummaryCacheHits", hits, rb);
+    assertCounter("ContentSummaryCacheMisses", misses, rb);
+  }
+
 }
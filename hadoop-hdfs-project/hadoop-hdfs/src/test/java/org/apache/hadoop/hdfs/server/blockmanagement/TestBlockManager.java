@@ -54,6 +54,7 @@
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
 import org.apache.hadoop.net.NetworkTopology;
+import org.apache.hadoop.net.Node;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -61,9 +62,11 @@
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -171,6 +174,26 @@ private void removeNode(DatanodeDescriptor deadNode) throws IOException {
   }
 
 
+  @Test
+  public void testStripeExcludedNodes() throws Exception {
+    addNodes(nodes);
+
+    // a rack without blocks of the stripe is preferred
+    Set<Node> stripe = new HashSet<Node>(rackA.subList(0, 1));
+    assertEquals(new HashSet<Node>(rackA), bm.getStripeExcludedNodes(stripe));
+
+    // both racks hold as many blocks of the stripe
+    stripe = new HashSet<Node>(Arrays.asList(rackA.get(0), rackB.get(0)));
+    assertEquals(stripe, bm.getStripeExcludedNodes(stripe));
+
+    // the rack holding more blocks of the stripe is avoided
+    stripe = new HashSet<Node>(
+        Arrays.asList(rackA.get(0), rackA.get(1), rackB.get(0)));
+    Set<Node> expected = new HashSet<Node>(rackA);
+    expected.add(rackB.get(0));
+    assertEquals(expected, bm.getStripeExcludedNodes(stripe));
+  }
+
   /**
    * Test that replication of under-replicated blocks is detected
    * and basically works
@@ -738,6 +761,74 @@ public Object performTask() throws IOException {
     }.handle();
   }
 
+  /**
+   * Test that a namenode still chooses source nodes when there are more
+   * namenodes sharing the replication work than replication streams.
+   */
+  @Test
+  public void testReplSrcChosenWithMoreNamenodesThanStreams()
+      throws Exception {
+    formatStorage();
+    bm.maxReplicationStreams = 2;
+    bm.replicationStreamsHardLimit = 4;
+    bm.replicationWorkPartition = new ReplicationWorkPartition(4, 5);
+
+    final long blockId = 42;         // arbitrary
+    final Block aBlock = new Block(blockId, 0, 0);
+
+    final List<DatanodeDescriptor> origNodes = getNodes(0, 1);
+
+    addNodes(origNodes);
+    // Add the block to the first node.
+    addBlockOnNodes(blockId, origNodes.subList(0, 1));
+
+    final List<DatanodeDescriptor> cntNodes = new LinkedList<>();
+    final List<DatanodeStorageInfo> liveNodes = new LinkedList<>();
+
+    new HopsTransactionalRequestHandler(HDFSOperationType.TEST) {
+      INodeIdentifier inodeIdentifier;
+
+      @Override
+      public void setUp() throws StorageException {
+        inodeIdentifier = INodeUtil.resolveINodeFromBlock(aBlock);
+      }
+
+      @Override
+      public void acquireLock(TransactionLocks locks) throws IOException {
+        LockFactory lf = LockFactory.getInstance();
+        locks.add(
+            lf.getIndividualINodeLock(INodeLockType.WRITE, inodeIdentifier))
+            .add(
+                lf.getIndividualBlockLock(aBlock.getBlockId(), inodeIdentifier))
+            .add(lf.getBlockRelated(BLK.RE, BLK.ER, BLK.CR, BLK.UR, BLK.PE));
+      }
+
+      @Override
+      public Object performTask() throws IOException {
+        assertNotNull("Chooses a source node although the namenode's even" +
+                " share of the replication streams is zero.",
+            bm.chooseSourceDatanode(aBlock, cntNodes, liveNodes,
+                new NumberReplicas(),
+                UnderReplicatedBlocks.QUEUE_VERY_UNDER_REPLICATED));
+
+        DatanodeStorageInfo targets[] = { origNodes.get(1).getStorageInfos()[0] };
+        origNodes.get(0).addBlockToBeReplicated(aBlock, targets);
+
+        assertNull("Does not choose a source node that reached the" +
+                " namenode's share of the replication streams.",
+            bm.chooseSourceDatanode(aBlock, cntNodes, liveNodes,
+                new NumberReplicas(),
+                UnderReplicatedBlocks.QUEUE_VERY_UNDER_REPLICATED));
+        assertNull("Does not choose a source node that reached the" +
+                " namenode's share of the hard limit.",
+            bm.chooseSourceDatanode(aBlock, cntNodes, liveNodes,
+                new NumberReplicas(),
+                UnderReplicatedBlocks.QUEUE_HIGHEST_PRIORITY));
+        return null;
+      }
+    }.handle();
+  }
+
   @Test
   public void testSafeModeIBR() throws Exception {
     DatanodeDescriptor node = spy(nodes.get(0));
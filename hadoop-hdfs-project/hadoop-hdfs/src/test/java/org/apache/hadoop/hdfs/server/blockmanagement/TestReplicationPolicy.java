@@ -20,11 +20,13 @@
 import io.hops.common.INodeUtil;
 import io.hops.exception.StorageException;
 import io.hops.metadata.HdfsStorageFactory;
+import io.hops.metadata.common.entity.Variable;
 import io.hops.metadata.hdfs.entity.INodeIdentifier;
 import io.hops.transaction.EntityManager;
 import io.hops.transaction.handler.HDFSOperationType;
 import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.lock.LockFactory;
+import io.hops.transaction.lock.TransactionLockTypes;
 import io.hops.transaction.lock.TransactionLocks;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
@@ -975,6 +977,74 @@ public void testChooseUnderReplicatedBlocks() throws Exception {
     assertTheChosenBlocks(chosenBlocks, 6, 1, 0, 0, 0);
   }
 
+  /**
+   * Namenodes sharing the replication work pick disjoint windows of blocks,
+   * even when blocks leave the queue in between
+   */
+  @Test
+  public void testForwardOnlyReplicationIndex() throws Exception {
+    HdfsStorageFactory.formatStorage();
+    // two namenodes sharing the queues in the database
+    UnderReplicatedBlocks nn1Queue = new UnderReplicatedBlocks();
+    nn1Queue.setForwardOnlyReplicationIndex(true);
+    UnderReplicatedBlocks nn2Queue = new UnderReplicatedBlocks();
+    nn2Queue.setForwardOnlyReplicationIndex(true);
+
+    for (int blockId = 0; blockId < 10; blockId++) {
+      add(nn1Queue, new BlockInfo(new Block(blockId), blockId), 1, 0, 3);
+    }
+
+    Set<Block> claimed = new HashSet<Block>();
+    List<Block> nn1Window = nn1Queue.chooseUnderReplicatedBlocks(4)
+        .get(UnderReplicatedBlocks.QUEUE_HIGHEST_PRIORITY);
+    assertEquals(4, nn1Window.size());
+    claimed.addAll(nn1Window);
+
+    List<Block> nn2Window = nn2Queue.chooseUnderReplicatedBlocks(4)
+        .get(UnderReplicatedBlocks.QUEUE_HIGHEST_PRIORITY);
+    assertEquals(4, nn2Window.size());
+    for (Block block : nn2Window) {
+      assertTrue("Block " + block + " was picked twice", claimed.add(block));
+    }
+
+    // the first namenode is done with two of its blocks, which must not move
+    // the index back into the window of the second namenode
+    decrementReplicationIndex(nn1Queue,
+        UnderReplicatedBlocks.QUEUE_HIGHEST_PRIORITY);
+    decrementReplicationIndex(nn1Queue,
+        UnderReplicatedBlocks.QUEUE_HIGHEST_PRIORITY);
+
+    List<Block> nn1NextWindow = nn1Queue.chooseUnderReplicatedBlocks(4)
+        .get(UnderReplicatedBlocks.QUEUE_HIGHEST_PRIORITY);
+    assertEquals(2, nn1NextWindow.size());
+    for (Block block : nn1NextWindow) {
+      assertTrue("Block " + block + " was picked twice", claimed.add(block));
+    }
+    assertEquals(10, claimed.size());
+
+    // all the queues were read to their end, a new pass starts
+    assertTheChosenBlocks(nn2Queue.chooseUnderReplicatedBlocks(4), 4, 0, 0, 0,
+        0);
+  }
+
+  private void decrementReplicationIndex(final UnderReplicatedBlocks queue,
+      final int priority) throws IOException {
+    new HopsTransactionalRequestHandler(HDFSOperationType.TEST) {
+      @Override
+      public void acquireLock(TransactionLocks locks) throws IOException {
+        LockFactory lf = LockFactory.getInstance();
+        locks.add(lf.getVariableLock(Variable.Finder.ReplicationIndex,
+            TransactionLockTypes.LockType.WRITE));
+      }
+
+      @Override
+      public Object performTask() throws StorageException, IOException {
+        queue.decrementReplicationIndex(priority);
+        return null;
+      }
+    }.handle();
+  }
+
   /**
    * asserts the chosen blocks with expected priority blocks
    */
@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import io.hops.leader_election.node.ActiveNode;
+import io.hops.leader_election.node.ActiveNodePBImpl;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestReplicationWorkPartition {
+
+  private static List<ActiveNode> activeNodes(long... ids) {
+    List<ActiveNode> nodes = new ArrayList<ActiveNode>();
+    for (long id : ids) {
+      nodes.add(new ActiveNodePBImpl(id, "nn" + id, "10.0.0." + id, 8020,
+          "10.0.0." + id + ":50070", "10.0.0." + id, 8021));
+    }
+    return nodes;
+  }
+
+  @Test
+  public void testPartitionFollowsMembership() {
+    List<ActiveNode> nodes = activeNodes(1, 4, 7);
+    assertEquals(new ReplicationWorkPartition(0, 3),
+        ReplicationWorkPartition.of(nodes, 1));
+    assertEquals(new ReplicationWorkPartition(2, 3),
+        ReplicationWorkPartition.of(nodes, 7));
+    assertNull(ReplicationWorkPartition.of(nodes, 5));
+
+    // namenode 4 died, namenode 7 takes over its place
+    nodes = activeNodes(1, 7);
+    assertEquals(new ReplicationWorkPartition(1, 2),
+        ReplicationWorkPartition.of(nodes, 7));
+  }
+
+  @Test
+  public void testSharesAddUp() {
+    for (int count = 1; count < 5; count++) {
+      for (int total = 0; total < 20; total++) {
+        int sum = 0;
+        for (int index = 0; index < count; index++) {
+          sum += new ReplicationWorkPartition(index, count).share(total);
+        }
+        assertEquals(total, sum);
+      }
+    }
+  }
+
+  @Test
+  public void testEveryPartitionGetsPartOfALimit() {
+    // More namenodes than the default replication streams and hard limit
+    for (int limit : new int[]{2, 4}) {
+      int sum = 0;
+      for (int index = 0; index < 5; index++) {
+        int share = new ReplicationWorkPartition(index, 5).shareOfLimit(limit);
+        assertTrue(share >= 1);
+        sum += share;
+      }
+      assertEquals(5, sum);
+    }
+    assertEquals(3, new ReplicationWorkPartition(0, 2).shareOfLimit(5));
+    assertEquals(2, new ReplicationWorkPartition(1, 2).shareOfLimit(5));
+    assertEquals(0, new ReplicationWorkPartition(1, 5).shareOfLimit(0));
+    assertEquals(0, ReplicationWorkPartition.ALL.shareOfLimit(0));
+  }
+
+  @Test
+  public void testEachDatanodeHasOneOwner() {
+    for (int i = 1; i < 50; i++) {
+      DatanodeDescriptor dn = DFSTestUtil.getDatanodeDescriptor(
+          "10.1.1." + i, "/d1/r" + (i % 3));
+      int owners = 0;
+      for (int index = 0; index < 3; index++) {
+        if (new ReplicationWorkPartition(index, 3).owns(dn)) {
+          owners++;
+        }
+      }
+      assertEquals(1, owners);
+      assertTrue(ReplicationWorkPartition.ALL.owns(dn));
+    }
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import com.google.common.base.Supplier;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.datatransfer.DataTransferProtocol;
+import org.apache.hadoop.hdfs.protocol.datatransfer.Op;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getIntGauge;
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestDataXceiverPool {
+
+  private static final int BLOCK_SIZE = 64 * 1024;
+
+  /**
+   * Writes through a pipeline and reads over kept alive connections must
+   * work with the xceivers running on the worker pools.
+   */
+  @Test(timeout = 120000)
+  public void testTransfersOnPools() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_DATANODE_TRANSFER_NIO_ENABLED_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_TRANSFER_SENDER_THREADS_KEY, 2);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_TRANSFER_RECEIVER_THREADS_KEY, 2);
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, BLOCK_SIZE);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(3).build();
+    try {
+      cluster.waitActive();
+      FileSystem fs = cluster.getFileSystem();
+      Path file = new Path("/pooled");
+      DFSTestUtil.createFile(fs, file, 5 * BLOCK_SIZE, (short) 3, 0L);
+
+      String contents = DFSTestUtil.readFile(fs, file);
+      for (int i = 0; i < 3; i++) {
+        assertEquals(contents, DFSTestUtil.readFile(fs, file));
+      }
+      assertNotNull(fs.getFileChecksum(file));
+
+      long queuedOps = 0;
+      for (DataNode datanode : cluster.getDataNodes()) {
+        MetricsRecordBuilder rb = getMetrics(datanode.getMetrics().name());
+        queuedOps += getLongCounter("XceiverQueueTimeNumOps", rb);
+        assertCounter("XceiverOpsRejected", 0L, rb);
+      }
+      // 5 pipelines of 3 writes, and at least one read of each block
+      assertTrue(queuedOps >= 5 * 3 + 5);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  /**
+   * A read arriving at a full sender queue has its connection closed, and
+   * the client reads from another datanode.
+   */
+  @Test(timeout = 120000)
+  public void testRejectedAtFullQueue() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_DATANODE_TRANSFER_NIO_ENABLED_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_TRANSFER_SENDER_THREADS_KEY, 1);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_TRANSFER_MAX_QUEUED_OPS_KEY, 1);
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, BLOCK_SIZE);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(2).build();
+    Socket running = null;
+    Socket queued = null;
+    Socket rejected = null;
+    try {
+      cluster.waitActive();
+      FileSystem fs = cluster.getFileSystem();
+      Path file = new Path("/rejected");
+      DFSTestUtil.createFile(fs, file, 2 * BLOCK_SIZE, (short) 2, 0L);
+      String contents = DFSTestUtil.readFile(fs, file);
+
+      final DataNode datanode = cluster.getDataNodes().get(0);
+      final DataXceiverServer server =
+          (DataXceiverServer) datanode.dataXceiverServer.getRunnable();
+      GenericTestUtils.waitFor(new Supplier<Boolean>() {
+        @Override
+        public Boolean get() {
+          return server.getPooledXceiverCount() == 0;
+        }
+      }, 100, 10000);
+
+      // The only sender waits for the body of the op, the next op waits in
+      // the queue
+      running = sendOpHeader(datanode, Op.READ_BLOCK);
+      GenericTestUtils.waitFor(new Supplier<Boolean>() {
+        @Override
+        public Boolean get() {
+          return server.getPooledXceiverCount() == 1;
+        }
+      }, 100, 10000);
+      queued = sendOpHeader(datanode, Op.READ_BLOCK);
+      GenericTestUtils.waitFor(new Supplier<Boolean>() {
+        @Override
+        public Boolean get() {
+          return getIntGauge("readBlockQueued",
+              getMetrics(datanode.getMetrics().name())) == 1;
+        }
+      }, 100, 10000);
+
+      rejected = sendOpHeader(datanode, Op.READ_BLOCK);
+      assertEquals(-1, rejected.getInputStream().read());
+      assertCounter("XceiverOpsRejected", 1L,
+          getMetrics(datanode.getMetrics().name()));
+
+      assertEquals(contents, DFSTestUtil.readFile(fs, file));
+    } finally {
+      IOUtils.closeSocket(running);
+      IOUtils.closeSocket(queued);
+      IOUtils.closeSocket(rejected);
+      cluster.shutdown();
+    }
+  }
+
+  /**
+   * Pipeline writes mirror to the receiver pools of the other datanodes,
+   * they must neither wait for nor be rejected by busy receivers.
+   */
+  @Test(timeout = 120000)
+  public void testPipelinesDoNotWaitForReceivers() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_DATANODE_TRANSFER_NIO_ENABLED_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_TRANSFER_RECEIVER_THREADS_KEY, 1);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_TRANSFER_MAX_QUEUED_OPS_KEY, 1);
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, BLOCK_SIZE);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(3).build();
+    try {
+      cluster.waitActive();
+      FileSystem fs = cluster.getFileSystem();
+      byte[] data = new byte[BLOCK_SIZE / 2];
+      FSDataOutputStream[] outs = new FSDataOutputStream[4];
+      for (int i = 0; i < outs.length; i++) {
+        outs[i] = fs.create(new Path("/pipeline" + i), (short) 3);
+        outs[i].write(data);
+        outs[i].hflush();
+      }
+      // all pipelines are open at once
+      for (FSDataOutputStream out : outs) {
+        out.write(data);
+        out.close();
+      }
+      for (int i = 0; i < outs.length; i++) {
+        assertEquals(BLOCK_SIZE,
+            fs.getFileStatus(new Path("/pipeline" + i)).getLen());
+      }
+      for (DataNode datanode : cluster.getDataNodes()) {
+        assertCounter("XceiverOpsRejected", 0L,
+            getMetrics(datanode.getMetrics().name()));
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  /**
+   * A connection kept alive after an operation is closed once it was idle
+   * for the keepalive timeout.
+   */
+  @Test(timeout = 120000)
+  public void testIdleConnectionsExpire() throws Exception {
+    final int keepaliveTimeout = 1000;
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_DATANODE_TRANSFER_NIO_ENABLED_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_KEY,
+        keepaliveTimeout);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      FileSystem fs = cluster.getFileSystem();
+      Path file = new Path("/keepalive");
+      DFSTestUtil.createFile(fs, file, 1L, (short) 1, 0L);
+
+      final DataXceiverServer server = (DataXceiverServer) cluster
+          .getDataNodes().get(0).dataXceiverServer.getRunnable();
+      // writes do not keep their connections
+      GenericTestUtils.waitFor(new Supplier<Boolean>() {
+        @Override
+        public Boolean get() {
+          return server.getPeerCount() == 0;
+        }
+      }, 100, 10000);
+
+      // the client caches the connection of the read
+      DFSTestUtil.readFile(fs, file);
+      assertEquals(1, server.getPeerCount());
+      Thread.sleep(keepaliveTimeout / 2);
+      assertEquals(1, server.getPeerCount());
+
+      GenericTestUtils.waitFor(new Supplier<Boolean>() {
+        @Override
+        public Boolean get() {
+          return server.getPeerCount() == 0;
+        }
+      }, 100, 3 * keepaliveTimeout);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  /**
+   * Open a connection and send the header of an operation without its
+   * body, so that the xceiver running it waits.
+   */
+  private static Socket sendOpHeader(DataNode datanode, Op op)
+      throws IOException {
+    Socket socket = new Socket();
+    socket.connect(datanode.getXferAddress(), 10000);
+    socket.setSoTimeout(10000);
+    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+    out.writeShort(DataTransferProtocol.DATA_TRANSFER_VERSION);
+    out.writeByte(op.code);
+    out.flush();
+    return socket;
+  }
+}
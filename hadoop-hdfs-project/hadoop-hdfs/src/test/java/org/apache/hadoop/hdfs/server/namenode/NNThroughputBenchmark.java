@@ -100,6 +100,10 @@
  * <p/>
  * Then the benchmark executes the specified number of operations using
  * the specified number of threads and outputs the resulting stats.
+ * <p/>
+ * To run it without a database cluster, set dfs.storage.driver.class to
+ * {@link io.hops.metadata.memory.InMemoryStorageFactory}, and
+ * dfs.storage.injected.latency.us to model the round trips to the database.
  */
 public class NNThroughputBenchmark {
   private static final Log LOG = LogFactory.getLog(NNThroughputBenchmark.class);
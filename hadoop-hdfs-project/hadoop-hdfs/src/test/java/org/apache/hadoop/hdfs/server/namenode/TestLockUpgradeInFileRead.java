@@ -16,6 +16,7 @@
 import java.io.IOException;
 
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_ACCESSTIME_PRECISION_KEY;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 
@@ -89,4 +90,38 @@ public void TestFileReadLockUpgrade() throws IOException {
       }
     }
   }
+
+  @Test
+  public void TestDeferredAccessTimeNeedsNoLockUpgrade() throws Exception {
+    MiniDFSCluster cluster = null;
+    try {
+      Configuration conf = new HdfsConfiguration();
+      conf.setLong(DFS_NAMENODE_ACCESSTIME_PRECISION_KEY, 100);
+      conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_ACCESSTIME_DEFERRED_KEY, true);
+      conf.setLong(DFSConfigKeys.DFS_NAMENODE_ACCESSTIME_FLUSH_INTERVAL_MS_KEY,
+          200);
+      cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+      cluster.waitActive();
+
+      DistributedFileSystem dfs = cluster.getFileSystem();
+      Path file = new Path("/file.txt");
+      FSDataOutputStream out = dfs.create(file, (short) 1);
+      writeFile(out, 1024);
+      out.close();
+      long accessTime = dfs.getFileStatus(file).getAccessTime();
+
+      Thread.sleep(1000);
+      FSNamesystem ns = cluster.getNamesystem();
+      // the access time is queued instead of being written with the read lock
+      ns.getBlockLocationsWithLock("client", file.toString(), 0, 1024,
+          TransactionLockTypes.INodeLockType.READ);
+
+      Thread.sleep(1000);
+      assertTrue(dfs.getFileStatus(file).getAccessTime() > accessTime);
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
 }
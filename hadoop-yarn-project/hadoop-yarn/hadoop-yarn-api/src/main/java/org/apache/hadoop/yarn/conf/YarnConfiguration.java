@@ -770,6 +770,15 @@ private static void addDeprecatedKeys() {
   public static final String NM_LOCALIZER_CACHE_TARGET_SIZE_MB =
     NM_PREFIX + "localizer.cache.target-size-mb";
   public static final long DEFAULT_NM_LOCALIZER_CACHE_TARGET_SIZE_MB = 10 * 1024;
+
+  /**
+   * Whether the cache cleanup evicts large resources that have not been used
+   * for a long time first, instead of evicting in least recently used order.
+   */
+  public static final String NM_LOCALIZER_CACHE_CLEANUP_SIZE_AWARE =
+    NM_PREFIX + "localizer.cache.cleanup.size-aware";
+  public static final boolean DEFAULT_NM_LOCALIZER_CACHE_CLEANUP_SIZE_AWARE =
+    false;
   
   /** Number of threads to handle localization requests.*/
   public static final String NM_LOCALIZER_CLIENT_THREAD_COUNT =
@@ -781,6 +790,19 @@ private static void addDeprecatedKeys() {
     NM_PREFIX + "localizer.fetch.thread-count";
   public static final int DEFAULT_NM_LOCALIZER_FETCH_THREAD_COUNT = 4;
 
+  /**
+   * Number of threads each download uses to fetch a large file in chunks.
+   * 1 disables chunked downloads.
+   */
+  public static final String NM_LOCALIZER_FETCH_CHUNK_THREAD_COUNT =
+    NM_PREFIX + "localizer.fetch.chunk.thread-count";
+  public static final int DEFAULT_NM_LOCALIZER_FETCH_CHUNK_THREAD_COUNT = 1;
+
+  /** Size of the chunks a large file is fetched in, in MB.*/
+  public static final String NM_LOCALIZER_FETCH_CHUNK_SIZE_MB =
+    NM_PREFIX + "localizer.fetch.chunk.size-mb";
+  public static final long DEFAULT_NM_LOCALIZER_FETCH_CHUNK_SIZE_MB = 64;
+
   /** Where to store container logs.*/
   public static final String NM_LOG_DIRS = NM_PREFIX + "log-dirs";
   public static final String DEFAULT_NM_LOG_DIRS = "/tmp/logs";
@@ -18,13 +18,21 @@
 
 package org.apache.hadoop.yarn.util;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
@@ -34,6 +42,7 @@
 import org.apache.hadoop.classification.InterfaceAudience.LimitedPrivate;
 import org.apache.hadoop.classification.InterfaceAudience.Private;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileContext;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
@@ -43,17 +52,20 @@
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.util.RunJar;
 import org.apache.hadoop.util.Shell;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.yarn.api.records.LocalResource;
 import org.apache.hadoop.yarn.api.records.LocalResourceVisibility;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Download a single URL to the local disk.
@@ -81,6 +93,8 @@ public class FSDownload implements Callable<Path> {
   static final FsPermission PUBLIC_DIR_PERMS = new FsPermission((short) 0755);
   static final FsPermission PRIVATE_DIR_PERMS = new FsPermission((short) 0700);
 
+  private static final int CHUNK_COPY_BUFFER_SIZE = 64 * 1024;
+
 
   public FSDownload(FileContext files, UserGroupInformation ugi, Configuration conf,
       Path destDirPath, LocalResource resource) {
@@ -264,11 +278,103 @@ private Path copy(Path sCopy, Path dstdir) throws IOException {
       }
     }
 
-    FileUtil.copy(sourceFs, sStat, FileSystem.getLocal(conf), dCopy, false,
-        true, conf);
+    int chunkThreads = conf.getInt(
+        YarnConfiguration.NM_LOCALIZER_FETCH_CHUNK_THREAD_COUNT,
+        YarnConfiguration.DEFAULT_NM_LOCALIZER_FETCH_CHUNK_THREAD_COUNT);
+    long chunkSize = conf.getLong(
+        YarnConfiguration.NM_LOCALIZER_FETCH_CHUNK_SIZE_MB,
+        YarnConfiguration.DEFAULT_NM_LOCALIZER_FETCH_CHUNK_SIZE_MB) << 20;
+    if (sStat.isFile() && chunkThreads > 1 && chunkSize > 0
+        && sStat.getLen() >= 2 * chunkSize) {
+      copyInChunks(sourceFs, sStat, new File(dCopy.toUri().getPath()),
+          chunkSize, chunkThreads);
+    } else {
+      FileUtil.copy(sourceFs, sStat, FileSystem.getLocal(conf), dCopy, false,
+          true, conf);
+    }
     return dCopy;
   }
 
+  /**
+   * Copy a large file by fetching ranges of <code>chunkSize</code> bytes in
+   * parallel, each over its own input stream, and writing them at their
+   * offset in the local file.
+   */
+  @VisibleForTesting
+  static void copyInChunks(final FileSystem sourceFs, final FileStatus sStat,
+      File dst, final long chunkSize, int chunkThreads) throws IOException {
+    final long len = sStat.getLen();
+    int chunks = (int) ((len + chunkSize - 1) / chunkSize);
+    // the ranges are read as the user the download runs as
+    final UserGroupInformation ugi = UserGroupInformation.getCurrentUser();
+    ExecutorService pool = Executors.newFixedThreadPool(
+        Math.min(chunkThreads, chunks), new ThreadFactoryBuilder()
+            .setNameFormat("FSDownload chunk #%d").setDaemon(true).build());
+    RandomAccessFile out = new RandomAccessFile(dst, "rw");
+    try {
+      out.setLength(len);
+      final FileChannel channel = out.getChannel();
+      List<Future<Void>> copies = new ArrayList<Future<Void>>(chunks);
+      for (int i = 0; i < chunks; i++) {
+        final long start = i * chunkSize;
+        final long end = Math.min(len, start + chunkSize);
+        copies.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            return ugi.doAs(new PrivilegedExceptionAction<Void>() {
+              @Override
+              public Void run() throws IOException {
+                copyRange(sourceFs, sStat.getPath(), channel, start, end);
+                return null;
+              }
+            });
+          }
+        }));
+      }
+      for (Future<Void> copy : copies) {
+        try {
+          copy.get();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          }
+          throw new IOException(cause);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while copying " +
+              sStat.getPath(), e);
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+      out.close();
+    }
+  }
+
+  private static void copyRange(FileSystem sourceFs, Path src,
+      FileChannel channel, long start, long end) throws IOException {
+    byte[] buf = new byte[CHUNK_COPY_BUFFER_SIZE];
+    FSDataInputStream in = sourceFs.open(src);
+    try {
+      in.seek(start);
+      long position = start;
+      while (position < end) {
+        int n = in.read(buf, 0, (int) Math.min(buf.length, end - position));
+        if (n < 0) {
+          throw new EOFException("Unexpected end of " + src + " at " +
+              position + ", expected " + end + " bytes");
+        }
+        ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+        while (bb.hasRemaining()) {
+          position += channel.write(bb, position);
+        }
+      }
+    } finally {
+      IOUtils.closeStream(in);
+    }
+  }
+
   private long unpack(File localrsrc, File dst) throws IOException {
     switch (resource.getType()) {
     case ARCHIVE: {
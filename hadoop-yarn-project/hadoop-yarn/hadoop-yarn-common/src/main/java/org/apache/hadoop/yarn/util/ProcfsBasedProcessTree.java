@@ -184,63 +184,44 @@ public static boolean isAvailable() {
   @Override
   public void updateProcessTree() {
     if (!pid.equals(deadPid)) {
-      // Get the list of processes
-      List<String> processList = getProcessList();
+      updateProcessTree(new ProcfsSnapshot(procfsDir));
+    }
+  }
 
-      Map<String, ProcessInfo> allProcessInfo = new HashMap<String, ProcessInfo>();
+  /**
+   * Update process-tree from a snapshot of procfs, which may be shared with
+   * other process trees updated in the same monitoring round. If the snapshot
+   * was taken from another procfs directory a private one is taken instead.
+   *
+   * @param snapshot processes found in procfs
+   */
+  public void updateProcessTree(ProcfsSnapshot snapshot) {
+    if (!pid.equals(deadPid)) {
+      if (!procfsDir.equals(snapshot.procfsDir)) {
+        snapshot = new ProcfsSnapshot(procfsDir);
+      }
 
       // cache the processTree to get the age for processes
       Map<String, ProcessInfo> oldProcs =
               new HashMap<String, ProcessInfo>(processTree);
       processTree.clear();
 
-      ProcessInfo me = null;
-      for (String proc : processList) {
-        // Get information for each process
-        ProcessInfo pInfo = new ProcessInfo(proc);
-        if (constructProcessInfo(pInfo, procfsDir) != null) {
-          allProcessInfo.put(proc, pInfo);
-          if (proc.equals(this.pid)) {
-            me = pInfo; // cache 'me'
-            processTree.put(proc, pInfo);
-          }
-        }
-      }
-
+      ProcessInfo me = snapshot.allProcessInfo.get(this.pid);
       if (me == null) {
         return;
       }
 
-      // Add each process to its parent.
-      for (Map.Entry<String, ProcessInfo> entry : allProcessInfo.entrySet()) {
-        String pID = entry.getKey();
-        if (!pID.equals("1")) {
-          ProcessInfo pInfo = entry.getValue();
-          String ppid = pInfo.getPpid();
-          // If parent is init and process is not session leader,
-          // attach to sessionID
-          if (ppid.equals("1")) {
-              String sid = pInfo.getSessionId().toString();
-              if (!pID.equals(sid)) {
-                 ppid = sid;
-              }
-          }
-          ProcessInfo parentPInfo = allProcessInfo.get(ppid);
-          if (parentPInfo != null) {
-            parentPInfo.addChild(pInfo);
-          }
-        }
-      }
-
-      // now start constructing the process-tree
+      // now start constructing the process-tree. The snapshot may be shared,
+      // so the tree keeps its own copies to track age and jiffies.
+      processTree.put(me.getPid(), new ProcessInfo(me));
       LinkedList<ProcessInfo> pInfoQueue = new LinkedList<ProcessInfo>();
       pInfoQueue.addAll(me.getChildren());
       while (!pInfoQueue.isEmpty()) {
         ProcessInfo pInfo = pInfoQueue.remove();
         if (!processTree.containsKey(pInfo.getPid())) {
-          processTree.put(pInfo.getPid(), pInfo);
+          processTree.put(pInfo.getPid(), new ProcessInfo(pInfo));
+          pInfoQueue.addAll(pInfo.getChildren());
         }
-        pInfoQueue.addAll(pInfo.getChildren());
       }
 
       // update age values and compute the number of jiffies since last update
@@ -273,6 +254,65 @@ public void updateProcessTree() {
     }
   }
 
+  /**
+   * Takes a snapshot of all processes in the system, to be shared by the
+   * process trees of all containers in one monitoring round.
+   */
+  public static ProcfsSnapshot takeSnapshot() {
+    return new ProcfsSnapshot(PROCFS);
+  }
+
+  /**
+   * All processes found under a procfs directory at one point in time, with
+   * their parent/child links resolved. Building it reads the stat file of
+   * every process, so it should be taken once and shared by all process
+   * trees rather than rebuilt per tree.
+   */
+  public static final class ProcfsSnapshot {
+    private final String procfsDir;
+    private final Map<String, ProcessInfo> allProcessInfo =
+        new HashMap<String, ProcessInfo>();
+
+    ProcfsSnapshot(String procfsDir) {
+      this.procfsDir = procfsDir;
+      for (String proc : getProcessList(procfsDir)) {
+        // Get information for each process
+        ProcessInfo pInfo = new ProcessInfo(proc);
+        if (constructProcessInfo(pInfo, procfsDir) != null) {
+          allProcessInfo.put(proc, pInfo);
+        }
+      }
+
+      // Add each process to its parent.
+      for (Map.Entry<String, ProcessInfo> entry : allProcessInfo.entrySet()) {
+        String pID = entry.getKey();
+        if (!pID.equals("1")) {
+          ProcessInfo pInfo = entry.getValue();
+          String ppid = pInfo.getPpid();
+          // If parent is init and process is not session leader,
+          // attach to sessionID
+          if (ppid.equals("1")) {
+              String sid = pInfo.getSessionId().toString();
+              if (!pID.equals(sid)) {
+                 ppid = sid;
+              }
+          }
+          ProcessInfo parentPInfo = allProcessInfo.get(ppid);
+          if (parentPInfo != null) {
+            parentPInfo.addChild(pInfo);
+          }
+        }
+      }
+    }
+
+    /**
+     * @return the number of processes in the snapshot
+     */
+    public int size() {
+      return allProcessInfo.size();
+    }
+  }
+
   /** Verify that the given process id is same as its process group id.
    * @return true if the process id matches else return false.
    */
@@ -487,7 +527,7 @@ private static String getValidPID(String pid) {
   /**
    * Get the list of all processes in the system.
    */
-  private List<String> getProcessList() {
+  private static List<String> getProcessList(String procfsDir) {
     String[] processDirs = (new File(procfsDir)).list();
     List<String> processList = new ArrayList<String>();
 
@@ -624,6 +664,17 @@ public ProcessInfo(String pid) {
       this.age = 1;
     }
 
+    /**
+     * Copies the information read from procfs, without children, age or
+     * jiffies since the last update.
+     */
+    public ProcessInfo(ProcessInfo other) {
+      this(other.pid);
+      updateProcessInfo(other.name, other.ppid, other.pgrpId,
+          other.sessionId, other.utime, other.stime, other.vmem,
+          other.rssmemPage);
+    }
+
     public String getPid() {
       return pid;
     }
@@ -23,6 +23,7 @@
 import com.google.common.cache.LoadingCache;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -39,6 +40,7 @@
 import org.apache.hadoop.yarn.api.records.LocalResourceType;
 import org.apache.hadoop.yarn.api.records.LocalResourceVisibility;
 import org.apache.hadoop.yarn.api.records.URL;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.factories.RecordFactory;
 import org.apache.hadoop.yarn.factory.providers.RecordFactoryProvider;
 import org.junit.AfterClass;
@@ -251,6 +253,40 @@ static LocalResource createZipFile(FileContext files, Path p, int len,
     return ret;
   }
 
+  @Test (timeout=60000)
+  public void testChunkedDownload() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(YarnConfiguration.NM_LOCALIZER_FETCH_CHUNK_THREAD_COUNT, 3);
+    conf.setLong(YarnConfiguration.NM_LOCALIZER_FETCH_CHUNK_SIZE_MB, 1);
+    FileContext files = FileContext.getLocalFSFileContext(conf);
+    final Path basedir = files.makeQualified(new Path("target",
+      TestFSDownload.class.getSimpleName()));
+    files.mkdir(basedir, null, true);
+
+    Random rand = new Random();
+    long sharedSeed = rand.nextLong();
+    rand.setSeed(sharedSeed);
+    System.out.println("SEED: " + sharedSeed);
+
+    // Four full chunks and a partial one
+    int size = (4 << 20) + 12345;
+    Path path = new Path(basedir, "test-chunked-file");
+    LocalResource rsrc = createFile(files, path, size, rand,
+        LocalResourceVisibility.APPLICATION);
+    Path destPath = new Path(basedir,
+        Long.toString(uniqueNumberGenerator.incrementAndGet()));
+    FSDownload fsd = new FSDownload(files,
+        UserGroupInformation.getCurrentUser(), conf, destPath, rsrc);
+    Path localized = fsd.call();
+
+    byte[] expected = FileUtils.readFileToByteArray(
+        new File(path.toUri().getPath()));
+    byte[] actual = FileUtils.readFileToByteArray(
+        new File(localized.toUri().getPath()));
+    assertEquals(size, actual.length);
+    Assert.assertArrayEquals(expected, actual);
+  }
+
   @Test (timeout=10000)
   public void testDownloadBadPublic() throws IOException, URISyntaxException,
       InterruptedException {
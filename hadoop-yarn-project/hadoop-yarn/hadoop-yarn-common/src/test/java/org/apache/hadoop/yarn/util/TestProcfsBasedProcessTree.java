@@ -519,6 +519,71 @@ public void testCpuAndMemoryForProcessTree() throws IOException {
     }
   }
 
+  /**
+   * Tests that process trees updated from one shared procfs snapshot see the
+   * same state as trees scanning procfs on their own.
+   *
+   * @throws IOException
+   *           if there was a problem setting up the fake procfs directories or
+   *           files.
+   */
+  @Test(timeout = 30000)
+  public void testSharedProcfsSnapshot() throws IOException {
+    String[] pids = { "100", "200", "300", "400" };
+    ControlledClock testClock = new ControlledClock(new SystemClock());
+    testClock.setTime(0);
+    File procfsRootDir = new File(TEST_ROOT_DIR, "proc");
+
+    try {
+      setupProcfsRootDir(procfsRootDir);
+      setupPidDirs(procfsRootDir, pids);
+
+      // processes 100, 200, 300 are in one tree and 400 in another.
+      ProcessStatInfo[] procInfos = new ProcessStatInfo[4];
+      procInfos[0] =
+          new ProcessStatInfo(new String[]{"100", "proc1", "1", "100", "100",
+              "100000", "100", "1000", "200"});
+      procInfos[1] =
+          new ProcessStatInfo(new String[]{"200", "process two", "100", "100",
+              "100", "200000", "200", "2000", "400"});
+      procInfos[2] =
+          new ProcessStatInfo(new String[]{"300", "proc3", "200", "100",
+              "100", "300000", "300", "3000", "600"});
+      procInfos[3] =
+          new ProcessStatInfo(new String[]{"400", "proc4", "1", "400", "400",
+              "400000", "400", "4000", "800"});
+      writeStatFiles(procfsRootDir, pids, procInfos, null);
+
+      String procfs = procfsRootDir.getAbsolutePath();
+      ProcfsBasedProcessTree tree1 =
+          createProcessTree("100", procfs, testClock);
+      ProcfsBasedProcessTree tree2 =
+          createProcessTree("400", procfs, testClock);
+
+      ProcfsBasedProcessTree.ProcfsSnapshot snapshot =
+          new ProcfsBasedProcessTree.ProcfsSnapshot(procfs);
+      Assert.assertEquals(4, snapshot.size());
+      tree1.updateProcessTree(snapshot);
+      tree2.updateProcessTree(snapshot);
+      Assert.assertEquals(600000L, tree1.getVirtualMemorySize());
+      Assert.assertEquals(400000L, tree2.getVirtualMemorySize());
+      long cumuCpuTime =
+          ProcfsBasedProcessTree.JIFFY_LENGTH_IN_MILLIS > 0
+              ? 7200L * ProcfsBasedProcessTree.JIFFY_LENGTH_IN_MILLIS : 0L;
+      Assert.assertEquals(cumuCpuTime, tree1.getCumulativeCpuTime());
+
+      // Age and jiffies are tracked per tree, not in the shared snapshot
+      snapshot = new ProcfsBasedProcessTree.ProcfsSnapshot(procfs);
+      tree1.updateProcessTree(snapshot);
+      tree2.updateProcessTree(snapshot);
+      Assert.assertEquals(600000L, tree1.getVirtualMemorySize(1));
+      Assert.assertEquals(400000L, tree2.getVirtualMemorySize(1));
+      Assert.assertEquals(cumuCpuTime, tree1.getCumulativeCpuTime());
+    } finally {
+      FileUtil.fullyDelete(procfsRootDir);
+    }
+  }
+
   private void setSmapsInProceTree(ProcfsBasedProcessTree processTree,
       boolean enableFlag) {
     Configuration conf = processTree.getConf();
@@ -749,6 +749,9 @@ public ContainerState transition(ContainerImpl container,
         return ContainerState.LOCALIZING;
       }
       container.localizedResources.put(location, syms);
+      container.metrics.addResourceLocalizationDuration(
+          resourceRequest.getVisibility(),
+          clock.getTime() - container.containerLocalizationStartTime);
 
       // check to see if this resource should be uploaded to the shared cache
       // as well
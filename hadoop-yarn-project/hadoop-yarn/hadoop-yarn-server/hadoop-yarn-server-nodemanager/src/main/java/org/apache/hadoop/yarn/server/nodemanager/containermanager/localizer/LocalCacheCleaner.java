@@ -56,6 +56,19 @@ class LocalCacheCleaner {
     this.targetSize = targetSize;
   }
 
+  /**
+   * Returns a comparator that orders resources by how much they cost to keep:
+   * their size times the time since they were last used, largest first.
+   * Large resources nobody used for a while are evicted before small ones,
+   * so a cleanup frees the target size with fewer deletions and the small,
+   * frequently used resources stay cached.
+   *
+   * @param now the time the idle times are computed against
+   */
+  static Comparator<LocalizedResource> sizeAwareComparator(long now) {
+    return new SizeAwareComparator(now);
+  }
+
   /**
    * Adds resources from the passed LocalResourceTracker that are candidates for
    * deletion from the cache.
@@ -166,6 +179,34 @@ public String toStringDetailed() {
     }
   }
 
+  private static class SizeAwareComparator
+      implements Comparator<LocalizedResource>, Serializable {
+
+    private static final long serialVersionUID = -2478452310466893452L;
+
+    private final long now;
+
+    SizeAwareComparator(long now) {
+      this.now = now;
+    }
+
+    private double cost(LocalizedResource r) {
+      // +1 so that resources just released still order by size
+      return (double) Math.max(0, r.getSize())
+          * (Math.max(0, now - r.getTimestamp()) + 1);
+    }
+
+    public int compare(LocalizedResource r1, LocalizedResource r2) {
+      int ret = Double.compare(cost(r2), cost(r1));
+      if (0 == ret) {
+        return LRU.compare(r1, r2);
+      }
+      return ret;
+    }
+  }
+
+  private static final LRUComparator LRU = new LRUComparator();
+
   private static class LRUComparator implements Comparator<LocalizedResource>,
       Serializable {
 
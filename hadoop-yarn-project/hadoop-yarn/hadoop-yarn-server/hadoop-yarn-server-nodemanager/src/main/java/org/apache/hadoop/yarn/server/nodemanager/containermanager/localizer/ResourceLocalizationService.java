@@ -155,6 +155,7 @@ public class ResourceLocalizationService extends CompositeService
   @VisibleForTesting
   long cacheTargetSize;
   private long cacheCleanupPeriod;
+  boolean cacheCleanupSizeAware;
 
   private final ContainerExecutor exec;
   protected final Dispatcher dispatcher;
@@ -257,6 +258,9 @@ public void serviceInit(Configuration conf) throws Exception {
       conf.getLong(YarnConfiguration.NM_LOCALIZER_CACHE_TARGET_SIZE_MB, YarnConfiguration.DEFAULT_NM_LOCALIZER_CACHE_TARGET_SIZE_MB) << 20;
     cacheCleanupPeriod =
       conf.getLong(YarnConfiguration.NM_LOCALIZER_CACHE_CLEANUP_INTERVAL_MS, YarnConfiguration.DEFAULT_NM_LOCALIZER_CACHE_CLEANUP_INTERVAL_MS);
+    cacheCleanupSizeAware =
+      conf.getBoolean(YarnConfiguration.NM_LOCALIZER_CACHE_CLEANUP_SIZE_AWARE,
+          YarnConfiguration.DEFAULT_NM_LOCALIZER_CACHE_CLEANUP_SIZE_AWARE);
     localizationServerAddress = conf.getSocketAddr(
         YarnConfiguration.NM_BIND_HOST,
         YarnConfiguration.NM_LOCALIZER_ADDRESS,
@@ -506,8 +510,10 @@ private void handleContainerResourcesLocalized(
 
   @VisibleForTesting
   LocalCacheCleanerStats handleCacheCleanup() {
-    LocalCacheCleaner cleaner =
-        new LocalCacheCleaner(delService, cacheTargetSize);
+    LocalCacheCleaner cleaner = cacheCleanupSizeAware
+        ? new LocalCacheCleaner(delService, cacheTargetSize,
+            LocalCacheCleaner.sizeAwareComparator(System.currentTimeMillis()))
+        : new LocalCacheCleaner(delService, cacheTargetSize);
     cleaner.addResources(publicRsrc);
     for (LocalResourcesTracker t : privateRsrc.values()) {
       cleaner.addResources(t);
@@ -809,6 +815,11 @@ class PublicLocalizer extends Thread {
     final CompletionService<Path> queue;
     // Its shared between public localizer and dispatcher thread.
     final Map<Future<Path>,LocalizerResourceRequestEvent> pending;
+    // Downloads in flight by resource, and the requests that were attached
+    // to them instead of starting a download of their own. Both are guarded
+    // by pending.
+    final Map<LocalResourceRequest,Future<Path>> inFlight;
+    final Map<Future<Path>,List<LocalizerResourceRequestEvent>> coalesced;
 
     PublicLocalizer(Configuration conf) {
       super("Public Localizer");
@@ -816,6 +827,9 @@ class PublicLocalizer extends Thread {
       this.conf = conf;
       this.pending = Collections.synchronizedMap(
           new HashMap<Future<Path>, LocalizerResourceRequestEvent>());
+      this.inFlight = new HashMap<LocalResourceRequest, Future<Path>>();
+      this.coalesced =
+          new HashMap<Future<Path>, List<LocalizerResourceRequestEvent>>();
       this.threadPool = createLocalizerExecutor(conf);
       this.queue = new ExecutorCompletionService<Path>(threadPool);
     }
@@ -836,6 +850,9 @@ public void addResource(LocalizerResourceRequestEvent request) {
 
       if (rsrc.tryAcquire()) {
         if (rsrc.getState() == ResourceState.DOWNLOADING) {
+          if (attachToDownload(key, request)) {
+            return;
+          }
           LocalResource resource = request.getResource().getRequest();
           try {
             Path publicRootPath =
@@ -852,9 +869,11 @@ public void addResource(LocalizerResourceRequestEvent request) {
             // explicitly synchronize pending here to avoid future task
             // completing and being dequeued before pending updated
             synchronized (pending) {
-              pending.put(queue.submit(new FSDownload(lfs, null, conf,
-                  publicDirDestPath, resource, request.getContext().getStatCache())),
-                  request);
+              Future<Path> download = queue.submit(new FSDownload(lfs, null,
+                  conf, publicDirDestPath, resource,
+                  request.getContext().getStatCache()));
+              pending.put(download, request);
+              inFlight.put(key, download);
             }
           } catch (IOException e) {
             rsrc.unlock();
@@ -882,6 +901,38 @@ public void addResource(LocalizerResourceRequestEvent request) {
       }
     }
 
+    /**
+     * Single-flight downloads: a request for a resource whose download is
+     * already running, e.g. for a tracker entry that was dropped and created
+     * again meanwhile, waits for that download instead of fetching the file
+     * a second time. The request's resource stays locked until the download
+     * completes.
+     *
+     * @return true if the request was attached to a running download
+     */
+    private boolean attachToDownload(LocalResourceRequest key,
+        LocalizerResourceRequestEvent request) {
+      synchronized (pending) {
+        Future<Path> download = inFlight.get(key);
+        if (download == null) {
+          return false;
+        }
+        if (!pending.containsKey(download)) {
+          // already completed, the state of the resource decides
+          inFlight.remove(key);
+          return false;
+        }
+        List<LocalizerResourceRequestEvent> waiting = coalesced.get(download);
+        if (waiting == null) {
+          waiting = new ArrayList<LocalizerResourceRequestEvent>();
+          coalesced.put(download, waiting);
+        }
+        waiting.add(request);
+        LOG.info("Download of public rsrc " + key + " is already running");
+        return true;
+      }
+    }
+
     @Override
     public void run() {
       try {
@@ -889,7 +940,15 @@ public void run() {
         while (!Thread.currentThread().isInterrupted()) {
           try {
             Future<Path> completed = queue.take();
-            LocalizerResourceRequestEvent assoc = pending.remove(completed);
+            LocalizerResourceRequestEvent assoc;
+            List<LocalizerResourceRequestEvent> waiting;
+            synchronized (pending) {
+              assoc = pending.remove(completed);
+              waiting = coalesced.remove(completed);
+              if (assoc != null) {
+                inFlight.remove(assoc.getResource().getRequest());
+              }
+            }
             try {
               Path local = completed.get();
               if (null == assoc) {
@@ -901,6 +960,7 @@ public void run() {
               publicRsrc.handle(new ResourceLocalizedEvent(key, local, FileUtil
                 .getDU(new File(local.toUri()))));
               assoc.getResource().unlock();
+              unlockAll(waiting);
             } catch (ExecutionException e) {
               LOG.info("Failed to download resource " + assoc.getResource(),
                   e.getCause());
@@ -908,6 +968,7 @@ public void run() {
               publicRsrc.handle(new ResourceFailedLocalizationEvent(req,
                   e.getMessage()));
               assoc.getResource().unlock();
+              unlockAll(waiting);
             } catch (CancellationException e) {
               // ignore; shutting down
             }
@@ -923,6 +984,14 @@ public void run() {
       }
     }
 
+    private void unlockAll(List<LocalizerResourceRequestEvent> waiting) {
+      if (waiting != null) {
+        for (LocalizerResourceRequestEvent request : waiting) {
+          request.getResource().unlock();
+        }
+      }
+    }
+
   }
 
   /**
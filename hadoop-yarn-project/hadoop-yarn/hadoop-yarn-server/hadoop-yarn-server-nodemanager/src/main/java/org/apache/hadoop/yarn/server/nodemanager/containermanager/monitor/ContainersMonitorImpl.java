@@ -40,6 +40,7 @@
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.Container;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.container.ContainerKillEvent;
 import org.apache.hadoop.yarn.server.nodemanager.util.NodeManagerHardwareUtils;
+import org.apache.hadoop.yarn.util.ProcfsBasedProcessTree;
 import org.apache.hadoop.yarn.util.ResourceCalculatorProcessTree;
 import org.apache.hadoop.yarn.util.ResourceCalculatorPlugin;
 
@@ -425,6 +426,9 @@ public void run() {
         long pmemByAllContainers = 0;
         long cpuUsagePercentPerCoreByAllContainers = 0;
         long cpuUsageTotalCoresByAllContainers = 0;
+        // procfs is scanned at most once per round and shared by all
+        // procfs based process trees
+        ProcfsBasedProcessTree.ProcfsSnapshot procfsSnapshot = null;
         for (Entry<ContainerId, ProcessTreeInfo> entry : trackingContainers
             .entrySet()) {
           ContainerId containerId = entry.getKey();
@@ -464,7 +468,15 @@ public void run() {
             LOG.debug("Constructing ProcessTree for : PID = " + pId
                 + " ContainerId = " + containerId);
             ResourceCalculatorProcessTree pTree = ptInfo.getProcessTree();
-            pTree.updateProcessTree();    // update process-tree
+            if (pTree instanceof ProcfsBasedProcessTree) {
+              if (procfsSnapshot == null) {
+                procfsSnapshot = ProcfsBasedProcessTree.takeSnapshot();
+              }
+              ((ProcfsBasedProcessTree) pTree)
+                  .updateProcessTree(procfsSnapshot);
+            } else {
+              pTree.updateProcessTree();    // update process-tree
+            }
             long currentVmemUsage = pTree.getVirtualMemorySize();
             long currentPmemUsage = pTree.getRssMemorySize();
             // if machine has 6 cores and 3 are used,
@@ -21,16 +21,24 @@
 import org.apache.hadoop.metrics2.annotation.Metric;
 import org.apache.hadoop.metrics2.annotation.Metrics;
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
 import org.apache.hadoop.metrics2.lib.MutableCounterInt;
 import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.metrics2.lib.MutableQuantiles;
 import org.apache.hadoop.metrics2.lib.MutableRate;
 import org.apache.hadoop.metrics2.source.JvmMetrics;
+import org.apache.hadoop.yarn.api.records.LocalResourceVisibility;
 import org.apache.hadoop.yarn.api.records.Resource;
 
 import com.google.common.annotations.VisibleForTesting;
 
 @Metrics(about="Metrics for node manager", context="yarn")
 public class NodeManagerMetrics {
+  // Rollover interval of the localization latency quantiles
+  private static final int LOCALIZATION_LATENCY_INTERVAL_SECS = 60;
+
+  final MetricsRegistry registry = new MetricsRegistry("NodeManagerMetrics");
+
   @Metric MutableCounterInt containersLaunched;
   @Metric MutableCounterInt containersCompleted;
   @Metric MutableCounterInt containersFailed;
@@ -60,6 +68,16 @@ public class NodeManagerMetrics {
       MutableGaugeInt goodLocalDirsDiskUtilizationPerc;
   @Metric("Disk utilization % on good log dirs")
       MutableGaugeInt goodLogDirsDiskUtilizationPerc;
+  @Metric("Time containers wait for PUBLIC resources to be localized")
+      MutableRate publicLocalizationDuration;
+  @Metric("Time containers wait for PRIVATE resources to be localized")
+      MutableRate privateLocalizationDuration;
+  @Metric("Time containers wait for APPLICATION resources to be localized")
+      MutableRate applicationLocalizationDuration;
+
+  private final MutableQuantiles publicLocalizationLatency;
+  private final MutableQuantiles privateLocalizationLatency;
+  private final MutableQuantiles applicationLocalizationLatency;
 
   private JvmMetrics jvmMetrics = null;
 
@@ -68,6 +86,18 @@ public class NodeManagerMetrics {
 
   public NodeManagerMetrics(JvmMetrics jvmMetrics) {
     this.jvmMetrics = jvmMetrics;
+    publicLocalizationLatency = registry.newQuantiles(
+        "publicLocalizationLatency",
+        "Localization latency of PUBLIC resources", "ops", "latency",
+        LOCALIZATION_LATENCY_INTERVAL_SECS);
+    privateLocalizationLatency = registry.newQuantiles(
+        "privateLocalizationLatency",
+        "Localization latency of PRIVATE resources", "ops", "latency",
+        LOCALIZATION_LATENCY_INTERVAL_SECS);
+    applicationLocalizationLatency = registry.newQuantiles(
+        "applicationLocalizationLatency",
+        "Localization latency of APPLICATION resources", "ops", "latency",
+        LOCALIZATION_LATENCY_INTERVAL_SECS);
   }
 
   public static NodeManagerMetrics create() {
@@ -163,6 +193,30 @@ public void addContainerLaunchDuration(long value) {
     containerLaunchDuration.add(value);
   }
 
+  /**
+   * Records how long a container waited, since it started localizing, for
+   * one of its resources to be localized.
+   */
+  public void addResourceLocalizationDuration(
+      LocalResourceVisibility visibility, long value) {
+    switch (visibility) {
+    case PUBLIC:
+      publicLocalizationDuration.add(value);
+      publicLocalizationLatency.add(value);
+      break;
+    case PRIVATE:
+      privateLocalizationDuration.add(value);
+      privateLocalizationLatency.add(value);
+      break;
+    case APPLICATION:
+      applicationLocalizationDuration.add(value);
+      applicationLocalizationLatency.add(value);
+      break;
+    default:
+      break;
+    }
+  }
+
   public void setBadLocalDirs(int badLocalDirs) {
     this.badLocalDirs.set(badLocalDirs);
   }
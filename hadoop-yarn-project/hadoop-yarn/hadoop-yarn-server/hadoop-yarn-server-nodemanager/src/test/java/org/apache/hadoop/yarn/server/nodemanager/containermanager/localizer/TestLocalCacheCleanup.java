@@ -168,6 +168,36 @@ public void testLRUAcrossTrackers() {
     assertEquals(60, stats.getPrivateDelSize());
   }
 
+  @Test
+  public void testSizeAwareCleanup() {
+    ConcurrentMap<LocalResourceRequest, LocalizedResource> publicRsrc =
+        new ConcurrentHashMap<LocalResourceRequest, LocalizedResource>();
+    // The least recently used resources are the small ones
+    LocalResourceRequest survivor1 =
+        addResource(publicRsrc, "/pub-resource1.txt", 1, 10, 0);
+    LocalResourceRequest survivor2 =
+        addResource(publicRsrc, "/pub-resource2.txt", 5, 20, 0);
+    addResource(publicRsrc, "/pub-resource3.txt", 9, 50, 0);
+
+    ConcurrentMap<String, LocalResourcesTracker> privateRsrc =
+        new ConcurrentHashMap<String, LocalResourcesTracker>();
+
+    ResourceLocalizationService rls =
+        createLocService(publicRsrc, privateRsrc, 40);
+    rls.cacheCleanupSizeAware = true;
+    LocalCacheCleanerStats stats = rls.handleCacheCleanup();
+
+    // LRU would delete all three resources to get under the target, the
+    // size aware cleanup only deletes the large one
+    Map<LocalResourceRequest, LocalizedResource> pubLocalRsrc =
+        ((StubbedLocalResourcesTrackerImpl) rls.publicRsrc).getLocalRsrc();
+    assertEquals(2, pubLocalRsrc.size());
+    assertTrue(pubLocalRsrc.containsKey(survivor1));
+    assertTrue(pubLocalRsrc.containsKey(survivor2));
+    assertEquals(50, stats.getTotalDelSize());
+    assertEquals(50, stats.getPublicDelSize());
+  }
+
   private ResourceLocalizationService createLocService(
       ConcurrentMap<LocalResourceRequest, LocalizedResource> publicRsrcs,
       ConcurrentMap<String, LocalResourcesTracker> privateRsrcs,
@@ -20,6 +20,7 @@
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.hadoop.metrics2.MetricsRecordBuilder;
 import static org.apache.hadoop.test.MetricsAsserts.*;
+import org.apache.hadoop.yarn.api.records.LocalResourceVisibility;
 import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.hadoop.yarn.util.Records;
 
@@ -83,6 +84,11 @@ public class TestNodeManagerMetrics {
     metrics.addContainerLaunchDuration(1);
     Assert.assertTrue(metrics.containerLaunchDuration.changed());
 
+    metrics.addResourceLocalizationDuration(LocalResourceVisibility.PUBLIC, 5);
+    Assert.assertTrue(metrics.publicLocalizationDuration.changed());
+    Assert.assertFalse(metrics.privateLocalizationDuration.changed());
+    Assert.assertFalse(metrics.applicationLocalizationDuration.changed());
+
     // availableGB is expected to be floored,
     // while allocatedGB is expected to be ceiled.
     // allocatedGB: 3.75GB allocated memory is shown as 4GB
@@ -359,12 +359,15 @@ private void initLEandGM(Configuration conf) throws IOException {
     int leIncrement =
         conf.getInt(CommonConfigurationKeys.DFS_LEADER_TP_INCREMENT_KEY,
             CommonConfigurationKeys.DFS_LEADER_TP_INCREMENT_DEFAULT);
+    boolean leLightweight =
+        conf.getBoolean(CommonConfigurationKeys.DFS_LEADER_LIGHTWEIGHT_KEY,
+            CommonConfigurationKeys.DFS_LEADER_LIGHTWEIGHT_DEFAULT);
 
     groupMembership =
         new LeaderElection(new YarnLeDescriptorFactory(), leadercheckInterval,
             missedHeartBeatThreshold, leIncrement, rmId,
             groupMembershipServiceAddress.getAddress().getHostAddress() + ":"
-			   + groupMembershipServiceAddress.getPort());
+			   + groupMembershipServiceAddress.getPort(), leLightweight);
   }
 
   private class LEnGmMonitor implements Runnable {
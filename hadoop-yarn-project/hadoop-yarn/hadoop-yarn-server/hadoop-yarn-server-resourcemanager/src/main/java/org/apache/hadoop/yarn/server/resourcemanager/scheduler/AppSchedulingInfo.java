@@ -105,6 +105,14 @@ public class AppSchedulingInfo {
       SchedContainerChangeRequest>>> containerIncreaseRequestMap =
       new ConcurrentHashMap<>();
 
+  // Index over resourceRequestMap used to decide in O(1) whether the
+  // application can use a node at all: for every node and rack name, the
+  // number of priorities with outstanding containers at that name, and the
+  // number of priorities with outstanding ANY requests that relax locality.
+  private final Map<String, Integer> outstandingLocalRequests =
+      new HashMap<>();
+  private int outstandingRelaxedAnyRequests = 0;
+
   public AppSchedulingInfo(ApplicationAttemptId appAttemptId,
       String user, Queue queue, ActiveUsersManager activeUsersManager,
       long epoch, ResourceUsage appResourceUsage, RMContext rmContext) {
@@ -165,6 +173,8 @@ public Set<String> getRequestedPartitions() {
   private synchronized void clearRequests() {
     priorities.clear();
     resourceRequestMap.clear();
+    outstandingLocalRequests.clear();
+    outstandingRelaxedAnyRequests = 0;
     LOG.info("Application " + applicationId + " requests cleared");
   }
 
@@ -395,7 +405,9 @@ public synchronized boolean updateResourceRequests(
       }
 
       // Update asks
+      unindexRequest(lastRequest);
       asks.put(resourceName, request);
+      indexRequest(request);
 
       if (resourceName.equals(ResourceRequest.ANY)) {
         //update the applications requested labels set
@@ -574,6 +586,52 @@ public synchronized ResourceRequest getResourceRequest(Priority priority,
     return (nodeRequests == null) ? null : nodeRequests.get(resourceName);
   }
 
+  /**
+   * Returns whether any outstanding request of this application could be
+   * placed on the given node, either because it asks for the node or its
+   * rack, or because it accepts any node. This only consults the request
+   * index, so it is cheap enough to be checked before walking priorities.
+   * A <code>true</code> result does not guarantee an allocation.
+   *
+   * @param node
+   *          the node being scheduled
+   * @return false if the application certainly has nothing for the node
+   */
+  public synchronized boolean hasRequestsForNode(SchedulerNode node) {
+    return outstandingRelaxedAnyRequests > 0
+        || outstandingLocalRequests.containsKey(node.getNodeName())
+        || outstandingLocalRequests.containsKey(node.getRackName());
+  }
+
+  private void indexRequest(ResourceRequest request) {
+    if (request != null && request.getNumContainers() > 0) {
+      updateRequestIndex(request, 1);
+    }
+  }
+
+  private void unindexRequest(ResourceRequest request) {
+    if (request != null && request.getNumContainers() > 0) {
+      updateRequestIndex(request, -1);
+    }
+  }
+
+  private void updateRequestIndex(ResourceRequest request, int delta) {
+    String resourceName = request.getResourceName();
+    if (resourceName.equals(ResourceRequest.ANY)) {
+      if (request.getRelaxLocality()) {
+        outstandingRelaxedAnyRequests += delta;
+      }
+      return;
+    }
+    Integer count = outstandingLocalRequests.get(resourceName);
+    int newCount = (count == null ? 0 : count) + delta;
+    if (newCount > 0) {
+      outstandingLocalRequests.put(resourceName, newCount);
+    } else {
+      outstandingLocalRequests.remove(resourceName);
+    }
+  }
+
   public synchronized Resource getResource(Priority priority) {
     ResourceRequest request = getResourceRequest(priority, ResourceRequest.ANY);
     return (request == null) ? null : request.getCapability();
@@ -704,7 +762,9 @@ private synchronized void allocateNodeLocal(SchedulerNode node,
 
   private void decResourceRequest(String resourceName, Priority priority,
       ResourceRequest request) {
+    unindexRequest(request);
     request.setNumContainers(request.getNumContainers() - 1);
+    indexRequest(request);
     if (request.getNumContainers() == 0) {
       resourceRequestMap.get(priority).remove(resourceName);
     }
@@ -746,7 +806,9 @@ private synchronized void decrementOutstanding(
     int numOffSwitchContainers = offSwitchRequest.getNumContainers() - 1;
 
     // Do not remove ANY
+    unindexRequest(offSwitchRequest);
     offSwitchRequest.setNumContainers(numOffSwitchContainers);
+    indexRequest(offSwitchRequest);
     
     // Do we have any outstanding requests?
     // If there is nothing, we need to deactivate this application
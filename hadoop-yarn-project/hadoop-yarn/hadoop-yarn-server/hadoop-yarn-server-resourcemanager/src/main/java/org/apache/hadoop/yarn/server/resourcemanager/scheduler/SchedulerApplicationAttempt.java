@@ -244,6 +244,10 @@ public synchronized ResourceRequest getResourceRequest(Priority priority,
     return this.appSchedulingInfo.getResourceRequest(priority, resourceName);
   }
 
+  public boolean hasRequestsForNode(SchedulerNode node) {
+    return appSchedulingInfo.hasRequestsForNode(node);
+  }
+
   public synchronized int getTotalRequiredResources(Priority priority) {
     return getResourceRequest(priority, ResourceRequest.ANY).getNumContainers();
   }
@@ -629,6 +633,12 @@ public synchronized int addMissedNonPartitionedRequestSchedulingOpportunity(
     missedNonPartitionedRequestSchedulingOpportunity.setCount(priority, 0);
   }
 
+  @VisibleForTesting
+  public synchronized int getMissedNonPartitionedRequestSchedulingOpportunity(
+      Priority priority) {
+    return missedNonPartitionedRequestSchedulingOpportunity.count(priority);
+  }
+
   
   public synchronized void addSchedulingOpportunity(Priority priority) {
     int count = schedulingOpportunities.count(priority);
@@ -121,7 +121,6 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
@@ -248,7 +247,7 @@ public Configuration getConf() {
   private boolean usePortForNodeName;
 
   private boolean scheduleAsynchronously;
-  private AsyncScheduleThread asyncSchedulerThread;
+  private List<AsyncScheduleThread> asyncSchedulerThreads;
   private RMNodeLabelsManager labelManager;
   private SchedulerHealth schedulerHealth = new SchedulerHealth();
   volatile long lastNodeUpdateTime;
@@ -334,8 +333,16 @@ private synchronized void initScheduler(Configuration configuration) throws
     asyncScheduleInterval =
         this.conf.getLong(ASYNC_SCHEDULER_INTERVAL,
             DEFAULT_ASYNC_SCHEDULER_INTERVAL);
+    int asyncSchedulerThreadCount = 0;
     if (scheduleAsynchronously) {
-      asyncSchedulerThread = new AsyncScheduleThread(this);
+      asyncSchedulerThreadCount =
+          this.conf.getScheduleAsynchronouslyMaximumThreads();
+      asyncSchedulerThreads =
+          new ArrayList<AsyncScheduleThread>(asyncSchedulerThreadCount);
+      for (int i = 0; i < asyncSchedulerThreadCount; i++) {
+        asyncSchedulerThreads.add(
+            new AsyncScheduleThread(this, i, asyncSchedulerThreadCount));
+      }
     }
 
     LOG.info("Initialized CapacityScheduler with " +
@@ -343,14 +350,17 @@ private synchronized void initScheduler(Configuration configuration) throws
         "minimumAllocation=<" + getMinimumResourceCapability() + ">, " +
         "maximumAllocation=<" + getMaximumResourceCapability() + ">, " +
         "asynchronousScheduling=" + scheduleAsynchronously + ", " +
-        "asyncScheduleInterval=" + asyncScheduleInterval + "ms");
+        "asyncScheduleInterval=" + asyncScheduleInterval + "ms, " +
+        "asyncScheduleThreads=" + asyncSchedulerThreadCount);
   }
 
   private synchronized void startSchedulerThreads() {
     if (scheduleAsynchronously) {
-      Preconditions.checkNotNull(asyncSchedulerThread,
-          "asyncSchedulerThread is null");
-      asyncSchedulerThread.start();
+      Preconditions.checkNotNull(asyncSchedulerThreads,
+          "asyncSchedulerThreads is null");
+      for (AsyncScheduleThread t : asyncSchedulerThreads) {
+        t.start();
+      }
     }
   }
 
@@ -370,9 +380,13 @@ public void serviceStart() throws Exception {
   @Override
   public void serviceStop() throws Exception {
     synchronized (this) {
-      if (scheduleAsynchronously && asyncSchedulerThread != null) {
-        asyncSchedulerThread.interrupt();
-        asyncSchedulerThread.join(THREAD_JOIN_TIMEOUT_MS);
+      if (scheduleAsynchronously && asyncSchedulerThreads != null) {
+        for (AsyncScheduleThread t : asyncSchedulerThreads) {
+          t.interrupt();
+        }
+        for (AsyncScheduleThread t : asyncSchedulerThreads) {
+          t.join(THREAD_JOIN_TIMEOUT_MS);
+        }
       }
     }
     super.serviceStop();
@@ -410,43 +424,96 @@ long getAsyncScheduleInterval() {
    * @param cs
    */
   static void schedule(CapacityScheduler cs) {
-    // First randomize the start point
-    int current = 0;
-    Collection<FiCaSchedulerNode> nodes = cs.getAllNodes().values();
-    int start = random.nextInt(nodes.size());
-    for (FiCaSchedulerNode node : nodes) {
-      if (current++ >= start) {
-        cs.allocateContainersToNode(node);
+    schedule(cs, 0, 1);
+  }
+
+  /**
+   * Schedule on the slice of nodes owned by one of <code>sliceCount</code>
+   * scheduling threads, starting at a random point.
+   *
+   * The nodes are proposed from a snapshot taken without the scheduler lock:
+   * nodes that cannot fit a minimum allocation are skipped, and the remaining
+   * ones are handed to {@link #allocateContainersToNode(FiCaSchedulerNode)},
+   * which validates and commits the allocation under the lock. A node that
+   * was filled by another thread in the meantime simply gets nothing and is
+   * retried on the next pass.
+   */
+  static void schedule(CapacityScheduler cs, int slice, int sliceCount) {
+    List<FiCaSchedulerNode> nodes = new ArrayList<FiCaSchedulerNode>();
+    int index = 0;
+    for (FiCaSchedulerNode node : cs.getAllNodes().values()) {
+      if (index++ % sliceCount == slice) {
+        nodes.add(node);
       }
     }
-    // Now, just get everyone to be safe
-    for (FiCaSchedulerNode node : nodes) {
-      cs.allocateContainersToNode(node);
+    if (!nodes.isEmpty()) {
+      // First randomize the start point
+      int start = random.nextInt(nodes.size());
+      for (int i = start; i < nodes.size(); i++) {
+        FiCaSchedulerNode node = nodes.get(i);
+        if (cs.canAllocateOnNode(node)) {
+          cs.allocateContainersToNode(node);
+        }
+      }
+      // Now, just get everyone to be safe
+      for (FiCaSchedulerNode node : nodes) {
+        if (cs.canAllocateOnNode(node)) {
+          cs.allocateContainersToNode(node);
+        }
+      }
     }
     try {
       Thread.sleep(cs.getAsyncScheduleInterval());
-    } catch (InterruptedException e) {}
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
   }
-  
+
+  /**
+   * Cheap check, done without holding the scheduler lock, of whether an
+   * allocation attempt on the node can do anything at all. The outcome is
+   * re-validated by {@link #allocateContainersToNode(FiCaSchedulerNode)}.
+   */
+  private boolean canAllocateOnNode(FiCaSchedulerNode node) {
+    if (node.getReservedContainer() != null) {
+      return true;
+    }
+    return calculator.computeAvailableContainers(Resources.add(
+        node.getAvailableResource(), node.getTotalKillableResources()),
+        minimumAllocation) > 0;
+  }
+
   static class AsyncScheduleThread extends Thread {
 
     private final CapacityScheduler cs;
+    private final int slice;
+    private final int sliceCount;
     private AtomicBoolean runSchedules = new AtomicBoolean(false);
 
     public AsyncScheduleThread(CapacityScheduler cs) {
+      this(cs, 0, 1);
+    }
+
+    public AsyncScheduleThread(CapacityScheduler cs, int slice,
+        int sliceCount) {
+      super("AsyncScheduleThread-" + slice);
       this.cs = cs;
+      this.slice = slice;
+      this.sliceCount = sliceCount;
       setDaemon(true);
     }
 
     @Override
     public void run() {
-      while (true) {
+      while (!Thread.currentThread().isInterrupted()) {
         if (!runSchedules.get()) {
           try {
             Thread.sleep(100);
-          } catch (InterruptedException ie) {}
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+          }
         } else {
-          schedule(cs);
+          schedule(cs, slice, sliceCount);
         }
       }
     }
@@ -1500,7 +1567,9 @@ private synchronized void addNode(RMNode nodeManager) {
         " clusterResource: " + clusterResource);
 
     if (scheduleAsynchronously && numNodes == 1) {
-      asyncSchedulerThread.beginSchedule();
+      for (AsyncScheduleThread t : asyncSchedulerThreads) {
+        t.beginSchedule();
+      }
     }
   }
 
@@ -1520,7 +1589,9 @@ private synchronized void removeNode(RMNode nodeInfo) {
     int numNodes = numNodeManagers.decrementAndGet();
 
     if (scheduleAsynchronously && numNodes == 0) {
-      asyncSchedulerThread.suspendSchedule();
+      for (AsyncScheduleThread t : asyncSchedulerThreads) {
+        t.suspendSchedule();
+      }
     }
     
     // Remove running containers
@@ -214,6 +214,13 @@ public class CapacitySchedulerConfiguration extends ReservationSchedulerConfigur
   @Private
   public static final boolean DEFAULT_SCHEDULE_ASYNCHRONOUSLY_ENABLE = false;
 
+  @Private
+  public static final String SCHEDULE_ASYNCHRONOUSLY_MAXIMUM_THREADS =
+      SCHEDULE_ASYNCHRONOUSLY_PREFIX + ".maximum-threads";
+
+  @Private
+  public static final int DEFAULT_SCHEDULE_ASYNCHRONOUSLY_MAXIMUM_THREADS = 1;
+
   @Private
   public static final String QUEUE_MAPPING = PREFIX + "queue-mappings";
 
@@ -792,6 +799,19 @@ public void setScheduleAynschronously(boolean async) {
     setBoolean(SCHEDULE_ASYNCHRONOUSLY_ENABLE, async);
   }
 
+  /**
+   * Number of threads used to schedule containers when asynchronous
+   * scheduling is enabled. Each thread works on its own slice of the nodes.
+   */
+  public int getScheduleAsynchronouslyMaximumThreads() {
+    return Math.max(1, getInt(SCHEDULE_ASYNCHRONOUSLY_MAXIMUM_THREADS,
+        DEFAULT_SCHEDULE_ASYNCHRONOUSLY_MAXIMUM_THREADS));
+  }
+
+  public void setScheduleAsynchronouslyMaximumThreads(int threads) {
+    setInt(SCHEDULE_ASYNCHRONOUSLY_MAXIMUM_THREADS, threads);
+  }
+
   public boolean getOverrideWithQueueMappings() {
     return getBoolean(ENABLE_QUEUE_MAPPING_OVERRIDE,
         DEFAULT_ENABLE_QUEUE_MAPPING_OVERRIDE);
@@ -736,7 +736,32 @@ public CSAssignment assignContainers(Resource clusterResource,
         }
         return CSAssignment.SKIP_ASSIGNMENT;
       }
-      
+
+      // Don't try to allocate on the node when none of the app's outstanding
+      // requests can be placed on it. The pre-checks still run, so that the
+      // node counts as a missed opportunity and blacklisted nodes or a full
+      // headroom skip the app or queue, as the allocation would have.
+      if (!application.hasRequestsForNode(node)) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Skip app_attempt=" + application.getApplicationAttemptId()
+              + ", because it has no request for node=" + node.getNodeName());
+        }
+        for (Priority priority : application.getPriorities()) {
+          ContainerAllocation result =
+              preCheckForNewContainer(clusterResource, node, schedulingMode,
+                  resourceLimits, priority);
+          if (null == result) {
+            // Don't count 'skipped nodes' as a scheduling opportunity!
+            application.subtractSchedulingOpportunity(priority);
+          } else if (result.getAllocationState()
+              != AllocationState.PRIORITY_SKIPPED) {
+            return getCSAssignmentFromAllocateResult(clusterResource, result,
+                null);
+          }
+        }
+        return CSAssignment.SKIP_ASSIGNMENT;
+      }
+
       // Schedule in priority order
       for (Priority priority : application.getPriorities()) {
         ContainerAllocation result =
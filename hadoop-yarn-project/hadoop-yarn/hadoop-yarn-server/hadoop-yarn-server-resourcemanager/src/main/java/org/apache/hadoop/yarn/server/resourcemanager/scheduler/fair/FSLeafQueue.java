@@ -92,6 +92,7 @@ public void addApp(FSAppAttempt app, boolean runnable) {
     } finally {
       writeLock.unlock();
     }
+    appsChanged();
   }
   
   // for testing
@@ -102,6 +103,7 @@ void addAppSchedulable(FSAppAttempt appSched) {
     } finally {
       writeLock.unlock();
     }
+    appsChanged();
   }
   
   /**
@@ -125,6 +127,7 @@ public boolean removeApp(FSAppAttempt app) {
     } finally {
       writeLock.unlock();
     }
+    appsChanged();
 
     // Update AM resource usage if needed. If isAMRunning is true, we're not
     // running an unmanaged AM.
@@ -140,12 +143,28 @@ public boolean removeApp(FSAppAttempt app) {
    * @return true if the app is removed, false otherwise
    */
   public boolean removeNonRunnableApp(FSAppAttempt app) {
+    boolean removed;
     writeLock.lock();
     try {
-      return nonRunnableApps.remove(app);
+      removed = nonRunnableApps.remove(app);
     } finally {
       writeLock.unlock();
     }
+    if (removed) {
+      appsChanged();
+    }
+    return removed;
+  }
+
+  /**
+   * The set of apps is an input of the shares of this queue, and whether the
+   * queue is active one of the shares of its parent.
+   */
+  private void appsChanged() {
+    markSharesDirty();
+    if (parent != null) {
+      parent.markSharesDirty();
+    }
   }
 
   public boolean isRunnableApp(FSAppAttempt attempt) {
@@ -222,13 +241,17 @@ public void setPolicy(SchedulingPolicy policy)
       throwPolicyDoesnotApplyException(policy);
     }
     super.policy = policy;
+    markSharesDirty();
   }
   
   @Override
   public void recomputeShares() {
     readLock.lock();
     try {
-      policy.computeShares(runnableApps, getFairShare());
+      if (isFairShareChangedSinceRecompute() || isSharesDirty()) {
+        policy.computeShares(runnableApps, getFairShare());
+      }
+      sharesRecomputed();
     } finally {
       readLock.unlock();
     }
@@ -266,6 +289,7 @@ public void updateDemand() {
     // Limit demand to maxResources
     Resource maxRes = scheduler.getAllocationConfiguration()
         .getMaxResources(getName());
+    Resource oldDemand = demand;
     demand = Resources.createResource(0);
     readLock.lock();
     try {
@@ -284,6 +308,9 @@ public void updateDemand() {
     } finally {
       readLock.unlock();
     }
+    if (parent != null && !Resources.equals(oldDemand, demand)) {
+      parent.markSharesDirty();
+    }
     if (LOG.isDebugEnabled()) {
       LOG.debug("The updated demand for " + getName() + " is " + demand
           + "; the max is " + maxRes);
@@ -293,8 +320,13 @@ public void updateDemand() {
   }
   
   private void updateDemandForApp(FSAppAttempt sched, Resource maxRes) {
+    Resource oldDemand = sched.getDemand();
     sched.updateDemand();
     Resource toAdd = sched.getDemand();
+    if (!Resources.equals(oldDemand, toAdd)) {
+      // App demand feeds the app's weight and its fair share
+      markSharesDirty();
+    }
     if (LOG.isDebugEnabled()) {
       LOG.debug("Counting resource from " + sched.getName() + " " + toAdd
           + "; Total resource consumption for " + getName() + " now "
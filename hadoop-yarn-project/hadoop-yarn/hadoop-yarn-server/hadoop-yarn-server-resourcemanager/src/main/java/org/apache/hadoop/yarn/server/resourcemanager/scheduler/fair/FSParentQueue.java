@@ -68,6 +68,7 @@ public void addChildQueue(FSQueue child) {
     } finally {
       writeLock.unlock();
     }
+    markSharesDirty();
   }
 
   public void removeChildQueue(FSQueue child) {
@@ -77,17 +78,28 @@ public void removeChildQueue(FSQueue child) {
     } finally {
       writeLock.unlock();
     }
+    markSharesDirty();
   }
 
   @Override
   public void recomputeShares() {
     readLock.lock();
     try {
-      policy.computeShares(childQueues, getFairShare());
-      for (FSQueue childQueue : childQueues) {
-        childQueue.getMetrics().setFairShare(childQueue.getFairShare());
-        childQueue.recomputeShares();
+      // Shares below this queue only depend on its fair share and on the
+      // inputs tracked by the dirty flags, so unchanged subtrees are skipped.
+      boolean fairShareChanged = isFairShareChangedSinceRecompute();
+      if (fairShareChanged || isSharesDirty()) {
+        policy.computeShares(childQueues, getFairShare());
+        for (FSQueue childQueue : childQueues) {
+          childQueue.getMetrics().setFairShare(childQueue.getFairShare());
+          childQueue.recomputeShares();
+        }
+      } else if (isSubtreeSharesDirty()) {
+        for (FSQueue childQueue : childQueues) {
+          childQueue.recomputeShares();
+        }
       }
+      sharesRecomputed();
     } finally {
       readLock.unlock();
     }
@@ -154,6 +166,7 @@ public void updateDemand() {
     // Limit demand to maxResources
     Resource maxRes = scheduler.getAllocationConfiguration()
         .getMaxResources(getName());
+    Resource oldDemand = demand;
     writeLock.lock();
     try {
       demand = Resources.createResource(0);
@@ -174,6 +187,9 @@ public void updateDemand() {
     } finally {
       writeLock.unlock();
     }
+    if (parent != null && !Resources.equals(oldDemand, demand)) {
+      parent.markSharesDirty();
+    }
     if (LOG.isDebugEnabled()) {
       LOG.debug("The updated demand for " + getName() + " is " + demand +
           "; the max is " + maxRes);
@@ -307,6 +323,7 @@ public void setPolicy(SchedulingPolicy policy)
       throwPolicyDoesnotApplyException(policy);
     }
     super.policy = policy;
+    markSharesDirty();
   }
   
   public void incrementRunnableApps() {
@@ -316,6 +333,10 @@ public void incrementRunnableApps() {
     } finally {
       writeLock.unlock();
     }
+    // Whether this queue is active is an input of its parent's shares
+    if (parent != null) {
+      parent.markSharesDirty();
+    }
   }
   
   public void decrementRunnableApps() {
@@ -325,6 +346,9 @@ public void decrementRunnableApps() {
     } finally {
       writeLock.unlock();
     }
+    if (parent != null) {
+      parent.markSharesDirty();
+    }
   }
 
   @Override
@@ -65,6 +65,14 @@ public abstract class FSQueue implements Queue, Schedulable {
   private long minSharePreemptionTimeout = Long.MAX_VALUE;
   private float fairSharePreemptionThreshold = 0.5f;
 
+  // State for incremental fair share computation. sharesDirty is set when an
+  // input of the share computation over the children of this queue changed
+  // (their demand, weights, policy or the set of children), and
+  // subtreeSharesDirty when this happened for this queue or any queue below.
+  private volatile boolean sharesDirty = true;
+  private volatile boolean subtreeSharesDirty = true;
+  private Resource lastComputedFairShare = null;
+
   public FSQueue(String name, FairScheduler scheduler, FSParentQueue parent) {
     this.name = name;
     this.scheduler = scheduler;
@@ -199,6 +207,54 @@ public void setFairShare(Resource fairShare) {
     }
   }
 
+  /**
+   * Marks the fair shares of the children of this queue for recomputation on
+   * the next update, and the subtrees of all its ancestors as changed.
+   */
+  public void markSharesDirty() {
+    sharesDirty = true;
+    for (FSQueue queue = this; queue != null; queue = queue.parent) {
+      queue.subtreeSharesDirty = true;
+    }
+  }
+
+  /**
+   * Marks the fair shares of this queue and of all queues below it for
+   * recomputation on the next update.
+   */
+  public void markAllSharesDirty() {
+    markSharesDirty();
+    for (FSQueue child : getChildQueues()) {
+      child.markAllSharesDirty();
+    }
+  }
+
+  protected boolean isSharesDirty() {
+    return sharesDirty;
+  }
+
+  protected boolean isSubtreeSharesDirty() {
+    return subtreeSharesDirty;
+  }
+
+  /**
+   * Returns whether the fair share of this queue changed since the shares of
+   * its children were last computed.
+   */
+  protected boolean isFairShareChangedSinceRecompute() {
+    return !Resources.equals(fairShare, lastComputedFairShare);
+  }
+
+  /**
+   * Records that the shares below this queue are up to date with respect to
+   * its current fair share.
+   */
+  protected void sharesRecomputed() {
+    lastComputedFairShare = Resources.clone(fairShare);
+    sharesDirty = false;
+    subtreeSharesDirty = false;
+  }
+
   /** Get the steady fair share assigned to this Schedulable. */
   public Resource getSteadyFairShare() {
     return steadyFairShare;
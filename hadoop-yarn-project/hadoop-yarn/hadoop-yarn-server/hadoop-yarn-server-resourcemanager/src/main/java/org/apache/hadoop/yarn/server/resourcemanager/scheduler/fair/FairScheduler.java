@@ -354,8 +354,12 @@ protected synchronized void update() {
     // Recursively update demands for all queues
     rootQueue.updateDemand();
 
+    if (weightAdjuster != null) {
+      // App weights may change over time, so no share can be reused
+      rootQueue.markAllSharesDirty();
+    }
     rootQueue.setFairShare(clusterResource);
-    // Recursively compute fair shares for all queues
+    // Recursively compute fair shares for the queues whose inputs changed
     // and update metrics
     rootQueue.recomputeShares();
     updateRootQueueMetrics();
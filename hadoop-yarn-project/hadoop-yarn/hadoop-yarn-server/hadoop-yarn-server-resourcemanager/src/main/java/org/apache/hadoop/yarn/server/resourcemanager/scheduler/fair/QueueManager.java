@@ -430,6 +430,8 @@ public void updateAllocationConfiguration(AllocationConfiguration queueConf) {
       FSQueueMetrics queueMetrics = queue.getMetrics();
       queueMetrics.setMinShare(queue.getMinShare());
       queueMetrics.setMaxShare(queue.getMaxShare());
+      // Weights, min and max shares may have changed
+      queue.markSharesDirty();
       // Set scheduling policies
       try {
         SchedulingPolicy policy = queueConf.getSchedulingPolicy(queue.getName());
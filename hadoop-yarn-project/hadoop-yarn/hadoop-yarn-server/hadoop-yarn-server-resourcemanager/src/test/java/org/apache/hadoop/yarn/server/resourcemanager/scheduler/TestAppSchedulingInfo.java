@@ -20,12 +20,14 @@
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.Priority;
 import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.hadoop.yarn.api.records.ResourceRequest;
@@ -136,4 +138,64 @@ public void testPriorityAccounting() {
     info.updateResourceRequests(reqs, false);
     Assert.assertEquals(0, info.getPriorities().size());
   }
+
+  @Test
+  public void testRequestIndex() {
+    ApplicationId appIdImpl = ApplicationId.newInstance(0, 1);
+    ApplicationAttemptId appAttemptId =
+        ApplicationAttemptId.newInstance(appIdImpl, 1);
+
+    Queue queue = mock(Queue.class);
+    doReturn(mock(QueueMetrics.class)).when(queue).getMetrics();
+    AppSchedulingInfo info = new AppSchedulingInfo(
+        appAttemptId, "test", queue, mock(ActiveUsersManager.class), 0,
+        new ResourceUsage(), new RMContextImpl());
+
+    SchedulerNode node1 = mockNode("host1", "/rack1");
+    SchedulerNode node2 = mockNode("host2", "/rack1");
+    SchedulerNode node3 = mockNode("host3", "/rack2");
+    Assert.assertFalse(info.hasRequestsForNode(node1));
+
+    // Strict locality: only host1 may be used
+    Priority pri = Priority.newInstance(1);
+    Resource capability = Resource.newInstance(1024, 1);
+    ResourceRequest nodeReq = ResourceRequest.newInstance(pri, "host1",
+        capability, 1);
+    ResourceRequest rackReq = ResourceRequest.newInstance(pri, "/rack1",
+        capability, 1, false);
+    ResourceRequest anyReq = ResourceRequest.newInstance(pri,
+        ResourceRequest.ANY, capability, 1, false);
+    List<ResourceRequest> reqs = new ArrayList<>();
+    reqs.add(nodeReq);
+    reqs.add(rackReq);
+    reqs.add(anyReq);
+    info.updateResourceRequests(reqs, false);
+    Assert.assertTrue(info.hasRequestsForNode(node1));
+    Assert.assertTrue(info.hasRequestsForNode(node2));
+    Assert.assertFalse(info.hasRequestsForNode(node3));
+
+    // Once the container is allocated nothing is left for any node
+    info.allocate(NodeType.NODE_LOCAL, node1, pri, nodeReq,
+        mock(Container.class));
+    Assert.assertFalse(info.hasRequestsForNode(node1));
+    Assert.assertFalse(info.hasRequestsForNode(node2));
+
+    // A relaxed ANY request makes every node usable
+    anyReq = ResourceRequest.newInstance(pri, ResourceRequest.ANY,
+        capability, 2);
+    reqs.clear();
+    reqs.add(anyReq);
+    info.updateResourceRequests(reqs, false);
+    Assert.assertTrue(info.hasRequestsForNode(node3));
+
+    info.stop();
+    Assert.assertFalse(info.hasRequestsForNode(node3));
+  }
+
+  private static SchedulerNode mockNode(String host, String rack) {
+    SchedulerNode node = mock(SchedulerNode.class);
+    when(node.getNodeName()).thenReturn(host);
+    when(node.getRackName()).thenReturn(rack);
+    return node;
+  }
 }
@@ -1074,6 +1074,99 @@ public void testAsyncScheduling() throws Exception {
     }
   }
 
+  @Test(timeout = 60000)
+  public void testMultiThreadedAsyncScheduling() throws Exception {
+    CapacitySchedulerConfiguration csConf =
+        new CapacitySchedulerConfiguration();
+    setupQueueConfiguration(csConf);
+    // Queue a (and so a1) may use at most half of the cluster
+    csConf.setMaximumCapacity(A, 50);
+    csConf.setScheduleAynschronously(true);
+    csConf.setScheduleAsynchronouslyMaximumThreads(4);
+    YarnConfiguration conf = new YarnConfiguration(csConf);
+    conf.setClass(YarnConfiguration.RM_SCHEDULER, CapacityScheduler.class,
+        ResourceScheduler.class);
+    MockRM rm = new MockRM(conf);
+    rm.start();
+    final CapacityScheduler cs = (CapacityScheduler) rm.getResourceScheduler();
+
+    final int NODES = 8;
+    final int NODE_MEMORY = 8 * GB;
+
+    // Register nodes, which wakes up the scheduling threads
+    List<MockNM> nms = new ArrayList<MockNM>();
+    for (int i = 0; i < NODES; ++i) {
+      nms.add(rm.registerNode("192.168.1." + i + ":1234", NODE_MEMORY));
+    }
+
+    // Every slice, including empty ones, must be schedulable directly
+    for (int slice = 0; slice < NODES + 2; ++slice) {
+      CapacityScheduler.schedule(cs, slice, NODES + 2);
+    }
+
+    // The AM container is only allocated by the scheduling threads
+    RMApp app = rm.submitApp(1 * GB, "app", "user", null, "a1");
+    MockAM am = MockRM.launchAndRegisterAM(app, rm, nms.get(0));
+    final FiCaSchedulerApp schedulerApp =
+        cs.getApplicationAttempt(am.getApplicationAttemptId());
+    final CSQueue queueA = cs.getQueue("a");
+    final CSQueue queueA1 = cs.getQueue("a1");
+
+    // Ask for less than the queue may use: everything gets allocated
+    am.allocate("*", 1 * GB, 20, new ArrayList<ContainerId>());
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return schedulerApp.getLiveContainers().size() == 21;
+      }
+    }, 100, 30 * 1000);
+    Assert.assertEquals(21 * GB,
+        queueA1.getUsedResources().getMemorySize());
+    Assert.assertEquals(21 * GB,
+        cs.getRootQueue().getUsedResources().getMemorySize());
+    assertNodesWithinCapacity(cs, nms, NODE_MEMORY, 21 * GB);
+
+    // Ask for more than the queue may use: allocation stops at the queue
+    // maximum capacity even with several threads allocating at once
+    final long queueLimit = NODES * NODE_MEMORY / 2;
+    am.allocate("*", 1 * GB, 40, new ArrayList<ContainerId>());
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return queueA.getUsedResources().getMemorySize() == queueLimit;
+      }
+    }, 100, 30 * 1000);
+    // Let the threads run a few more passes over the nodes
+    Thread.sleep(10 * Math.max(cs.getAsyncScheduleInterval(), 10));
+    Assert.assertEquals(queueLimit,
+        queueA.getUsedResources().getMemorySize());
+    Assert.assertEquals(queueLimit / GB,
+        schedulerApp.getLiveContainers().size());
+    Assert.assertTrue(queueA.getAbsoluteUsedCapacity()
+        <= queueA.getAbsoluteMaximumCapacity() + 1e-6f);
+    Assert.assertTrue(queueA1.getAbsoluteUsedCapacity()
+        <= queueA1.getAbsoluteMaximumCapacity() + 1e-6f);
+    checkPendingResourceGreaterThanZero(rm, "a1", null);
+    assertNodesWithinCapacity(cs, nms, NODE_MEMORY, queueLimit);
+
+    // The scheduling threads must stop with the scheduler
+    rm.stop();
+  }
+
+  private void assertNodesWithinCapacity(CapacityScheduler cs,
+      List<MockNM> nms, int nodeMemory, long expectedUsed) {
+    long used = 0;
+    for (MockNM nm : nms) {
+      SchedulerNode node = cs.getSchedulerNode(nm.getNodeId());
+      long nodeUsed = node.getUsedResource().getMemorySize();
+      Assert.assertTrue("Node " + nm.getNodeId() + " is over capacity",
+          nodeUsed <= nodeMemory);
+      Assert.assertTrue(node.getAvailableResource().getMemorySize() >= 0);
+      used += nodeUsed;
+    }
+    Assert.assertEquals(expectedUsed, used);
+  }
+
   private void waitForAppPreemptionInfo(RMApp app, Resource preempted,
       int numAMPreempted, int numTaskPreempted,
       Resource currentAttemptPreempted, boolean currentAttemptAMPreempted,
@@ -2279,6 +2279,91 @@ public void testInheritedQueueAcls() throws IOException {
 
   }
 
+  @Test
+  public void testNodeWithoutRequestsCountsMissedOpportunity()
+      throws Exception {
+
+    // Manipulate queue 'a'
+    LeafQueue a = stubLeafQueue((LeafQueue)queues.get(A));
+
+    // User
+    String user_0 = "user_0";
+
+    // Submit applications
+    final ApplicationAttemptId appAttemptId_0 =
+        TestUtils.getMockApplicationAttemptId(0, 0);
+    FiCaSchedulerApp app_0 =
+        new FiCaSchedulerApp(appAttemptId_0, user_0, a,
+            mock(ActiveUsersManager.class), spyRMContext);
+    a.submitApplicationAttempt(app_0, user_0);
+
+    // Setup some nodes and racks
+    String host_0_0 = "127.0.0.1";
+    String rack_0 = "rack_0";
+    FiCaSchedulerNode node_0_0 = TestUtils.getMockNode(host_0_0, rack_0, 0, 8*GB);
+
+    String host_1_0 = "127.0.0.2";
+    String rack_1 = "rack_1";
+    FiCaSchedulerNode node_1_0 = TestUtils.getMockNode(host_1_0, rack_1, 0, 8*GB);
+
+    final int numNodes = 2;
+    Resource clusterResource = Resources.createResource(
+        numNodes * (8*GB), numNodes * 16);
+    when(csContext.getNumClusterNodes()).thenReturn(numNodes);
+
+    // Setup resource-requests
+    // resourceName: <priority, memory, #containers, relaxLocality>
+    // host_1_0: < 1, 1GB, 1, true >
+    // rack_1:   < 1, 1GB, 1, true >
+    // ANY:      < 1, 1GB, 1, false >
+    // Nothing can be placed on node_0_0, it is skipped without walking the
+    // priorities
+    Priority priority = TestUtils.createMockPriority(1);
+    List<ResourceRequest> app_0_requests_0 = new ArrayList<ResourceRequest>();
+    app_0_requests_0.add(
+        TestUtils.createResourceRequest(host_1_0, 1*GB, 1,
+            true, priority, recordFactory));
+    app_0_requests_0.add(
+        TestUtils.createResourceRequest(rack_1, 1*GB, 1,
+            true, priority, recordFactory));
+    app_0_requests_0.add(
+        TestUtils.createResourceRequest(ResourceRequest.ANY, 1*GB, 1,
+            false, priority, recordFactory));
+    app_0.updateResourceRequests(app_0_requests_0);
+    assertFalse(app_0.hasRequestsForNode(node_0_0));
+
+    // node_0_0 is a missed opportunity for the non-partitioned request, but
+    // not a scheduling opportunity, as if the priority had been walked
+    for (int i = 1; i <= 3; i++) {
+      CSAssignment assignment = a.assignContainers(clusterResource, node_0_0,
+          new ResourceLimits(clusterResource),
+          SchedulingMode.RESPECT_PARTITION_EXCLUSIVITY);
+      verifyNoContainerAllocated(assignment);
+      assertEquals(0, app_0.getSchedulingOpportunities(priority));
+      assertEquals(i,
+          app_0.getMissedNonPartitionedRequestSchedulingOpportunity(priority));
+    }
+
+    // A blacklisted node skips the app before it counts as an opportunity
+    app_0.updateBlacklist(Collections.singletonList(host_0_0), null);
+    CSAssignment assignment = a.assignContainers(clusterResource, node_0_0,
+        new ResourceLimits(clusterResource),
+        SchedulingMode.RESPECT_PARTITION_EXCLUSIVITY);
+    verifyNoContainerAllocated(assignment);
+    assertEquals(3,
+        app_0.getMissedNonPartitionedRequestSchedulingOpportunity(priority));
+
+    // NODE_LOCAL - node_1_0 resets the missed opportunities
+    assignment = a.assignContainers(clusterResource, node_1_0,
+        new ResourceLimits(clusterResource),
+        SchedulingMode.RESPECT_PARTITION_EXCLUSIVITY);
+    verifyContainerAllocated(assignment, NodeType.NODE_LOCAL);
+    assertEquals(0, app_0.getSchedulingOpportunities(priority));
+    assertEquals(0,
+        app_0.getMissedNonPartitionedRequestSchedulingOpportunity(priority));
+    assertEquals(0, app_0.getTotalRequiredResources(priority));
+  }
+
   @Test
   public void testLocalityConstraints() throws Exception {
 
@@ -19,6 +19,7 @@
 package org.apache.hadoop.yarn.server.resourcemanager.scheduler.fair;
 
 import org.apache.hadoop.yarn.util.SystemClock;
+import org.apache.hadoop.yarn.util.resource.Resources;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -26,6 +27,8 @@
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -76,4 +79,36 @@ public void testConcurrentChangeToGetChildQueue() {
     assertEquals(2, childQueuesFound);
     assertEquals(3, test.getChildQueues().size());
   }
+
+  @Test
+  public void testIncrementalShareRecompute() {
+    FSLeafQueue child = queueManager.getLeafQueue("parent.child", true);
+    FSLeafQueue other = queueManager.getLeafQueue("other", true);
+    FSParentQueue parent = queueManager.getParentQueue("parent", false);
+    FSParentQueue root = queueManager.getRootQueue();
+
+    root.setFairShare(Resources.createResource(8192, 8));
+    root.recomputeShares();
+    assertFalse(root.isSubtreeSharesDirty());
+    assertFalse(parent.isSubtreeSharesDirty());
+    assertFalse(child.isSharesDirty());
+
+    // A change in a leaf only dirties its ancestors, not its siblings
+    child.markSharesDirty();
+    assertTrue(child.isSharesDirty());
+    assertTrue(parent.isSubtreeSharesDirty());
+    assertFalse(parent.isSharesDirty());
+    assertTrue(root.isSubtreeSharesDirty());
+    assertFalse(other.isSubtreeSharesDirty());
+
+    root.recomputeShares();
+    assertFalse(child.isSharesDirty());
+    assertFalse(root.isSubtreeSharesDirty());
+
+    // A new fair share for the root is picked up without any dirty flag
+    root.setFairShare(Resources.createResource(4096, 4));
+    assertTrue(root.isFairShareChangedSinceRecompute());
+    root.recomputeShares();
+    assertFalse(root.isFairShareChangedSinceRecompute());
+  }
 }
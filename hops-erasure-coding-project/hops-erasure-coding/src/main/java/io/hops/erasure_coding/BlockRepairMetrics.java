@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.erasure_coding;
+
+import org.apache.hadoop.metrics2.annotation.Metric;
+import org.apache.hadoop.metrics2.annotation.Metrics;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableRate;
+
+/**
+ * Repair statistics of the {@link LocalBlockRepairManager}.
+ */
+@Metrics(name = "BlockRepairManager", about = "Erasure coding repair metrics",
+    context = "dfs")
+class BlockRepairMetrics {
+
+  @Metric("Time from queueing a stripe until its lost blocks are repaired")
+  MutableRate stripeRepairTime;
+  @Metric("Number of stripes repaired")
+  MutableCounterLong stripesRepaired;
+  @Metric("Number of stripes that could not be repaired")
+  MutableCounterLong stripesFailed;
+  @Metric("Number of blocks repaired")
+  MutableCounterLong blocksRepaired;
+
+  private final LocalBlockRepairManager manager;
+
+  private BlockRepairMetrics(LocalBlockRepairManager manager) {
+    this.manager = manager;
+  }
+
+  static BlockRepairMetrics create(LocalBlockRepairManager manager) {
+    return DefaultMetricsSystem.instance()
+        .register(new BlockRepairMetrics(manager));
+  }
+
+  @Metric("Number of stripes waiting for a repair worker")
+  public int getQueuedStripes() {
+    return manager.getQueuedStripes();
+  }
+
+  @Metric("Number of files with queued or running repairs")
+  public int getActiveFileRepairs() {
+    return manager.getActiveFileRepairs();
+  }
+}
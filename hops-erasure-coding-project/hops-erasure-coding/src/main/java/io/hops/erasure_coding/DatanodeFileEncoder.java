@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.erasure_coding;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+
+/**
+ * Implementation of {@link FileEncoder} that encodes the files assigned to a
+ * datanode by the {@link DatanodeEncodingManager} the same way the map
+ * reduce encoder does, reading the stripes with a
+ * {@link ParallelStreamReader}.
+ */
+public class DatanodeFileEncoder implements FileEncoder {
+
+  @Override
+  public void encodeFile(Configuration conf, Path sourceFile, Path parityFile,
+      Codec codec, int targetReplication, boolean copy) throws IOException {
+    BaseEncodingManager.Statistics statistics =
+        new BaseEncodingManager.Statistics();
+    BaseEncodingManager.doRaid(conf, sourceFile, parityFile, codec,
+        statistics, RaidUtils.NULL_PROGRESSABLE, targetReplication, 1, copy);
+    BaseEncodingManager.LOG.info("RAID statistics " + statistics);
+  }
+}
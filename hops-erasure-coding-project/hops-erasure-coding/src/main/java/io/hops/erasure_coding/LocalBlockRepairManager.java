@@ -15,68 +15,418 @@
  */
 package io.hops.erasure_coding;
 
-import org.apache.commons.lang.NotImplementedException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.server.datanode.BlockReconstructor;
+import org.apache.hadoop.hdfs.util.DataTransferThrottler;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.apache.hadoop.util.Time.monotonicNow;
+
+/**
+ * Repairs the lost blocks of encoded files in the namenode process.
+ * <p/>
+ * The lost blocks of every file are grouped by stripe and each stripe is
+ * repaired as one task on a bounded pool of
+ * {@link DFSConfigKeys#REPAIR_THREADS_KEY} workers. The queue is shared by
+ * all files and ordered by the redundancy left in each stripe, so that the
+ * stripes closest to data loss are repaired first whichever file they
+ * belong to. The reads of the surviving blocks go through the regular
+ * client, which reads the closest replica and a local one if the namenode
+ * host runs a datanode, and are throttled to
+ * {@link DFSConfigKeys#REPAIR_BANDWIDTH_PER_DATANODE_KEY} bytes per second
+ * for every datanode they are read from.
+ * <p/>
+ * A file is reported as finished once all its stripes are repaired and as
+ * failed once all its stripes were processed and one of them failed. The
+ * repairs are only tracked in memory.
+ */
 public class LocalBlockRepairManager extends BlockRepairManager {
 
   public static final Log LOG =
       LogFactory.getLog(LocalBlockRepairManager.class);
 
-  private BlockReconstructor blockReconstructor;
+  /**
+   * The repair of the lost blocks of one source or parity file.
+   */
+  private class FileRepair {
+    private final String codecId;
+    private final Path sourceFile;
+    private final Path parityFile;
+    private final boolean parityRepair;
+    private boolean planned = false;
+    private int pendingStripes = 0;
+    private boolean failed = false;
+    private boolean canceled = false;
+
+    FileRepair(String codecId, Path sourceFile, Path parityFile,
+        boolean parityRepair) {
+      this.codecId = codecId;
+      this.sourceFile = sourceFile;
+      this.parityFile = parityFile;
+      this.parityRepair = parityRepair;
+    }
+
+    String getReportPath() {
+      return (parityRepair ? parityFile : sourceFile).toUri().getPath();
+    }
+  }
+
+  /**
+   * Tasks of the worker pool. Finding the lost blocks of a file goes first,
+   * then the stripes with the least redundancy left, in queueing order.
+   */
+  private abstract class RepairTask
+      implements Runnable, Comparable<RepairTask> {
+    final FileRepair file;
+    final long sequence = taskSequence.incrementAndGet();
+    final long queueTime = monotonicNow();
+
+    RepairTask(FileRepair file) {
+      this.file = file;
+    }
+
+    abstract int getPriority();
+
+    @Override
+    public int compareTo(RepairTask other) {
+      if (getPriority() != other.getPriority()) {
+        return getPriority() < other.getPriority() ? -1 : 1;
+      }
+      return sequence < other.sequence ? -1 :
+          (sequence == other.sequence ? 0 : 1);
+    }
+  }
+
+  private class PlanTask extends RepairTask {
+    PlanTask(FileRepair file) {
+      super(file);
+    }
+
+    @Override
+    int getPriority() {
+      return Integer.MIN_VALUE;
+    }
+
+    @Override
+    public void run() {
+      try {
+        plan(file);
+      } catch (Exception e) {
+        LOG.error("Could not find the lost blocks of " +
+            file.getReportPath(), e);
+        synchronized (LocalBlockRepairManager.this) {
+          file.failed = true;
+          file.planned = true;
+        }
+      }
+    }
+  }
+
+  private class StripeTask extends RepairTask {
+    private final Codec codec;
+    private final long stripeIdx;
+    private final List<LocatedBlock> lostBlocks;
+    private final int redundancy;
+
+    StripeTask(FileRepair file, Codec codec, long stripeIdx,
+        List<LocatedBlock> lostBlocks, int redundancy) {
+      super(file);
+      this.codec = codec;
+      this.stripeIdx = stripeIdx;
+      this.lostBlocks = lostBlocks;
+      this.redundancy = redundancy;
+    }
+
+    @Override
+    int getPriority() {
+      return redundancy;
+    }
+
+    @Override
+    public void run() {
+      queuedStripes.decrementAndGet();
+      boolean success = false;
+      try {
+        synchronized (LocalBlockRepairManager.this) {
+          if (file.canceled) {
+            return;
+          }
+        }
+        repairStripe(this);
+        success = true;
+      } catch (Exception e) {
+        LOG.error("Could not repair stripe " + stripeIdx + " of " +
+            file.getReportPath(), e);
+      } finally {
+        boolean canceled;
+        synchronized (LocalBlockRepairManager.this) {
+          file.failed |= !success;
+          file.pendingStripes--;
+          canceled = file.canceled;
+        }
+        if (success) {
+          metrics.stripeRepairTime.add(monotonicNow() - queueTime);
+          metrics.stripesRepaired.incr();
+          metrics.blocksRepaired.incr(lostBlocks.size());
+        } else if (!canceled) {
+          metrics.stripesFailed.incr();
+        }
+      }
+    }
+  }
+
+  private final BlockReconstructor blockReconstructor;
+  private final ThreadPoolExecutor executor;
+  private final long bandwidthPerDatanode;
+  private final ConcurrentMap<String, DataTransferThrottler> throttlers =
+      new ConcurrentHashMap<>();
+  private final Map<String, FileRepair> repairs = new HashMap<>();
+  private final AtomicLong taskSequence = new AtomicLong();
+  private final AtomicInteger queuedStripes = new AtomicInteger();
+  private final BlockRepairMetrics metrics;
 
   public LocalBlockRepairManager(Configuration conf) {
     super(conf);
     blockReconstructor = new BlockReconstructor(conf);
+    int threads = conf.getInt(DFSConfigKeys.REPAIR_THREADS_KEY,
+        DFSConfigKeys.DEFAULT_REPAIR_THREADS);
+    executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new PriorityBlockingQueue<Runnable>(),
+        new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("BlockRepair-%d").build());
+    executor.allowCoreThreadTimeOut(true);
+    bandwidthPerDatanode = conf.getLong(
+        DFSConfigKeys.REPAIR_BANDWIDTH_PER_DATANODE_KEY,
+        DFSConfigKeys.DEFAULT_REPAIR_BANDWIDTH_PER_DATANODE);
+    metrics = BlockRepairMetrics.create(this);
   }
 
   @Override
   public void repairSourceBlocks(String codecId, Path sourceFile,
       Path parityFile) {
-    Codec codec = Codec.getCodec(codecId);
-    Decoder decoder = new Decoder(getConf(), codec);
-    try {
-      blockReconstructor.processFile(sourceFile, parityFile, decoder);
-    } catch (IOException e) {
-      LOG.error("Exception", e);
-    } catch (InterruptedException e) {
-      LOG.error("Exception", e);
-    }
+    schedule(new FileRepair(codecId, sourceFile, parityFile, false));
   }
 
   @Override
   public void repairParityBlocks(String codecId, Path sourceFile,
       Path parityFile) {
-    Codec codec = Codec.getCodec(codecId);
-    Decoder decoder = new Decoder(getConf(), codec);
-    try {
-      blockReconstructor.processParityFile(sourceFile, parityFile, decoder);
-    } catch (IOException e) {
-      LOG.error("Exception", e);
-    } catch (InterruptedException e) {
-      LOG.error("Exception", e);
+    schedule(new FileRepair(codecId, sourceFile, parityFile, true));
+  }
+
+  private synchronized void schedule(FileRepair file) {
+    FileRepair previous = repairs.put(file.getReportPath(), file);
+    if (previous != null) {
+      previous.canceled = true;
     }
+    executor.execute(new PlanTask(file));
   }
 
   @Override
-  public List<Report> computeReports() {
-    throw new NotImplementedException();
+  public synchronized List<Report> computeReports() {
+    List<Report> reports = new ArrayList<>(repairs.size());
+    Iterator<FileRepair> it = repairs.values().iterator();
+    while (it.hasNext()) {
+      FileRepair file = it.next();
+      Report.Status status;
+      if (!file.planned || file.pendingStripes > 0) {
+        status = Report.Status.ACTIVE;
+      } else if (file.canceled) {
+        status = Report.Status.CANCELED;
+      } else if (file.failed) {
+        status = Report.Status.FAILED;
+      } else {
+        status = Report.Status.FINISHED;
+      }
+      reports.add(new Report(file.getReportPath(), status));
+      if (status != Report.Status.ACTIVE) {
+        it.remove();
+      }
+    }
+    return reports;
   }
 
+  /**
+   * Queued stripes of canceled files are skipped, running ones complete.
+   */
   @Override
-  public void cancelAll() {
-    throw new NotImplementedException();
+  public synchronized void cancelAll() {
+    for (FileRepair file : repairs.values()) {
+      file.canceled = true;
+    }
   }
 
   @Override
-  public void cancel(String toCancel) {
-    throw new NotImplementedException();
+  public synchronized void cancel(String toCancel) {
+    FileRepair file = repairs.get(toCancel);
+    if (file != null) {
+      file.canceled = true;
+    }
+  }
+
+  int getQueuedStripes() {
+    return queuedStripes.get();
+  }
+
+  synchronized int getActiveFileRepairs() {
+    return repairs.size();
+  }
+
+  /**
+   * Group the lost blocks of the file by stripe and queue one task per
+   * stripe.
+   */
+  private void plan(FileRepair file) throws IOException {
+    Codec codec = Codec.getCodec(file.codecId);
+    if (codec == null) {
+      throw new IOException("Unknown codec " + file.codecId);
+    }
+    DistributedFileSystem dfs = Helper.getDFS(getConf(), file.sourceFile);
+    DFSClient client = dfs.getClient();
+    String sourcePath = file.sourceFile.toUri().getPath();
+    String parityPath = file.parityFile.toUri().getPath();
+    long sourceBlockSize = dfs.getFileStatus(file.sourceFile).getBlockSize();
+    long parityBlockSize = dfs.getFileStatus(file.parityFile).getBlockSize();
+
+    // Lost blocks of both files count against the redundancy of a stripe
+    Map<Long, List<LocatedBlock>> lostSource = groupByStripe(
+        client.getMissingLocatedBlocks(sourcePath), sourceBlockSize,
+        codec.stripeLength);
+    Map<Long, List<LocatedBlock>> lostParity = groupByStripe(
+        client.getMissingLocatedBlocks(parityPath), parityBlockSize,
+        codec.parityLength);
+    Map<Long, List<LocatedBlock>> toRepair =
+        file.parityRepair ? lostParity : lostSource;
+
+    List<StripeTask> tasks = new ArrayList<>(toRepair.size());
+    for (Map.Entry<Long, List<LocatedBlock>> entry : toRepair.entrySet()) {
+      List<LocatedBlock> source = lostSource.get(entry.getKey());
+      List<LocatedBlock> parity = lostParity.get(entry.getKey());
+      int lost = (source == null ? 0 : source.size()) +
+          (parity == null ? 0 : parity.size());
+      tasks.add(new StripeTask(file, codec, entry.getKey(), entry.getValue(),
+          codec.parityLength - lost));
+    }
+    LOG.info("Repairing " + tasks.size() + " stripes of " +
+        file.getReportPath());
+
+    synchronized (this) {
+      file.pendingStripes = tasks.size();
+      file.planned = true;
+    }
+    for (StripeTask task : tasks) {
+      queuedStripes.incrementAndGet();
+      executor.execute(task);
+    }
+  }
+
+  private static Map<Long, List<LocatedBlock>> groupByStripe(
+      LocatedBlocks blocks, long blockSize, int blocksPerStripe) {
+    Map<Long, List<LocatedBlock>> stripes = new TreeMap<>();
+    if (blocks == null) {
+      return stripes;
+    }
+    for (LocatedBlock block : blocks.getLocatedBlocks()) {
+      long stripeIdx = block.getStartOffset() / blockSize / blocksPerStripe;
+      List<LocatedBlock> stripe = stripes.get(stripeIdx);
+      if (stripe == null) {
+        stripe = new ArrayList<>();
+        stripes.put(stripeIdx, stripe);
+      }
+      stripe.add(block);
+    }
+    return stripes;
+  }
+
+  private void repairStripe(StripeTask task)
+      throws IOException, InterruptedException {
+    FileRepair file = task.file;
+    LOG.info("Repairing " + task.lostBlocks.size() + " blocks of stripe " +
+        task.stripeIdx + " of " + file.getReportPath() + ", redundancy left " +
+        task.redundancy);
+    throttle(task);
+    Decoder decoder = new Decoder(getConf(), task.codec);
+    LocatedBlocks lostBlocks = new LocatedBlocks(0, false, task.lostBlocks,
+        null, true);
+    if (file.parityRepair) {
+      blockReconstructor.processParityFile(file.sourceFile, file.parityFile,
+          lostBlocks, decoder, null);
+    } else {
+      blockReconstructor.processFile(file.sourceFile, file.parityFile,
+          lostBlocks, decoder, null);
+    }
+  }
+
+  /**
+   * Wait until the datanodes holding the surviving blocks of the stripe
+   * have the bandwidth to send them once per lost block. The closest
+   * replica, which the client reads, is charged.
+   */
+  private void throttle(StripeTask task) throws IOException {
+    if (bandwidthPerDatanode <= 0) {
+      return;
+    }
+    FileRepair file = task.file;
+    DistributedFileSystem dfs = Helper.getDFS(getConf(), file.sourceFile);
+    FileStatus source = dfs.getFileStatus(file.sourceFile);
+    FileStatus parity = dfs.getFileStatus(file.parityFile);
+    List<LocatedBlock> stripe = new ArrayList<>();
+    stripe.addAll(getStripeBlocks(dfs.getClient(), source, task.stripeIdx,
+        task.codec.stripeLength));
+    stripe.addAll(getStripeBlocks(dfs.getClient(), parity, task.stripeIdx,
+        task.codec.parityLength));
+
+    int decodes = task.lostBlocks.size();
+    for (LocatedBlock block : stripe) {
+      if (block.getLocations().length == 0) {
+        continue;
+      }
+      String datanode = block.getLocations()[0].getDatanodeUuid();
+      DataTransferThrottler throttler = throttlers.get(datanode);
+      if (throttler == null) {
+        throttler = new DataTransferThrottler(bandwidthPerDatanode);
+        DataTransferThrottler existing =
+            throttlers.putIfAbsent(datanode, throttler);
+        if (existing != null) {
+          throttler = existing;
+        }
+      }
+      throttler.throttle(block.getBlockSize() * decodes);
+    }
+  }
+
+  private static List<LocatedBlock> getStripeBlocks(DFSClient client,
+      FileStatus status, long stripeIdx, int blocksPerStripe)
+      throws IOException {
+    long stripeSize = status.getBlockSize() * blocksPerStripe;
+    long start = stripeIdx * stripeSize;
+    if (start >= status.getLen()) {
+      return new ArrayList<>();
+    }
+    return client.getLocatedBlocks(status.getPath().toUri().getPath(), start,
+        Math.min(stripeSize, status.getLen() - start)).getLocatedBlocks();
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,543 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.hops.erasure_coding;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reed-Solomon code producing the same parity as {@link ReedSolomonCode},
+ * so the two can be used interchangeably on existing parity files, but
+ * encoding and decoding by matrix multiplication instead of polynomial
+ * division.
+ * <p/>
+ * The parity matrix is computed once from the generating polynomial, and the
+ * decoding matrix of an erasure pattern is computed when the pattern is first
+ * seen and reused while it does not change, which is the case for all the
+ * stripes of a block being repaired. Each coefficient of a matrix is
+ * multiplied through its row of a precomputed 256 x 256 multiplication
+ * table. The buffers are processed in chunks that stay in the L1 cache with
+ * an unrolled inner loop, and the inputs are never modified, unlike
+ * {@link ReedSolomonCode#encodeBulk(byte[][], byte[][])}.
+ * <p/>
+ * Both heap arrays and (direct) ByteBuffers are supported, the ByteBuffer
+ * methods read and write from the current positions without moving them.
+ */
+public class TableReedSolomonCode extends ErasureCode {
+  public static final Log LOG = LogFactory.getLog(TableReedSolomonCode.class);
+
+  private static final int PRIMITIVE_ROOT = 2;
+  // bytes of each buffer processed before moving to the next buffer
+  private static final int CHUNK_SIZE = 4096;
+
+  private static final GaloisField GF = GaloisField.getInstance();
+  private static final byte[][] MUL_TABLE = new byte[256][256];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      for (int j = 0; j < 256; j++) {
+        MUL_TABLE[i][j] = (byte) GF.multiply(i, j);
+      }
+    }
+  }
+
+  /**
+   * The coefficients to compute some outputs from some codeword locations.
+   */
+  private static class CodingMatrix {
+    private final int[] erasedLocations;
+    private final int[] requestedSources;
+    private final int[] sources;
+    private final int[][] matrix;
+    private final byte[][][] tables;
+
+    CodingMatrix(int[] erasedLocations, int[] requestedSources,
+        int[] sources, int[][] matrix) {
+      this.erasedLocations = erasedLocations;
+      this.requestedSources = requestedSources;
+      this.sources = sources;
+      this.matrix = matrix;
+      this.tables = new byte[matrix.length][sources.length][];
+      for (int i = 0; i < matrix.length; i++) {
+        for (int j = 0; j < sources.length; j++) {
+          tables[i][j] = MUL_TABLE[matrix[i][j]];
+        }
+      }
+    }
+  }
+
+  private int stripeSize;
+  private int paritySize;
+  private CodingMatrix encodingMatrix;
+  private volatile CodingMatrix lastDecodingMatrix;
+
+  @Deprecated
+  public TableReedSolomonCode(int stripeSize, int paritySize) {
+    init(stripeSize, paritySize);
+  }
+
+  public TableReedSolomonCode() {
+  }
+
+  @Override
+  public void init(Codec codec) {
+    init(codec.stripeLength, codec.parityLength);
+    LOG.info("Initialized " + TableReedSolomonCode.class +
+        " stripeLength:" + codec.stripeLength +
+        " parityLength:" + codec.parityLength);
+  }
+
+  private void init(int stripeSize, int paritySize) {
+    assert (stripeSize + paritySize < GF.getFieldSize());
+    this.stripeSize = stripeSize;
+    this.paritySize = paritySize;
+
+    // same generating polynomial as ReedSolomonCode
+    int[] gen = {1};
+    int[] poly = new int[2];
+    for (int i = 0; i < paritySize; i++) {
+      poly[0] = GF.power(PRIMITIVE_ROOT, i);
+      poly[1] = 1;
+      gen = GF.multiply(gen, poly);
+    }
+    // the encoding is linear, column i of the parity matrix is the parity of
+    // the message that is 1 at i and 0 elsewhere
+    int[][] parityMatrix = new int[paritySize][stripeSize];
+    int[] dataBuff = new int[paritySize + stripeSize];
+    for (int i = 0; i < stripeSize; i++) {
+      Arrays.fill(dataBuff, 0);
+      dataBuff[paritySize + i] = 1;
+      GF.remainder(dataBuff, gen);
+      for (int j = 0; j < paritySize; j++) {
+        parityMatrix[j][i] = dataBuff[j];
+      }
+    }
+    int[] dataLocations = new int[stripeSize];
+    for (int i = 0; i < stripeSize; i++) {
+      dataLocations[i] = paritySize + i;
+    }
+    encodingMatrix =
+        new CodingMatrix(null, null, dataLocations, parityMatrix);
+    lastDecodingMatrix = null;
+  }
+
+  @Override
+  public void encode(int[] message, int[] parity) {
+    assert (message.length == stripeSize && parity.length == paritySize);
+    int[][] matrix = encodingMatrix.matrix;
+    for (int i = 0; i < paritySize; i++) {
+      int value = 0;
+      for (int j = 0; j < stripeSize; j++) {
+        value ^= GF.multiply(matrix[i][j], message[j]);
+      }
+      parity[i] = value;
+    }
+  }
+
+  @Override
+  public void encodeBulk(byte[][] inputs, byte[][] outputs) {
+    assert (stripeSize == inputs.length);
+    assert (paritySize == outputs.length);
+    byte[][] sources = new byte[paritySize + stripeSize][];
+    System.arraycopy(inputs, 0, sources, paritySize, stripeSize);
+    multiply(encodingMatrix, sources, outputs, outputs[0].length);
+  }
+
+  /**
+   * Encode the remaining bytes of the inputs into the outputs.
+   *
+   * @param inputs
+   *     the stripeSize() data buffers
+   * @param outputs
+   *     the paritySize() parity buffers, with at least as many bytes
+   *     remaining as the inputs
+   */
+  public void encode(ByteBuffer[] inputs, ByteBuffer[] outputs) {
+    assert (stripeSize == inputs.length);
+    assert (paritySize == outputs.length);
+    ByteBuffer[] sources = new ByteBuffer[paritySize + stripeSize];
+    System.arraycopy(inputs, 0, sources, paritySize, stripeSize);
+    multiply(encodingMatrix, sources, outputs, inputs[0].remaining());
+  }
+
+  @Override
+  public void decode(int[] data, int[] erasedLocations, int[] erasedValues) {
+    decode(data, erasedLocations, erasedValues, null, null);
+  }
+
+  @Override
+  public void decode(int[] data, int[] erasedLocations, int[] erasedValues,
+      int[] locationsToRead, int[] locationsNotToRead) {
+    if (erasedLocations.length == 0) {
+      return;
+    }
+    CodingMatrix decoding = getDecodingMatrix(erasedLocations,
+        locationsToRead);
+    for (int i = 0; i < erasedLocations.length; i++) {
+      int value = 0;
+      for (int j = 0; j < decoding.sources.length; j++) {
+        value ^= GF.multiply(decoding.matrix[i][j],
+            data[decoding.sources[j]]);
+      }
+      erasedValues[i] = value;
+    }
+  }
+
+  @Override
+  public void decodeBulk(byte[][] readBufs, byte[][] writeBufs,
+      int[] erasedLocations, int[] locationsToRead, int[] locationsNotToRead) {
+    if (erasedLocations.length == 0) {
+      return;
+    }
+    CodingMatrix decoding = getDecodingMatrix(erasedLocations,
+        locationsToRead);
+    multiply(decoding, readBufs, writeBufs, readBufs[0].length);
+  }
+
+  /**
+   * Decode the remaining bytes of the erased locations.
+   *
+   * @param inputs
+   *     the buffers of the stripeSize() + paritySize() locations, parity
+   *     first, only the ones of the locations used for decoding are read
+   * @param erasedLocations
+   *     the locations to decode
+   * @param locationsToRead
+   *     the locations to decode from, or null to use any location that is
+   *     not erased and has a buffer
+   * @param outputs
+   *     the buffers of the erased locations
+   */
+  public void decode(ByteBuffer[] inputs, int[] erasedLocations,
+      int[] locationsToRead, ByteBuffer[] outputs) {
+    if (erasedLocations.length == 0) {
+      return;
+    }
+    if (locationsToRead == null) {
+      locationsToRead = availableLocations(inputs, erasedLocations);
+    }
+    CodingMatrix decoding = getDecodingMatrix(erasedLocations,
+        locationsToRead);
+    multiply(decoding, inputs, outputs,
+        outputs[0].remaining());
+  }
+
+  @Override
+  public int stripeSize() {
+    return stripeSize;
+  }
+
+  @Override
+  public int paritySize() {
+    return paritySize;
+  }
+
+  @Override
+  public int symbolSize() {
+    return 8;
+  }
+
+  private int[] availableLocations(ByteBuffer[] inputs,
+      int[] erasedLocations) {
+    int[] locations = new int[inputs.length];
+    int count = 0;
+    for (int loc = 0; loc < inputs.length; loc++) {
+      if (inputs[loc] != null && indexOf(erasedLocations, loc) == -1) {
+        locations[count++] = loc;
+      }
+    }
+    return Arrays.copyOf(locations, count);
+  }
+
+  private CodingMatrix getDecodingMatrix(int[] erasedLocations,
+      int[] locationsToRead) {
+    CodingMatrix decoding = lastDecodingMatrix;
+    if (decoding != null &&
+        Arrays.equals(decoding.erasedLocations, erasedLocations) &&
+        Arrays.equals(decoding.requestedSources, locationsToRead)) {
+      return decoding;
+    }
+    int[] sources = chooseSources(erasedLocations, locationsToRead);
+    // the rows of the generator matrix of the sources give the sources from
+    // the message, inverting them gives the message from the sources
+    int[][] inverse = new int[stripeSize][];
+    for (int i = 0; i < stripeSize; i++) {
+      inverse[i] = generatorRow(sources[i]);
+    }
+    inverse = invert(inverse);
+    int[][] matrix = new int[erasedLocations.length][stripeSize];
+    for (int i = 0; i < erasedLocations.length; i++) {
+      int[] row = generatorRow(erasedLocations[i]);
+      for (int j = 0; j < stripeSize; j++) {
+        int value = 0;
+        for (int k = 0; k < stripeSize; k++) {
+          value ^= GF.multiply(row[k], inverse[k][j]);
+        }
+        matrix[i][j] = value;
+      }
+    }
+    decoding = new CodingMatrix(erasedLocations.clone(),
+        locationsToRead == null ? null : locationsToRead.clone(), sources,
+        matrix);
+    lastDecodingMatrix = decoding;
+    return decoding;
+  }
+
+  /**
+   * Choose stripeSize() locations to decode from, the requested ones first,
+   * then the other non erased locations, data before parity as in
+   * {@link #locationsToReadForDecode(java.util.List)}.
+   */
+  private int[] chooseSources(int[] erasedLocations, int[] locationsToRead) {
+    int[] sources = new int[stripeSize];
+    int count = 0;
+    if (locationsToRead != null) {
+      for (int loc : locationsToRead) {
+        if (count < stripeSize && indexOf(erasedLocations, loc) == -1 &&
+            indexOf(sources, count, loc) == -1) {
+          sources[count++] = loc;
+        }
+      }
+    }
+    for (int loc = stripeSize + paritySize - 1;
+         loc >= 0 && count < stripeSize && locationsToRead == null; loc--) {
+      if (indexOf(erasedLocations, loc) == -1) {
+        sources[count++] = loc;
+      }
+    }
+    if (count < stripeSize) {
+      throw new IllegalArgumentException("Cannot decode " +
+          Arrays.toString(erasedLocations) + " from " +
+          Arrays.toString(locationsToRead) + ", " + stripeSize +
+          " locations are needed");
+    }
+    return sources;
+  }
+
+  private int[] generatorRow(int location) {
+    if (location < paritySize) {
+      return encodingMatrix.matrix[location];
+    }
+    int[] row = new int[stripeSize];
+    row[location - paritySize] = 1;
+    return row;
+  }
+
+  /**
+   * Invert a square matrix by Gauss-Jordan elimination.
+   */
+  private static int[][] invert(int[][] matrix) {
+    int n = matrix.length;
+    int[][] work = new int[n][2 * n];
+    for (int i = 0; i < n; i++) {
+      System.arraycopy(matrix[i], 0, work[i], 0, n);
+      work[i][n + i] = 1;
+    }
+    for (int col = 0; col < n; col++) {
+      int pivot = col;
+      while (pivot < n && work[pivot][col] == 0) {
+        pivot++;
+      }
+      if (pivot == n) {
+        throw new IllegalArgumentException("Singular decoding matrix");
+      }
+      int[] tmp = work[pivot];
+      work[pivot] = work[col];
+      work[col] = tmp;
+      int scale = work[col][col];
+      for (int j = 0; j < 2 * n; j++) {
+        work[col][j] = GF.divide(work[col][j], scale);
+      }
+      for (int i = 0; i < n; i++) {
+        int factor = work[i][col];
+        if (i != col && factor != 0) {
+          for (int j = 0; j < 2 * n; j++) {
+            work[i][j] ^= GF.multiply(factor, work[col][j]);
+          }
+        }
+      }
+    }
+    int[][] inverse = new int[n][];
+    for (int i = 0; i < n; i++) {
+      inverse[i] = Arrays.copyOfRange(work[i], n, 2 * n);
+    }
+    return inverse;
+  }
+
+  private static int indexOf(int[] array, int value) {
+    return indexOf(array, array.length, value);
+  }
+
+  private static int indexOf(int[] array, int length, int value) {
+    for (int i = 0; i < length; i++) {
+      if (array[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static void multiply(CodingMatrix coding, byte[][] inputs,
+      byte[][] outputs, int length) {
+    for (int offset = 0; offset < length; offset += CHUNK_SIZE) {
+      int len = Math.min(CHUNK_SIZE, length - offset);
+      for (int i = 0; i < coding.tables.length; i++) {
+        byte[][] tables = coding.tables[i];
+        byte[] output = outputs[i];
+        for (int j = 0; j < tables.length; j++) {
+          byte[] input = inputs[coding.sources[j]];
+          if (j == 0) {
+            multiply(tables[j], input, output, offset, len);
+          } else {
+            multiplyAdd(tables[j], input, output, offset, len);
+          }
+        }
+      }
+    }
+  }
+
+  private static void multiply(CodingMatrix coding, ByteBuffer[] inputs,
+      ByteBuffer[] outputs, int length) {
+    boolean arrays = true;
+    for (int source : coding.sources) {
+      arrays &= inputs[source].hasArray();
+    }
+    for (ByteBuffer output : outputs) {
+      arrays &= output.hasArray();
+    }
+    if (arrays && allAtOffset(inputs, coding.sources, outputs)) {
+      byte[][] inputArrays = new byte[inputs.length][];
+      for (int source : coding.sources) {
+        inputArrays[source] = inputs[source].array();
+      }
+      byte[][] outputArrays = new byte[outputs.length][];
+      for (int i = 0; i < outputs.length; i++) {
+        outputArrays[i] = outputs[i].array();
+      }
+      multiply(coding, inputArrays, outputArrays, length);
+      return;
+    }
+    for (int offset = 0; offset < length; offset += CHUNK_SIZE) {
+      int len = Math.min(CHUNK_SIZE, length - offset);
+      for (int i = 0; i < coding.tables.length; i++) {
+        byte[][] tables = coding.tables[i];
+        ByteBuffer output = outputs[i];
+        for (int j = 0; j < tables.length; j++) {
+          ByteBuffer input = inputs[coding.sources[j]];
+          multiply(tables[j], input, input.position() + offset, output,
+              output.position() + offset, len, j > 0);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return true if all the buffers start at offset 0 of their array, so
+   * that the array methods can be used on them
+   */
+  private static boolean allAtOffset(ByteBuffer[] inputs, int[] sources,
+      ByteBuffer[] outputs) {
+    for (int source : sources) {
+      if (inputs[source].arrayOffset() + inputs[source].position() != 0) {
+        return false;
+      }
+    }
+    for (ByteBuffer output : outputs) {
+      if (output.arrayOffset() + output.position() != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void multiply(byte[] table, byte[] input, byte[] output,
+      int offset, int len) {
+    int i = offset;
+    int end = offset + len;
+    for (; i + 8 <= end; i += 8) {
+      output[i] = table[input[i] & 0xFF];
+      output[i + 1] = table[input[i + 1] & 0xFF];
+      output[i + 2] = table[input[i + 2] & 0xFF];
+      output[i + 3] = table[input[i + 3] & 0xFF];
+      output[i + 4] = table[input[i + 4] & 0xFF];
+      output[i + 5] = table[input[i + 5] & 0xFF];
+      output[i + 6] = table[input[i + 6] & 0xFF];
+      output[i + 7] = table[input[i + 7] & 0xFF];
+    }
+    for (; i < end; i++) {
+      output[i] = table[input[i] & 0xFF];
+    }
+  }
+
+  private static void multiplyAdd(byte[] table, byte[] input, byte[] output,
+      int offset, int len) {
+    int i = offset;
+    int end = offset + len;
+    for (; i + 8 <= end; i += 8) {
+      output[i] ^= table[input[i] & 0xFF];
+      output[i + 1] ^= table[input[i + 1] & 0xFF];
+      output[i + 2] ^= table[input[i + 2] & 0xFF];
+      output[i + 3] ^= table[input[i + 3] & 0xFF];
+      output[i + 4] ^= table[input[i + 4] & 0xFF];
+      output[i + 5] ^= table[input[i + 5] & 0xFF];
+      output[i + 6] ^= table[input[i + 6] & 0xFF];
+      output[i + 7] ^= table[input[i + 7] & 0xFF];
+    }
+    for (; i < end; i++) {
+      output[i] ^= table[input[i] & 0xFF];
+    }
+  }
+
+  private static void multiply(byte[] table, ByteBuffer input, int inOffset,
+      ByteBuffer output, int outOffset, int len, boolean add) {
+    int i = 0;
+    if (add) {
+      for (; i + 4 <= len; i += 4) {
+        output.put(outOffset + i, (byte) (output.get(outOffset + i) ^
+            table[input.get(inOffset + i) & 0xFF]));
+        output.put(outOffset + i + 1, (byte) (output.get(outOffset + i + 1) ^
+            table[input.get(inOffset + i + 1) & 0xFF]));
+        output.put(outOffset + i + 2, (byte) (output.get(outOffset + i + 2) ^
+            table[input.get(inOffset + i + 2) & 0xFF]));
+        output.put(outOffset + i + 3, (byte) (output.get(outOffset + i + 3) ^
+            table[input.get(inOffset + i + 3) & 0xFF]));
+      }
+      for (; i < len; i++) {
+        output.put(outOffset + i, (byte) (output.get(outOffset + i) ^
+            table[input.get(inOffset + i) & 0xFF]));
+      }
+    } else {
+      for (; i + 4 <= len; i += 4) {
+        output.put(outOffset + i, table[input.get(inOffset + i) & 0xFF]);
+        output.put(outOffset + i + 1,
+            table[input.get(inOffset + i + 1) & 0xFF]);
+        output.put(outOffset + i + 2,
+            table[input.get(inOffset + i + 2) & 0xFF]);
+        output.put(outOffset + i + 3,
+            table[input.get(inOffset + i + 3) & 0xFF]);
+      }
+      for (; i < len; i++) {
+        output.put(outOffset + i, table[input.get(inOffset + i) & 0xFF]);
+      }
+    }
+  }
+}
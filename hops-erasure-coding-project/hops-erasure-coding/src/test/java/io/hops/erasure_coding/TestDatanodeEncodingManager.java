@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.erasure_coding;
+
+import io.hops.metadata.hdfs.entity.EncodingPolicy;
+import io.hops.metadata.hdfs.entity.EncodingStatus;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SIZE_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_REPLICATION_KEY;
+
+public class TestDatanodeEncodingManager extends ClusterTest {
+
+  public static final Log LOG =
+      LogFactory.getLog(TestDatanodeEncodingManager.class);
+
+  private static final int TEST_BLOCK_COUNT = 20;
+
+  private HdfsConfiguration conf;
+  private final long seed = 0xDEADBEEFL;
+  private final Path testFile = new Path("/test_file");
+
+  public TestDatanodeEncodingManager() {
+    conf = new HdfsConfiguration();
+    conf.setLong(DFS_BLOCK_SIZE_KEY, DFS_TEST_BLOCK_SIZE);
+    conf.setInt(DFS_REPLICATION_KEY, 2);
+    conf.set(DFSConfigKeys.ERASURE_CODING_CODECS_KEY, Util.JSON_CODEC_ARRAY);
+    conf.setBoolean(DFSConfigKeys.ERASURE_CODING_ENABLED_KEY, true);
+    conf.set(DFSConfigKeys.ENCODING_MANAGER_CLASSNAME_KEY,
+        DatanodeEncodingManager.class.getName());
+    conf.set(DFSConfigKeys.BLOCK_REPAIR_MANAGER_CLASSNAME_KEY,
+        DFSConfigKeys.DEFAULT_BLOCK_REPAIR_MANAGER_CLASSNAME);
+    conf.setInt(DFSConfigKeys.RECHECK_INTERVAL_KEY, 5 * 1000);
+    conf.setInt(DFSConfigKeys.DATANODE_ENCODING_THREADS_KEY, 1);
+    numDatanode = 20;
+  }
+
+  @Override
+  protected Configuration getConfig() {
+    return conf;
+  }
+
+  @Test(timeout = 120000)
+  public void testEncodingOnDatanodes()
+      throws IOException, InterruptedException {
+    Codec.initializeCodecs(getConfig());
+    DistributedFileSystem dfs = (DistributedFileSystem) getFileSystem();
+    EncodingPolicy policy = new EncodingPolicy("src", (short) 1);
+    Util.createRandomFile(dfs, testFile, seed, TEST_BLOCK_COUNT,
+        DFS_TEST_BLOCK_SIZE, policy);
+
+    EncodingStatus status;
+    while (!(status = dfs.getEncodingStatus(testFile.toUri().getPath()))
+        .isEncoded()) {
+      Assert.assertNotEquals(EncodingStatus.Status.ENCODING_FAILED,
+          status.getStatus());
+      Thread.sleep(1000);
+    }
+
+    Path parityPath = new Path(conf.get(DFSConfigKeys.PARITY_FOLDER,
+        DFSConfigKeys.DEFAULT_PARITY_FOLDER), status.getParityFileName());
+    Assert.assertTrue(dfs.exists(parityPath));
+    Assert.assertEquals(EncodingStatus.ParityStatus.HEALTHY,
+        status.getParityStatus());
+    Assert.assertEquals(1, dfs.getFileStatus(testFile).getReplication());
+  }
+}
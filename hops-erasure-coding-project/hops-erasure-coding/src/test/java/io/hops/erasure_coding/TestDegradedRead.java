@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.erasure_coding;
+
+import io.hops.metadata.hdfs.entity.EncodingPolicy;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.BlockMissingException;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SIZE_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_REPLICATION_KEY;
+
+public class TestDegradedRead extends ClusterTest {
+
+  public static final Log LOG = LogFactory.getLog(TestDegradedRead.class);
+
+  private static final int TEST_BLOCK_COUNT = 10;
+
+  private HdfsConfiguration conf;
+  private final long seed = 0xDEADBEEFL;
+  private final Path testFile = new Path("/test_file");
+
+  public TestDegradedRead() {
+    conf = new HdfsConfiguration();
+    conf.setLong(DFS_BLOCK_SIZE_KEY, DFS_TEST_BLOCK_SIZE);
+    conf.setInt(DFS_REPLICATION_KEY, 1);
+    conf.set(DFSConfigKeys.ERASURE_CODING_CODECS_KEY, Util.JSON_CODEC_ARRAY);
+    conf.setBoolean(DFSConfigKeys.ERASURE_CODING_ENABLED_KEY, true);
+    conf.set(DFSConfigKeys.ENCODING_MANAGER_CLASSNAME_KEY,
+        DFSConfigKeys.DEFAULT_ENCODING_MANAGER_CLASSNAME);
+    conf.set(DFSConfigKeys.BLOCK_REPAIR_MANAGER_CLASSNAME_KEY,
+        DFSConfigKeys.DEFAULT_BLOCK_REPAIR_MANAGER_CLASSNAME);
+    conf.setInt(DFSConfigKeys.RECHECK_INTERVAL_KEY, 10000);
+    // keep the lost block lost while reading it
+    conf.setInt(DFSConfigKeys.REPAIR_DELAY_KEY, 100 * 60 * 60 * 1000);
+    numDatanode = 16;
+  }
+
+  @Override
+  protected Configuration getConfig() {
+    return conf;
+  }
+
+  @Test(timeout = 300000)
+  public void testReadLostBlock() throws IOException, InterruptedException {
+    Codec.initializeCodecs(getConfig());
+    DistributedFileSystem dfs = (DistributedFileSystem) getFileSystem();
+    EncodingPolicy policy = new EncodingPolicy("src", (short) 1);
+    Util.createRandomFile(dfs, testFile, seed, TEST_BLOCK_COUNT,
+        DFS_TEST_BLOCK_SIZE, policy);
+    while (!dfs.getEncodingStatus(testFile.toUri().getPath()).isEncoded()) {
+      Thread.sleep(1000);
+    }
+
+    int blockToLose = 3;
+    LocatedBlock lb = dfs.getClient()
+        .getLocatedBlocks(testFile.toUri().getPath(), 0, Long.MAX_VALUE)
+        .get(blockToLose);
+    DataNodeUtil.loseBlock(getCluster(), lb);
+    LOG.info("Losing block " + lb.toString());
+    getCluster().triggerBlockReports();
+
+    byte[] expected =
+        Util.randomBytes(seed, TEST_BLOCK_COUNT, DFS_TEST_BLOCK_SIZE);
+
+    Configuration clientConf = new Configuration(conf);
+    clientConf.setBoolean(DFSConfigKeys.DFS_CLIENT_DEGRADED_READ_ENABLED_KEY,
+        true);
+    FileSystem client = FileSystem.newInstance(dfs.getUri(), clientConf);
+    try {
+      // sequential read across the lost block
+      byte[] buff = new byte[expected.length];
+      FSDataInputStream in = client.open(testFile);
+      in.readFully(buff);
+      in.close();
+      Assert.assertArrayEquals(expected, buff);
+
+      // positional read within the lost block
+      int offset = blockToLose * DFS_TEST_BLOCK_SIZE + 100;
+      int length = DFS_TEST_BLOCK_SIZE / 2;
+      buff = new byte[length];
+      in = client.open(testFile);
+      in.readFully(offset, buff);
+      in.close();
+      for (int i = 0; i < length; i++) {
+        Assert.assertEquals(expected[offset + i], buff[i]);
+      }
+    } catch (BlockMissingException e) {
+      Assert.fail("Degraded read failed: " + e);
+    } finally {
+      client.close();
+    }
+  }
+}
@@ -19,6 +19,7 @@
 package io.hops.erasure_coding;
 
 import junit.framework.TestCase;
+import org.apache.hadoop.conf.Configuration;
 
 import java.util.Arrays;
 import java.util.HashSet;
@@ -144,6 +145,42 @@ public void testRSEncodeDecodeBulk() {
     verifyRSEncodeDecodeBulk(3, 3);
   }
 
+  public void testEncodeBulkIncremental() {
+    Configuration conf = new Configuration();
+    for (Util.Codecs codec : new Util.Codecs[]{Util.Codecs.XOR,
+        Util.Codecs.RS, Util.Codecs.SRC}) {
+      verifyEncodeBulkIncremental(
+          Util.getCodec(codec).createErasureCode(conf));
+    }
+  }
+
+  public void verifyEncodeBulkIncremental(ErasureCode code) {
+    int bufsize = 4096;
+    byte[][] message = new byte[code.stripeSize()][bufsize];
+    for (byte[] element : message) {
+      RAND.nextBytes(element);
+    }
+    // encodeBulk may modify its inputs
+    byte[][] copy = new byte[message.length][];
+    for (int i = 0; i < message.length; i++) {
+      copy[i] = message[i].clone();
+    }
+    byte[][] expected = new byte[code.paritySize()][bufsize];
+    code.encodeBulk(copy, expected);
+
+    // add the elements in two halves, as a writer would
+    byte[][] parity = new byte[code.paritySize()][bufsize];
+    for (int i = 0; i < code.stripeSize(); i++) {
+      code.encodeBulkIncremental(i, message[i], 0, bufsize / 2, parity, 0);
+      code.encodeBulkIncremental(i, message[i], bufsize / 2, bufsize / 2,
+          parity, bufsize / 2);
+    }
+    for (int i = 0; i < code.paritySize(); i++) {
+      assertTrue("Parity " + i + " of " + code.getClass().getSimpleName(),
+          Arrays.equals(expected[i], parity[i]));
+    }
+  }
+
   public void verifyRSEncodeDecodeBulk(int stripeSize, int paritySize) {
     ReedSolomonCode rsCode = new ReedSolomonCode(stripeSize, paritySize);
     int symbolMax = (int) Math.pow(2, rsCode.symbolSize());
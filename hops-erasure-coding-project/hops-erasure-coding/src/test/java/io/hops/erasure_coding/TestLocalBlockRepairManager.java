@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.erasure_coding;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.BlockMissingException;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SIZE_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_REPLICATION_KEY;
+
+public class TestLocalBlockRepairManager extends ClusterTest {
+
+  public static final Log LOG =
+      LogFactory.getLog(TestLocalBlockRepairManager.class);
+
+  private static final int TEST_BLOCK_COUNT = 20;
+
+  private HdfsConfiguration conf;
+  private final long seed = 0xDEADBEEFL;
+  private final Path testFile = new Path("/test_file");
+  private final Path parityFile = new Path("/raidsrc/test_file");
+
+  public TestLocalBlockRepairManager() {
+    conf = new HdfsConfiguration();
+    conf.setLong(DFS_BLOCK_SIZE_KEY, DFS_TEST_BLOCK_SIZE);
+    conf.setInt(DFS_REPLICATION_KEY, 1);
+    conf.set(DFSConfigKeys.ERASURE_CODING_CODECS_KEY, Util.JSON_CODEC_ARRAY);
+    conf.setInt(DFSConfigKeys.REPAIR_THREADS_KEY, 2);
+    numDatanode = 16;
+  }
+
+  @Override
+  protected Configuration getConfig() {
+    return conf;
+  }
+
+  @Test(timeout = 120000)
+  public void testRepairStripes() throws IOException, InterruptedException {
+    DistributedFileSystem dfs = (DistributedFileSystem) getFileSystem();
+    Codec.initializeCodecs(conf);
+    Util.createRandomFile(dfs, testFile, seed, TEST_BLOCK_COUNT,
+        DFS_TEST_BLOCK_SIZE);
+    Assert.assertTrue(Util.encodeFile(conf, dfs,
+        Util.getCodec(Util.Codecs.SRC), testFile, parityFile));
+
+    // one lost block in each of the two stripes
+    LocatedBlocks blocks = dfs.getClient().getLocatedBlocks(
+        testFile.toUri().getPath(), 0, Long.MAX_VALUE);
+    for (int i : new int[]{2, 14}) {
+      LocatedBlock lb = blocks.get(i);
+      DataNodeUtil.loseBlock(getCluster(), lb);
+      LOG.info("Losing block " + lb.toString());
+    }
+    getCluster().triggerBlockReports();
+
+    LocalBlockRepairManager repairManager = new LocalBlockRepairManager(conf);
+    repairManager.repairSourceBlocks("src", testFile, parityFile);
+
+    List<Report> reports;
+    while ((reports = repairManager.computeReports()).size() > 0) {
+      Assert.assertEquals(1, reports.size());
+      Assert.assertNotEquals(Report.Status.FAILED,
+          reports.get(0).getStatus());
+      Thread.sleep(1000);
+    }
+    Assert.assertEquals(0, repairManager.getQueuedStripes());
+
+    try {
+      FSDataInputStream in = dfs.open(testFile);
+      byte[] buff = new byte[TEST_BLOCK_COUNT * DFS_TEST_BLOCK_SIZE];
+      in.readFully(0, buff);
+      in.close();
+      Assert.assertArrayEquals(
+          Util.randomBytes(seed, TEST_BLOCK_COUNT, DFS_TEST_BLOCK_SIZE), buff);
+    } catch (BlockMissingException e) {
+      Assert.fail("Repair failed. Missing a block.");
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.erasure_coding;
+
+import io.hops.metadata.hdfs.entity.EncodingPolicy;
+import io.hops.metadata.hdfs.entity.EncodingStatus;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.BlockMissingException;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SIZE_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_REPLICATION_KEY;
+
+public class TestOnlineEncoding extends ClusterTest {
+
+  public static final Log LOG = LogFactory.getLog(TestOnlineEncoding.class);
+
+  // one full and one partial stripe
+  private static final int TEST_BLOCK_COUNT = 15;
+
+  private HdfsConfiguration conf;
+  private final long seed = 0xDEADBEEFL;
+  private final Path testFile = new Path("/test_file");
+
+  public TestOnlineEncoding() {
+    conf = new HdfsConfiguration();
+    conf.setLong(DFS_BLOCK_SIZE_KEY, DFS_TEST_BLOCK_SIZE);
+    conf.setInt(DFS_REPLICATION_KEY, 3);
+    conf.set(DFSConfigKeys.ERASURE_CODING_CODECS_KEY, Util.JSON_CODEC_ARRAY);
+    conf.setBoolean(DFSConfigKeys.ERASURE_CODING_ENABLED_KEY, true);
+    conf.set(DFSConfigKeys.ENCODING_MANAGER_CLASSNAME_KEY,
+        DFSConfigKeys.DEFAULT_ENCODING_MANAGER_CLASSNAME);
+    conf.set(DFSConfigKeys.BLOCK_REPAIR_MANAGER_CLASSNAME_KEY,
+        DFSConfigKeys.DEFAULT_BLOCK_REPAIR_MANAGER_CLASSNAME);
+    // the namenode must not get to encode the file itself
+    conf.setInt(DFSConfigKeys.RECHECK_INTERVAL_KEY, 100 * 60 * 60 * 1000);
+    conf.setInt(DFSConfigKeys.REPAIR_DELAY_KEY, 100 * 60 * 60 * 1000);
+    conf.setBoolean(DFSConfigKeys.DFS_CLIENT_ONLINE_ENCODING_ENABLED_KEY,
+        true);
+    numDatanode = 16;
+  }
+
+  @Override
+  protected Configuration getConfig() {
+    return conf;
+  }
+
+  @Test(timeout = 300000)
+  public void testEncodeWhileWriting() throws IOException {
+    Codec.initializeCodecs(getConfig());
+    DistributedFileSystem dfs = (DistributedFileSystem) getFileSystem();
+    EncodingPolicy policy = new EncodingPolicy("rs", (short) 1);
+    Util.createRandomFile(dfs, testFile, seed, TEST_BLOCK_COUNT,
+        DFS_TEST_BLOCK_SIZE, policy);
+
+    EncodingStatus status =
+        dfs.getEncodingStatus(testFile.toUri().getPath());
+    Assert.assertTrue(status.isEncoded());
+    Assert.assertEquals(1, dfs.getFileStatus(testFile).getReplication());
+    Path parityFile = new Path(conf.get(DFSConfigKeys.PARITY_FOLDER,
+        DFSConfigKeys.DEFAULT_PARITY_FOLDER), status.getParityFileName());
+    Codec codec = Codec.getCodec("rs");
+    Assert.assertEquals(2 * codec.getParityLength() * DFS_TEST_BLOCK_SIZE,
+        dfs.getFileStatus(parityFile).getLen());
+
+    // the parity must restore a lost block of each stripe
+    for (int blockToLose : new int[]{3, 12}) {
+      LocatedBlock lb = dfs.getClient()
+          .getLocatedBlocks(testFile.toUri().getPath(), 0, Long.MAX_VALUE)
+          .get(blockToLose);
+      DataNodeUtil.loseBlock(getCluster(), lb);
+      LOG.info("Losing block " + lb.toString());
+    }
+    getCluster().triggerBlockReports();
+
+    Configuration clientConf = new Configuration(conf);
+    clientConf.setBoolean(DFSConfigKeys.DFS_CLIENT_DEGRADED_READ_ENABLED_KEY,
+        true);
+    FileSystem client = FileSystem.newInstance(dfs.getUri(), clientConf);
+    try {
+      byte[] buff = new byte[TEST_BLOCK_COUNT * DFS_TEST_BLOCK_SIZE];
+      FSDataInputStream in = client.open(testFile);
+      in.readFully(0, buff);
+      in.close();
+      Assert.assertArrayEquals(
+          Util.randomBytes(seed, TEST_BLOCK_COUNT, DFS_TEST_BLOCK_SIZE), buff);
+    } catch (BlockMissingException e) {
+      Assert.fail("Could not decode with the parity written by the client: " +
+          e);
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test(timeout = 300000)
+  public void testWrittenAtTargetReplication() throws IOException {
+    Codec.initializeCodecs(getConfig());
+    DistributedFileSystem dfs = (DistributedFileSystem) getFileSystem();
+    FSDataOutputStream out =
+        dfs.create(testFile, new EncodingPolicy("rs", (short) 1));
+    try {
+      // the parity replaces the extra replicas from the first block on
+      out.write(Util.randomBytes(seed, 1, DFS_TEST_BLOCK_SIZE));
+      out.hflush();
+      Assert.assertEquals(1, dfs.getFileStatus(testFile).getReplication());
+      LocatedBlock lb = dfs.getClient()
+          .getLocatedBlocks(testFile.toUri().getPath(), 0, Long.MAX_VALUE)
+          .get(0);
+      Assert.assertEquals(1, lb.getLocations().length);
+    } finally {
+      out.close();
+    }
+    Assert.assertTrue(
+        dfs.getEncodingStatus(testFile.toUri().getPath()).isEncoded());
+  }
+
+  @Test(timeout = 300000)
+  public void testNoEncodingBeyondBufferLimit() throws IOException {
+    Codec.initializeCodecs(getConfig());
+    DistributedFileSystem dfs = (DistributedFileSystem) getFileSystem();
+    Configuration clientConf = new Configuration(conf);
+    // less than the parity buffers of one stripe
+    clientConf.setLong(DFSConfigKeys.DFS_CLIENT_ONLINE_ENCODING_MAX_BUFFER_KEY,
+        DFS_TEST_BLOCK_SIZE);
+    DistributedFileSystem client = (DistributedFileSystem)
+        FileSystem.newInstance(dfs.getUri(), clientConf);
+    try {
+      Util.createRandomFile(client, testFile, seed, TEST_BLOCK_COUNT,
+          DFS_TEST_BLOCK_SIZE, new EncodingPolicy("rs", (short) 1));
+    } finally {
+      client.close();
+    }
+
+    // left to the namenode, fully replicated until then
+    EncodingStatus status =
+        dfs.getEncodingStatus(testFile.toUri().getPath());
+    Assert.assertEquals(EncodingStatus.Status.ENCODING_REQUESTED,
+        status.getStatus());
+    Assert.assertEquals(3, dfs.getFileStatus(testFile).getReplication());
+  }
+
+  @Test(timeout = 300000)
+  public void testCompleteEncodingRejectsParityOutsideParityFolder()
+      throws IOException {
+    Codec.initializeCodecs(getConfig());
+    DistributedFileSystem dfs = (DistributedFileSystem) getFileSystem();
+    Configuration clientConf = new Configuration(conf);
+    clientConf.setBoolean(DFSConfigKeys.DFS_CLIENT_ONLINE_ENCODING_ENABLED_KEY,
+        false);
+    DistributedFileSystem client = (DistributedFileSystem)
+        FileSystem.newInstance(dfs.getUri(), clientConf);
+    try {
+      Util.createRandomFile(client, testFile, seed, TEST_BLOCK_COUNT,
+          DFS_TEST_BLOCK_SIZE, new EncodingPolicy("rs", (short) 1));
+      Util.createRandomFile(client, new Path("/other_file"), seed, 1,
+          DFS_TEST_BLOCK_SIZE);
+      try {
+        client.getClient().completeEncoding(testFile.toUri().getPath(),
+            "../other_file");
+        Assert.fail("A file outside the parity folder was accepted as parity");
+      } catch (IOException e) {
+        Assert.assertTrue(e.getMessage(),
+            e.getMessage().contains("Invalid parity file name"));
+      }
+    } finally {
+      client.close();
+    }
+    Assert.assertEquals(EncodingStatus.Status.ENCODING_REQUESTED,
+        dfs.getEncodingStatus(testFile.toUri().getPath()).getStatus());
+    Assert.assertEquals(3, dfs.getFileStatus(testFile).getReplication());
+  }
+}
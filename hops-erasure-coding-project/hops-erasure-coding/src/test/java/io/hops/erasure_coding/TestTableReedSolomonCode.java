@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.hops.erasure_coding;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class TestTableReedSolomonCode extends TestCase {
+  final int TEST_CODES = 20;
+  final int TEST_TIMES = 20;
+  final int BUFFER_SIZE = 10000;
+  final Random RAND = new Random();
+
+  public void testSameParityAsReedSolomonCode() {
+    for (int n = 0; n < TEST_CODES; n++) {
+      int stripeSize = RAND.nextInt(20) + 1;
+      int paritySize = RAND.nextInt(6) + 1;
+      ReedSolomonCode rs = new ReedSolomonCode(stripeSize, paritySize);
+      TableReedSolomonCode table =
+          new TableReedSolomonCode(stripeSize, paritySize);
+
+      byte[][] inputs = randomBuffers(stripeSize);
+      byte[][] inputsCopy = new byte[stripeSize][];
+      for (int i = 0; i < stripeSize; i++) {
+        inputsCopy[i] = inputs[i].clone();
+      }
+      byte[][] expected = new byte[paritySize][BUFFER_SIZE];
+      byte[][] parity = new byte[paritySize][BUFFER_SIZE];
+      // ReedSolomonCode.encodeBulk modifies its inputs
+      rs.encodeBulk(inputsCopy, expected);
+      table.encodeBulk(inputs, parity);
+      for (int i = 0; i < paritySize; i++) {
+        assertTrue(Arrays.equals(expected[i], parity[i]));
+      }
+
+      ByteBuffer[] directInputs = new ByteBuffer[stripeSize];
+      for (int i = 0; i < stripeSize; i++) {
+        directInputs[i] = toDirect(inputs[i]);
+      }
+      ByteBuffer[] directParity = new ByteBuffer[paritySize];
+      for (int i = 0; i < paritySize; i++) {
+        directParity[i] = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      }
+      table.encode(directInputs, directParity);
+      for (int i = 0; i < paritySize; i++) {
+        assertTrue(Arrays.equals(expected[i], toArray(directParity[i])));
+      }
+    }
+  }
+
+  public void testDecodeBulk() throws Exception {
+    for (int n = 0; n < TEST_CODES; n++) {
+      int stripeSize = RAND.nextInt(20) + 1;
+      int paritySize = RAND.nextInt(6) + 1;
+      TableReedSolomonCode code =
+          new TableReedSolomonCode(stripeSize, paritySize);
+      byte[][] inputs = randomBuffers(stripeSize);
+      byte[][] parity = new byte[paritySize][BUFFER_SIZE];
+      code.encodeBulk(inputs, parity);
+      byte[][] codeword = new byte[stripeSize + paritySize][];
+      System.arraycopy(parity, 0, codeword, 0, paritySize);
+      System.arraycopy(inputs, 0, codeword, paritySize, stripeSize);
+
+      for (int m = 0; m < TEST_TIMES; m++) {
+        int[] erasedLocations = randomErasedLocations(
+            RAND.nextInt(paritySize) + 1, codeword.length);
+        List<Integer> erasedList = new ArrayList<>();
+        for (int loc : erasedLocations) {
+          erasedList.add(loc);
+        }
+        List<Integer> toRead = code.locationsToReadForDecode(erasedList);
+        int[] locationsToRead = new int[toRead.size()];
+        for (int i = 0; i < locationsToRead.length; i++) {
+          locationsToRead[i] = toRead.get(i);
+        }
+
+        byte[][] readBufs = new byte[codeword.length][];
+        ByteBuffer[] directReadBufs = new ByteBuffer[codeword.length];
+        for (int i = 0; i < codeword.length; i++) {
+          if (erasedList.contains(i)) {
+            readBufs[i] = new byte[BUFFER_SIZE];
+          } else {
+            readBufs[i] = codeword[i];
+            directReadBufs[i] = toDirect(codeword[i]);
+          }
+        }
+        byte[][] writeBufs = new byte[erasedLocations.length][BUFFER_SIZE];
+        ByteBuffer[] directWriteBufs = new ByteBuffer[erasedLocations.length];
+        for (int i = 0; i < erasedLocations.length; i++) {
+          directWriteBufs[i] = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        code.decodeBulk(readBufs, writeBufs, erasedLocations, locationsToRead,
+            null);
+        code.decode(directReadBufs, erasedLocations, null, directWriteBufs);
+        for (int i = 0; i < erasedLocations.length; i++) {
+          assertTrue("Decode failed",
+              Arrays.equals(codeword[erasedLocations[i]], writeBufs[i]));
+          assertTrue("Decode failed", Arrays.equals(
+              codeword[erasedLocations[i]], toArray(directWriteBufs[i])));
+        }
+      }
+    }
+  }
+
+  private byte[][] randomBuffers(int count) {
+    byte[][] buffers = new byte[count][BUFFER_SIZE];
+    for (byte[] buffer : buffers) {
+      RAND.nextBytes(buffer);
+    }
+    return buffers;
+  }
+
+  private ByteBuffer toDirect(byte[] array) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(array.length);
+    buffer.put(array);
+    buffer.flip();
+    return buffer;
+  }
+
+  private byte[] toArray(ByteBuffer buffer) {
+    byte[] array = new byte[buffer.remaining()];
+    buffer.duplicate().get(array);
+    return array;
+  }
+
+  private int[] randomErasedLocations(int erasedLen, int dataLen) {
+    List<Integer> locations = new ArrayList<>();
+    for (int i = 0; i < dataLen; i++) {
+      locations.add(i);
+    }
+    Collections.shuffle(locations, RAND);
+    int[] erased = new int[erasedLen];
+    for (int i = 0; i < erasedLen; i++) {
+      erased[i] = locations.get(i);
+    }
+    Arrays.sort(erased);
+    return erased;
+  }
+}
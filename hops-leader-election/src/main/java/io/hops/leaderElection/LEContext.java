@@ -38,6 +38,13 @@ public class LEContext {
   protected SortedActiveNodeList memberShip;
   protected long time_period_increment;
   protected boolean nextTimeTakeStrongerLocks;
+  // lightweight heartbeats, see LeaderElection
+  protected boolean lightweight;
+  protected long membership_version;
+  protected boolean last_round_lightweight;
+  protected long min_time_period;
+  protected double avg_round_latency;
+  protected int rounds_since_tp_change;
 
   private LEContext() {
   }
@@ -54,6 +61,12 @@ public LEContext(LEContext context, LeDescriptorFactory leFactory) {
     http_address = context.http_address;
     time_period_increment = context.time_period_increment;
     nextTimeTakeStrongerLocks = context.nextTimeTakeStrongerLocks;
+    lightweight = context.lightweight;
+    membership_version = context.membership_version;
+    last_round_lightweight = false;
+    min_time_period = context.min_time_period;
+    avg_round_latency = context.avg_round_latency;
+    rounds_since_tp_change = context.rounds_since_tp_change;
 
     //clone history
     history = new ArrayList<HashMap<Long, LeDescriptor>>();
@@ -88,6 +101,12 @@ public static LEContext initialContext() {
     context.rpc_addresses = null;
     context.time_period_increment = 0;
     context.nextTimeTakeStrongerLocks = false;
+    context.lightweight = false;
+    context.membership_version = -1;
+    context.last_round_lightweight = false;
+    context.min_time_period = 0;
+    context.avg_round_latency = -1;
+    context.rounds_since_tp_change = 0;
     return context;
   }
 }
@@ -42,10 +42,14 @@
 public class LETransaction {
 
   private final static Logger LOG = Logger.getLogger(LETransaction.class);
+  private final static double TP_INCREASE_LATENCY_RATIO = 0.5;
+  private final static double TP_DECREASE_LATENCY_RATIO = 0.125;
+  private final static int TP_DECREASE_MIN_ROUNDS = 50;
   private LEContext context;
   private TransactionLockTypes.LockType txLockType = null;
   private List<LeDescriptor> sortedList = null;
   private LeDescriptorFactory leFactory;
+  private boolean lightweightRound = false;
 
   private void LETransaction() {
   }
@@ -81,6 +85,18 @@ public void acquireLock(TransactionLocks locks) throws IOException {
                       TransactionLockTypes.LockType.READ_COMMITTED));
               txLockType = TransactionLockTypes.LockType.WRITE;
 
+            } else if (!relinquishCurrentId &&
+                canDoLightweightRound(currentContext)) {
+              // read only the own and the leader's row, without taking locks
+              // that would conflict with the leader's write lock on the vars
+              locks.add(lockFactory.getLeVarsLock(leFactory.getVarsFinder(),
+                  TransactionLockTypes.LockType.READ_COMMITTED)).add(lockFactory
+                  .getLeDescriptorLock(leFactory,
+                      TransactionLockTypes.LockType.READ_COMMITTED,
+                      currentContext.id, currentContext.leader));
+              txLockType = TransactionLockTypes.LockType.READ;
+              lightweightRound = true;
+
             } else {
               locks.add(lockFactory.getLeVarsLock(leFactory.getVarsFinder(),
                   TransactionLockTypes.LockType.READ)).add(lockFactory
@@ -107,7 +123,9 @@ public Object performTask() throws IOException {
                     VarsRegister.getTimePeriod(leFactory.getVarsFinder());
               }
 
-              if (context.init_phase) {
+              if (lightweightRound) {
+                lightweightUpdate();
+              } else if (context.init_phase) {
                 initPhase();
               } else {
                 periodicUpdate();
@@ -132,6 +150,59 @@ public Object performTask() throws IOException {
     }
   }
 
+  /**
+   * A non leader only needs to know that the leader is alive and whether the
+   * membership changed. The leader publishes a new membership version in the
+   * max id of the vars whenever it removes dead processes, and joining
+   * processes increment it anyway. As long as the leader's counter moves and
+   * the version stays the same, a non leader increments its own counter
+   * without reading the other descriptors.
+   */
+  private static boolean canDoLightweightRound(LEContext context) {
+    return context.lightweight && !context.init_phase &&
+        !context.nextTimeTakeStrongerLocks &&
+        context.role == LeaderElectionRole.Role.NON_LEADER &&
+        context.membership_version != -1 &&
+        context.leader != LeaderElection.LEADER_INITIALIZATION_ID &&
+        context.leader < context.id;
+  }
+
+  private void lightweightUpdate() throws IOException {
+    context.last_round_lightweight = true;
+    try {
+      updateCounter();
+      checkLeaderAlive();
+      if (VarsRegister.getMaxID(leFactory.getVarsFinder()) !=
+          context.membership_version) {
+        LOG.debug("LE Status: id " + context.id +
+            " membership changed. Reading all descriptors in next round");
+        // the next round reads all descriptors as no version will match
+        context.membership_version = -1;
+      }
+    } catch (LEWeakLocks wl) {
+      context.nextTimeTakeStrongerLocks = true;
+      LOG.warn("LE Status: id " + context.id +
+          " lightweight update. Stronger locks requested in next round");
+    }
+    appendLightweightHistory();
+    context.last_hb_time = System.currentTimeMillis();
+  }
+
+  private void checkLeaderAlive() throws IOException, LEWeakLocks {
+    LeDescriptor leader = getDescriptor(context.leader);
+    LeDescriptor oldLeader = null;
+    if (context.history.size() >= context.max_missed_hb_threshold) {
+      oldLeader = context.history.get(0).get(context.leader);
+    }
+    if (leader == null ||
+        (oldLeader != null && leader.getCounter() <= oldLeader.getCounter())) {
+      String msg = "LE Status: id " + context.id + " Suspecting the leader " +
+          context.leader + ". Retry with stronger lock";
+      LOG.warn(msg);
+      throw new LEWeakLocks(msg);
+    }
+  }
+
   private void initPhase() throws IOException {
     LOG.debug("LE Status: id " + context.id +
         " Executing initial phase of the protocol. ");
@@ -151,6 +222,10 @@ private void periodicUpdate() throws IOException {
       leaderCheck();
       increaseTimePeriod();
       membershipMgm();
+      if (context.lightweight) {
+        context.membership_version =
+            VarsRegister.getMaxID(leFactory.getVarsFinder());
+      }
     } catch (LEWeakLocks wl) {
       context.nextTimeTakeStrongerLocks = true;
       LOG.warn("LE Status: id " + context.id +
@@ -284,14 +359,21 @@ private void removeDeadNameNodes() throws IOException {
 
     List<LeDescriptor> newDescriptors = getAllSortedDescriptors();
 
+    boolean removed = false;
     for (LeDescriptor newDesc : newDescriptors) {
       LeDescriptor oldDesc = oldDescriptors.get(newDesc.getId());
       if (oldDesc != null && newDesc.getCounter() == oldDesc.getCounter()) {
         LOG.debug("LE Status: id " + context.id + " removing dead node " +
             oldDesc.getId());
         removeLeaderRow(oldDesc);
+        removed = true;
       }
     }
+
+    if (removed && context.lightweight) {
+      // publish a new membership version. Skipping an id is harmless
+      getNewNamenondeID();
+    }
   }
 
   private void removeLeaderRow(LeDescriptor leader)
@@ -377,8 +459,29 @@ private void appendHistory() throws IOException {
     context.history.add(descriptors);
   }
 
+  /**
+   * Keep the own and the leader's descriptor read in a lightweight round. A
+   * descriptor missing from the history is taken as alive, so the next full
+   * round does not suspect the processes that were not read.
+   */
+  private void appendLightweightHistory() throws IOException {
+    if (context.history.size() > 0 &&
+        context.history.size() >= context.max_missed_hb_threshold) {
+      context.history.remove(0);
+    }
+    HashMap<Long, LeDescriptor> descriptors = new HashMap<Long, LeDescriptor>();
+    for (long id : new long[]{context.id, context.leader}) {
+      LeDescriptor desc = getDescriptor(id);
+      if (desc != null) {
+        descriptors.put(desc.getId(), desc);
+      }
+    }
+    context.history.add(descriptors);
+  }
+
   private void increaseTimePeriod()
       throws TransactionContextException, StorageException {
+    context.rounds_since_tp_change++;
     if (VarsRegister.isEvict(leFactory.getVarsFinder()) &&
         context.role == LeaderElectionRole.Role.LEADER &&
         txLockType == TransactionLockTypes.LockType.WRITE) {
@@ -390,7 +493,42 @@ private void increaseTimePeriod()
           " I am LEADER and I am updating the time period. Old Tp: " + oldTP +
           " new TP: " + context.time_period);
       VarsRegister.setEvictFlag(leFactory.getVarsFinder(), false);
+      context.rounds_since_tp_change = 0;
+    } else if (context.lightweight &&
+        context.role == LeaderElectionRole.Role.LEADER &&
+        txLockType == TransactionLockTypes.LockType.WRITE) {
+      adaptTimePeriod();
+    }
+  }
+
+  /**
+   * Let the time period follow the latency of the leader's rounds. The period
+   * grows as soon as a round takes more than half of it and shrinks back
+   * towards the configured one only if the rounds stayed below an eighth of
+   * it for a while, so that it does not oscillate.
+   */
+  private void adaptTimePeriod()
+      throws TransactionContextException, StorageException {
+    long increment = context.time_period_increment;
+    double latency = context.avg_round_latency;
+    if (increment <= 0 || latency < 0) {
+      return;
+    }
+    long oldTP = context.time_period;
+    if (latency > oldTP * TP_INCREASE_LATENCY_RATIO) {
+      context.time_period = oldTP + increment;
+    } else if (latency < oldTP * TP_DECREASE_LATENCY_RATIO &&
+        context.rounds_since_tp_change >= TP_DECREASE_MIN_ROUNDS &&
+        oldTP - increment >= context.min_time_period) {
+      context.time_period = oldTP - increment;
+    } else {
+      return;
     }
+    VarsRegister.setTimePeriod(leFactory.getVarsFinder(), context.time_period);
+    context.rounds_since_tp_change = 0;
+    LOG.info("LE Status: id " + context.id + " average round latency is " +
+        latency + " ms. Changing the time period from " + oldTP + " to " +
+        context.time_period);
   }
 
   private void setEvictionFlag()
@@ -32,6 +32,8 @@ public class LeaderElection extends Thread {
   private static final Logger LOG = Logger.getLogger(LeaderElection.class);
   public static final long DRIFT_CONSTANT = 100; //ms
   public static final long LEADER_INITIALIZATION_ID = -1;
+  // weight of the latest round in the average round latency
+  private static final double ROUND_LATENCY_ALPHA = 0.2;
   LEContext context;
   protected boolean running = true;
   protected boolean stopped = false;
@@ -42,6 +44,9 @@ public class LeaderElection extends Thread {
   private long forcedTimePerid = 0;
   private long sucessfulTx = 0;
   private long failedtx = 0;
+  private long lightweightTx = 0;
+  private long lastRoundLatency = -1;
+  private long maxRoundLatency = -1;
   private boolean relinquishCurrentId = false;
   private final LeDescriptorFactory leFactory;
 
@@ -49,7 +54,24 @@ public LeaderElection(final LeDescriptorFactory leFactory,
       final long time_period, final int max_missed_hb_threshold,
       final long time_period_increment, String http_address, String rpc_addresses)
       throws IOException {
+    this(leFactory, time_period, max_missed_hb_threshold,
+        time_period_increment, http_address, rpc_addresses, false);
+  }
+
+  /**
+   * @param lightweight
+   *     if true, non leaders only update their own descriptor and check the
+   *     leader's one in each round, and read all descriptors only when the
+   *     leader published a new membership version or seems to be dead. The
+   *     leader also adapts the time period to the latency of its rounds.
+   */
+  public LeaderElection(final LeDescriptorFactory leFactory,
+      final long time_period, final int max_missed_hb_threshold,
+      final long time_period_increment, String http_address,
+      String rpc_addresses, boolean lightweight) throws IOException {
     context = LEContext.initialContext();
+    context.lightweight = lightweight;
+    context.min_time_period = time_period;
     context.init_phase = true;
     context.time_period = time_period;
     context.max_missed_hb_threshold = max_missed_hb_threshold;
@@ -128,6 +150,7 @@ public void run() {
       if (!txFailed) {
         //swap contexts
         swapContexts(updatedContext);
+        recordRoundLatency(txTotalTime);
 
         if (txTotalTime < context.time_period &&
             !context.nextTimeTakeStrongerLocks) {
@@ -272,6 +295,42 @@ public synchronized long getCurrentTimePeriod() {
     return context.time_period;
   }
 
+  /**
+   * @return the duration of the last successful round in ms, -1 if there was
+   * none yet
+   */
+  public synchronized long getLastRoundLatency() {
+    return lastRoundLatency;
+  }
+
+  /**
+   * @return the exponentially weighted average duration of the successful
+   * rounds in ms, -1 if there was none yet
+   */
+  public synchronized double getAverageRoundLatency() {
+    return context.avg_round_latency;
+  }
+
+  public synchronized long getMaxRoundLatency() {
+    return maxRoundLatency;
+  }
+
+  public synchronized long getSuccessfulRounds() {
+    return sucessfulTx;
+  }
+
+  public synchronized long getFailedRounds() {
+    return failedtx;
+  }
+
+  /**
+   * @return the number of successful rounds in which only the own and the
+   * leader's descriptor were read
+   */
+  public synchronized long getLightweightRounds() {
+    return lightweightTx;
+  }
+
   public synchronized SortedActiveNodeList getActiveNamenodes() {
     return context.memberShip;
   }
@@ -294,6 +353,20 @@ private synchronized void swapContexts(LEContext newContext) {
     }
   }
   
+  private synchronized void recordRoundLatency(long latency) {
+    lastRoundLatency = latency;
+    maxRoundLatency = Math.max(maxRoundLatency, latency);
+    if (context.avg_round_latency < 0) {
+      context.avg_round_latency = latency;
+    } else {
+      context.avg_round_latency = ROUND_LATENCY_ALPHA * latency +
+          (1 - ROUND_LATENCY_ALPHA) * context.avg_round_latency;
+    }
+    if (context.last_round_lightweight) {
+      lightweightTx++;
+    }
+  }
+
   public void relinquishCurrentIdInNextRound() throws InterruptedException {
     relinquishCurrentId = true;
     while (true) {
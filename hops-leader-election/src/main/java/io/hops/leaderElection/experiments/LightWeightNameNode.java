@@ -39,9 +39,18 @@ public LightWeightNameNode(LeDescriptorFactory ldf, final long time_period,
       final int max_missed_hb_threshold, final long time_period_increment,
       final String http_address, final String rpc_address)
       throws IOException, CloneNotSupportedException {
+    this(ldf, time_period, max_missed_hb_threshold, time_period_increment,
+        http_address, rpc_address, false);
+  }
+
+  public LightWeightNameNode(LeDescriptorFactory ldf, final long time_period,
+      final int max_missed_hb_threshold, final long time_period_increment,
+      final String http_address, final String rpc_address,
+      final boolean lightweight)
+      throws IOException, CloneNotSupportedException {
     leaderElection =
         new LeaderElection(ldf, time_period, max_missed_hb_threshold,
-            time_period_increment, http_address, rpc_address);
+            time_period_increment, http_address, rpc_address, lightweight);
     leaderElection.start();
     LOG.debug("NameNode has started");
   }
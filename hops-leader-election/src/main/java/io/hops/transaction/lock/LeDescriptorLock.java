@@ -17,22 +17,37 @@
  */
 package io.hops.transaction.lock;
 
+import io.hops.metadata.election.entity.LeDescriptor;
 import io.hops.metadata.election.entity.LeDescriptorFactory;
 import java.io.IOException;
 
 final class LeDescriptorLock extends Lock {
   private final TransactionLockTypes.LockType lockType;
   private LeDescriptorFactory leFactory = null;
+  private final long[] ids;
 
+  /**
+   * @param ids
+   *     the ids of the descriptors to read. All descriptors are read if none
+   *     is given.
+   */
   LeDescriptorLock(LeDescriptorFactory leFactory,
-      TransactionLockTypes.LockType lockType) {
+      TransactionLockTypes.LockType lockType, long... ids) {
     this.lockType = lockType;
     this.leFactory = leFactory;
+    this.ids = ids;
   }
 
   @Override
   protected void acquire(TransactionLocks locks) throws IOException {
-    acquireLockList(lockType, leFactory.getAllFinder());
+    if (ids.length == 0) {
+      acquireLockList(lockType, leFactory.getAllFinder());
+    } else {
+      for (long id : ids) {
+        acquireLock(lockType, leFactory.getByIdFinder(), id,
+            LeDescriptor.DEFAULT_PARTITION_VALUE);
+      }
+    }
   }
 
   @Override
@@ -51,4 +51,9 @@ public Lock getLeDescriptorLock(LeDescriptorFactory leFactory,
       TransactionLockTypes.LockType lockType) {
     return new LeDescriptorLock(leFactory, lockType);
   }
+
+  public Lock getLeDescriptorLock(LeDescriptorFactory leFactory,
+      TransactionLockTypes.LockType lockType, long... ids) {
+    return new LeDescriptorLock(leFactory, lockType, ids);
+  }
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.leaderElection;
+
+import io.hops.exception.StorageException;
+import io.hops.exception.StorageInitializtionException;
+import io.hops.leaderElection.experiments.LightWeightNameNode;
+import io.hops.metadata.LEStorageFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestLELightweight {
+
+  private static final Log LOG = LogFactory.getLog(TestLELightweight.class);
+  List<LightWeightNameNode> nnList;
+  private final int DFS_LEADER_CHECK_INTERVAL_IN_MS = 1000;
+  private final int DFS_LEADER_MISSED_HB_THRESHOLD = 2;
+  private final String HTTP_ADDRESS = "dummy.address.com:9999";
+  private final String RPC_ADDRESS = "repc.server.ip:0000";
+  private final String DRIVER_JAR = "";
+  private final String DRIVER_CLASS = "io.hops.metadata.ndb.NdbStorageFactory";
+  private final String DFS_STORAGE_DRIVER_CONFIG_FILE = "ndb-config.properties";
+  private final long TIME_PERIOD_INCREMENT = 200;
+  private final int NUM_NN = 4;
+
+  @Before
+  public void init()
+      throws StorageInitializtionException, StorageException, IOException {
+    LogManager.getRootLogger().setLevel(Level.ALL);
+    nnList = new ArrayList<LightWeightNameNode>();
+    LEStorageFactory.setConfiguration(DRIVER_JAR, DRIVER_CLASS,
+        DFS_STORAGE_DRIVER_CONFIG_FILE);
+    LEStorageFactory.formatStorage();
+    VarsRegister.registerHdfsDefaultValues();
+  }
+
+  @After
+  public void tearDown() {
+    //stop all NN
+    LOG.debug("tearDown");
+    for (LightWeightNameNode nn : nnList) {
+      nn.stop();
+    }
+  }
+
+  /**
+   * Non leaders must only do lightweight rounds once the membership is
+   * stable, and still elect a new leader and drop the dead one from the
+   * membership when the leader stops.
+   */
+  @Test
+  public void testLightweightRounds()
+      throws IOException, InterruptedException, CloneNotSupportedException {
+    for (int i = 0; i < NUM_NN; i++) {
+      LightWeightNameNode nn =
+          new LightWeightNameNode(new HdfsLeDescriptorFactory(),
+              DFS_LEADER_CHECK_INTERVAL_IN_MS, DFS_LEADER_MISSED_HB_THRESHOLD,
+              TIME_PERIOD_INCREMENT, HTTP_ADDRESS, RPC_ADDRESS, true);
+      nnList.add(nn);
+    }
+    for (LightWeightNameNode nn : nnList) {
+      nn.getLeaderElectionInstance().waitActive();
+    }
+    Thread.sleep(
+        DFS_LEADER_CHECK_INTERVAL_IN_MS * (DFS_LEADER_MISSED_HB_THRESHOLD + 4));
+
+    LightWeightNameNode leader = nnList.get(0);
+    assertTrue("Leader Check Failed ", leader.isLeader());
+    assertEquals(0, leader.getLeaderElectionInstance().getLightweightRounds());
+    for (LightWeightNameNode nn : nnList) {
+      LeaderElection le = nn.getLeaderElectionInstance();
+      assertEquals(NUM_NN, nn.getActiveNameNodes().size());
+      assertTrue(le.getLastRoundLatency() >= 0);
+      assertTrue(le.getAverageRoundLatency() >= 0);
+      if (nn != leader) {
+        assertTrue("Leader Check Failed ", !nn.isLeader());
+        assertTrue("No lightweight round", le.getLightweightRounds() > 0);
+      }
+    }
+
+    // kill the leader
+    leader.stop();
+    nnList.remove(leader);
+    Thread.sleep(DFS_LEADER_CHECK_INTERVAL_IN_MS *
+        (DFS_LEADER_MISSED_HB_THRESHOLD + 1) * 3);
+
+    int leaders = 0;
+    for (LightWeightNameNode nn : nnList) {
+      if (nn.isLeader()) {
+        leaders++;
+      }
+      assertEquals(NUM_NN - 1, nn.getActiveNameNodes().size());
+    }
+    assertEquals("Leader Check Failed ", 1, leaders);
+    assertTrue("Leader Check Failed ", nnList.get(0).isLeader());
+  }
+}